@@ -0,0 +1,10 @@
+uniform sampler2D u_tex0;
+uniform float u_opacity;
+
+varying vec4 v_texCoord;
+
+void main()
+{
+	vec4 col = texture2D(u_tex0, v_texCoord.xy);
+    gl_FragColor = vec4(col.r, col.g, col.b, col.a * u_opacity);
+}
\ No newline at end of file
@@ -20,14 +20,21 @@ import com.kitfox.coyote.renderer.CyDrawGroup;
 import com.kitfox.coyote.renderer.CyDrawRecord;
 import com.kitfox.coyote.renderer.CyGLContext;
 import com.kitfox.coyote.renderer.CyGLWrapper;
+import java.util.List;
 
 /**
  * Draws objects in order they are submitted.
+ * 
+ * <p>Unless optimization is turned off, opaque records are moved
+ * next to records using the same material where this does not change
+ * the result, and records outside of the view are skipped.  See
+ * CyDrawListOptimizer.</p>
  *
  * @author kitfox
  */
 public class CyDrawGroupZOrder extends CyDrawGroup
 {
+    private boolean optimize = true;
 
     @Override
     public void render(CyGLContext ctx, CyGLWrapper gl, CyDrawRecord prevRecord)
@@ -40,10 +47,21 @@ public class CyDrawGroupZOrder extends CyDrawGroup
                     "Filters are not implemented yet.");
         }
 
+        //State may have been changed outside of the context since
+        // it was last used
+        ctx.invalidateState();
+
+        List<CyDrawRecord> drawList = records;
+        if (optimize)
+        {
+            drawList = new CyDrawListOptimizer().optimize(records,
+                    ctx.getRenderStats());
+        }
+
         CyDrawRecord prev = null;
-        for (int i = 0; i < records.size(); ++i)
+        for (int i = 0; i < drawList.size(); ++i)
         {
-            CyDrawRecord rec = records.get(i);
+            CyDrawRecord rec = drawList.get(i);
 
             rec.render(ctx, gl, prev);
 
@@ -60,4 +78,21 @@ public class CyDrawGroupZOrder extends CyDrawGroup
             rec.dispose();
         }
     }
+
+    /**
+     * @return true if records are reordered before they are drawn
+     */
+    public boolean isOptimize()
+    {
+        return optimize;
+    }
+
+    /**
+     * @param optimize If false, records are drawn exactly in the
+     * order they were added
+     */
+    public void setOptimize(boolean optimize)
+    {
+        this.optimize = optimize;
+    }
 }
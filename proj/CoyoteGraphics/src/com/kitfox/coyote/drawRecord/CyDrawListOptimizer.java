@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.drawRecord;
+
+import com.kitfox.coyote.math.d3.BoundingBox3d;
+import com.kitfox.coyote.renderer.CyDrawRecord;
+import com.kitfox.coyote.renderer.CyRenderStats;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reorders a list of draw records so that records using the same
+ * material are drawn one after another where this does not change
+ * the picture.
+ *
+ * <p>An opaque record is moved back to join the earliest run of records
+ * with the same batch key it can reach without passing a record it
+ * overlaps.  Joining the earliest run lets later records of
+ * other materials group behind it as well.  Since those records and the moved one do not
+ * cover any of the same pixels, the order they are drawn in does not
+ * matter.  Translucent records are never moved, although opaque
+ * records may move past them.  Records without a batch key or without
+ * bounds cannot be moved past.</p>
+ *
+ * <p>Records whose bounds lie entirely outside of the view are
+ * dropped.</p>
+ *
+ * @author kitfox
+ */
+public class CyDrawListOptimizer
+{
+    //How many records to look back over for one to group with.  Keeps
+    // the cost linear for long lists.
+    public static final int MAX_LOOKBACK = 64;
+
+    private final ArrayList<CyDrawRecord> list = new ArrayList<CyDrawRecord>();
+    private final ArrayList<BoundingBox3d> boundsList = new ArrayList<BoundingBox3d>();
+
+    /**
+     * @param records Records in the order they were submitted
+     * @param stats Reordered and culled records are counted here.
+     * May be null.
+     * @return Records in the order they should be drawn.  This list
+     * is reused by the next call.
+     */
+    public List<CyDrawRecord> optimize(List<? extends CyDrawRecord> records,
+            CyRenderStats stats)
+    {
+        list.clear();
+        boundsList.clear();
+
+        for (int i = 0; i < records.size(); ++i)
+        {
+            CyDrawRecord rec = records.get(i);
+            BoundingBox3d bounds = rec.getClipBounds();
+            if (bounds != null && isOutsideView(bounds))
+            {
+                if (stats != null)
+                {
+                    stats.addRecordCulled();
+                }
+                continue;
+            }
+
+            int index = list.size();
+            Object key = rec.getBatchKey();
+            if (key != null && bounds != null && rec.isOpaque())
+            {
+                index = findInsertIndex(key, bounds);
+                if (index != list.size() && stats != null)
+                {
+                    stats.addRecordReordered();
+                }
+            }
+
+            list.add(index, rec);
+            boundsList.add(index, key == null ? null : bounds);
+        }
+
+        return list;
+    }
+
+    /**
+     * @return Index just after the end of the earliest run of records
+     * with the given key the record can be moved to.  Otherwise the
+     * end of the list.
+     */
+    private int findInsertIndex(Object key, BoundingBox3d bounds)
+    {
+        int end = list.size();
+        int start = Math.max(0, end - MAX_LOOKBACK);
+        int index = end;
+        for (int i = end - 1; i >= start; --i)
+        {
+            if (key.equals(list.get(i).getBatchKey()))
+            {
+                index = i + 1;
+            }
+
+            //Records without bounds here are barriers
+            BoundingBox3d recBounds = boundsList.get(i);
+            if (recBounds == null || overlaps(recBounds, bounds))
+            {
+                break;
+            }
+        }
+
+        //Go to the end of the run
+        while (index < end && key.equals(list.get(index).getBatchKey()))
+        {
+            ++index;
+        }
+        return index;
+    }
+
+    /**
+     * Only x and y are compared.  Records sharing an edge are treated
+     * as overlapping.
+     */
+    private static boolean overlaps(BoundingBox3d b0, BoundingBox3d b1)
+    {
+        return !(b0.getX1() < b1.getX0() || b1.getX1() < b0.getX0()
+                || b0.getY1() < b1.getY0() || b1.getY1() < b0.getY0());
+    }
+
+    private static boolean isOutsideView(BoundingBox3d bounds)
+    {
+        return bounds.getX1() < -1 || bounds.getX0() > 1
+                || bounds.getY1() < -1 || bounds.getY0() > 1;
+    }
+}
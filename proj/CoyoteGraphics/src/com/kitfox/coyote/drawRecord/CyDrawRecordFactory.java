@@ -29,12 +29,13 @@ abstract public class CyDrawRecordFactory<T extends CyDrawRecord>
 
     abstract protected T createRecord();
 
-    protected void recycleRecord(T rec)
+    //Records may be built and disposed on different threads
+    protected synchronized void recycleRecord(T rec)
     {
         pool.add(rec);
     }
 
-    public T allocRecord()
+    public synchronized T allocRecord()
     {
         if (pool.isEmpty())
         {
@@ -17,6 +17,9 @@
 package com.kitfox.coyote.material;
 
 import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.math.CyVector4d;
+import com.kitfox.coyote.math.d3.BoundingBox3d;
+import com.kitfox.coyote.math.d3.BoundsBuilder3d;
 import com.kitfox.coyote.renderer.CyDrawRecord;
 import com.kitfox.coyote.renderer.CyVertexBuffer;
 
@@ -30,6 +33,50 @@ abstract public class CyDrawRecordMaterialSimple extends CyDrawRecord
     protected CyMatrix4d mvpMatrix = CyMatrix4d.createIdentity();
     protected float opacity;
 
+    /**
+     * Project the corners of the mesh bounds with the mvp matrix.
+     * 
+     * @return Bounds in normalized device coordinates, or null if the
+     * mesh has no bounds or reaches behind the eye.
+     */
+    @Override
+    public BoundingBox3d getClipBounds()
+    {
+        BoundingBox3d bounds = mesh == null ? null : mesh.getBounds();
+        if (bounds == null)
+        {
+            return null;
+        }
+
+        CyVector4d pt = new CyVector4d();
+        BoundsBuilder3d builder = null;
+        for (int i = 0; i < 8; ++i)
+        {
+            pt.set((i & 1) == 0 ? bounds.getX0() : bounds.getX1(),
+                    (i & 2) == 0 ? bounds.getY0() : bounds.getY1(),
+                    (i & 4) == 0 ? bounds.getZ0() : bounds.getZ1(),
+                    1);
+            mvpMatrix.transform(pt);
+            if (pt.w <= 0)
+            {
+                return null;
+            }
+
+            double x = pt.x / pt.w;
+            double y = pt.y / pt.w;
+            double z = pt.z / pt.w;
+            if (builder == null)
+            {
+                builder = new BoundsBuilder3d(x, y, z);
+            }
+            else
+            {
+                builder.union(x, y, z);
+            }
+        }
+        return builder.toBounds();
+    }
+
     /**
      * @return the mvpMatrix
      */
@@ -45,11 +45,23 @@ public class CyMaterialCheckerDrawRecord extends CyDrawRecordMaterialSimple
         }
 
 
-        mat.bind(gl);
+        mat.bind(ctx, gl);
 
         mat.render(ctx, gl, this);
     }
 
+    @Override
+    public Object getBatchKey()
+    {
+        return CyMaterialChecker.class;
+    }
+
+    @Override
+    public boolean isOpaque()
+    {
+        return colorFg.a * opacity >= 1 && colorBg.a * opacity >= 1;
+    }
+
     @Override
     public void dispose()
     {
@@ -41,11 +41,23 @@ public class CyMaterialColorDrawRecord extends CyDrawRecordMaterialSimple
         }
 
 
-        mat.bind(gl);
+        mat.bind(ctx, gl);
 
         mat.render(ctx, gl, this);
     }
 
+    @Override
+    public Object getBatchKey()
+    {
+        return CyMaterialColor.class;
+    }
+
+    @Override
+    public boolean isOpaque()
+    {
+        return color.a * opacity >= 1;
+    }
+
     @Override
     public void dispose()
     {
@@ -32,7 +32,6 @@ import com.kitfox.coyote.renderer.CyGLWrapper;
 import com.kitfox.coyote.renderer.CyGLWrapper.ActiveTexture;
 import com.kitfox.coyote.renderer.CyGLWrapper.Capability;
 import com.kitfox.coyote.renderer.CyGLWrapper.DataType;
-import com.kitfox.coyote.renderer.CyGLWrapper.IndiciesType;
 import com.kitfox.coyote.renderer.CyGLWrapper.InternalFormatTex;
 import com.kitfox.coyote.renderer.CyGLWrapper.ShaderType;
 import com.kitfox.coyote.renderer.CyGLWrapper.TexParam;
@@ -120,16 +119,16 @@ public class CyMaterialGradient extends CyMaterial
         }
     }
 
-    public void bind(CyGLWrapper gl)
+    public void bind(CyGLContext ctx, CyGLWrapper gl)
     {
         if (programId == 0)
         {
             init(gl);
         }
 
-        gl.glDisable(Capability.GL_DEPTH_TEST);
+        ctx.setCapability(gl, Capability.GL_DEPTH_TEST, false);
 
-        gl.glUseProgram(programId);
+        ctx.useProgram(gl, programId);
     }
 
     public void render(CyGLContext ctx, CyGLWrapper gl, CyMaterialGradientDrawRecord rec)
@@ -139,12 +138,12 @@ public class CyMaterialGradient extends CyMaterial
 
         if (opacity >= 1 && texture.getTransparency() == CyTransparency.OPAQUE)
         {
-            gl.glDisable(Capability.GL_BLEND);
+            ctx.setCapability(gl, Capability.GL_BLEND, false);
         }
         else
         {
-            gl.glEnable(Capability.GL_BLEND);
-            gl.glBlendFunc(CyGLWrapper.BlendFactor.GL_SRC_ALPHA,
+            ctx.setCapability(gl, Capability.GL_BLEND, true);
+            ctx.blendFunc(gl, CyGLWrapper.BlendFactor.GL_SRC_ALPHA,
                     CyGLWrapper.BlendFactor.GL_ONE_MINUS_SRC_ALPHA);
         }
 
@@ -239,8 +238,7 @@ public class CyMaterialGradient extends CyMaterial
 //            gl.glEnableVertexAttribArray(a_texCoord);
 //        }
 
-        gl.glDrawElements(mesh.getDrawMode(), mesh.getIndexCount(),
-                IndiciesType.GL_UNSIGNED_SHORT, 0);
+        ctx.drawElements(gl, mesh);
     }
 
     //---------------------------------------
@@ -43,11 +43,17 @@ public class CyMaterialGradientDrawRecord extends CyDrawRecordMaterialSimple
             ctx.registerMaterial(mat);
         }
 
-        mat.bind(gl);
+        mat.bind(ctx, gl);
 
         mat.render(ctx, gl, this);
     }
 
+    @Override
+    public Object getBatchKey()
+    {
+        return CyMaterialGradient.class;
+    }
+
     @Override
     public void dispose()
     {
@@ -46,11 +46,23 @@ public class CyMaterialMarquisDrawRecord extends CyDrawRecordMaterialSimple
         }
 
 
-        mat.bind(gl);
+        mat.bind(ctx, gl);
 
         mat.render(ctx, gl, this);
     }
 
+    @Override
+    public Object getBatchKey()
+    {
+        return CyMaterialMarquis.class;
+    }
+
+    @Override
+    public boolean isOpaque()
+    {
+        return colorFg.a * opacity >= 1 && colorBg.a * opacity >= 1;
+    }
+
     @Override
     public void dispose()
     {
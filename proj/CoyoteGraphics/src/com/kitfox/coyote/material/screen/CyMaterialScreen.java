@@ -28,7 +28,6 @@ import com.kitfox.coyote.renderer.CyVertexBuffer;
 import com.kitfox.coyote.renderer.CyGLContext;
 import com.kitfox.coyote.renderer.CyGLWrapper;
 import com.kitfox.coyote.renderer.CyGLWrapper.Capability;
-import com.kitfox.coyote.renderer.CyGLWrapper.IndiciesType;
 import com.kitfox.coyote.renderer.CyGLWrapper.ShaderType;
 import com.kitfox.coyote.renderer.CyGLWrapper.VertexDataType;
 import java.nio.FloatBuffer;
@@ -89,16 +88,16 @@ public class CyMaterialScreen extends CyMaterial
         }
     }
 
-    protected void bind(CyGLWrapper gl)
+    protected void bind(CyGLContext ctx, CyGLWrapper gl)
     {
         if (programId == 0)
         {
             init(gl);
         }
 //        gl.glDisable(Capability.GL_DEPTH_TEST);
-        gl.glDepthMask(false);
+        ctx.depthMask(gl, false);
 
-        gl.glUseProgram(programId);
+        ctx.useProgram(gl, programId);
     }
 
     protected void render(CyGLContext ctx, CyGLWrapper gl, CyMaterialScreenDrawRecord rec)
@@ -108,12 +107,12 @@ public class CyMaterialScreen extends CyMaterial
 
         if (alphaFg >= 1)
         {
-            gl.glDisable(Capability.GL_BLEND);
+            ctx.setCapability(gl, Capability.GL_BLEND, false);
         }
         else
         {
-            gl.glEnable(Capability.GL_BLEND);
-            gl.glBlendFunc(CyGLWrapper.BlendFactor.GL_SRC_ALPHA,
+            ctx.setCapability(gl, Capability.GL_BLEND, true);
+            ctx.blendFunc(gl, CyGLWrapper.BlendFactor.GL_SRC_ALPHA,
                     CyGLWrapper.BlendFactor.GL_ONE_MINUS_SRC_ALPHA);
         }
 
@@ -139,7 +138,6 @@ public class CyMaterialScreen extends CyMaterial
             gl.glEnableVertexAttribArray(a_position);
         }
 
-        gl.glDrawElements(mesh.getDrawMode(), mesh.getIndexCount(),
-                IndiciesType.GL_UNSIGNED_SHORT, 0);
+        ctx.drawElements(gl, mesh);
     }
 }
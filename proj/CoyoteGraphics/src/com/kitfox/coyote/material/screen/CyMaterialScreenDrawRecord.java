@@ -44,11 +44,23 @@ public class CyMaterialScreenDrawRecord extends CyDrawRecordMaterialSimple
         }
 
 
-        mat.bind(gl);
+        mat.bind(ctx, gl);
 
         mat.render(ctx, gl, this);
     }
 
+    @Override
+    public Object getBatchKey()
+    {
+        return CyMaterialScreen.class;
+    }
+
+    @Override
+    public boolean isOpaque()
+    {
+        return colorFg.a * opacity >= 1;
+    }
+
     @Override
     public void dispose()
     {
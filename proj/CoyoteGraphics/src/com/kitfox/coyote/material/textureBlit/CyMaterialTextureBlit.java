@@ -29,7 +29,6 @@ import com.kitfox.coyote.renderer.CyGLContext;
 import com.kitfox.coyote.renderer.CyGLWrapper;
 import com.kitfox.coyote.renderer.CyGLWrapper.ActiveTexture;
 import com.kitfox.coyote.renderer.CyGLWrapper.Capability;
-import com.kitfox.coyote.renderer.CyGLWrapper.IndiciesType;
 import com.kitfox.coyote.renderer.CyGLWrapper.ShaderType;
 import com.kitfox.coyote.renderer.CyGLWrapper.TexParam;
 import com.kitfox.coyote.renderer.CyGLWrapper.TexParamName;
@@ -93,16 +92,16 @@ public class CyMaterialTextureBlit extends CyMaterial
         }
     }
 
-    public void bind(CyGLWrapper gl)
+    public void bind(CyGLContext ctx, CyGLWrapper gl)
     {
         if (programId == 0)
         {
             init(gl);
         }
 
-        gl.glDisable(Capability.GL_DEPTH_TEST);
+        ctx.setCapability(gl, Capability.GL_DEPTH_TEST, false);
 
-        gl.glUseProgram(programId);
+        ctx.useProgram(gl, programId);
     }
 
 
@@ -113,12 +112,12 @@ public class CyMaterialTextureBlit extends CyMaterial
 
         if (opacity >= 1 && texture.getTransparency() == CyTransparency.OPAQUE)
         {
-            gl.glDisable(Capability.GL_BLEND);
+            ctx.setCapability(gl, Capability.GL_BLEND, false);
         }
         else
         {
-            gl.glEnable(Capability.GL_BLEND);
-            gl.glBlendFuncSeparate(CyGLWrapper.BlendFactor.GL_SRC_ALPHA,
+            ctx.setCapability(gl, Capability.GL_BLEND, true);
+            ctx.blendFuncSeparate(gl, CyGLWrapper.BlendFactor.GL_SRC_ALPHA,
                     CyGLWrapper.BlendFactor.GL_ONE_MINUS_SRC_ALPHA,
                     CyGLWrapper.BlendFactor.GL_ONE,
                     CyGLWrapper.BlendFactor.GL_ONE);
@@ -173,7 +172,6 @@ public class CyMaterialTextureBlit extends CyMaterial
             gl.glEnableVertexAttribArray(a_position);
         }
 
-        gl.glDrawElements(mesh.getDrawMode(), mesh.getIndexCount(),
-                IndiciesType.GL_UNSIGNED_SHORT, 0);
+        ctx.drawElements(gl, mesh);
     }
 }
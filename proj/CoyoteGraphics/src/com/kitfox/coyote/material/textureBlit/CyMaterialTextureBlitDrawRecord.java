@@ -20,6 +20,7 @@ import com.kitfox.coyote.material.CyDrawRecordMaterialSimple;
 import com.kitfox.coyote.math.CyMatrix4d;
 import com.kitfox.coyote.renderer.CyDrawRecord;
 import com.kitfox.coyote.renderer.CyTextureSource;
+import com.kitfox.coyote.renderer.CyTransparency;
 import com.kitfox.coyote.renderer.CyGLContext;
 import com.kitfox.coyote.renderer.CyGLWrapper;
 import com.kitfox.coyote.renderer.CyGLWrapper.TexParam;
@@ -53,12 +54,25 @@ public class CyMaterialTextureBlitDrawRecord extends CyDrawRecordMaterialSimple
 
 //        if (!(prevRecord instanceof DrawRecord))
 //        {
-            mat.bind(gl);
+            mat.bind(ctx, gl);
 //        }
 
             mat.render(ctx, gl, this);
     }
 
+    @Override
+    public Object getBatchKey()
+    {
+        return CyMaterialTextureBlit.class;
+    }
+
+    @Override
+    public boolean isOpaque()
+    {
+        return opacity >= 1 && texture != null
+                && texture.getTransparency() == CyTransparency.OPAQUE;
+    }
+
 //    public void recycle()
 //    {
 //        disposed = false;
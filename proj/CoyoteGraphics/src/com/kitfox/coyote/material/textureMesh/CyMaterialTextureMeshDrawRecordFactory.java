@@ -0,0 +1,52 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.material.textureMesh;
+
+import com.kitfox.coyote.drawRecord.CyDrawRecordFactory;
+
+/**
+ *
+ * @author kitfox
+ */
+public class CyMaterialTextureMeshDrawRecordFactory
+        extends CyDrawRecordFactory<CyMaterialTextureMeshDrawRecord>
+{
+    static CyMaterialTextureMeshDrawRecordFactory instance = new CyMaterialTextureMeshDrawRecordFactory();
+
+    private CyMaterialTextureMeshDrawRecordFactory()
+    {
+    }
+
+    public static CyMaterialTextureMeshDrawRecordFactory inst()
+    {
+        return instance;
+    }
+
+    @Override
+    protected CyMaterialTextureMeshDrawRecord createRecord()
+    {
+        CyMaterialTextureMeshDrawRecord rec = new CyMaterialTextureMeshDrawRecord();
+        return rec;
+    }
+
+    @Override
+    protected void recycleRecord(CyMaterialTextureMeshDrawRecord rec)
+    {
+        super.recycleRecord(rec);
+    }
+
+}
@@ -16,6 +16,8 @@
 
 package com.kitfox.coyote.renderer;
 
+import com.kitfox.coyote.math.d3.BoundingBox3d;
+
 /**
  * This is a basic unit of rendering used to draw Coyote scenes.
  * 
@@ -48,6 +50,38 @@ abstract public class CyDrawRecord
      * @param prevRecord 
      */
     abstract public void render(CyGLContext ctx, CyGLWrapper gl, CyDrawRecord prevRecord);
+
+    /**
+     * Records with the same key set up GL state the same way, and are
+     * cheaper to draw one after another.  Records are only reordered
+     * if they have a key.
+     * 
+     * @return Key identifying how this record sets GL state, or null if
+     * nothing may be drawn across this record.
+     */
+    public Object getBatchKey()
+    {
+        return null;
+    }
+
+    /**
+     * @return true if this record completely covers everything
+     * under it, so that it can be drawn earlier than records it
+     * does not overlap.
+     */
+    public boolean isOpaque()
+    {
+        return false;
+    }
+
+    /**
+     * @return Bounds of what this record draws in normalized device
+     * coordinates, or null if not known.
+     */
+    public BoundingBox3d getClipBounds()
+    {
+        return null;
+    }
     
     /**
      * Called after rendering the frame completes to indicate that 
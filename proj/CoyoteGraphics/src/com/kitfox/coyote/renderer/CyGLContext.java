@@ -17,11 +17,17 @@
 package com.kitfox.coyote.renderer;
 
 import com.kitfox.coyote.math.BufferUtil;
+import com.kitfox.coyote.renderer.CyGLWrapper.BlendFactor;
+import com.kitfox.coyote.renderer.CyGLWrapper.BufferTarget;
+import com.kitfox.coyote.renderer.CyGLWrapper.Capability;
+import com.kitfox.coyote.renderer.CyGLWrapper.DrawMode;
+import com.kitfox.coyote.renderer.CyGLWrapper.IndiciesType;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.WeakHashMap;
 
@@ -35,6 +41,13 @@ import java.util.WeakHashMap;
  * will be executed and flushed whenever processActions() is
  * called.  This is typically done at the start of a screen refresh.</p>
  * 
+ * <p>Materials set the program, blend, depth and buffer state they
+ * need through this context.  It remembers the last value set for each
+ * and does not send a change to GL if the value is already in effect.
+ * The remembered state is forgotten by invalidateState(), which
+ * should be called whenever GL state may have been changed without
+ * going through this context.</p>
+ * 
  * <p>Most of the functions CyGLContext provides are intended for use
  * by wrapper objects, so users will typically not need to interact
  * with this object directly.</p>
@@ -56,6 +69,16 @@ public class CyGLContext
     ReferenceQueue refQueue = new ReferenceQueue();
     HashMap<Reference, CyGLAction> dieMap = new HashMap<Reference, CyGLAction>();
 
+    //Last state set through this context.  Missing entries are unknown.
+    int curProgram = -1;
+    EnumMap<Capability, Boolean> capabilities = new EnumMap<Capability, Boolean>(Capability.class);
+    EnumMap<BufferTarget, Integer> buffers = new EnumMap<BufferTarget, Integer>(BufferTarget.class);
+    //RGB source, RGB dest, alpha source, alpha dest
+    BlendFactor[] blendFunc = new BlendFactor[4];
+    Boolean depthMask;
+
+    CyRenderStats stats = new CyRenderStats();
+
     /**
      * Post an action to be processed when processActions() is
      * next called.
@@ -74,6 +97,10 @@ public class CyGLContext
      */
     public void processActions(CyGLWrapper wrapper)
     {
+        //Deleting buffers unbinds them
+        invalidateState();
+        stats.reset();
+
         //For all dead references, trigger their actions
         while (true)
         {
@@ -132,6 +159,147 @@ public class CyGLContext
         materialMap.put(mat.getClass(), mat);
     }
 
+    /**
+     * @return Counts of the work done since processActions() was
+     * last called
+     */
+    public CyRenderStats getRenderStats()
+    {
+        return stats;
+    }
+
+    /**
+     * Forget the GL state set through this context, so that the next
+     * change to each is sent to GL.
+     */
+    public void invalidateState()
+    {
+        curProgram = -1;
+        capabilities.clear();
+        buffers.clear();
+        blendFunc[0] = null;
+        depthMask = null;
+    }
+
+    public void useProgram(CyGLWrapper gl, int programId)
+    {
+        if (curProgram == programId)
+        {
+            stats.addStateChangeSkipped();
+            return;
+        }
+        gl.glUseProgram(programId);
+        curProgram = programId;
+        stats.addStateChange();
+    }
+
+    public void setCapability(CyGLWrapper gl, Capability cap, boolean enable)
+    {
+        Boolean cur = capabilities.get(cap);
+        if (cur != null && cur == enable)
+        {
+            stats.addStateChangeSkipped();
+            return;
+        }
+        if (enable)
+        {
+            gl.glEnable(cap);
+        }
+        else
+        {
+            gl.glDisable(cap);
+        }
+        capabilities.put(cap, enable);
+        stats.addStateChange();
+    }
+
+    public void blendFunc(CyGLWrapper gl, BlendFactor src, BlendFactor dst)
+    {
+        if (isBlendFunc(src, dst, src, dst))
+        {
+            stats.addStateChangeSkipped();
+            return;
+        }
+        gl.glBlendFunc(src, dst);
+        setBlendFunc(src, dst, src, dst);
+        stats.addStateChange();
+    }
+
+    public void blendFuncSeparate(CyGLWrapper gl,
+            BlendFactor srcRgb, BlendFactor dstRgb,
+            BlendFactor srcAlpha, BlendFactor dstAlpha)
+    {
+        if (isBlendFunc(srcRgb, dstRgb, srcAlpha, dstAlpha))
+        {
+            stats.addStateChangeSkipped();
+            return;
+        }
+        gl.glBlendFuncSeparate(srcRgb, dstRgb, srcAlpha, dstAlpha);
+        setBlendFunc(srcRgb, dstRgb, srcAlpha, dstAlpha);
+        stats.addStateChange();
+    }
+
+    private boolean isBlendFunc(BlendFactor srcRgb, BlendFactor dstRgb,
+            BlendFactor srcAlpha, BlendFactor dstAlpha)
+    {
+        return blendFunc[0] == srcRgb && blendFunc[1] == dstRgb
+                && blendFunc[2] == srcAlpha && blendFunc[3] == dstAlpha;
+    }
+
+    private void setBlendFunc(BlendFactor srcRgb, BlendFactor dstRgb,
+            BlendFactor srcAlpha, BlendFactor dstAlpha)
+    {
+        blendFunc[0] = srcRgb;
+        blendFunc[1] = dstRgb;
+        blendFunc[2] = srcAlpha;
+        blendFunc[3] = dstAlpha;
+    }
+
+    public void depthMask(CyGLWrapper gl, boolean flag)
+    {
+        if (depthMask != null && depthMask == flag)
+        {
+            stats.addStateChangeSkipped();
+            return;
+        }
+        gl.glDepthMask(flag);
+        depthMask = flag;
+        stats.addStateChange();
+    }
+
+    public void bindBuffer(CyGLWrapper gl, BufferTarget target, int bufferId)
+    {
+        Integer cur = buffers.get(target);
+        if (cur != null && cur == bufferId)
+        {
+            stats.addStateChangeSkipped();
+            return;
+        }
+        gl.glBindBuffer(target, bufferId);
+        buffers.put(target, bufferId);
+        stats.addStateChange();
+    }
+
+    /**
+     * Draw elements from the currently bound element buffer.
+     */
+    public void drawElements(CyGLWrapper gl, DrawMode mode, int count,
+            IndiciesType type, long offset)
+    {
+        gl.glDrawElements(mode, count, type, offset);
+        stats.addDrawCalls(1, 1);
+    }
+
+    /**
+     * Draw all elements of a mesh.  It must already be bound.
+     */
+    public void drawElements(CyGLWrapper gl, CyVertexBuffer mesh)
+    {
+        gl.glDrawElements(mesh.getDrawMode(), mesh.getIndexCount(),
+                mesh.getIndexType(), 0);
+        stats.addDrawCalls(1, mesh.getBatchSize());
+    }
+
     /**
      * Allocate and track a vertex buffer for the given source.
      * 
@@ -327,7 +327,8 @@ public interface CyGLWrapper
     public static enum IndiciesType
     {
         GL_UNSIGNED_BYTE,
-        GL_UNSIGNED_SHORT
+        GL_UNSIGNED_SHORT,
+        GL_UNSIGNED_INT
     }
 
     public static enum DrawMode
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer;
+
+/**
+ * Counts the work done while drawing a frame.  A CyGLContext keeps
+ * one of these and resets it whenever processActions() is called,
+ * so after a frame is drawn it holds the totals for that frame.
+ *
+ * @author kitfox
+ */
+public class CyRenderStats
+{
+    private int drawCalls;
+    private int drawCallsUnbatched;
+    private int stateChanges;
+    private int stateChangesSkipped;
+    private int recordsReordered;
+    private int recordsCulled;
+
+    public void reset()
+    {
+        drawCalls = 0;
+        drawCallsUnbatched = 0;
+        stateChanges = 0;
+        stateChangesSkipped = 0;
+        recordsReordered = 0;
+        recordsCulled = 0;
+    }
+
+    /**
+     * @param count Draw calls made
+     * @param unbatched Draw calls that would have been made if each
+     * mesh in a batch were drawn separately
+     */
+    public void addDrawCalls(int count, int unbatched)
+    {
+        drawCalls += count;
+        drawCallsUnbatched += unbatched;
+    }
+
+    public void addStateChange()
+    {
+        ++stateChanges;
+    }
+
+    public void addStateChangeSkipped()
+    {
+        ++stateChangesSkipped;
+    }
+
+    public void addRecordReordered()
+    {
+        ++recordsReordered;
+    }
+
+    public void addRecordCulled()
+    {
+        ++recordsCulled;
+    }
+
+    /**
+     * @return Number of primitives drawn
+     */
+    public int getDrawCalls()
+    {
+        return drawCalls;
+    }
+
+    /**
+     * @return Number of primitives that would have been drawn if
+     * batched meshes were drawn one at a time
+     */
+    public int getDrawCallsUnbatched()
+    {
+        return drawCallsUnbatched;
+    }
+
+    /**
+     * @return Number of GL state changes sent to the driver
+     */
+    public int getStateChanges()
+    {
+        return stateChanges;
+    }
+
+    /**
+     * @return Number of GL state changes that were not sent because
+     * the state was already set
+     */
+    public int getStateChangesSkipped()
+    {
+        return stateChangesSkipped;
+    }
+
+    /**
+     * @return Number of records moved to be drawn next to others
+     * using the same material
+     */
+    public int getRecordsReordered()
+    {
+        return recordsReordered;
+    }
+
+    /**
+     * @return Number of records not drawn because they lie entirely
+     * outside of the view.  Each one is a draw call saved.
+     */
+    public int getRecordsCulled()
+    {
+        return recordsCulled;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "draw calls: " + drawCalls
+                + " unbatched: " + drawCallsUnbatched
+                + " culled: " + recordsCulled
+                + " state changes: " + stateChanges
+                + " skipped: " + stateChangesSkipped
+                + " reordered: " + recordsReordered;
+    }
+}
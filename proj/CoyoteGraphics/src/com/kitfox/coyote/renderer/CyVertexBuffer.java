@@ -21,8 +21,9 @@ import com.kitfox.coyote.math.d3.BoundingBox3d;
 import com.kitfox.coyote.renderer.CyGLContext.VertexBufferInfo;
 import com.kitfox.coyote.renderer.CyGLWrapper.BufferTarget;
 import com.kitfox.coyote.renderer.CyGLWrapper.DrawMode;
+import com.kitfox.coyote.renderer.CyGLWrapper.IndiciesType;
+import java.nio.Buffer;
 import java.nio.FloatBuffer;
-import java.nio.ShortBuffer;
 
 /**
  *
@@ -53,6 +54,11 @@ public class CyVertexBuffer
         return dataProv.getIndexCount();
     }
 
+    public IndiciesType getIndexType()
+    {
+        return dataProv.getIndexType();
+    }
+
     public void bind(CyGLContext ctx, CyGLWrapper gl)
     {
         VertexBufferInfo info = ctx.getVertexBufferInfo(this, gl);
@@ -63,7 +69,7 @@ public class CyVertexBuffer
         //Upload new data if it has changed
         if (info.getArrayDirty() < arrayDirty)
         {
-            gl.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, arrayId);
+            ctx.bindBuffer(gl, BufferTarget.GL_ARRAY_BUFFER, arrayId);
             FloatBuffer buf = dataProv.getVertexData();
             gl.glBufferData(BufferTarget.GL_ARRAY_BUFFER,
                     buf.limit() * BufferUtil.SIZEOF_FLOAT,
@@ -75,18 +81,33 @@ public class CyVertexBuffer
 
         if (info.getEleDirty() < eleDirty)
         {
-            gl.glBindBuffer(BufferTarget.GL_ELEMENT_ARRAY_BUFFER, eleId);
-            ShortBuffer buf = dataProv.getIndexData();
+            ctx.bindBuffer(gl, BufferTarget.GL_ELEMENT_ARRAY_BUFFER, eleId);
+            Buffer buf = dataProv.getIndexData();
             gl.glBufferData(BufferTarget.GL_ELEMENT_ARRAY_BUFFER,
-                    buf.limit() * BufferUtil.SIZEOF_SHORT,
+                    buf.limit() * getIndexSize(dataProv.getIndexType()),
                     buf,
                     dataProv.getIndexUsage());
 
             info.setEleDirty(eleDirty);
         }
 
-        gl.glBindBuffer(BufferTarget.GL_ARRAY_BUFFER, arrayId);
-        gl.glBindBuffer(BufferTarget.GL_ELEMENT_ARRAY_BUFFER, eleId);
+        ctx.bindBuffer(gl, BufferTarget.GL_ARRAY_BUFFER, arrayId);
+        ctx.bindBuffer(gl, BufferTarget.GL_ELEMENT_ARRAY_BUFFER, eleId);
+    }
+
+    private static int getIndexSize(IndiciesType type)
+    {
+        switch (type)
+        {
+            case GL_UNSIGNED_BYTE:
+                return BufferUtil.SIZEOF_BYTE;
+            case GL_UNSIGNED_SHORT:
+                return BufferUtil.SIZEOF_SHORT;
+            case GL_UNSIGNED_INT:
+                return BufferUtil.SIZEOF_INT;
+            default:
+                throw new RuntimeException();
+        }
     }
 
     @Override
@@ -110,4 +131,9 @@ public class CyVertexBuffer
     {
         return dataProv.getBounds();
     }
+
+    public int getBatchSize()
+    {
+        return dataProv.getBatchSize();
+    }
 }
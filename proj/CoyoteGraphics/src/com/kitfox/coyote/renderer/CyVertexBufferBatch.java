@@ -0,0 +1,383 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer;
+
+import com.kitfox.coyote.math.BufferUtil;
+import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.math.d3.BoundingBox3d;
+import com.kitfox.coyote.math.d3.BoundsBuilder3d;
+import com.kitfox.coyote.renderer.CyGLWrapper.BufferUsage;
+import com.kitfox.coyote.renderer.CyGLWrapper.DrawMode;
+import com.kitfox.coyote.renderer.CyGLWrapper.IndiciesType;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+
+/**
+ * Combines many small triangle meshes into a single vertex and index
+ * buffer so that they can be drawn with one draw call.
+ *
+ * <p>Each mesh may be given its own transform.  Its vertices are
+ * transformed into the space of the batch when the buffers are built,
+ * so everything in the batch is then drawn with the same material
+ * settings.  The buffers are only rebuilt after a mesh is added or
+ * removed, a transform changes or one of the meshes reports that its
+ * data changed.  Triangles are kept in the order their meshes were
+ * added, so drawing a batch gives the same result as drawing its
+ * meshes one after another.</p>
+ *
+ * <p>Meshes must be drawn as GL_TRIANGLES and have 2D positions.</p>
+ *
+ * @author kitfox
+ */
+public class CyVertexBufferBatch extends CyVertexBufferDataProvider
+        implements CyVertexBufferDataProviderListener
+{
+    private final ArrayList<Member> members = new ArrayList<Member>();
+
+    private boolean dirty = true;
+    private FloatBuffer vertBuf;
+    private Buffer indexBuf;
+    private IndiciesType indexType = IndiciesType.GL_UNSIGNED_SHORT;
+    private int indexCount;
+    private BoundingBox3d bounds;
+    private int numBuilds;
+
+    public CyVertexBufferBatch()
+    {
+        setVertexArrayInfo(CyMaterial.KEY_POSITION,
+                0 * BufferUtil.SIZEOF_FLOAT, 2);
+    }
+
+    public void addMesh(CyVertexBufferDataProvider mesh)
+    {
+        addMesh(mesh, null);
+    }
+
+    /**
+     * @param mesh Mesh to append to the batch
+     * @param xform Transform from the space of the mesh to the space of
+     * the batch.  If null, the mesh is used as is.
+     */
+    public void addMesh(CyVertexBufferDataProvider mesh, CyMatrix4d xform)
+    {
+        if (mesh.getDrawMode() != DrawMode.GL_TRIANGLES)
+        {
+            throw new IllegalArgumentException(
+                    "Only triangle meshes can be batched: " + mesh.getDrawMode());
+        }
+
+        members.add(new Member(mesh,
+                xform == null ? null : new CyMatrix4d(xform)));
+        mesh.addCyVertexBufferDataProviderListener(this);
+        setDirty();
+    }
+
+    public void removeMesh(CyVertexBufferDataProvider mesh)
+    {
+        int index = indexOf(mesh);
+        if (index == -1)
+        {
+            return;
+        }
+
+        members.remove(index);
+        mesh.removeCyVertexBufferDataProviderListener(this);
+        setDirty();
+    }
+
+    /**
+     * Stop listening to the meshes of this batch, so meshes that
+     * outlive the batch do not hold on to it.  The batch can still be
+     * drawn, but is no longer rebuilt when its meshes change.
+     */
+    public void dispose()
+    {
+        for (int i = 0; i < members.size(); ++i)
+        {
+            members.get(i).mesh.removeCyVertexBufferDataProviderListener(this);
+        }
+    }
+
+    /**
+     * Change the transform of a mesh in the batch.  Nothing is rebuilt
+     * if the transform is unchanged.
+     */
+    public void setMeshTransform(CyVertexBufferDataProvider mesh, CyMatrix4d xform)
+    {
+        int index = indexOf(mesh);
+        if (index == -1)
+        {
+            throw new IllegalArgumentException("Mesh is not in batch");
+        }
+
+        Member member = members.get(index);
+        if (xform == null ? member.xform == null : xform.equals(member.xform))
+        {
+            return;
+        }
+        member.xform = xform == null ? null : new CyMatrix4d(xform);
+        setDirty();
+    }
+
+    private int indexOf(CyVertexBufferDataProvider mesh)
+    {
+        for (int i = 0; i < members.size(); ++i)
+        {
+            if (members.get(i).mesh == mesh)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getNumMeshes()
+    {
+        return members.size();
+    }
+
+    /**
+     * @return Number of times the buffers have been built
+     */
+    public int getNumBuilds()
+    {
+        return numBuilds;
+    }
+
+    private void setDirty()
+    {
+        dirty = true;
+        fireArrayDataChanged();
+        fireElementDataChanged();
+    }
+
+    @Override
+    public void arrayDataChanged(CyChangeEvent evt)
+    {
+        setDirty();
+    }
+
+    @Override
+    public void elementDataChanged(CyChangeEvent evt)
+    {
+        setDirty();
+    }
+
+    /**
+     * Build the buffers now if they are out of date, rather than
+     * when they are next read.
+     */
+    public void build()
+    {
+        if (!dirty)
+        {
+            return;
+        }
+        dirty = false;
+        ++numBuilds;
+
+        //Number of vertices is not stored by providers, so find it
+        // from the largest index used
+        int numVerts = 0;
+        int numIndices = 0;
+        int[] vertCounts = new int[members.size()];
+        for (int i = 0; i < members.size(); ++i)
+        {
+            CyVertexBufferDataProvider mesh = members.get(i).mesh;
+            Buffer indices = mesh.getIndexData();
+            IndiciesType type = mesh.getIndexType();
+            int count = mesh.getIndexCount();
+            int max = -1;
+            for (int j = 0; j < count; ++j)
+            {
+                max = Math.max(max, getIndex(indices, type, j));
+            }
+            vertCounts[i] = max + 1;
+            numVerts += max + 1;
+            numIndices += count;
+        }
+
+        FloatBuffer verts = BufferUtil.allocateFloat(numVerts * 2);
+        BoundsBuilder3d builder = null;
+        int[] eleIdx = new int[numIndices];
+        int vertBase = 0;
+        int eleBase = 0;
+        for (int i = 0; i < members.size(); ++i)
+        {
+            Member member = members.get(i);
+            CyVertexBufferDataProvider mesh = member.mesh;
+            CyMatrix4d m = member.xform;
+
+            CyVertexArrayInfo info = mesh.getVertexArrayInfo(CyMaterial.KEY_POSITION);
+            if (info.getSize() != 2)
+            {
+                throw new IllegalStateException(
+                        "Only meshes with 2D positions can be batched");
+            }
+            FloatBuffer src = mesh.getVertexData();
+            int srcOffset = (int)(info.getOffset() / BufferUtil.SIZEOF_FLOAT);
+            for (int j = 0; j < vertCounts[i]; ++j)
+            {
+                double x = src.get(srcOffset + j * 2);
+                double y = src.get(srcOffset + j * 2 + 1);
+                if (m != null)
+                {
+                    double tx = m.m00 * x + m.m01 * y + m.m03;
+                    double ty = m.m10 * x + m.m11 * y + m.m13;
+                    x = tx;
+                    y = ty;
+                }
+                verts.put((float)x);
+                verts.put((float)y);
+
+                if (builder == null)
+                {
+                    builder = new BoundsBuilder3d(x, y, 0);
+                }
+                else
+                {
+                    builder.union(x, y, 0);
+                }
+            }
+
+            Buffer indices = mesh.getIndexData();
+            IndiciesType type = mesh.getIndexType();
+            int count = mesh.getIndexCount();
+            for (int j = 0; j < count; ++j)
+            {
+                eleIdx[eleBase++] = vertBase + getIndex(indices, type, j);
+            }
+            vertBase += vertCounts[i];
+        }
+        verts.rewind();
+        vertBuf = verts;
+        indexCount = numIndices;
+        bounds = builder == null ? new BoundingBox3d() : builder.toBounds();
+
+        //Short indices are unsigned, so can address up to 0xffff
+        if (numVerts <= 0x10000)
+        {
+            ShortBuffer buf = BufferUtil.allocateShort(numIndices);
+            for (int i = 0; i < numIndices; ++i)
+            {
+                buf.put((short)eleIdx[i]);
+            }
+            buf.rewind();
+            indexBuf = buf;
+            indexType = IndiciesType.GL_UNSIGNED_SHORT;
+        }
+        else
+        {
+            IntBuffer buf = BufferUtil.allocateInt(numIndices);
+            buf.put(eleIdx);
+            buf.rewind();
+            indexBuf = buf;
+            indexType = IndiciesType.GL_UNSIGNED_INT;
+        }
+    }
+
+    private static int getIndex(Buffer buf, IndiciesType type, int index)
+    {
+        switch (type)
+        {
+            case GL_UNSIGNED_BYTE:
+                return ((ByteBuffer)buf).get(index) & 0xff;
+            case GL_UNSIGNED_SHORT:
+                return ((ShortBuffer)buf).get(index) & 0xffff;
+            case GL_UNSIGNED_INT:
+                return ((IntBuffer)buf).get(index);
+            default:
+                throw new RuntimeException();
+        }
+    }
+
+    @Override
+    public FloatBuffer getVertexData()
+    {
+        build();
+        return vertBuf;
+    }
+
+    @Override
+    public Buffer getIndexData()
+    {
+        build();
+        return indexBuf;
+    }
+
+    @Override
+    public IndiciesType getIndexType()
+    {
+        build();
+        return indexType;
+    }
+
+    @Override
+    public BufferUsage getVertexUsage()
+    {
+        return BufferUsage.GL_STATIC_DRAW;
+    }
+
+    @Override
+    public BufferUsage getIndexUsage()
+    {
+        return BufferUsage.GL_STATIC_DRAW;
+    }
+
+    @Override
+    public DrawMode getDrawMode()
+    {
+        return DrawMode.GL_TRIANGLES;
+    }
+
+    @Override
+    public int getIndexCount()
+    {
+        build();
+        return indexCount;
+    }
+
+    @Override
+    public BoundingBox3d getBounds()
+    {
+        build();
+        return bounds;
+    }
+
+    @Override
+    public int getBatchSize()
+    {
+        return members.size();
+    }
+
+    //-----------------------------
+    static class Member
+    {
+        final CyVertexBufferDataProvider mesh;
+        CyMatrix4d xform;
+
+        public Member(CyVertexBufferDataProvider mesh, CyMatrix4d xform)
+        {
+            this.mesh = mesh;
+            this.xform = xform;
+        }
+    }
+}
@@ -19,8 +19,9 @@ package com.kitfox.coyote.renderer;
 import com.kitfox.coyote.math.d3.BoundingBox3d;
 import com.kitfox.coyote.renderer.CyGLWrapper.BufferUsage;
 import com.kitfox.coyote.renderer.CyGLWrapper.DrawMode;
+import com.kitfox.coyote.renderer.CyGLWrapper.IndiciesType;
+import java.nio.Buffer;
 import java.nio.FloatBuffer;
-import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -38,7 +39,25 @@ abstract public class CyVertexBufferDataProvider
 
     abstract public FloatBuffer getVertexData();
 
-    abstract public ShortBuffer getIndexData();
+    /**
+     * Index data for this mesh.  This will be a ShortBuffer unless
+     * getIndexType() has been overridden to use another type.
+     * 
+     * @return Buffer containing element indices.
+     */
+    abstract public Buffer getIndexData();
+
+    /**
+     * Type of data in the element index buffer.  Meshes with more than
+     * 65535 vertices need to override this to return GL_UNSIGNED_INT
+     * and provide an IntBuffer from getIndexData().
+     * 
+     * @return Type of element indices
+     */
+    public IndiciesType getIndexType()
+    {
+        return IndiciesType.GL_UNSIGNED_SHORT;
+    }
 
     abstract public BufferUsage getVertexUsage();
     abstract public BufferUsage getIndexUsage();
@@ -47,6 +66,15 @@ abstract public class CyVertexBufferDataProvider
 
     abstract public BoundingBox3d getBounds();
 
+    /**
+     * @return Number of separate meshes whose data has been combined
+     * into this one.  Used to count the draw calls batching saves.
+     */
+    public int getBatchSize()
+    {
+        return 1;
+    }
+
     /**
      * Return information about the content of the vertex array buffer.
      * Most buffer providers will contain multiples types of data -
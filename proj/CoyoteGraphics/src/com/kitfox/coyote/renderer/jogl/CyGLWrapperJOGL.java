@@ -1526,6 +1526,8 @@ public class CyGLWrapperJOGL implements CyGLWrapper
                 return GL.GL_UNSIGNED_BYTE;
             case GL_UNSIGNED_SHORT:
                 return GL.GL_UNSIGNED_SHORT;
+            case GL_UNSIGNED_INT:
+                return GL.GL_UNSIGNED_INT;
             default:
                 throw new RuntimeException();
         }
@@ -37,4 +37,13 @@ public class TexSourceAWTBufferedImage extends TexSourceAWT
         return img;
     }
 
+    /**
+     * Call after drawing to the image so that textures using it
+     * are updated.
+     */
+    public void imageChanged()
+    {
+        fireTextureDataChanged();
+    }
+
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+import com.kitfox.coyote.renderer.CyGLContext;
+import com.kitfox.coyote.renderer.CyGLOffscreenContext;
+
+/**
+ * Offscreen context that renders with {@link CyGLWrapperSoftware}.
+ * Unlike the JOGL context, this can be created without a display.
+ *
+ * @author kitfox
+ */
+public class CyGLOffscreenContextSoftware
+        implements CyGLOffscreenContext
+{
+    private final CyGLWrapperSoftware gl;
+    private final CyGLContext glContext;
+
+    public CyGLOffscreenContextSoftware(int width, int height)
+    {
+        this(new CyGLWrapperSoftware(width, height), new CyGLContext());
+    }
+
+    public CyGLOffscreenContextSoftware(CyGLWrapperSoftware gl,
+            CyGLContext glContext)
+    {
+        this.gl = gl;
+        this.glContext = glContext;
+    }
+
+    @Override
+    public CyGLWrapperSoftware getGL()
+    {
+        return gl;
+    }
+
+    /**
+     * @return the glContext
+     */
+    @Override
+    public CyGLContext getGLContext()
+    {
+        return glContext;
+    }
+
+    @Override
+    public void dispose()
+    {
+        gl.dispose();
+    }
+}
@@ -0,0 +1,3371 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+import com.kitfox.coyote.renderer.CyGLWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * GL wrapper that draws into Java arrays instead of going through a
+ * graphics driver.  Use it to render where no GL context can be
+ * created, such as headless servers and test machines.
+ *
+ * <p>GLSL is not compiled.  Instead, when a program is linked the
+ * resource paths its shaders were loaded from with
+ * {@link #loadSource(String)} are used to look up a {@link SoftProgram}
+ * that does the same work in Java.  Programs for the materials that
+ * ship with Coyote are registered by default.  Programs without a
+ * registered implementation fail to link.</p>
+ *
+ * <p>Draw calls are queued and drawn in batches by a tile based
+ * rasterizer that spreads tiles over several threads.  Queued draws are
+ * drawn before any call that reads pixels back.  Depth and stencil
+ * buffers are not implemented, so depth and stencil tests are
+ * ignored.</p>
+ *
+ * <p>Like a real GL context, a wrapper should only be used from one
+ * thread at a time.</p>
+ *
+ * @author kitfox
+ */
+public class CyGLWrapperSoftware implements CyGLWrapper
+{
+    public static final int MAX_VERTEX_ATTRIBS = 16;
+    public static final int MAX_TEXTURE_UNITS = ActiveTexture.values().length;
+    public static final int MAX_TEXTURE_SIZE = 8192;
+    //Queued primitives that cause a surface to be drawn early
+    public static final int MAX_PENDING_PRIMITIVES = 1 << 16;
+
+    //Keep window coords small enough for the fixed point rasterizer
+    private static final float GUARD_BAND_PIXELS = 1 << 20;
+    private static final float MIN_W = 1e-5f;
+
+    private static final HashMap<String, SoftProgram> programRegistry =
+            new HashMap<String, SoftProgram>();
+    static
+    {
+        registerProgram("/material/color.vert", "/material/color.frag",
+                new SoftProgramColor());
+        registerProgram("/material/gradient.vert", "/material/gradient.frag",
+                new SoftProgramGradient());
+        registerProgram("/material/textureBlit.vert", "/material/textureBlit.frag",
+                new SoftProgramTextureBlit());
+        registerProgram("/material/textureMesh.vert", "/material/textureMesh.frag",
+                new SoftProgramTextureMesh());
+        registerProgram("/material/checker.vert", "/material/checker.frag",
+                new SoftProgramChecker());
+        registerProgram("/material/marquis.vert", "/material/marquis.frag",
+                new SoftProgramMarquis());
+        registerProgram("/material/screen.vert", "/material/screen.frag",
+                new SoftProgramScreen());
+    }
+
+    private final SoftRasterizer rasterizer;
+    private final SoftSurface defaultSurface;
+    //Surfaces with queued commands
+    private final ArrayList<SoftSurface> dirtySurfaces = new ArrayList<SoftSurface>();
+    //Surfaces read by queued commands
+    private final ArrayList<SoftSurface> sampledSurfaces = new ArrayList<SoftSurface>();
+
+    private ErrorType error = ErrorType.GL_NO_ERROR;
+    private int nextId = 1;
+
+    private final HashMap<Integer, BufferObj> buffers = new HashMap<Integer, BufferObj>();
+    private final HashMap<Integer, TextureObj> textures = new HashMap<Integer, TextureObj>();
+    private final HashMap<Integer, FramebufferObj> framebuffers = new HashMap<Integer, FramebufferObj>();
+    private final HashMap<Integer, RenderbufferObj> renderbuffers = new HashMap<Integer, RenderbufferObj>();
+    private final HashMap<Integer, ShaderObj> shaders = new HashMap<Integer, ShaderObj>();
+    private final HashMap<Integer, ProgramObj> programs = new HashMap<Integer, ProgramObj>();
+    //Resource paths of sources returned by loadSource()
+    private final HashMap<String, String> sourcePaths = new HashMap<String, String>();
+
+    private int arrayBuffer;
+    private int elementBuffer;
+    private int framebuffer;
+    private int renderbuffer;
+    private int program;
+    private int activeTexture;
+    private final int[] boundTextures = new int[MAX_TEXTURE_UNITS];
+    private final AttribState[] attribs = new AttribState[MAX_VERTEX_ATTRIBS];
+
+    private final EnumSet<Capability> capabilities = EnumSet.of(Capability.GL_DITHER);
+    private int viewportX;
+    private int viewportY;
+    private int viewportWidth;
+    private int viewportHeight;
+    private int scissorX;
+    private int scissorY;
+    private int scissorWidth;
+    private int scissorHeight;
+
+    private BlendFactor blendSrcRgb = BlendFactor.GL_ONE;
+    private BlendFactor blendDstRgb = BlendFactor.GL_ZERO;
+    private BlendFactor blendSrcAlpha = BlendFactor.GL_ONE;
+    private BlendFactor blendDstAlpha = BlendFactor.GL_ZERO;
+    private BlendMode blendModeRgb = BlendMode.GL_FUNC_ADD;
+    private BlendMode blendModeAlpha = BlendMode.GL_FUNC_ADD;
+    private final float[] blendColor = new float[4];
+    private final float[] clearColor = new float[4];
+    private int colorMask = 0xffffffff;
+    private CullFaceMode cullFaceMode = CullFaceMode.GL_BACK;
+    private FrontFaceMode frontFace = FrontFaceMode.GL_CCW;
+    private float lineWidth = 1;
+    private int packAlignment = 4;
+    private int unpackAlignment = 4;
+    private float clearDepth = 1;
+    private int clearStencil;
+    private boolean depthMask = true;
+
+    /**
+     * Create a wrapper that uses one rasterizer thread per processor.
+     *
+     * @param width Width of the default framebuffer
+     * @param height Height of the default framebuffer
+     */
+    public CyGLWrapperSoftware(int width, int height)
+    {
+        this(width, height, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param width Width of the default framebuffer
+     * @param height Height of the default framebuffer
+     * @param numThreads Number of threads to rasterize with
+     */
+    public CyGLWrapperSoftware(int width, int height, int numThreads)
+    {
+        this.defaultSurface = new SoftSurface(width, height);
+        this.rasterizer = new SoftRasterizer(numThreads);
+
+        viewportWidth = scissorWidth = width;
+        viewportHeight = scissorHeight = height;
+
+        for (int i = 0; i < attribs.length; ++i)
+        {
+            attribs[i] = new AttribState();
+        }
+    }
+
+    /**
+     * Provide a Java implementation of a shader pair.  Any program
+     * linked afterwards from shaders loaded from these paths will use it.
+     */
+    public static void registerProgram(String vertPath, String fragPath,
+            SoftProgram program)
+    {
+        synchronized (programRegistry)
+        {
+            programRegistry.put(vertPath + "|" + fragPath, program);
+        }
+    }
+
+    public static SoftProgram getProgram(String vertPath, String fragPath)
+    {
+        synchronized (programRegistry)
+        {
+            return programRegistry.get(vertPath + "|" + fragPath);
+        }
+    }
+
+    public int getWidth()
+    {
+        return defaultSurface.width;
+    }
+
+    public int getHeight()
+    {
+        return defaultSurface.height;
+    }
+
+    public int getNumThreads()
+    {
+        return rasterizer.getNumThreads();
+    }
+
+    /**
+     * Copy the default framebuffer into an array of non premultiplied
+     * ARGB pixels, top row first.  This is the layout
+     * BufferedImage.setRGB() expects.
+     */
+    public void getRGB(int[] argb)
+    {
+        flush(defaultSurface);
+
+        int width = defaultSurface.width;
+        int height = defaultSurface.height;
+        for (int j = 0; j < height; ++j)
+        {
+            System.arraycopy(defaultSurface.pixels, (height - 1 - j) * width,
+                    argb, j * width, width);
+        }
+    }
+
+    /**
+     * Stop rasterizer threads.  The wrapper should not be used after this.
+     */
+    public void dispose()
+    {
+        rasterizer.dispose();
+    }
+
+    //---------------------------------------
+    // Queue management
+
+    private void setError(ErrorType err)
+    {
+        if (error == ErrorType.GL_NO_ERROR)
+        {
+            error = err;
+        }
+    }
+
+    private void flush(SoftSurface surface)
+    {
+        if (surface.isPending())
+        {
+            rasterizer.flush(surface);
+            dirtySurfaces.remove(surface);
+        }
+    }
+
+    private void flushAll()
+    {
+        for (int i = 0; i < dirtySurfaces.size(); ++i)
+        {
+            rasterizer.flush(dirtySurfaces.get(i));
+        }
+        dirtySurfaces.clear();
+
+        for (int i = 0; i < sampledSurfaces.size(); ++i)
+        {
+            sampledSurfaces.get(i).sampled = false;
+        }
+        sampledSurfaces.clear();
+    }
+
+    /**
+     * Make sure the pixels of a surface are up to date and no queued
+     * command still needs to read them, so they can be changed in place.
+     */
+    private void prepareWrite(SoftSurface surface)
+    {
+        if (surface.sampled)
+        {
+            flushAll();
+        }
+        else
+        {
+            flush(surface);
+        }
+    }
+
+    private void enqueue(SoftSurface surface, SoftCommand cmd)
+    {
+        if (surface.sampled)
+        {
+            //Queued commands still need the current pixels
+            flushAll();
+        }
+
+        if (!surface.isPending())
+        {
+            dirtySurfaces.add(surface);
+        }
+        surface.pending.add(cmd);
+        surface.pendingPrimitives += cmd.getNumPrimitives();
+
+        if (surface.pendingPrimitives > MAX_PENDING_PRIMITIVES)
+        {
+            flush(surface);
+        }
+    }
+
+    private SoftSurface getDrawSurface()
+    {
+        if (framebuffer == 0)
+        {
+            return defaultSurface;
+        }
+
+        FramebufferObj fbo = framebuffers.get(framebuffer);
+        if (fbo == null)
+        {
+            return null;
+        }
+        if (fbo.colorTexture != 0)
+        {
+            TextureObj tex = textures.get(fbo.colorTexture);
+            return tex == null ? null : tex.getSurface(fbo.colorTarget);
+        }
+        if (fbo.colorRenderbuffer != 0)
+        {
+            RenderbufferObj rb = renderbuffers.get(fbo.colorRenderbuffer);
+            return rb == null ? null : rb.surface;
+        }
+        return null;
+    }
+
+    private SoftSurface getReadSurface()
+    {
+        SoftSurface surface = getDrawSurface();
+        if (surface == null)
+        {
+            setError(ErrorType.GL_INVALID_FRAMEBUFFER_OPERATION);
+            return null;
+        }
+        flush(surface);
+        return surface;
+    }
+
+    private TextureObj getBoundTexture()
+    {
+        int id = boundTextures[activeTexture];
+        TextureObj tex = textures.get(id);
+        if (tex == null)
+        {
+            //Texture zero is a real texture object in GL
+            tex = new TextureObj();
+            textures.put(id, tex);
+        }
+        return tex;
+    }
+
+    //---------------------------------------
+    // Pixel conversion
+
+    private static int toByte(float value)
+    {
+        return (int)(Math.max(0, Math.min(1, value)) * 255 + .5f);
+    }
+
+    private static int align(int rowBytes, int alignment)
+    {
+        return (rowBytes + alignment - 1) / alignment * alignment;
+    }
+
+    private static int getFormatBytes(InternalFormatTex format)
+    {
+        switch (format)
+        {
+            case GL_ALPHA:
+            case GL_LUMINANCE:
+                return 1;
+            case GL_LUMINANCE_ALPHA:
+                return 2;
+            case GL_RGB:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Convert pixel data in client memory into packed ARGB.
+     *
+     * @return false if the format and type do not match
+     */
+    private boolean unpackPixels(InternalFormatTex format, DataType type,
+            Buffer data, int width, int height,
+            int[] dest, int destX, int destY, int destWidth)
+    {
+        if (type == DataType.GL_UNSIGNED_BYTE)
+        {
+            if (!(data instanceof ByteBuffer))
+            {
+                return false;
+            }
+            ByteBuffer buf = (ByteBuffer)data;
+            int pixBytes = getFormatBytes(format);
+            int rowBytes = align(width * pixBytes, unpackAlignment);
+            int base = buf.position();
+
+            for (int j = 0; j < height; ++j)
+            {
+                int src = base + j * rowBytes;
+                int dst = (destY + j) * destWidth + destX;
+                for (int i = 0; i < width; ++i)
+                {
+                    int p = src + i * pixBytes;
+                    int argb;
+                    switch (format)
+                    {
+                        case GL_ALPHA:
+                            argb = (buf.get(p) & 0xff) << 24;
+                            break;
+                        case GL_LUMINANCE:
+                        {
+                            int l = buf.get(p) & 0xff;
+                            argb = 0xff000000 | (l << 16) | (l << 8) | l;
+                            break;
+                        }
+                        case GL_LUMINANCE_ALPHA:
+                        {
+                            int l = buf.get(p) & 0xff;
+                            argb = ((buf.get(p + 1) & 0xff) << 24)
+                                    | (l << 16) | (l << 8) | l;
+                            break;
+                        }
+                        case GL_RGB:
+                            argb = 0xff000000
+                                    | ((buf.get(p) & 0xff) << 16)
+                                    | ((buf.get(p + 1) & 0xff) << 8)
+                                    | (buf.get(p + 2) & 0xff);
+                            break;
+                        default:
+                            argb = ((buf.get(p + 3) & 0xff) << 24)
+                                    | ((buf.get(p) & 0xff) << 16)
+                                    | ((buf.get(p + 1) & 0xff) << 8)
+                                    | (buf.get(p + 2) & 0xff);
+                            break;
+                    }
+                    dest[dst + i] = argb;
+                }
+            }
+            return true;
+        }
+
+        //Packed 16 bit formats
+        boolean rgb = format == InternalFormatTex.GL_RGB;
+        if (rgb != (type == DataType.GL_UNSIGNED_SHORT_5_6_5)
+                || (!rgb && format != InternalFormatTex.GL_RGBA))
+        {
+            return false;
+        }
+
+        ShortBuffer buf;
+        if (data instanceof ShortBuffer)
+        {
+            buf = (ShortBuffer)data;
+        }
+        else if (data instanceof ByteBuffer)
+        {
+            buf = ((ByteBuffer)data).asShortBuffer();
+        }
+        else
+        {
+            return false;
+        }
+
+        int rowShorts = align(width * 2, unpackAlignment) / 2;
+        int base = buf.position();
+        for (int j = 0; j < height; ++j)
+        {
+            int dst = (destY + j) * destWidth + destX;
+            for (int i = 0; i < width; ++i)
+            {
+                int v = buf.get(base + j * rowShorts + i) & 0xffff;
+                int r;
+                int g;
+                int b;
+                int a;
+                switch (type)
+                {
+                    case GL_UNSIGNED_SHORT_5_6_5:
+                        r = (v >> 11) * 255 / 31;
+                        g = ((v >> 5) & 0x3f) * 255 / 63;
+                        b = (v & 0x1f) * 255 / 31;
+                        a = 255;
+                        break;
+                    case GL_UNSIGNED_SHORT_4_4_4_4:
+                        r = (v >> 12) * 17;
+                        g = ((v >> 8) & 0xf) * 17;
+                        b = ((v >> 4) & 0xf) * 17;
+                        a = (v & 0xf) * 17;
+                        break;
+                    default:
+                        r = (v >> 11) * 255 / 31;
+                        g = ((v >> 6) & 0x1f) * 255 / 31;
+                        b = ((v >> 1) & 0x1f) * 255 / 31;
+                        a = (v & 1) * 255;
+                        break;
+                }
+                dest[dst + i] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write packed ARGB pixels to client memory as unsigned bytes.
+     */
+    private boolean packPixels(int[] src, int srcWidth, int srcHeight,
+            int x, int y, int width, int height,
+            int pixBytes, boolean alphaOnly, Buffer data)
+    {
+        if (!(data instanceof ByteBuffer))
+        {
+            return false;
+        }
+        ByteBuffer buf = (ByteBuffer)data;
+        int rowBytes = align(width * pixBytes, packAlignment);
+        int base = buf.position();
+
+        for (int j = 0; j < height; ++j)
+        {
+            int sy = y + j;
+            for (int i = 0; i < width; ++i)
+            {
+                int sx = x + i;
+                //Pixels outside the surface are left untouched
+                if (sx < 0 || sy < 0 || sx >= srcWidth || sy >= srcHeight)
+                {
+                    continue;
+                }
+
+                int argb = src[sy * srcWidth + sx];
+                int p = base + j * rowBytes + i * pixBytes;
+                if (alphaOnly)
+                {
+                    buf.put(p, (byte)(argb >>> 24));
+                    continue;
+                }
+                buf.put(p, (byte)(argb >> 16));
+                buf.put(p + 1, (byte)(argb >> 8));
+                buf.put(p + 2, (byte)argb);
+                if (pixBytes == 4)
+                {
+                    buf.put(p + 3, (byte)(argb >>> 24));
+                }
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer copyToBytes(Buffer data, int size)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+        if (data == null)
+        {
+            return buf;
+        }
+
+        if (data instanceof ByteBuffer)
+        {
+            ByteBuffer src = ((ByteBuffer)data).duplicate();
+            src.limit(Math.min(src.limit(), src.position() + size));
+            buf.put(src);
+        }
+        else if (data instanceof FloatBuffer)
+        {
+            FloatBuffer src = ((FloatBuffer)data).duplicate();
+            while (buf.remaining() >= 4 && src.hasRemaining())
+            {
+                buf.putFloat(src.get());
+            }
+        }
+        else if (data instanceof IntBuffer)
+        {
+            IntBuffer src = ((IntBuffer)data).duplicate();
+            while (buf.remaining() >= 4 && src.hasRemaining())
+            {
+                buf.putInt(src.get());
+            }
+        }
+        else if (data instanceof ShortBuffer)
+        {
+            ShortBuffer src = ((ShortBuffer)data).duplicate();
+            while (buf.remaining() >= 2 && src.hasRemaining())
+            {
+                buf.putShort(src.get());
+            }
+        }
+        buf.clear();
+        return buf;
+    }
+
+    //---------------------------------------
+    // Drawing
+
+    private int[] readIndices(int count, IndiciesType type, Buffer data, int offset)
+    {
+        int[] indices = new int[count];
+        if (data instanceof ByteBuffer)
+        {
+            ByteBuffer buf = (ByteBuffer)data;
+            int base = buf.position() + offset;
+            int size = type == IndiciesType.GL_UNSIGNED_BYTE ? 1
+                    : (type == IndiciesType.GL_UNSIGNED_SHORT ? 2 : 4);
+            if (base + (long)count * size > buf.limit())
+            {
+                return null;
+            }
+            for (int i = 0; i < count; ++i)
+            {
+                int p = base + i * size;
+                switch (type)
+                {
+                    case GL_UNSIGNED_BYTE:
+                        indices[i] = buf.get(p) & 0xff;
+                        break;
+                    case GL_UNSIGNED_SHORT:
+                        indices[i] = buf.getShort(p) & 0xffff;
+                        break;
+                    default:
+                        indices[i] = buf.getInt(p);
+                        break;
+                }
+            }
+            return indices;
+        }
+        if (data instanceof ShortBuffer)
+        {
+            ShortBuffer buf = (ShortBuffer)data;
+            int base = buf.position() + offset / 2;
+            if (base + count > buf.limit())
+            {
+                return null;
+            }
+            for (int i = 0; i < count; ++i)
+            {
+                indices[i] = buf.get(base + i) & 0xffff;
+            }
+            return indices;
+        }
+        if (data instanceof IntBuffer)
+        {
+            IntBuffer buf = (IntBuffer)data;
+            int base = buf.position() + offset / 4;
+            if (base + count > buf.limit())
+            {
+                return null;
+            }
+            for (int i = 0; i < count; ++i)
+            {
+                indices[i] = buf.get(base + i);
+            }
+            return indices;
+        }
+        return null;
+    }
+
+    private static int getTypeSize(VertexDataType type)
+    {
+        switch (type)
+        {
+            case GL_BYTE:
+            case GL_UNSIGNED_BYTE:
+                return 1;
+            case GL_SHORT:
+            case GL_UNSIGNED_SHORT:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    private void fetchAttrib(AttribState state, int vertex,
+            float[] out, int outOffset)
+    {
+        out[outOffset] = 0;
+        out[outOffset + 1] = 0;
+        out[outOffset + 2] = 0;
+        out[outOffset + 3] = 1;
+
+        if (state.pointer instanceof FloatBuffer)
+        {
+            FloatBuffer buf = (FloatBuffer)state.pointer;
+            int stride = state.stride == 0 ? state.size : state.stride / 4;
+            int p = buf.position() + vertex * stride;
+            if (p + state.size > buf.limit())
+            {
+                return;
+            }
+            for (int k = 0; k < state.size; ++k)
+            {
+                out[outOffset + k] = buf.get(p + k);
+            }
+            return;
+        }
+
+        ByteBuffer buf;
+        long base;
+        if (state.pointer instanceof ByteBuffer)
+        {
+            buf = (ByteBuffer)state.pointer;
+            base = buf.position();
+        }
+        else
+        {
+            BufferObj obj = buffers.get(state.buffer);
+            if (obj == null)
+            {
+                return;
+            }
+            buf = obj.data;
+            base = state.offset;
+        }
+
+        int compSize = getTypeSize(state.type);
+        int stride = state.stride == 0 ? state.size * compSize : state.stride;
+        long p = base + (long)vertex * stride;
+        if (p < 0 || p + state.size * compSize > buf.limit())
+        {
+            return;
+        }
+
+        for (int k = 0; k < state.size; ++k)
+        {
+            int pos = (int)p + k * compSize;
+            float value;
+            switch (state.type)
+            {
+                case GL_BYTE:
+                    value = buf.get(pos);
+                    if (state.normalized)
+                    {
+                        value = Math.max(value / 127f, -1);
+                    }
+                    break;
+                case GL_UNSIGNED_BYTE:
+                    value = buf.get(pos) & 0xff;
+                    if (state.normalized)
+                    {
+                        value /= 255f;
+                    }
+                    break;
+                case GL_SHORT:
+                    value = buf.getShort(pos);
+                    if (state.normalized)
+                    {
+                        value = Math.max(value / 32767f, -1);
+                    }
+                    break;
+                case GL_UNSIGNED_SHORT:
+                    value = buf.getShort(pos) & 0xffff;
+                    if (state.normalized)
+                    {
+                        value /= 65535f;
+                    }
+                    break;
+                case GL_FIXED:
+                    value = buf.getInt(pos) / 65536f;
+                    break;
+                default:
+                    value = buf.getFloat(pos);
+                    break;
+            }
+            out[outOffset + k] = value;
+        }
+    }
+
+    private SoftSampler[] captureSamplers(SoftProgram soft, float[] uniforms,
+            SoftSurface target)
+    {
+        SoftSampler[] units = new SoftSampler[MAX_TEXTURE_UNITS];
+        for (int i = 0; i < soft.getNumSamplers(); ++i)
+        {
+            int loc = soft.getSamplerLocation(i);
+            if (loc == -1)
+            {
+                continue;
+            }
+            int unit = (int)uniforms[soft.getUniformOffset(loc)];
+            if (unit < 0 || unit >= MAX_TEXTURE_UNITS || units[unit] != null)
+            {
+                continue;
+            }
+
+            TextureObj tex = textures.get(boundTextures[unit]);
+            SoftSurface surface = tex == null ? null
+                    : tex.getSurface(TexSubTarget.GL_TEXTURE_2D);
+            if (surface == null)
+            {
+                continue;
+            }
+
+            if (surface.isPending())
+            {
+                flushAll();
+            }
+
+            int[] pixels = surface.pixels;
+            if (surface == target)
+            {
+                //Reading and writing the same pixels
+                pixels = pixels.clone();
+            }
+            else if (!surface.sampled)
+            {
+                surface.sampled = true;
+                sampledSurfaces.add(surface);
+            }
+
+            units[unit] = new SoftSampler(pixels, surface.width, surface.height,
+                    tex.magFilter, tex.wrapS, tex.wrapT);
+        }
+        return units;
+    }
+
+    private void draw(DrawMode mode, int[] indices)
+    {
+        SoftSurface surface = getDrawSurface();
+        if (surface == null)
+        {
+            setError(ErrorType.GL_INVALID_FRAMEBUFFER_OPERATION);
+            return;
+        }
+
+        ProgramObj prog = programs.get(program);
+        if (prog == null || prog.soft == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        SoftProgram soft = prog.soft;
+
+        int count = indices.length;
+        if (count == 0)
+        {
+            return;
+        }
+
+        //Run the vertex stage once for each vertex used
+        int minIdx = Integer.MAX_VALUE;
+        int maxIdx = Integer.MIN_VALUE;
+        for (int i = 0; i < count; ++i)
+        {
+            minIdx = Math.min(minIdx, indices[i]);
+            maxIdx = Math.max(maxIdx, indices[i]);
+        }
+        boolean useRange = (long)maxIdx - minIdx < count * 2L;
+
+        int clipStride = 4 + soft.getNumVaryings();
+        int numVerts = useRange ? maxIdx - minIdx + 1 : count;
+        float[] clip = new float[numVerts * clipStride];
+        boolean[] shaded = useRange ? new boolean[numVerts] : null;
+        int[] local = new int[count];
+        float[] attr = new float[soft.getNumAttributes() * 4];
+        float[] uniforms = prog.uniforms;
+
+        for (int i = 0; i < count; ++i)
+        {
+            int vtx = indices[i];
+            int slot = useRange ? vtx - minIdx : i;
+            local[i] = slot;
+            if (useRange)
+            {
+                if (shaded[slot])
+                {
+                    continue;
+                }
+                shaded[slot] = true;
+            }
+
+            for (int loc = 0; loc < soft.getNumAttributes(); ++loc)
+            {
+                AttribState state = attribs[loc];
+                if (state.enabled)
+                {
+                    fetchAttrib(state, vtx, attr, loc * 4);
+                }
+                else
+                {
+                    System.arraycopy(state.current, 0, attr, loc * 4, 4);
+                }
+            }
+            soft.shadeVertex(uniforms, attr, clip, slot * clipStride);
+        }
+
+        //Assemble primitives
+        TriangleList tris = new TriangleList(clipStride);
+        switch (mode)
+        {
+            case GL_TRIANGLES:
+                for (int i = 0; i + 2 < count; i += 3)
+                {
+                    addTriangle(tris, clip, local[i], local[i + 1], local[i + 2]);
+                }
+                break;
+            case GL_TRIANGLE_STRIP:
+                for (int i = 0; i + 2 < count; ++i)
+                {
+                    if ((i & 1) == 0)
+                    {
+                        addTriangle(tris, clip, local[i], local[i + 1], local[i + 2]);
+                    }
+                    else
+                    {
+                        addTriangle(tris, clip, local[i + 1], local[i], local[i + 2]);
+                    }
+                }
+                break;
+            case GL_TRIANGLE_FAN:
+                for (int i = 1; i + 1 < count; ++i)
+                {
+                    addTriangle(tris, clip, local[0], local[i], local[i + 1]);
+                }
+                break;
+            case GL_LINES:
+                for (int i = 0; i + 1 < count; i += 2)
+                {
+                    addLine(tris, clip, local[i], local[i + 1]);
+                }
+                break;
+            case GL_LINE_STRIP:
+            case GL_LINE_LOOP:
+                for (int i = 0; i + 1 < count; ++i)
+                {
+                    addLine(tris, clip, local[i], local[i + 1]);
+                }
+                if (mode == DrawMode.GL_LINE_LOOP && count > 2)
+                {
+                    addLine(tris, clip, local[count - 1], local[0]);
+                }
+                break;
+            case GL_POINTS:
+                for (int i = 0; i < count; ++i)
+                {
+                    addPoint(tris, clip, local[i]);
+                }
+                break;
+        }
+
+        if (tris.size == 0)
+        {
+            return;
+        }
+
+        //Fragments never leave the viewport
+        int x0 = Math.max(viewportX, 0);
+        int y0 = Math.max(viewportY, 0);
+        int x1 = Math.min(viewportX + viewportWidth, surface.width);
+        int y1 = Math.min(viewportY + viewportHeight, surface.height);
+        if (capabilities.contains(Capability.GL_SCISSOR_TEST))
+        {
+            x0 = Math.max(x0, scissorX);
+            y0 = Math.max(y0, scissorY);
+            x1 = Math.min(x1, scissorX + scissorWidth);
+            y1 = Math.min(y1, scissorY + scissorHeight);
+        }
+
+        float[] cmdUniforms = uniforms.clone();
+        SoftSampler[] units = captureSamplers(soft, cmdUniforms, surface);
+
+        enqueue(surface, new SoftDrawCommand(x0, y0, x1, y1,
+                soft, cmdUniforms, units,
+                tris.verts, tris.size,
+                capabilities.contains(Capability.GL_BLEND),
+                blendSrcRgb, blendDstRgb, blendSrcAlpha, blendDstAlpha,
+                blendModeRgb, blendModeAlpha,
+                blendColor.clone(), colorMask));
+    }
+
+    private float getGuardBand()
+    {
+        return GUARD_BAND_PIXELS
+                / Math.max(Math.max(viewportWidth, viewportHeight), 1);
+    }
+
+    /**
+     * Convert a clip space vertex to window coordinates.
+     */
+    private void project(float[] src, int srcOffset, float[] dst, int dstOffset,
+            int stride)
+    {
+        float invW = 1 / src[srcOffset + 3];
+        dst[dstOffset] = viewportX
+                + (src[srcOffset] * invW + 1) * viewportWidth * .5f;
+        dst[dstOffset + 1] = viewportY
+                + (src[srcOffset + 1] * invW + 1) * viewportHeight * .5f;
+        dst[dstOffset + 2] = (src[srcOffset + 2] * invW + 1) * .5f;
+        dst[dstOffset + 3] = invW;
+        for (int k = 4; k < stride; ++k)
+        {
+            dst[dstOffset + k] = src[srcOffset + k] * invW;
+        }
+    }
+
+    private boolean isInsideGuardBand(float[] clip, int offset, float guard)
+    {
+        float w = clip[offset + 3];
+        return w > MIN_W
+                && Math.abs(clip[offset]) <= guard * w
+                && Math.abs(clip[offset + 1]) <= guard * w;
+    }
+
+    private void addTriangle(TriangleList tris, float[] clip, int a, int b, int c)
+    {
+        int stride = tris.stride;
+        float guard = getGuardBand();
+        int oa = a * stride;
+        int ob = b * stride;
+        int oc = c * stride;
+
+        if (isInsideGuardBand(clip, oa, guard)
+                && isInsideGuardBand(clip, ob, guard)
+                && isInsideGuardBand(clip, oc, guard))
+        {
+            float[] win = tris.reserve();
+            int base = tris.size * stride * 3;
+            project(clip, oa, win, base, stride);
+            project(clip, ob, win, base + stride, stride);
+            project(clip, oc, win, base + stride * 2, stride);
+            tris.commit(isCulled(win, base, stride));
+            return;
+        }
+
+        //Clip against w and the guard band, then fan out what is left
+        float[] poly = new float[3 * stride];
+        System.arraycopy(clip, oa, poly, 0, stride);
+        System.arraycopy(clip, ob, poly, stride, stride);
+        System.arraycopy(clip, oc, poly, stride * 2, stride);
+        int n = 3;
+        for (int plane = 0; plane < 5 && n >= 3; ++plane)
+        {
+            float[] next = new float[(n + 1) * stride];
+            int m = 0;
+            for (int i = 0; i < n; ++i)
+            {
+                int p0 = i * stride;
+                int p1 = ((i + 1) % n) * stride;
+                float d0 = planeDist(plane, poly, p0, guard);
+                float d1 = planeDist(plane, poly, p1, guard);
+                if (d0 >= 0)
+                {
+                    System.arraycopy(poly, p0, next, m * stride, stride);
+                    ++m;
+                }
+                if ((d0 >= 0) != (d1 >= 0))
+                {
+                    float t = d0 / (d0 - d1);
+                    for (int k = 0; k < stride; ++k)
+                    {
+                        next[m * stride + k] = poly[p0 + k]
+                                + (poly[p1 + k] - poly[p0 + k]) * t;
+                    }
+                    ++m;
+                }
+            }
+            poly = next;
+            n = m;
+        }
+
+        for (int i = 1; i + 1 < n; ++i)
+        {
+            float[] win = tris.reserve();
+            int base = tris.size * stride * 3;
+            project(poly, 0, win, base, stride);
+            project(poly, i * stride, win, base + stride, stride);
+            project(poly, (i + 1) * stride, win, base + stride * 2, stride);
+            tris.commit(isCulled(win, base, stride));
+        }
+    }
+
+    private static float planeDist(int plane, float[] v, int offset, float guard)
+    {
+        float x = v[offset];
+        float y = v[offset + 1];
+        float w = v[offset + 3];
+        switch (plane)
+        {
+            case 0:
+                return w - MIN_W;
+            case 1:
+                return guard * w - x;
+            case 2:
+                return guard * w + x;
+            case 3:
+                return guard * w - y;
+            default:
+                return guard * w + y;
+        }
+    }
+
+    private boolean isCulled(float[] win, int base, int stride)
+    {
+        if (!capabilities.contains(Capability.GL_CULL_FACE))
+        {
+            return false;
+        }
+        if (cullFaceMode == CullFaceMode.GL_FRONT_AND_BACK)
+        {
+            return true;
+        }
+
+        int b = base + stride;
+        int c = b + stride;
+        float area = (win[b] - win[base]) * (win[c + 1] - win[base + 1])
+                - (win[b + 1] - win[base + 1]) * (win[c] - win[base]);
+        boolean front = (area > 0) == (frontFace == FrontFaceMode.GL_CCW);
+        return front == (cullFaceMode == CullFaceMode.GL_FRONT);
+    }
+
+    /**
+     * Lines are drawn as quads lineWidth pixels wide.
+     */
+    private void addLine(TriangleList tris, float[] clip, int a, int b)
+    {
+        int stride = tris.stride;
+        if (clip[a * stride + 3] <= MIN_W || clip[b * stride + 3] <= MIN_W)
+        {
+            return;
+        }
+
+        float[] pa = new float[stride];
+        float[] pb = new float[stride];
+        project(clip, a * stride, pa, 0, stride);
+        project(clip, b * stride, pb, 0, stride);
+
+        float dx = pb[0] - pa[0];
+        float dy = pb[1] - pa[1];
+        float len = (float)Math.sqrt(dx * dx + dy * dy);
+        if (len == 0)
+        {
+            return;
+        }
+        float nx = -dy / len * lineWidth * .5f;
+        float ny = dx / len * lineWidth * .5f;
+
+        addQuad(tris, pa, pb, nx, ny);
+    }
+
+    /**
+     * Points are drawn as single pixel squares.
+     */
+    private void addPoint(TriangleList tris, float[] clip, int a)
+    {
+        int stride = tris.stride;
+        if (clip[a * stride + 3] <= MIN_W)
+        {
+            return;
+        }
+
+        float[] p0 = new float[stride];
+        project(clip, a * stride, p0, 0, stride);
+        float[] p1 = p0.clone();
+        p0[0] -= .5f;
+        p1[0] += .5f;
+
+        addQuad(tris, p0, p1, 0, .5f);
+    }
+
+    private void addQuad(TriangleList tris, float[] pa, float[] pb,
+            float nx, float ny)
+    {
+        int stride = tris.stride;
+        float[][] corners = {pa, pb, pb, pa};
+        float[] offX = {nx, nx, -nx, -nx};
+        float[] offY = {ny, ny, -ny, -ny};
+        int[][] quadTris = {{0, 1, 2}, {0, 2, 3}};
+
+        for (int t = 0; t < 2; ++t)
+        {
+            float[] win = tris.reserve();
+            int base = tris.size * stride * 3;
+            for (int v = 0; v < 3; ++v)
+            {
+                int corner = quadTris[t][v];
+                int off = base + v * stride;
+                System.arraycopy(corners[corner], 0, win, off, stride);
+                win[off] += offX[corner];
+                win[off + 1] += offY[corner];
+            }
+            tris.commit(false);
+        }
+    }
+
+    //---------------------------------------
+    // CyGLWrapper
+
+    @Override
+    public void glActiveTexture(ActiveTexture texture)
+    {
+        activeTexture = texture.ordinal();
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null || !shaders.containsKey(shader))
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        if (!prog.shaders.contains(shader))
+        {
+            prog.shaders.add(shader);
+        }
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name)
+    {
+        //Attribute locations are fixed by the software program
+    }
+
+    @Override
+    public void glBindBuffer(BufferTarget target, int buffer)
+    {
+        if (buffer != 0 && !buffers.containsKey(buffer))
+        {
+            buffers.put(buffer, new BufferObj());
+        }
+
+        switch (target)
+        {
+            case GL_ARRAY_BUFFER:
+                arrayBuffer = buffer;
+                break;
+            case GL_ELEMENT_ARRAY_BUFFER:
+                elementBuffer = buffer;
+                break;
+        }
+    }
+
+    @Override
+    public void glBindFramebuffer(int framebuffer)
+    {
+        if (framebuffer != 0 && !framebuffers.containsKey(framebuffer))
+        {
+            framebuffers.put(framebuffer, new FramebufferObj());
+        }
+        this.framebuffer = framebuffer;
+    }
+
+    @Override
+    public void glBindRenderbuffer(int renderbuffer)
+    {
+        if (renderbuffer != 0 && !renderbuffers.containsKey(renderbuffer))
+        {
+            renderbuffers.put(renderbuffer, new RenderbufferObj());
+        }
+        this.renderbuffer = renderbuffer;
+    }
+
+    @Override
+    public void glBindTexture(TexTarget target, int texture)
+    {
+        if (texture != 0 && !textures.containsKey(texture))
+        {
+            textures.put(texture, new TextureObj());
+        }
+        boundTextures[activeTexture] = texture;
+    }
+
+    @Override
+    public void glBlendColor(float r, float g, float b, float a)
+    {
+        blendColor[0] = r;
+        blendColor[1] = g;
+        blendColor[2] = b;
+        blendColor[3] = a;
+    }
+
+    @Override
+    public void glBlendEquation(BlendMode mode)
+    {
+        glBlendEquationSeparate(mode, mode);
+    }
+
+    @Override
+    public void glBlendEquationSeparate(BlendMode modeRgb, BlendMode modeAlpha)
+    {
+        blendModeRgb = modeRgb;
+        blendModeAlpha = modeAlpha;
+    }
+
+    @Override
+    public void glBlendFunc(BlendFactor src, BlendFactor dst)
+    {
+        glBlendFuncSeparate(src, dst, src, dst);
+    }
+
+    @Override
+    public void glBlendFuncSeparate(BlendFactor srcRgb, BlendFactor dstRgb, BlendFactor srcAlpha, BlendFactor dstAlpha)
+    {
+        blendSrcRgb = srcRgb;
+        blendDstRgb = dstRgb;
+        blendSrcAlpha = srcAlpha;
+        blendDstAlpha = dstAlpha;
+    }
+
+    private BufferObj getBoundBuffer(BufferTarget target)
+    {
+        return buffers.get(target == BufferTarget.GL_ARRAY_BUFFER
+                ? arrayBuffer : elementBuffer);
+    }
+
+    @Override
+    public void glBufferData(BufferTarget target, int size, Buffer data, BufferUsage usage)
+    {
+        BufferObj obj = getBoundBuffer(target);
+        if (obj == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        obj.data = copyToBytes(data, size);
+        obj.usage = usage;
+    }
+
+    @Override
+    public void glBufferSubData(BufferTarget target, int offset, int size, Buffer data)
+    {
+        BufferObj obj = getBoundBuffer(target);
+        if (obj == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        if (offset < 0 || offset + size > obj.data.capacity())
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        ByteBuffer src = copyToBytes(data, size);
+        ByteBuffer dst = obj.data.duplicate();
+        dst.position(offset);
+        dst.put(src);
+    }
+
+    @Override
+    public FramebufferStatus glCheckFramebufferStatus()
+    {
+        if (framebuffer == 0 || getDrawSurface() != null)
+        {
+            return FramebufferStatus.GL_FRAMEBUFFER_COMPLETE;
+        }
+
+        FramebufferObj fbo = framebuffers.get(framebuffer);
+        if (fbo.colorTexture == 0 && fbo.colorRenderbuffer == 0
+                && fbo.depthRenderbuffer == 0 && fbo.stencilRenderbuffer == 0)
+        {
+            return FramebufferStatus.GL_FRAMEBUFFER_INCOMPLETE_MISSING_ATTACHMENT;
+        }
+        return FramebufferStatus.GL_FRAMEBUFFER_INCOMPLETE_ATTACHMENT;
+    }
+
+    @Override
+    public void glClear(boolean color, boolean depth, boolean stencil)
+    {
+        if (!color)
+        {
+            return;
+        }
+
+        SoftSurface surface = getDrawSurface();
+        if (surface == null)
+        {
+            setError(ErrorType.GL_INVALID_FRAMEBUFFER_OPERATION);
+            return;
+        }
+
+        int x0 = 0;
+        int y0 = 0;
+        int x1 = surface.width;
+        int y1 = surface.height;
+        if (capabilities.contains(Capability.GL_SCISSOR_TEST))
+        {
+            x0 = Math.max(x0, scissorX);
+            y0 = Math.max(y0, scissorY);
+            x1 = Math.min(x1, scissorX + scissorWidth);
+            y1 = Math.min(y1, scissorY + scissorHeight);
+        }
+
+        int argb = (toByte(clearColor[3]) << 24)
+                | (toByte(clearColor[0]) << 16)
+                | (toByte(clearColor[1]) << 8)
+                | toByte(clearColor[2]);
+        enqueue(surface, new SoftClearCommand(x0, y0, x1, y1, argb, colorMask));
+    }
+
+    @Override
+    public void glClearColor(float r, float g, float b, float a)
+    {
+        clearColor[0] = r;
+        clearColor[1] = g;
+        clearColor[2] = b;
+        clearColor[3] = a;
+    }
+
+    @Override
+    public void glClearDepthf(float depth)
+    {
+        clearDepth = depth;
+    }
+
+    @Override
+    public void glClearStencil(int s)
+    {
+        clearStencil = s;
+    }
+
+    @Override
+    public void glColorMask(boolean r, boolean g, boolean b, boolean a)
+    {
+        colorMask = (a ? 0xff000000 : 0)
+                | (r ? 0xff0000 : 0)
+                | (g ? 0xff00 : 0)
+                | (b ? 0xff : 0);
+    }
+
+    @Override
+    public void glCompileShader(int shader)
+    {
+        ShaderObj obj = shaders.get(shader);
+        if (obj == null)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        //Nothing to compile.  Programs are matched up at link time.
+        obj.compiled = true;
+    }
+
+    @Override
+    public void glCompressedTexImage2D(TexSubTarget target, int level, InternalFormatTex internalFormat, int width, int height, int border, int imageSize, Buffer data)
+    {
+        //No compressed formats are supported
+        setError(ErrorType.GL_INVALID_ENUM);
+    }
+
+    @Override
+    public void glCompressedTexSubImage2D(TexSubTarget target, int level, int xoffset, int yoffset, int width, int height, InternalFormatTex internalFormat, int imageSize, Buffer data)
+    {
+        setError(ErrorType.GL_INVALID_ENUM);
+    }
+
+    @Override
+    public void glCopyTexImage2D(TexSubTarget target, int level, InternalFormatTex internalFormat, int x, int y, int width, int height, int border)
+    {
+        if (level != 0)
+        {
+            return;
+        }
+        SoftSurface src = getReadSurface();
+        if (src == null)
+        {
+            return;
+        }
+
+        TextureObj tex = getBoundTexture();
+        SoftSurface old = tex.getSurface(target);
+        if (old != null)
+        {
+            flush(old);
+        }
+
+        SoftSurface surface = new SoftSurface(width, height);
+        copyPixels(src, x, y, surface, 0, 0, width, height);
+        tex.setSurface(target, surface);
+        tex.format = internalFormat;
+    }
+
+    private static void copyPixels(SoftSurface src, int x, int y,
+            SoftSurface dst, int dstX, int dstY, int width, int height)
+    {
+        for (int j = 0; j < height; ++j)
+        {
+            int sy = y + j;
+            int dy = dstY + j;
+            if (sy < 0 || sy >= src.height || dy < 0 || dy >= dst.height)
+            {
+                continue;
+            }
+            for (int i = 0; i < width; ++i)
+            {
+                int sx = x + i;
+                int dx = dstX + i;
+                if (sx < 0 || sx >= src.width || dx < 0 || dx >= dst.width)
+                {
+                    continue;
+                }
+                dst.pixels[dy * dst.width + dx] = src.pixels[sy * src.width + sx];
+            }
+        }
+    }
+
+    @Override
+    public void glCopyTexSubImage2D(TexSubTarget target, int level, int xoffset, int yoffset, int x, int y, int width, int height)
+    {
+        if (level != 0)
+        {
+            return;
+        }
+        SoftSurface src = getReadSurface();
+        if (src == null)
+        {
+            return;
+        }
+
+        SoftSurface dst = getBoundTexture().getSurface(target);
+        if (dst == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        prepareWrite(dst);
+        copyPixels(src, x, y, dst, xoffset, yoffset, width, height);
+    }
+
+    @Override
+    public int glCreateProgram()
+    {
+        int id = nextId++;
+        programs.put(id, new ProgramObj());
+        return id;
+    }
+
+    @Override
+    public int glCreateShader(ShaderType shaderType)
+    {
+        int id = nextId++;
+        shaders.put(id, new ShaderObj(shaderType));
+        return id;
+    }
+
+    @Override
+    public void glCullFace(CullFaceMode mode)
+    {
+        cullFaceMode = mode;
+    }
+
+    @Override
+    public void glDeleteBuffers(int size, IntBuffer ibuf)
+    {
+        for (int i = 0; i < size; ++i)
+        {
+            int id = ibuf.get(ibuf.position() + i);
+            buffers.remove(id);
+            if (arrayBuffer == id)
+            {
+                arrayBuffer = 0;
+            }
+            if (elementBuffer == id)
+            {
+                elementBuffer = 0;
+            }
+        }
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int size, IntBuffer ibuf)
+    {
+        for (int i = 0; i < size; ++i)
+        {
+            int id = ibuf.get(ibuf.position() + i);
+            framebuffers.remove(id);
+            if (framebuffer == id)
+            {
+                framebuffer = 0;
+            }
+        }
+    }
+
+    @Override
+    public void glDeleteProgram(int program)
+    {
+        programs.remove(program);
+        if (this.program == program)
+        {
+            this.program = 0;
+        }
+    }
+
+    @Override
+    public void glDeleteRenderbuffers(int size, IntBuffer ibuf)
+    {
+        for (int i = 0; i < size; ++i)
+        {
+            int id = ibuf.get(ibuf.position() + i);
+            renderbuffers.remove(id);
+            if (renderbuffer == id)
+            {
+                renderbuffer = 0;
+            }
+        }
+    }
+
+    @Override
+    public void glDeleteShader(int shader)
+    {
+        shaders.remove(shader);
+    }
+
+    @Override
+    public void glDeleteTextures(int size, IntBuffer ibuf)
+    {
+        for (int i = 0; i < size; ++i)
+        {
+            int id = ibuf.get(ibuf.position() + i);
+            if (id == 0)
+            {
+                continue;
+            }
+            //Queued commands keep their own reference to the pixels
+            textures.remove(id);
+            for (int j = 0; j < boundTextures.length; ++j)
+            {
+                if (boundTextures[j] == id)
+                {
+                    boundTextures[j] = 0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void glDepthFunc(DepthFunc func)
+    {
+    }
+
+    @Override
+    public void glDepthMask(boolean flag)
+    {
+        depthMask = flag;
+    }
+
+    @Override
+    public void glDepthRangef(float nearVal, float farVal)
+    {
+    }
+
+    @Override
+    public void glDetachShader(int program, int shader)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog != null)
+        {
+            prog.shaders.remove((Integer)shader);
+        }
+    }
+
+    @Override
+    public void glDisable(Capability cap)
+    {
+        capabilities.remove(cap);
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index)
+    {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        attribs[index].enabled = false;
+    }
+
+    @Override
+    public void glDrawArrays(DrawMode mode, int first, int count)
+    {
+        if (count < 0)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        int[] indices = new int[count];
+        for (int i = 0; i < count; ++i)
+        {
+            indices[i] = first + i;
+        }
+        draw(mode, indices);
+    }
+
+    @Override
+    public void glDrawElements(DrawMode mode, int count, IndiciesType type, long offset)
+    {
+        BufferObj obj = buffers.get(elementBuffer);
+        if (obj == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        int[] indices = readIndices(count, type, obj.data, (int)offset);
+        if (indices == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        draw(mode, indices);
+    }
+
+    @Override
+    public void glDrawElements(DrawMode mode, int count, IndiciesType type, Buffer indices)
+    {
+        int[] idx = readIndices(count, type, indices, 0);
+        if (idx == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        draw(mode, idx);
+    }
+
+    @Override
+    public void glEnable(Capability cap)
+    {
+        capabilities.add(cap);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index)
+    {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        attribs[index].enabled = true;
+    }
+
+    @Override
+    public void glFinish()
+    {
+        flushAll();
+    }
+
+    @Override
+    public void glFlush()
+    {
+        flushAll();
+    }
+
+    private FramebufferObj getBoundFramebuffer()
+    {
+        FramebufferObj fbo = framebuffers.get(framebuffer);
+        if (fbo == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+        }
+        return fbo;
+    }
+
+    @Override
+    public void glFramebufferRenderbuffer(Attachment attachment, int renderbuffer)
+    {
+        FramebufferObj fbo = getBoundFramebuffer();
+        if (fbo == null)
+        {
+            return;
+        }
+        switch (attachment)
+        {
+            case GL_COLOR_ATTACHMENT0:
+                fbo.colorRenderbuffer = renderbuffer;
+                fbo.colorTexture = 0;
+                break;
+            case GL_DEPTH_ATTACHMENT:
+                fbo.depthRenderbuffer = renderbuffer;
+                break;
+            case GL_STENCIL_ATTACHMENT:
+                fbo.stencilRenderbuffer = renderbuffer;
+                break;
+        }
+    }
+
+    @Override
+    public void glFramebufferTexture2D(Attachment attachment, TexSubTarget texTarget, int renderbuffer, int level)
+    {
+        FramebufferObj fbo = getBoundFramebuffer();
+        if (fbo == null)
+        {
+            return;
+        }
+        if (attachment != Attachment.GL_COLOR_ATTACHMENT0)
+        {
+            //Only color can be rendered
+            return;
+        }
+        fbo.colorTexture = renderbuffer;
+        fbo.colorTarget = texTarget;
+        fbo.colorRenderbuffer = 0;
+    }
+
+    @Override
+    public void glFrontFace(FrontFaceMode mode)
+    {
+        frontFace = mode;
+    }
+
+    private void genIds(int size, IntBuffer ibuf)
+    {
+        for (int i = 0; i < size; ++i)
+        {
+            ibuf.put(ibuf.position() + i, nextId++);
+        }
+    }
+
+    @Override
+    public void glGenBuffers(int size, IntBuffer ibuf)
+    {
+        genIds(size, ibuf);
+    }
+
+    @Override
+    public void glGenFramebuffers(int size, IntBuffer ibuf)
+    {
+        genIds(size, ibuf);
+    }
+
+    @Override
+    public void glGenRenderbuffers(int size, IntBuffer ibuf)
+    {
+        genIds(size, ibuf);
+    }
+
+    @Override
+    public void glGenTextures(int size, IntBuffer ibuf)
+    {
+        genIds(size, ibuf);
+    }
+
+    @Override
+    public void glGenerateMipmap(TexTarget target)
+    {
+        //Only the base level is kept
+    }
+
+    /**
+     * @return Number of values written to out, or -1 if unknown
+     */
+    private int getParam(GetParam param, float[] out)
+    {
+        switch (param)
+        {
+            case GL_ACTIVE_TEXTURE:
+                //GL_TEXTURE0
+                out[0] = 0x84C0 + activeTexture;
+                return 1;
+            case GL_ALIASED_LINE_WIDTH_RANGE:
+            case GL_ALIASED_POINT_SIZE_RANGE:
+                out[0] = 1;
+                out[1] = 64;
+                return 2;
+            case GL_RED_BITS:
+            case GL_GREEN_BITS:
+            case GL_BLUE_BITS:
+            case GL_ALPHA_BITS:
+            case GL_SUBPIXEL_BITS:
+                out[0] = 8;
+                return 1;
+            case GL_DEPTH_BITS:
+            case GL_STENCIL_BITS:
+            case GL_SAMPLES:
+            case GL_SAMPLE_BUFFERS:
+            case GL_NUM_COMPRESSED_TEXTURE_FORMATS:
+            case GL_NUM_SHADER_BINARY_FORMATS:
+            case GL_SHADER_COMPILER:
+                out[0] = 0;
+                return 1;
+            case GL_ARRAY_BUFFER_BINDING:
+                out[0] = arrayBuffer;
+                return 1;
+            case GL_ELEMENT_ARRAY_BUFFER_BINDING:
+                out[0] = elementBuffer;
+                return 1;
+            case GL_FRAMEBUFFER_BINDING:
+                out[0] = framebuffer;
+                return 1;
+            case GL_RENDERBUFFER_BINDING:
+                out[0] = renderbuffer;
+                return 1;
+            case GL_CURRENT_PROGRAM:
+                out[0] = program;
+                return 1;
+            case GL_TEXTURE_BINDING_2D:
+                out[0] = boundTextures[activeTexture];
+                return 1;
+            case GL_BLEND:
+                out[0] = capabilities.contains(Capability.GL_BLEND) ? 1 : 0;
+                return 1;
+            case GL_CULL_FACE:
+                out[0] = capabilities.contains(Capability.GL_CULL_FACE) ? 1 : 0;
+                return 1;
+            case GL_DEPTH_TEST:
+                out[0] = capabilities.contains(Capability.GL_DEPTH_TEST) ? 1 : 0;
+                return 1;
+            case GL_DITHER:
+                out[0] = capabilities.contains(Capability.GL_DITHER) ? 1 : 0;
+                return 1;
+            case GL_SCISSOR_TEST:
+                out[0] = capabilities.contains(Capability.GL_SCISSOR_TEST) ? 1 : 0;
+                return 1;
+            case GL_STENCIL_TEST:
+                out[0] = capabilities.contains(Capability.GL_STENCIL_TEST) ? 1 : 0;
+                return 1;
+            case GL_BLEND_COLOR:
+                System.arraycopy(blendColor, 0, out, 0, 4);
+                return 4;
+            case GL_COLOR_CLEAR_VALUE:
+                System.arraycopy(clearColor, 0, out, 0, 4);
+                return 4;
+            case GL_COLOR_WRITEMASK:
+                out[0] = (colorMask & 0xff0000) != 0 ? 1 : 0;
+                out[1] = (colorMask & 0xff00) != 0 ? 1 : 0;
+                out[2] = (colorMask & 0xff) != 0 ? 1 : 0;
+                out[3] = (colorMask & 0xff000000) != 0 ? 1 : 0;
+                return 4;
+            case GL_DEPTH_CLEAR_VALUE:
+                out[0] = clearDepth;
+                return 1;
+            case GL_DEPTH_WRITEMASK:
+                out[0] = depthMask ? 1 : 0;
+                return 1;
+            case GL_STENCIL_CLEAR_VALUE:
+                out[0] = clearStencil;
+                return 1;
+            case GL_LINE_WIDTH:
+                out[0] = lineWidth;
+                return 1;
+            case GL_MAX_TEXTURE_SIZE:
+            case GL_MAX_RENDERBUFFER_SIZE:
+            case GL_MAX_CUBE_MAP_TEXTURE_SIZE:
+                out[0] = MAX_TEXTURE_SIZE;
+                return 1;
+            case GL_MAX_VIEWPORT_DIMS:
+                out[0] = out[1] = MAX_TEXTURE_SIZE;
+                return 2;
+            case GL_MAX_VERTEX_ATTRIBS:
+                out[0] = MAX_VERTEX_ATTRIBS;
+                return 1;
+            case GL_MAX_TEXTURE_IMAGE_UNITS:
+            case GL_MAX_COMBINED_TEXTURE_IMAGE_UNITS:
+            case GL_MAX_VERTEX_TEXTURE_IMAGE_UNITS:
+                out[0] = MAX_TEXTURE_UNITS;
+                return 1;
+            case GL_MAX_VARYING_VECTORS:
+                out[0] = SoftRasterizer.MAX_VARYINGS / 4;
+                return 1;
+            case GL_PACK_ALIGNMENT:
+                out[0] = packAlignment;
+                return 1;
+            case GL_UNPACK_ALIGNMENT:
+                out[0] = unpackAlignment;
+                return 1;
+            case GL_SCISSOR_BOX:
+                out[0] = scissorX;
+                out[1] = scissorY;
+                out[2] = scissorWidth;
+                out[3] = scissorHeight;
+                return 4;
+            case GL_VIEWPORT:
+                out[0] = viewportX;
+                out[1] = viewportY;
+                out[2] = viewportWidth;
+                out[3] = viewportHeight;
+                return 4;
+            default:
+                return -1;
+        }
+    }
+
+    @Override
+    public void glGetBooleanv(GetParam param, ByteBuffer bbuf)
+    {
+        float[] values = new float[4];
+        int count = getParam(param, values);
+        if (count == -1)
+        {
+            setError(ErrorType.GL_INVALID_ENUM);
+            return;
+        }
+        for (int i = 0; i < count; ++i)
+        {
+            bbuf.put(bbuf.position() + i, (byte)(values[i] != 0 ? 1 : 0));
+        }
+    }
+
+    @Override
+    public void glGetFloatv(GetParam param, FloatBuffer bbuf)
+    {
+        float[] values = new float[4];
+        int count = getParam(param, values);
+        if (count == -1)
+        {
+            setError(ErrorType.GL_INVALID_ENUM);
+            return;
+        }
+        for (int i = 0; i < count; ++i)
+        {
+            bbuf.put(bbuf.position() + i, values[i]);
+        }
+    }
+
+    @Override
+    public void glGetIntegerv(GetParam param, IntBuffer bbuf)
+    {
+        float[] values = new float[4];
+        int count = getParam(param, values);
+        if (count == -1)
+        {
+            setError(ErrorType.GL_INVALID_ENUM);
+            return;
+        }
+        for (int i = 0; i < count; ++i)
+        {
+            bbuf.put(bbuf.position() + i, (int)values[i]);
+        }
+    }
+
+    private static void putString(String value, int bufSize,
+            IntBuffer length, ByteBuffer dest)
+    {
+        byte[] bytes = value.getBytes();
+        int len = Math.max(Math.min(bytes.length, bufSize - 1), 0);
+        if (dest != null)
+        {
+            for (int i = 0; i < len; ++i)
+            {
+                dest.put(dest.position() + i, bytes[i]);
+            }
+            if (len < bufSize)
+            {
+                dest.put(dest.position() + len, (byte)0);
+            }
+        }
+        if (length != null)
+        {
+            length.put(length.position(), len);
+        }
+    }
+
+    @Override
+    public void glGetActiveAttrib(int program, int index, int bufSize, IntBuffer length, IntBuffer size, IntBuffer type, ByteBuffer name)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null || prog.soft == null
+                || index < 0 || index >= prog.soft.getNumAttributes())
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        putString(prog.soft.getAttributeName(index), bufSize, length, name);
+        size.put(size.position(), 1);
+        //GL_FLOAT_VEC4
+        type.put(type.position(), 0x8B52);
+    }
+
+    @Override
+    public void glGetActiveUniform(int program, int index, int bufSize, IntBuffer length, IntBuffer size, IntBuffer type, ByteBuffer name)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null || prog.soft == null
+                || index < 0 || index >= prog.soft.getNumUniforms())
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        putString(prog.soft.getUniformName(index), bufSize, length, name);
+        size.put(size.position(), 1);
+        switch (prog.soft.getUniformSize(index))
+        {
+            case 1:
+                //GL_FLOAT
+                type.put(type.position(), 0x1406);
+                break;
+            case 16:
+                //GL_FLOAT_MAT4
+                type.put(type.position(), 0x8B5C);
+                break;
+            default:
+                //GL_FLOAT_VEC4
+                type.put(type.position(), 0x8B52);
+                break;
+        }
+    }
+
+    @Override
+    public void glGetAttachedShaders(int program, int maxCount, IntBuffer count, IntBuffer shaders)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        int num = Math.min(maxCount, prog.shaders.size());
+        for (int i = 0; i < num; ++i)
+        {
+            shaders.put(shaders.position() + i, prog.shaders.get(i));
+        }
+        if (count != null)
+        {
+            count.put(count.position(), num);
+        }
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null || prog.soft == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return -1;
+        }
+        return prog.soft.getAttribLocation(name);
+    }
+
+    @Override
+    public void glGetBufferParameteriv(BufferTarget target, BufferValue value, IntBuffer data)
+    {
+        BufferObj obj = getBoundBuffer(target);
+        if (obj == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        switch (value)
+        {
+            case GL_BUFFER_SIZE:
+                data.put(data.position(), obj.data.capacity());
+                break;
+            case GL_BUFFER_USAGE:
+                data.put(data.position(), obj.usage.ordinal());
+                break;
+        }
+    }
+
+    @Override
+    public ErrorType glGetError()
+    {
+        ErrorType err = error;
+        error = ErrorType.GL_NO_ERROR;
+        return err;
+    }
+
+    @Override
+    public void glGetFramebufferAttachmentParameteriv(Attachment attachment, FramebufferAttachmentParameter pname, IntBuffer params)
+    {
+        FramebufferObj fbo = getBoundFramebuffer();
+        if (fbo == null)
+        {
+            return;
+        }
+
+        int name;
+        boolean isTexture = false;
+        switch (attachment)
+        {
+            case GL_COLOR_ATTACHMENT0:
+                isTexture = fbo.colorTexture != 0;
+                name = isTexture ? fbo.colorTexture : fbo.colorRenderbuffer;
+                break;
+            case GL_DEPTH_ATTACHMENT:
+                name = fbo.depthRenderbuffer;
+                break;
+            default:
+                name = fbo.stencilRenderbuffer;
+                break;
+        }
+
+        switch (pname)
+        {
+            case GL_FRAMEBUFFER_ATTACHMENT_OBJECT_TYPE:
+                //GL_TEXTURE, GL_RENDERBUFFER or GL_NONE
+                params.put(params.position(),
+                        name == 0 ? 0 : (isTexture ? 0x1702 : 0x8D41));
+                break;
+            case GL_FRAMEBUFFER_ATTACHMENT_OBJECT_NAME:
+                params.put(params.position(), name);
+                break;
+            default:
+                params.put(params.position(), 0);
+                break;
+        }
+    }
+
+    @Override
+    public void glGetProgramInfoLog(int program, int bufSize, IntBuffer length, ByteBuffer infoLog)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        putString(prog.infoLog, bufSize, length, infoLog);
+    }
+
+    @Override
+    public void glGetProgramiv(int program, ProgramParamName pname, IntBuffer params)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+
+        int value;
+        switch (pname)
+        {
+            case GL_LINK_STATUS:
+                value = prog.soft == null ? 0 : 1;
+                break;
+            case GL_VALIDATE_STATUS:
+                value = prog.validated ? 1 : 0;
+                break;
+            case GL_INFO_LOG_LENGTH:
+                value = prog.infoLog.length() == 0 ? 0
+                        : prog.infoLog.getBytes().length + 1;
+                break;
+            case GL_ATTACHED_SHADERS:
+                value = prog.shaders.size();
+                break;
+            case GL_ACTIVE_ATTRIBUTES:
+                value = prog.soft == null ? 0 : prog.soft.getNumAttributes();
+                break;
+            case GL_ACTIVE_UNIFORMS:
+                value = prog.soft == null ? 0 : prog.soft.getNumUniforms();
+                break;
+            case GL_ACTIVE_ATTRIBUTE_MAX_LENGTH:
+            {
+                value = 0;
+                for (int i = 0; prog.soft != null
+                        && i < prog.soft.getNumAttributes(); ++i)
+                {
+                    value = Math.max(value,
+                            prog.soft.getAttributeName(i).length() + 1);
+                }
+                break;
+            }
+            case GL_ACTIVE_UNIFORM_MAX_LENGTH:
+            {
+                value = 0;
+                for (int i = 0; prog.soft != null
+                        && i < prog.soft.getNumUniforms(); ++i)
+                {
+                    value = Math.max(value,
+                            prog.soft.getUniformName(i).length() + 1);
+                }
+                break;
+            }
+            default:
+                value = 0;
+                break;
+        }
+        params.put(params.position(), value);
+    }
+
+    @Override
+    public void glGetRenderbufferParameteriv(RenderbufferParameter pname, IntBuffer params)
+    {
+        RenderbufferObj rb = renderbuffers.get(renderbuffer);
+        if (rb == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+
+        int value;
+        switch (pname)
+        {
+            case GL_RENDERBUFFER_WIDTH:
+                value = rb.width;
+                break;
+            case GL_RENDERBUFFER_HEIGHT:
+                value = rb.height;
+                break;
+            case GL_RENDERBUFFER_RED_SIZE:
+            case GL_RENDERBUFFER_GREEN_SIZE:
+            case GL_RENDERBUFFER_BLUE_SIZE:
+            case GL_RENDERBUFFER_ALPHA_SIZE:
+                value = rb.surface == null ? 0 : 8;
+                break;
+            default:
+                value = 0;
+                break;
+        }
+        params.put(params.position(), value);
+    }
+
+    @Override
+    public void glGetShaderInfoLog(int program, int bufSize, IntBuffer length, ByteBuffer infoLog)
+    {
+        putString("", bufSize, length, infoLog);
+    }
+
+    @Override
+    public void glGetShaderPrecisionFormat(ShaderType shaderType, PrecisionType precisionType, IntBuffer range, IntBuffer precision)
+    {
+        switch (precisionType)
+        {
+            case GL_LOW_FLOAT:
+            case GL_MEDIUM_FLOAT:
+            case GL_HIGH_FLOAT:
+                range.put(range.position(), 127);
+                range.put(range.position() + 1, 127);
+                precision.put(precision.position(), 23);
+                break;
+            default:
+                range.put(range.position(), 31);
+                range.put(range.position() + 1, 30);
+                precision.put(precision.position(), 0);
+                break;
+        }
+    }
+
+    @Override
+    public void glGetShaderSource(int shader, int bufSize, IntBuffer length, ByteBuffer source)
+    {
+        ShaderObj obj = shaders.get(shader);
+        if (obj == null)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        putString(obj.source, bufSize, length, source);
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, ShaderParamName pname, IntBuffer params)
+    {
+        ShaderObj obj = shaders.get(shader);
+        if (obj == null)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+
+        int value;
+        switch (pname)
+        {
+            case GL_SHADER_TYPE:
+                //GL_VERTEX_SHADER or GL_FRAGMENT_SHADER
+                value = obj.type == ShaderType.GL_VERTEX_SHADER ? 0x8B31 : 0x8B30;
+                break;
+            case GL_COMPILE_STATUS:
+                value = obj.compiled ? 1 : 0;
+                break;
+            case GL_SHADER_SOURCE_LENGTH:
+                value = obj.source.length() + 1;
+                break;
+            default:
+                value = 0;
+                break;
+        }
+        params.put(params.position(), value);
+    }
+
+    @Override
+    public String glGetString(StringName name)
+    {
+        switch (name)
+        {
+            case GL_VENDOR:
+                return "kitfox";
+            case GL_RENDERER:
+                return "Coyote software rasterizer";
+            case GL_VERSION:
+                return "OpenGL ES 2.0 Coyote software";
+            case GL_SHADING_LANGUAGE_VERSION:
+                return "OpenGL ES GLSL ES 1.00";
+            default:
+                return "";
+        }
+    }
+
+    @Override
+    public void glGetTexParameterfv(TexTarget target, TexParamName param, FloatBuffer params)
+    {
+        //GL enum values are not exposed by the wrapper, so report
+        // parameters by their TexParam ordinal
+        params.put(params.position(), getTexParam(param).ordinal());
+    }
+
+    @Override
+    public void glGetTexParameteriv(TexTarget target, TexParamName param, IntBuffer params)
+    {
+        params.put(params.position(), getTexParam(param).ordinal());
+    }
+
+    private TexParam getTexParam(TexParamName param)
+    {
+        TextureObj tex = getBoundTexture();
+        switch (param)
+        {
+            case GL_TEXTURE_MIN_FILTER:
+                return tex.minFilter;
+            case GL_TEXTURE_MAG_FILTER:
+                return tex.magFilter;
+            case GL_TEXTURE_WRAP_S:
+                return tex.wrapS;
+            default:
+                return tex.wrapT;
+        }
+    }
+
+    @Override
+    public void glGetTexImage(TexTarget target, int level, InternalFormatTex format, DataType type, Buffer buffer)
+    {
+        TextureObj tex = getBoundTexture();
+        SoftSurface surface = tex.getSurface(target == TexTarget.GL_TEXTURE_2D
+                ? TexSubTarget.GL_TEXTURE_2D
+                : TexSubTarget.GL_TEXTURE_CUBE_MAP_POSITIVE_X);
+        if (surface == null || level != 0)
+        {
+            return;
+        }
+        if (type != DataType.GL_UNSIGNED_BYTE
+                || (format != InternalFormatTex.GL_RGBA
+                && format != InternalFormatTex.GL_RGB
+                && format != InternalFormatTex.GL_ALPHA))
+        {
+            setError(ErrorType.GL_INVALID_ENUM);
+            return;
+        }
+        flush(surface);
+
+        if (!packPixels(surface.pixels, surface.width, surface.height,
+                0, 0, surface.width, surface.height,
+                getFormatBytes(format), format == InternalFormatTex.GL_ALPHA,
+                buffer))
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+        }
+    }
+
+    private ProgramObj getUniformProgram(int program, int location)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null || prog.soft == null
+                || location < 0 || location >= prog.soft.getNumUniforms())
+        {
+            return null;
+        }
+        return prog;
+    }
+
+    @Override
+    public void glGetUniformfv(int program, int location, FloatBuffer params)
+    {
+        ProgramObj prog = getUniformProgram(program, location);
+        if (prog == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        int offset = prog.soft.getUniformOffset(location);
+        for (int i = 0; i < prog.soft.getUniformSize(location); ++i)
+        {
+            params.put(params.position() + i, prog.uniforms[offset + i]);
+        }
+    }
+
+    @Override
+    public void glGetUniformiv(int program, int location, IntBuffer params)
+    {
+        ProgramObj prog = getUniformProgram(program, location);
+        if (prog == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        int offset = prog.soft.getUniformOffset(location);
+        for (int i = 0; i < prog.soft.getUniformSize(location); ++i)
+        {
+            params.put(params.position() + i, (int)prog.uniforms[offset + i]);
+        }
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null || prog.soft == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return -1;
+        }
+        return prog.soft.getUniformLocation(name);
+    }
+
+    @Override
+    public void glGetVertexAttribfv(int index, VertexAttribName pname, FloatBuffer params)
+    {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        float[] values = getVertexAttrib(attribs[index], pname);
+        for (int i = 0; i < values.length; ++i)
+        {
+            params.put(params.position() + i, values[i]);
+        }
+    }
+
+    @Override
+    public void glGetVertexAttribiv(int index, VertexAttribName pname, IntBuffer params)
+    {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        float[] values = getVertexAttrib(attribs[index], pname);
+        for (int i = 0; i < values.length; ++i)
+        {
+            params.put(params.position() + i, (int)values[i]);
+        }
+    }
+
+    private float[] getVertexAttrib(AttribState state, VertexAttribName pname)
+    {
+        switch (pname)
+        {
+            case GL_VERTEX_ATTRIB_ARRAY_BUFFER_BINDING:
+                return new float[]{state.buffer};
+            case GL_VERTEX_ATTRIB_ARRAY_ENABLED:
+                return new float[]{state.enabled ? 1 : 0};
+            case GL_VERTEX_ATTRIB_ARRAY_SIZE:
+                return new float[]{state.size};
+            case GL_VERTEX_ATTRIB_ARRAY_STRIDE:
+                return new float[]{state.stride};
+            case GL_VERTEX_ATTRIB_ARRAY_TYPE:
+                return new float[]{state.type.ordinal()};
+            case GL_VERTEX_ATTRIB_ARRAY_NORMALIZED:
+                return new float[]{state.normalized ? 1 : 0};
+            default:
+                return state.current.clone();
+        }
+    }
+
+    @Override
+    public void glHint(HintMode mode)
+    {
+    }
+
+    @Override
+    public boolean glIsBuffer(int buffer)
+    {
+        return buffers.containsKey(buffer);
+    }
+
+    @Override
+    public boolean glIsEnabled(Capability cap)
+    {
+        return capabilities.contains(cap);
+    }
+
+    @Override
+    public boolean glIsFramebuffer(int framebuffer)
+    {
+        return framebuffers.containsKey(framebuffer);
+    }
+
+    @Override
+    public boolean glIsProgram(int program)
+    {
+        return programs.containsKey(program);
+    }
+
+    @Override
+    public boolean glIsRenderbuffer(int renderbuffer)
+    {
+        return renderbuffers.containsKey(renderbuffer);
+    }
+
+    @Override
+    public boolean glIsShader(int shader)
+    {
+        return shaders.containsKey(shader);
+    }
+
+    @Override
+    public boolean glIsTexture(int texture)
+    {
+        return texture != 0 && textures.containsKey(texture);
+    }
+
+    @Override
+    public void glLineWidth(float width)
+    {
+        if (width <= 0)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        lineWidth = width;
+    }
+
+    @Override
+    public void glLinkProgram(int program)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+
+        String vertPath = null;
+        String fragPath = null;
+        for (int i = 0; i < prog.shaders.size(); ++i)
+        {
+            ShaderObj shader = shaders.get(prog.shaders.get(i));
+            if (shader == null)
+            {
+                continue;
+            }
+            if (shader.type == ShaderType.GL_VERTEX_SHADER)
+            {
+                vertPath = shader.path;
+            }
+            else
+            {
+                fragPath = shader.path;
+            }
+        }
+
+        SoftProgram soft = getProgram(vertPath, fragPath);
+        prog.soft = soft;
+        if (soft == null)
+        {
+            prog.uniforms = null;
+            prog.infoLog = "No software implementation of shaders "
+                    + vertPath + " and " + fragPath;
+            return;
+        }
+
+        prog.uniforms = new float[soft.getUniformDataSize()];
+        prog.infoLog = "";
+    }
+
+    @Override
+    public void glPixelStorei(PixelStoreParam pname, int param)
+    {
+        if (param != 1 && param != 2 && param != 4 && param != 8)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        switch (pname)
+        {
+            case GL_PACK_ALIGNMENT:
+                packAlignment = param;
+                break;
+            case GL_UNPACK_ALIGNMENT:
+                unpackAlignment = param;
+                break;
+        }
+    }
+
+    @Override
+    public void glPolygonOffset(float factor, float units)
+    {
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, ReadPixelsFormat format, DataType type, Buffer data)
+    {
+        if (type != DataType.GL_UNSIGNED_BYTE)
+        {
+            setError(ErrorType.GL_INVALID_ENUM);
+            return;
+        }
+        SoftSurface surface = getReadSurface();
+        if (surface == null)
+        {
+            return;
+        }
+
+        int pixBytes;
+        switch (format)
+        {
+            case GL_ALPHA:
+                pixBytes = 1;
+                break;
+            case GL_RGB:
+                pixBytes = 3;
+                break;
+            default:
+                pixBytes = 4;
+                break;
+        }
+
+        if (!packPixels(surface.pixels, surface.width, surface.height,
+                x, y, width, height,
+                pixBytes, format == ReadPixelsFormat.GL_ALPHA, data))
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+        }
+    }
+
+    @Override
+    public void glReleaseShaderCompiler()
+    {
+    }
+
+    @Override
+    public void glRenderbufferStorage(InternalFormatBuf internalFormat, int width, int height)
+    {
+        RenderbufferObj rb = renderbuffers.get(renderbuffer);
+        if (rb == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+
+        if (rb.surface != null)
+        {
+            flush(rb.surface);
+        }
+        rb.width = width;
+        rb.height = height;
+        switch (internalFormat)
+        {
+            case GL_DEPTH_COMPONENT16:
+            case GL_STENCIL_INDEX8:
+                rb.surface = null;
+                break;
+            default:
+                //Color is always kept at 8 bits per channel
+                rb.surface = new SoftSurface(width, height);
+                break;
+        }
+    }
+
+    @Override
+    public void glSampleCoverage(float value, boolean invert)
+    {
+    }
+
+    @Override
+    public void glScissor(int x, int y, int width, int height)
+    {
+        scissorX = x;
+        scissorY = y;
+        scissorWidth = width;
+        scissorHeight = height;
+    }
+
+    @Override
+    public void glShaderBinary(int n, IntBuffer shaders, int binaryFormat, Buffer binary, int length)
+    {
+        setError(ErrorType.GL_INVALID_ENUM);
+    }
+
+    @Override
+    public void glShaderSource(int shader, int count, String[] string, IntBuffer length)
+    {
+        ShaderObj obj = shaders.get(shader);
+        if (obj == null)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; ++i)
+        {
+            String str = string[i];
+            if (str == null)
+            {
+                continue;
+            }
+            if (length != null && length.get(length.position() + i) >= 0)
+            {
+                str = str.substring(0,
+                        Math.min(str.length(), length.get(length.position() + i)));
+            }
+            sb.append(str);
+        }
+        obj.source = sb.toString();
+        obj.path = sourcePaths.get(obj.source);
+        obj.compiled = false;
+    }
+
+    @Override
+    public void glStencilFunc(DepthFunc func, int ref, int mask)
+    {
+    }
+
+    @Override
+    public void glStencilFuncSeparate(CullFaceMode face, DepthFunc func, int ref, int mask)
+    {
+    }
+
+    @Override
+    public void glStencilMask(int mask)
+    {
+    }
+
+    @Override
+    public void glStencilMaskSeparate(CullFaceMode face, int mask)
+    {
+    }
+
+    @Override
+    public void glStencilOp(StencilOp sfail, StencilOp dpfail, StencilOp dppass)
+    {
+    }
+
+    @Override
+    public void glStencilOpSeparate(CullFaceMode face, StencilOp sfail, StencilOp dpfail, StencilOp dppass)
+    {
+    }
+
+    @Override
+    public void glTexImage2D(TexSubTarget target, int level, InternalFormatTex internalFormat, int width, int height, DataType type, Buffer data)
+    {
+        if (level != 0)
+        {
+            //Only the base level is kept
+            return;
+        }
+        if (width < 0 || height < 0
+                || width > MAX_TEXTURE_SIZE || height > MAX_TEXTURE_SIZE)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+
+        TextureObj tex = getBoundTexture();
+        SoftSurface old = tex.getSurface(target);
+        if (old != null)
+        {
+            //Finish drawing into the old pixels in case they are
+            // still attached to a framebuffer
+            flush(old);
+        }
+
+        //Create new pixels rather than changing the old ones so that
+        // queued commands can keep reading them
+        SoftSurface surface = new SoftSurface(width, height);
+        if (data != null
+                && !unpackPixels(internalFormat, type, data, width, height,
+                surface.pixels, 0, 0, width))
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+        }
+        tex.setSurface(target, surface);
+        tex.format = internalFormat;
+    }
+
+    @Override
+    public void glTexParameter(TexTarget target, TexParamName pname, TexParam param)
+    {
+        TextureObj tex = getBoundTexture();
+        switch (pname)
+        {
+            case GL_TEXTURE_MIN_FILTER:
+                tex.minFilter = param;
+                break;
+            case GL_TEXTURE_MAG_FILTER:
+                tex.magFilter = param;
+                break;
+            case GL_TEXTURE_WRAP_S:
+                tex.wrapS = param;
+                break;
+            case GL_TEXTURE_WRAP_T:
+                tex.wrapT = param;
+                break;
+        }
+    }
+
+    @Override
+    public void glTexSubImage2D(TexSubTarget target, int level, int xoffset, int yoffset, int width, int height, InternalFormatTex internalFormat, DataType type, Buffer data)
+    {
+        if (level != 0)
+        {
+            return;
+        }
+        SoftSurface surface = getBoundTexture().getSurface(target);
+        if (surface == null)
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+            return;
+        }
+        if (xoffset < 0 || yoffset < 0
+                || xoffset + width > surface.width
+                || yoffset + height > surface.height)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+
+        prepareWrite(surface);
+        if (!unpackPixels(internalFormat, type, data, width, height,
+                surface.pixels, xoffset, yoffset, surface.width))
+        {
+            setError(ErrorType.GL_INVALID_OPERATION);
+        }
+    }
+
+    private float[] getUniformData(int location, int size)
+    {
+        ProgramObj prog = getUniformProgram(program, location);
+        if (prog == null)
+        {
+            //Location -1 is silently ignored
+            if (location != -1)
+            {
+                setError(ErrorType.GL_INVALID_OPERATION);
+            }
+            return null;
+        }
+        return prog.uniforms;
+    }
+
+    private void setUniform(int location, float v0, float v1, float v2, float v3, int count)
+    {
+        float[] data = getUniformData(location, count);
+        if (data == null)
+        {
+            return;
+        }
+        ProgramObj prog = programs.get(program);
+        int offset = prog.soft.getUniformOffset(location);
+        int size = Math.min(count, prog.soft.getUniformSize(location));
+        float[] values = {v0, v1, v2, v3};
+        System.arraycopy(values, 0, data, offset, size);
+    }
+
+    private void setUniform(int location, int count, FloatBuffer value)
+    {
+        float[] data = getUniformData(location, count);
+        if (data == null)
+        {
+            return;
+        }
+        ProgramObj prog = programs.get(program);
+        int offset = prog.soft.getUniformOffset(location);
+        int size = Math.min(count, data.length - offset);
+        for (int i = 0; i < size; ++i)
+        {
+            data[offset + i] = value.get(value.position() + i);
+        }
+    }
+
+    private void setUniform(int location, int count, IntBuffer value)
+    {
+        float[] data = getUniformData(location, count);
+        if (data == null)
+        {
+            return;
+        }
+        ProgramObj prog = programs.get(program);
+        int offset = prog.soft.getUniformOffset(location);
+        int size = Math.min(count, data.length - offset);
+        for (int i = 0; i < size; ++i)
+        {
+            data[offset + i] = value.get(value.position() + i);
+        }
+    }
+
+    private void setUniformMatrix(int location, int count, int dim,
+            boolean transpose, FloatBuffer value)
+    {
+        if (!transpose)
+        {
+            setUniform(location, count * dim * dim, value);
+            return;
+        }
+
+        FloatBuffer buf = FloatBuffer.allocate(count * dim * dim);
+        for (int m = 0; m < count; ++m)
+        {
+            int base = value.position() + m * dim * dim;
+            for (int i = 0; i < dim; ++i)
+            {
+                for (int j = 0; j < dim; ++j)
+                {
+                    buf.put(m * dim * dim + i * dim + j,
+                            value.get(base + j * dim + i));
+                }
+            }
+        }
+        setUniform(location, count * dim * dim, buf);
+    }
+
+    @Override
+    public void glUniform1f(int location, float v0)
+    {
+        setUniform(location, v0, 0, 0, 0, 1);
+    }
+
+    @Override
+    public void glUniform2f(int location, float v0, float v1)
+    {
+        setUniform(location, v0, v1, 0, 0, 2);
+    }
+
+    @Override
+    public void glUniform3f(int location, float v0, float v1, float v2)
+    {
+        setUniform(location, v0, v1, v2, 0, 3);
+    }
+
+    @Override
+    public void glUniform4f(int location, float v0, float v1, float v2, float v3)
+    {
+        setUniform(location, v0, v1, v2, v3, 4);
+    }
+
+    @Override
+    public void glUniform1i(int location, int v0)
+    {
+        setUniform(location, v0, 0, 0, 0, 1);
+    }
+
+    @Override
+    public void glUniform2i(int location, int v0, int v1)
+    {
+        setUniform(location, v0, v1, 0, 0, 2);
+    }
+
+    @Override
+    public void glUniform3i(int location, int v0, int v1, int v2)
+    {
+        setUniform(location, v0, v1, v2, 0, 3);
+    }
+
+    @Override
+    public void glUniform4i(int location, int v0, int v1, int v2, int v3)
+    {
+        setUniform(location, v0, v1, v2, v3, 4);
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, FloatBuffer value)
+    {
+        setUniform(location, count, value);
+    }
+
+    @Override
+    public void glUniform2fv(int location, int count, FloatBuffer value)
+    {
+        setUniform(location, count * 2, value);
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, FloatBuffer value)
+    {
+        setUniform(location, count * 3, value);
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, FloatBuffer value)
+    {
+        setUniform(location, count * 4, value);
+    }
+
+    @Override
+    public void glUniform1iv(int location, int count, IntBuffer value)
+    {
+        setUniform(location, count, value);
+    }
+
+    @Override
+    public void glUniform2iv(int location, int count, IntBuffer value)
+    {
+        setUniform(location, count * 2, value);
+    }
+
+    @Override
+    public void glUniform3iv(int location, int count, IntBuffer value)
+    {
+        setUniform(location, count * 3, value);
+    }
+
+    @Override
+    public void glUniform4iv(int location, int count, IntBuffer value)
+    {
+        setUniform(location, count * 4, value);
+    }
+
+    @Override
+    public void glUniformMatrix2fv(int location, int count, boolean transpose, FloatBuffer value)
+    {
+        setUniformMatrix(location, count, 2, transpose, value);
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, FloatBuffer value)
+    {
+        setUniformMatrix(location, count, 3, transpose, value);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, FloatBuffer value)
+    {
+        setUniformMatrix(location, count, 4, transpose, value);
+    }
+
+    @Override
+    public void glUseProgram(int program)
+    {
+        if (program != 0 && !programs.containsKey(program))
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        this.program = program;
+    }
+
+    @Override
+    public void glValidateProgram(int program)
+    {
+        ProgramObj prog = programs.get(program);
+        if (prog == null)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        prog.validated = prog.soft != null;
+    }
+
+    @Override
+    public void glVertexAttrib1f(int index, float v0)
+    {
+        glVertexAttrib4f(index, v0, 0, 0, 1);
+    }
+
+    @Override
+    public void glVertexAttrib2f(int index, float v0, float v1)
+    {
+        glVertexAttrib4f(index, v0, v1, 0, 1);
+    }
+
+    @Override
+    public void glVertexAttrib3f(int index, float v0, float v1, float v2)
+    {
+        glVertexAttrib4f(index, v0, v1, v2, 1);
+    }
+
+    @Override
+    public void glVertexAttrib4f(int index, float v0, float v1, float v2, float v3)
+    {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        float[] cur = attribs[index].current;
+        cur[0] = v0;
+        cur[1] = v1;
+        cur[2] = v2;
+        cur[3] = v3;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, VertexDataType type, boolean normalized, int stride, long offset)
+    {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS || size < 1 || size > 4)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        AttribState state = attribs[index];
+        state.size = size;
+        state.type = type;
+        state.normalized = normalized;
+        state.stride = stride;
+        state.buffer = arrayBuffer;
+        state.offset = offset;
+        state.pointer = null;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, VertexDataType type, boolean normalized, int stride, Buffer pointer)
+    {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS || size < 1 || size > 4)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        AttribState state = attribs[index];
+        state.size = size;
+        state.type = type;
+        state.normalized = normalized;
+        state.stride = stride;
+        state.buffer = 0;
+        state.offset = 0;
+        state.pointer = pointer;
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height)
+    {
+        if (width < 0 || height < 0)
+        {
+            setError(ErrorType.GL_INVALID_VALUE);
+            return;
+        }
+        viewportX = x;
+        viewportY = y;
+        viewportWidth = width;
+        viewportHeight = height;
+    }
+
+    @Override
+    public String loadSource(String path)
+    {
+        InputStream is = getClass().getResourceAsStream(path);
+        if (is == null)
+        {
+            Logger.getLogger(CyGLWrapperSoftware.class.getName()).log(
+                    Level.WARNING, "Could not find shader {0}", path);
+            return null;
+        }
+
+        byte[] buf = new byte[0x8000];
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+
+        try
+        {
+            for (int len = is.read(buf); len != -1; len = is.read(buf))
+            {
+                bout.write(buf, 0, len);
+            }
+            is.close();
+
+            String source = bout.toString();
+            sourcePaths.put(source, path);
+            return source;
+        } catch (IOException ex)
+        {
+            Logger.getLogger(CyGLWrapperSoftware.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+    //---------------------------------------
+    static class TriangleList
+    {
+        final int stride;
+        float[] verts;
+        int size;
+
+        public TriangleList(int stride)
+        {
+            this.stride = stride;
+            this.verts = new float[stride * 3 * 16];
+        }
+
+        /**
+         * Make room for one more triangle after the last one.
+         */
+        public float[] reserve()
+        {
+            int needed = (size + 1) * stride * 3;
+            if (needed > verts.length)
+            {
+                verts = Arrays.copyOf(verts, Math.max(needed, verts.length * 2));
+            }
+            return verts;
+        }
+
+        public void commit(boolean culled)
+        {
+            if (!culled)
+            {
+                ++size;
+            }
+        }
+    }
+
+    static class BufferObj
+    {
+        ByteBuffer data = ByteBuffer.allocate(0);
+        BufferUsage usage = BufferUsage.GL_STATIC_DRAW;
+    }
+
+    static class TextureObj
+    {
+        //Indexed by TexSubTarget
+        final SoftSurface[] surfaces = new SoftSurface[TexSubTarget.values().length];
+        InternalFormatTex format = InternalFormatTex.GL_RGBA;
+        TexParam minFilter = TexParam.GL_NEAREST_MIPMAP_LINEAR;
+        TexParam magFilter = TexParam.GL_LINEAR;
+        TexParam wrapS = TexParam.GL_REPEAT;
+        TexParam wrapT = TexParam.GL_REPEAT;
+
+        public SoftSurface getSurface(TexSubTarget target)
+        {
+            return surfaces[target.ordinal()];
+        }
+
+        public void setSurface(TexSubTarget target, SoftSurface surface)
+        {
+            surfaces[target.ordinal()] = surface;
+        }
+    }
+
+    static class RenderbufferObj
+    {
+        //Null for depth and stencil buffers
+        SoftSurface surface;
+        int width;
+        int height;
+    }
+
+    static class FramebufferObj
+    {
+        int colorTexture;
+        TexSubTarget colorTarget = TexSubTarget.GL_TEXTURE_2D;
+        int colorRenderbuffer;
+        int depthRenderbuffer;
+        int stencilRenderbuffer;
+    }
+
+    static class ShaderObj
+    {
+        final ShaderType type;
+        String source = "";
+        //Resource the source was loaded from, if known
+        String path;
+        boolean compiled;
+
+        public ShaderObj(ShaderType type)
+        {
+            this.type = type;
+        }
+    }
+
+    static class ProgramObj
+    {
+        final ArrayList<Integer> shaders = new ArrayList<Integer>();
+        SoftProgram soft;
+        float[] uniforms;
+        String infoLog = "";
+        boolean validated;
+    }
+
+    static class AttribState
+    {
+        boolean enabled;
+        int size = 4;
+        VertexDataType type = VertexDataType.GL_FLOAT;
+        boolean normalized;
+        int stride;
+        int buffer;
+        long offset;
+        Buffer pointer;
+        final float[] current = {0, 0, 0, 1};
+    }
+}
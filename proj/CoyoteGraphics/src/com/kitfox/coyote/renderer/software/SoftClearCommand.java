@@ -0,0 +1,73 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+/**
+ * Fills a box of the surface with a color.
+ *
+ * @author kitfox
+ */
+class SoftClearCommand extends SoftCommand
+{
+    private final int argb;
+    private final int colorMask;
+
+    public SoftClearCommand(int clipX0, int clipY0, int clipX1, int clipY1,
+            int argb, int colorMask)
+    {
+        super(clipX0, clipY0, clipX1, clipY1);
+        this.argb = argb;
+        this.colorMask = colorMask;
+    }
+
+    @Override
+    public int getNumPrimitives()
+    {
+        return 1;
+    }
+
+    @Override
+    public boolean getPrimitiveBounds(int index, int[] bounds)
+    {
+        bounds[0] = clipX0;
+        bounds[1] = clipY0;
+        bounds[2] = clipX1;
+        bounds[3] = clipY1;
+        return clipX0 < clipX1 && clipY0 < clipY1;
+    }
+
+    @Override
+    public void render(int index, SoftSurface surface,
+            int x0, int y0, int x1, int y1, SoftRasterizer.Scratch scratch)
+    {
+        x0 = Math.max(x0, clipX0);
+        y0 = Math.max(y0, clipY0);
+        x1 = Math.min(x1, clipX1);
+        y1 = Math.min(y1, clipY1);
+
+        int[] pixels = surface.pixels;
+        for (int j = y0; j < y1; ++j)
+        {
+            int row = j * surface.width;
+            for (int i = x0; i < x1; ++i)
+            {
+                pixels[row + i] = (pixels[row + i] & ~colorMask)
+                        | (argb & colorMask);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+/**
+ * Drawing queued up for a {@link SoftSurface}.  A command is made of
+ * primitives that are binned into screen tiles and drawn one tile at
+ * a time, so a command must be safe to render from several threads at
+ * once as long as each thread works in a different tile.
+ *
+ * @author kitfox
+ */
+abstract class SoftCommand
+{
+    //Pixels outside this box are never touched.  Max is exclusive.
+    final int clipX0;
+    final int clipY0;
+    final int clipX1;
+    final int clipY1;
+
+    public SoftCommand(int clipX0, int clipY0, int clipX1, int clipY1)
+    {
+        this.clipX0 = clipX0;
+        this.clipY0 = clipY0;
+        this.clipX1 = clipX1;
+        this.clipY1 = clipY1;
+    }
+
+    abstract public int getNumPrimitives();
+
+    /**
+     * Find pixels a primitive may touch.
+     *
+     * @param bounds Receives min x, min y, max x and max y.
+     * Max is exclusive.
+     * @return false if the primitive touches no pixels
+     */
+    abstract public boolean getPrimitiveBounds(int index, int[] bounds);
+
+    /**
+     * Draw the part of a primitive that lies in the given box.
+     */
+    abstract public void render(int index, SoftSurface surface,
+            int x0, int y0, int x1, int y1, SoftRasterizer.Scratch scratch);
+
+    protected boolean clipBounds(int[] bounds)
+    {
+        bounds[0] = Math.max(bounds[0], clipX0);
+        bounds[1] = Math.max(bounds[1], clipY0);
+        bounds[2] = Math.min(bounds[2], clipX1);
+        bounds[3] = Math.min(bounds[3], clipY1);
+        return bounds[0] < bounds[2] && bounds[1] < bounds[3];
+    }
+}
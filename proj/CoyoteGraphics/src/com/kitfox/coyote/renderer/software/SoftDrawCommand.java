@@ -0,0 +1,339 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+import com.kitfox.coyote.renderer.CyGLWrapper.BlendFactor;
+import com.kitfox.coyote.renderer.CyGLWrapper.BlendMode;
+
+/**
+ * Triangles from one draw call, along with the program state they were
+ * drawn with.  Vertices are in window coordinates and are laid out as
+ * x, y, z, 1/w followed by each varying divided by w so that varyings
+ * can be interpolated with perspective correction.
+ *
+ * <p>Pixels are sampled at their centers.  Coverage is computed with
+ * fixed point edge functions and follows the GL top left rule, so
+ * triangles sharing an edge never draw a pixel twice.</p>
+ *
+ * @author kitfox
+ */
+class SoftDrawCommand extends SoftCommand
+{
+    static final int SUBPIXEL_BITS = 8;
+    static final int SUBPIXEL_ONE = 1 << SUBPIXEL_BITS;
+
+    private final SoftProgram program;
+    private final float[] uniforms;
+    private final SoftSampler[] units;
+    private final float[] verts;
+    private final int numTris;
+    private final int stride;
+    private final int numVaryings;
+
+    private final boolean blend;
+    private final BlendFactor srcRgb;
+    private final BlendFactor dstRgb;
+    private final BlendFactor srcAlpha;
+    private final BlendFactor dstAlpha;
+    private final BlendMode modeRgb;
+    private final BlendMode modeAlpha;
+    private final float[] blendColor;
+    private final int colorMask;
+
+    public SoftDrawCommand(int clipX0, int clipY0, int clipX1, int clipY1,
+            SoftProgram program, float[] uniforms, SoftSampler[] units,
+            float[] verts, int numTris,
+            boolean blend,
+            BlendFactor srcRgb, BlendFactor dstRgb,
+            BlendFactor srcAlpha, BlendFactor dstAlpha,
+            BlendMode modeRgb, BlendMode modeAlpha,
+            float[] blendColor, int colorMask)
+    {
+        super(clipX0, clipY0, clipX1, clipY1);
+        this.program = program;
+        this.uniforms = uniforms;
+        this.units = units;
+        this.verts = verts;
+        this.numTris = numTris;
+        this.numVaryings = program.getNumVaryings();
+        this.stride = 4 + numVaryings;
+        this.blend = blend;
+        this.srcRgb = srcRgb;
+        this.dstRgb = dstRgb;
+        this.srcAlpha = srcAlpha;
+        this.dstAlpha = dstAlpha;
+        this.modeRgb = modeRgb;
+        this.modeAlpha = modeAlpha;
+        this.blendColor = blendColor;
+        this.colorMask = colorMask;
+    }
+
+    @Override
+    public int getNumPrimitives()
+    {
+        return numTris;
+    }
+
+    @Override
+    public boolean getPrimitiveBounds(int index, int[] bounds)
+    {
+        int a = index * stride * 3;
+        int b = a + stride;
+        int c = b + stride;
+        float minX = Math.min(Math.min(verts[a], verts[b]), verts[c]);
+        float maxX = Math.max(Math.max(verts[a], verts[b]), verts[c]);
+        float minY = Math.min(Math.min(verts[a + 1], verts[b + 1]), verts[c + 1]);
+        float maxY = Math.max(Math.max(verts[a + 1], verts[b + 1]), verts[c + 1]);
+
+        bounds[0] = (int)Math.floor(minX);
+        bounds[1] = (int)Math.floor(minY);
+        bounds[2] = (int)Math.ceil(maxX) + 1;
+        bounds[3] = (int)Math.ceil(maxY) + 1;
+        return clipBounds(bounds);
+    }
+
+    private static boolean isTopLeft(long dx, long dy)
+    {
+        //Triangles are wound counter clockwise with y pointing up
+        return dy < 0 || (dy == 0 && dx < 0);
+    }
+
+    @Override
+    public void render(int index, SoftSurface surface,
+            int x0, int y0, int x1, int y1, SoftRasterizer.Scratch scratch)
+    {
+        int a = index * stride * 3;
+        int b = a + stride;
+        int c = b + stride;
+
+        long ax = toFixed(verts[a]);
+        long ay = toFixed(verts[a + 1]);
+        long bx = toFixed(verts[b]);
+        long by = toFixed(verts[b + 1]);
+        long cx = toFixed(verts[c]);
+        long cy = toFixed(verts[c + 1]);
+
+        long area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        if (area == 0)
+        {
+            return;
+        }
+        if (area < 0)
+        {
+            //Swap b and c so the triangle winds counter clockwise
+            int t = b;
+            b = c;
+            c = t;
+            long tx = bx;
+            long ty = by;
+            bx = cx;
+            by = cy;
+            cx = tx;
+            cy = ty;
+            area = -area;
+        }
+
+        //Pixels whose centers might be covered
+        int minX = Math.max(Math.max(x0, clipX0), (int)((Math.min(Math.min(ax, bx), cx) >> SUBPIXEL_BITS) - 1));
+        int minY = Math.max(Math.max(y0, clipY0), (int)((Math.min(Math.min(ay, by), cy) >> SUBPIXEL_BITS) - 1));
+        int maxX = Math.min(Math.min(x1, clipX1), (int)((Math.max(Math.max(ax, bx), cx) >> SUBPIXEL_BITS) + 1));
+        int maxY = Math.min(Math.min(y1, clipY1), (int)((Math.max(Math.max(ay, by), cy) >> SUBPIXEL_BITS) + 1));
+        if (minX >= maxX || minY >= maxY)
+        {
+            return;
+        }
+
+        //Edge functions at the center of the first pixel.  Edge 0 is
+        //opposite vertex a, edge 1 opposite b and edge 2 opposite c.
+        long px = ((long)minX << SUBPIXEL_BITS) + SUBPIXEL_ONE / 2;
+        long py = ((long)minY << SUBPIXEL_BITS) + SUBPIXEL_ONE / 2;
+
+        long e0Row = (cx - bx) * (py - by) - (cy - by) * (px - bx);
+        long e1Row = (ax - cx) * (py - cy) - (ay - cy) * (px - cx);
+        long e2Row = (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+
+        long e0StepX = -(cy - by) << SUBPIXEL_BITS;
+        long e1StepX = -(ay - cy) << SUBPIXEL_BITS;
+        long e2StepX = -(by - ay) << SUBPIXEL_BITS;
+        long e0StepY = (cx - bx) << SUBPIXEL_BITS;
+        long e1StepY = (ax - cx) << SUBPIXEL_BITS;
+        long e2StepY = (bx - ax) << SUBPIXEL_BITS;
+
+        //Pixels exactly on an edge belong to the triangle only if it
+        //is a top or left edge
+        long bias0 = isTopLeft(cx - bx, cy - by) ? 0 : -1;
+        long bias1 = isTopLeft(ax - cx, ay - cy) ? 0 : -1;
+        long bias2 = isTopLeft(bx - ax, by - ay) ? 0 : -1;
+
+        double invArea = 1.0 / area;
+        float[] varying = scratch.varying;
+        float[] color = scratch.color;
+        int[] pixels = surface.pixels;
+        int width = surface.width;
+
+        for (int j = minY; j < maxY; ++j)
+        {
+            long e0 = e0Row;
+            long e1 = e1Row;
+            long e2 = e2Row;
+            int row = j * width;
+
+            for (int i = minX; i < maxX; ++i)
+            {
+                if (e0 + bias0 >= 0 && e1 + bias1 >= 0 && e2 + bias2 >= 0)
+                {
+                    double la = e0 * invArea;
+                    double lb = e1 * invArea;
+                    double lc = e2 * invArea;
+
+                    if (numVaryings > 0)
+                    {
+                        double invW = la * verts[a + 3]
+                                + lb * verts[b + 3]
+                                + lc * verts[c + 3];
+                        double w = 1 / invW;
+                        for (int k = 0; k < numVaryings; ++k)
+                        {
+                            varying[k] = (float)((la * verts[a + 4 + k]
+                                    + lb * verts[b + 4 + k]
+                                    + lc * verts[c + 4 + k]) * w);
+                        }
+                    }
+
+                    if (program.shadeFragment(uniforms, units, varying, color))
+                    {
+                        writePixel(pixels, row + i, color, scratch.dst);
+                    }
+                }
+
+                e0 += e0StepX;
+                e1 += e1StepX;
+                e2 += e2StepX;
+            }
+
+            e0Row += e0StepY;
+            e1Row += e1StepY;
+            e2Row += e2StepY;
+        }
+    }
+
+    private static long toFixed(float value)
+    {
+        return (long)Math.floor(value * SUBPIXEL_ONE + .5f);
+    }
+
+    private void writePixel(int[] pixels, int idx, float[] src, float[] dst)
+    {
+        clamp(src);
+        if (blend)
+        {
+            SoftSampler.unpack(pixels[idx], dst);
+
+            float sr = factor(srcRgb, 0, src, dst);
+            float sg = factor(srcRgb, 1, src, dst);
+            float sb = factor(srcRgb, 2, src, dst);
+            float sa = factor(srcAlpha, 3, src, dst);
+            float dr = factor(dstRgb, 0, src, dst);
+            float dg = factor(dstRgb, 1, src, dst);
+            float db = factor(dstRgb, 2, src, dst);
+            float da = factor(dstAlpha, 3, src, dst);
+
+            float r = combine(modeRgb, src[0] * sr, dst[0] * dr);
+            float g = combine(modeRgb, src[1] * sg, dst[1] * dg);
+            float b = combine(modeRgb, src[2] * sb, dst[2] * db);
+            float a = combine(modeAlpha, src[3] * sa, dst[3] * da);
+            src[0] = r;
+            src[1] = g;
+            src[2] = b;
+            src[3] = a;
+            clamp(src);
+        }
+
+        int argb = (toByte(src[3]) << 24)
+                | (toByte(src[0]) << 16)
+                | (toByte(src[1]) << 8)
+                | toByte(src[2]);
+        pixels[idx] = (pixels[idx] & ~colorMask) | (argb & colorMask);
+    }
+
+    private static void clamp(float[] color)
+    {
+        for (int i = 0; i < 4; ++i)
+        {
+            float v = color[i];
+            color[i] = v < 0 ? 0 : (v > 1 ? 1 : v);
+        }
+    }
+
+    private static int toByte(float value)
+    {
+        return (int)(value * 255 + .5f);
+    }
+
+    private static float combine(BlendMode mode, float src, float dst)
+    {
+        switch (mode)
+        {
+            default:
+            case GL_FUNC_ADD:
+                return src + dst;
+            case GL_FUNC_SUBTRACT:
+                return src - dst;
+            case GL_FUNC_REVERSE_SUBTRACT:
+                return dst - src;
+        }
+    }
+
+    private float factor(BlendFactor factor, int channel,
+            float[] src, float[] dst)
+    {
+        switch (factor)
+        {
+            default:
+            case GL_ZERO:
+                return 0;
+            case GL_ONE:
+                return 1;
+            case GL_SRC_COLOR:
+                return src[channel];
+            case GL_ONE_MINUS_SRC_COLOR:
+                return 1 - src[channel];
+            case GL_DST_COLOR:
+                return dst[channel];
+            case GL_ONE_MINUS_DST_COLOR:
+                return 1 - dst[channel];
+            case GL_SRC_ALPHA:
+                return src[3];
+            case GL_ONE_MINUS_SRC_ALPHA:
+                return 1 - src[3];
+            case GL_DST_ALPHA:
+                return dst[3];
+            case GL_ONE_MINUS_DST_ALPHA:
+                return 1 - dst[3];
+            case GL_CONSTANT_COLOR:
+                return blendColor[channel];
+            case GL_ONE_MINUS_CONSTANT_COLOR:
+                return 1 - blendColor[channel];
+            case GL_CONSTANT_ALPHA:
+                return blendColor[3];
+            case GL_ONE_MINUS_CONSTANT_ALPHA:
+                return 1 - blendColor[3];
+            case GL_SRC_ALPHA_SATURATE:
+                return channel == 3 ? 1 : Math.min(src[3], 1 - dst[3]);
+        }
+    }
+}
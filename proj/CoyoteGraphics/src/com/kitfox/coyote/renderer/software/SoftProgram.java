@@ -0,0 +1,217 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+/**
+ * Java version of a vertex and fragment shader pair for the software
+ * renderer.  Since {@link CyGLWrapperSoftware} does not compile GLSL,
+ * each shader pair a material loads needs a program registered for it.
+ *
+ * <p>Programs are stateless and are shared between all wrappers and
+ * rasterizer threads.  Uniform values are passed in as a flat array of
+ * floats, with each uniform starting at {@link #getUniformOffset(int)}.
+ * Matrices are stored in column major order and samplers hold the
+ * index of their texture unit.</p>
+ *
+ * @author kitfox
+ */
+abstract public class SoftProgram
+{
+    private final String[] attributes;
+    private final String[] uniforms;
+    private final int[] uniformOffsets;
+    private final int[] samplerLocations;
+    private final int uniformDataSize;
+    private final int numVaryings;
+
+    /**
+     * @param attributes Attribute names in location order
+     * @param uniforms Uniform names in location order
+     * @param uniformSizes Number of floats each uniform holds
+     * @param numVaryings Number of floats passed from vertex to
+     * fragment stage
+     */
+    protected SoftProgram(String[] attributes,
+            String[] uniforms, int[] uniformSizes, int numVaryings)
+    {
+        this(attributes, uniforms, uniformSizes, new String[0], numVaryings);
+    }
+
+    /**
+     * @param attributes Attribute names in location order
+     * @param uniforms Uniform names in location order
+     * @param uniformSizes Number of floats each uniform holds
+     * @param samplers Names of the uniforms that are samplers
+     * @param numVaryings Number of floats passed from vertex to
+     * fragment stage
+     */
+    protected SoftProgram(String[] attributes,
+            String[] uniforms, int[] uniformSizes, String[] samplers,
+            int numVaryings)
+    {
+        this.attributes = attributes;
+        this.uniforms = uniforms;
+        this.numVaryings = numVaryings;
+
+        uniformOffsets = new int[uniforms.length];
+        int offset = 0;
+        for (int i = 0; i < uniforms.length; ++i)
+        {
+            uniformOffsets[i] = offset;
+            offset += uniformSizes[i];
+        }
+        uniformDataSize = offset;
+
+        samplerLocations = new int[samplers.length];
+        for (int i = 0; i < samplers.length; ++i)
+        {
+            samplerLocations[i] = indexOf(uniforms, samplers[i]);
+        }
+    }
+
+    public int getAttribLocation(String name)
+    {
+        return indexOf(attributes, name);
+    }
+
+    public int getUniformLocation(String name)
+    {
+        return indexOf(uniforms, name);
+    }
+
+    private static int indexOf(String[] names, String name)
+    {
+        for (int i = 0; i < names.length; ++i)
+        {
+            if (names[i].equals(name))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getNumAttributes()
+    {
+        return attributes.length;
+    }
+
+    public String getAttributeName(int location)
+    {
+        return attributes[location];
+    }
+
+    public int getNumUniforms()
+    {
+        return uniforms.length;
+    }
+
+    public String getUniformName(int location)
+    {
+        return uniforms[location];
+    }
+
+    public int getUniformOffset(int location)
+    {
+        return uniformOffsets[location];
+    }
+
+    public int getUniformSize(int location)
+    {
+        return (location == uniforms.length - 1
+                ? uniformDataSize
+                : uniformOffsets[location + 1]) - uniformOffsets[location];
+    }
+
+    int getNumSamplers()
+    {
+        return samplerLocations.length;
+    }
+
+    int getSamplerLocation(int index)
+    {
+        return samplerLocations[index];
+    }
+
+    /**
+     * @return Number of floats needed to hold all uniforms
+     */
+    public int getUniformDataSize()
+    {
+        return uniformDataSize;
+    }
+
+    public int getNumVaryings()
+    {
+        return numVaryings;
+    }
+
+    /**
+     * Run the vertex stage for one vertex.
+     *
+     * @param u Uniform values
+     * @param attr Attribute values, four floats per attribute in
+     * location order
+     * @param out Receives the clip space position followed by
+     * the varyings
+     * @param outOffset Index in out to write to
+     */
+    abstract public void shadeVertex(float[] u, float[] attr,
+            float[] out, int outOffset);
+
+    /**
+     * Run the fragment stage for one pixel.
+     *
+     * @param u Uniform values
+     * @param units Textures bound to each texture unit.  May hold nulls.
+     * @param varying Interpolated varyings
+     * @param color Receives the non premultiplied RGBA color
+     * @return false if the fragment is discarded
+     */
+    abstract public boolean shadeFragment(float[] u, SoftSampler[] units,
+            float[] varying, float[] color);
+
+    /**
+     * Multiply a column major 4x4 matrix stored in u by a vector.
+     */
+    protected static void transform(float[] u, int mtxOffset,
+            float[] v, int vOffset, float[] out, int outOffset)
+    {
+        float x = v[vOffset];
+        float y = v[vOffset + 1];
+        float z = v[vOffset + 2];
+        float w = v[vOffset + 3];
+        for (int i = 0; i < 4; ++i)
+        {
+            out[outOffset + i] = u[mtxOffset + i] * x
+                    + u[mtxOffset + 4 + i] * y
+                    + u[mtxOffset + 8 + i] * z
+                    + u[mtxOffset + 12 + i] * w;
+        }
+    }
+
+    protected static float fract(float value)
+    {
+        return value - (float)Math.floor(value);
+    }
+
+    protected static SoftSampler getSampler(SoftSampler[] units, float unit)
+    {
+        int idx = (int)unit;
+        return idx >= 0 && idx < units.length ? units[idx] : null;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+/**
+ * Software version of /material/checker.vert and /material/checker.frag
+ *
+ * @author kitfox
+ */
+public class SoftProgramChecker extends SoftProgram
+{
+    private static final int U_MVP_MATRIX = 0;
+    private static final int U_MV_MATRIX = 16;
+    private static final int U_COLOR_FG = 32;
+    private static final int U_COLOR_BG = 36;
+    private static final int U_LINE_WIDTH = 40;
+
+    public SoftProgramChecker()
+    {
+        super(new String[]{"a_position"},
+                new String[]{"u_mvpMatrix", "u_mvMatrix",
+                    "u_colorFg", "u_colorBg", "u_lineWidth"},
+                new int[]{16, 16, 4, 4, 1},
+                4);
+    }
+
+    @Override
+    public void shadeVertex(float[] u, float[] attr, float[] out, int outOffset)
+    {
+        transform(u, U_MVP_MATRIX, attr, 0, out, outOffset);
+        transform(u, U_MV_MATRIX, attr, 0, out, outOffset + 4);
+    }
+
+    @Override
+    public boolean shadeFragment(float[] u, SoftSampler[] units,
+            float[] varying, float[] color)
+    {
+        float lineWidth = u[U_LINE_WIDTH];
+        boolean gradX = fract(varying[0] / lineWidth) < .5f;
+        boolean gradY = fract(varying[1] / lineWidth) < .5f;
+        int offset = gradX == gradY ? U_COLOR_FG : U_COLOR_BG;
+
+        color[0] = u[offset];
+        color[1] = u[offset + 1];
+        color[2] = u[offset + 2];
+        color[3] = u[offset + 3];
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+/**
+ * Software version of /material/color.vert and /material/color.frag
+ *
+ * @author kitfox
+ */
+public class SoftProgramColor extends SoftProgram
+{
+    private static final int U_MVP_MATRIX = 0;
+    private static final int U_COLOR = 16;
+
+    public SoftProgramColor()
+    {
+        super(new String[]{"a_position"},
+                new String[]{"u_mvpMatrix", "u_color"},
+                new int[]{16, 4},
+                0);
+    }
+
+    @Override
+    public void shadeVertex(float[] u, float[] attr, float[] out, int outOffset)
+    {
+        transform(u, U_MVP_MATRIX, attr, 0, out, outOffset);
+    }
+
+    @Override
+    public boolean shadeFragment(float[] u, SoftSampler[] units,
+            float[] varying, float[] color)
+    {
+        color[0] = u[U_COLOR];
+        color[1] = u[U_COLOR + 1];
+        color[2] = u[U_COLOR + 2];
+        color[3] = u[U_COLOR + 3];
+        return true;
+    }
+}
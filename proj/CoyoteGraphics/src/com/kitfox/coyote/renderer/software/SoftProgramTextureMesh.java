@@ -0,0 +1,58 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+/**
+ * Software version of /material/textureMesh.vert and
+ * /material/textureMesh.frag
+ *
+ * @author kitfox
+ */
+public class SoftProgramTextureMesh extends SoftProgram
+{
+    private static final int U_MVP_MATRIX = 0;
+    private static final int U_TEX_MATRIX = 16;
+    private static final int U_TEX0 = 32;
+    private static final int U_OPACITY = 33;
+
+    public SoftProgramTextureMesh()
+    {
+        super(new String[]{"a_position", "a_texCoord"},
+                new String[]{"u_mvpMatrix", "u_texMatrix",
+                    "u_tex0", "u_opacity"},
+                new int[]{16, 16, 1, 1},
+                new String[]{"u_tex0"},
+                4);
+    }
+
+    @Override
+    public void shadeVertex(float[] u, float[] attr, float[] out, int outOffset)
+    {
+        transform(u, U_MVP_MATRIX, attr, 0, out, outOffset);
+        transform(u, U_TEX_MATRIX, attr, 4, out, outOffset + 4);
+    }
+
+    @Override
+    public boolean shadeFragment(float[] u, SoftSampler[] units,
+            float[] varying, float[] color)
+    {
+        SoftSampler.sample(getSampler(units, u[U_TEX0]),
+                varying[0], varying[1], color);
+        color[3] *= u[U_OPACITY];
+        return true;
+    }
+}
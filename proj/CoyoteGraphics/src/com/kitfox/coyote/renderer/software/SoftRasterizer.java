@@ -0,0 +1,239 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Draws the commands pending on a surface.  The surface is cut into
+ * square tiles and each primitive is listed in every tile its bounds
+ * touch.  Tiles are then handed out to worker threads.  Since every
+ * pixel belongs to exactly one tile and each tile draws its primitives
+ * in the order they were issued, the result is the same no matter how
+ * many threads are used.
+ *
+ * @author kitfox
+ */
+class SoftRasterizer
+{
+    static final int TILE_SHIFT = 6;
+    static final int TILE_SIZE = 1 << TILE_SHIFT;
+    //Varyings a program may pass to its fragment stage
+    static final int MAX_VARYINGS = 64;
+
+    private final int numThreads;
+    private ExecutorService executor;
+
+    public SoftRasterizer(int numThreads)
+    {
+        this.numThreads = Math.max(numThreads, 1);
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    public void flush(SoftSurface surface)
+    {
+        if (!surface.isPending())
+        {
+            return;
+        }
+
+        final ArrayList<SoftCommand> commands = surface.pending;
+        int tilesX = (surface.width + TILE_SIZE - 1) >> TILE_SHIFT;
+        int tilesY = (surface.height + TILE_SIZE - 1) >> TILE_SHIFT;
+        TileBin[] bins = new TileBin[tilesX * tilesY];
+        ArrayList<TileBin> work = new ArrayList<TileBin>();
+
+        int[] bounds = new int[4];
+        for (int c = 0; c < commands.size(); ++c)
+        {
+            SoftCommand cmd = commands.get(c);
+            for (int p = 0; p < cmd.getNumPrimitives(); ++p)
+            {
+                if (!cmd.getPrimitiveBounds(p, bounds))
+                {
+                    continue;
+                }
+
+                int tx0 = Math.max(bounds[0], 0) >> TILE_SHIFT;
+                int ty0 = Math.max(bounds[1], 0) >> TILE_SHIFT;
+                int tx1 = (Math.min(bounds[2], surface.width) - 1) >> TILE_SHIFT;
+                int ty1 = (Math.min(bounds[3], surface.height) - 1) >> TILE_SHIFT;
+                for (int ty = ty0; ty <= ty1; ++ty)
+                {
+                    for (int tx = tx0; tx <= tx1; ++tx)
+                    {
+                        int idx = ty * tilesX + tx;
+                        TileBin bin = bins[idx];
+                        if (bin == null)
+                        {
+                            bin = bins[idx] = new TileBin(tx, ty);
+                            work.add(bin);
+                        }
+                        bin.add(c, p);
+                    }
+                }
+            }
+        }
+
+        renderBins(surface, work);
+
+        commands.clear();
+        surface.pendingPrimitives = 0;
+    }
+
+    private void renderBins(final SoftSurface surface,
+            final ArrayList<TileBin> work)
+    {
+        final ArrayList<SoftCommand> commands = surface.pending;
+        final AtomicInteger next = new AtomicInteger();
+        Runnable worker = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Scratch scratch = new Scratch();
+                for (int i = next.getAndIncrement(); i < work.size();
+                        i = next.getAndIncrement())
+                {
+                    work.get(i).render(surface, commands, scratch);
+                }
+            }
+        };
+
+        int threads = Math.min(numThreads, work.size());
+        if (threads <= 1)
+        {
+            worker.run();
+            return;
+        }
+
+        //Calling thread works too
+        Future<?>[] futures = new Future<?>[threads - 1];
+        ExecutorService exec = getExecutor();
+        for (int i = 0; i < futures.length; ++i)
+        {
+            futures[i] = exec.submit(worker);
+        }
+        worker.run();
+
+        for (int i = 0; i < futures.length; ++i)
+        {
+            try
+            {
+                futures[i].get();
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex)
+            {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+    }
+
+    private ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newFixedThreadPool(numThreads - 1,
+                    new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "Coyote software rasterizer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    public void dispose()
+    {
+        if (executor != null)
+        {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    //-----------------------------
+    /**
+     * Buffers owned by a single worker thread
+     */
+    static class Scratch
+    {
+        final float[] varying = new float[MAX_VARYINGS];
+        final float[] color = new float[4];
+        final float[] dst = new float[4];
+    }
+
+    //-----------------------------
+    static class TileBin
+    {
+        final int tx;
+        final int ty;
+        //Pairs of command index and primitive index
+        int[] entries = new int[16];
+        int size;
+
+        public TileBin(int tx, int ty)
+        {
+            this.tx = tx;
+            this.ty = ty;
+        }
+
+        public void add(int command, int primitive)
+        {
+            if (size + 2 > entries.length)
+            {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            entries[size++] = command;
+            entries[size++] = primitive;
+        }
+
+        public void render(SoftSurface surface,
+                ArrayList<SoftCommand> commands, Scratch scratch)
+        {
+            int x0 = tx << TILE_SHIFT;
+            int y0 = ty << TILE_SHIFT;
+            int x1 = Math.min(x0 + TILE_SIZE, surface.width);
+            int y1 = Math.min(y0 + TILE_SIZE, surface.height);
+
+            for (int i = 0; i < size; i += 2)
+            {
+                commands.get(entries[i]).render(entries[i + 1], surface,
+                        x0, y0, x1, y1, scratch);
+            }
+        }
+    }
+}
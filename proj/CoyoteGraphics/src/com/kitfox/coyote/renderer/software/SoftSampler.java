@@ -0,0 +1,171 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+import com.kitfox.coyote.renderer.CyGLWrapper.TexParam;
+
+/**
+ * Texture as seen by a draw call.  Holds the pixels and sampling
+ * parameters the texture had when the draw was issued, so later changes
+ * to the texture do not affect draws still waiting to be rasterized.
+ *
+ * <p>Only the base level is kept.  The magnification filter is used for
+ * all lookups since fragments do not carry derivatives to choose
+ * between the two filters.</p>
+ *
+ * @author kitfox
+ */
+public class SoftSampler
+{
+    private static final int WRAP_CLAMP = 0;
+    private static final int WRAP_REPEAT = 1;
+    private static final int WRAP_MIRROR = 2;
+
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+    private final boolean linear;
+    private final int wrapS;
+    private final int wrapT;
+
+    SoftSampler(int[] pixels, int width, int height,
+            TexParam magFilter, TexParam wrapS, TexParam wrapT)
+    {
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.linear = magFilter == TexParam.GL_LINEAR;
+        this.wrapS = toWrap(wrapS);
+        this.wrapT = toWrap(wrapT);
+    }
+
+    private static int toWrap(TexParam param)
+    {
+        switch (param)
+        {
+            case GL_CLAMP_TO_EDGE:
+                return WRAP_CLAMP;
+            case GL_MIRRORED_REPEAT:
+                return WRAP_MIRROR;
+            default:
+                return WRAP_REPEAT;
+        }
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Look up a texel.  If sampler is null, opaque black is returned
+     * the same way GL does for incomplete textures.
+     *
+     * @param color Receives the non premultiplied RGBA color
+     */
+    public static void sample(SoftSampler sampler, float s, float t,
+            float[] color)
+    {
+        if (sampler == null)
+        {
+            color[0] = color[1] = color[2] = 0;
+            color[3] = 1;
+            return;
+        }
+        sampler.sample(s, t, color);
+    }
+
+    public void sample(float s, float t, float[] color)
+    {
+        if (!linear)
+        {
+            int i = wrap((int)Math.floor(s * width), width, wrapS);
+            int j = wrap((int)Math.floor(t * height), height, wrapT);
+            unpack(pixels[j * width + i], color);
+            return;
+        }
+
+        float u = s * width - .5f;
+        float v = t * height - .5f;
+        int iu = (int)Math.floor(u);
+        int iv = (int)Math.floor(v);
+        float fu = u - iu;
+        float fv = v - iv;
+
+        int i0 = wrap(iu, width, wrapS);
+        int i1 = wrap(iu + 1, width, wrapS);
+        int j0 = wrap(iv, height, wrapT) * width;
+        int j1 = wrap(iv + 1, height, wrapT) * width;
+
+        int p00 = pixels[j0 + i0];
+        int p10 = pixels[j0 + i1];
+        int p01 = pixels[j1 + i0];
+        int p11 = pixels[j1 + i1];
+
+        float w00 = (1 - fu) * (1 - fv);
+        float w10 = fu * (1 - fv);
+        float w01 = (1 - fu) * fv;
+        float w11 = fu * fv;
+
+        //Channel order in color is RGBA, in pixels ARGB
+        for (int c = 0; c < 4; ++c)
+        {
+            int shift = c == 3 ? 24 : 16 - c * 8;
+            color[c] = (((p00 >>> shift) & 0xff) * w00
+                    + ((p10 >>> shift) & 0xff) * w10
+                    + ((p01 >>> shift) & 0xff) * w01
+                    + ((p11 >>> shift) & 0xff) * w11) / 255f;
+        }
+    }
+
+    private static int wrap(int idx, int size, int mode)
+    {
+        switch (mode)
+        {
+            case WRAP_CLAMP:
+                return idx < 0 ? 0 : (idx >= size ? size - 1 : idx);
+            case WRAP_MIRROR:
+            {
+                int period = size * 2;
+                int m = idx % period;
+                if (m < 0)
+                {
+                    m += period;
+                }
+                return m < size ? m : period - 1 - m;
+            }
+            default:
+            {
+                int m = idx % size;
+                return m < 0 ? m + size : m;
+            }
+        }
+    }
+
+    static void unpack(int argb, float[] color)
+    {
+        color[0] = ((argb >>> 16) & 0xff) / 255f;
+        color[1] = ((argb >>> 8) & 0xff) / 255f;
+        color[2] = (argb & 0xff) / 255f;
+        color[3] = (argb >>> 24) / 255f;
+    }
+}
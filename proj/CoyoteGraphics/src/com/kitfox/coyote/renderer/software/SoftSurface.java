@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.renderer.software;
+
+import java.util.ArrayList;
+
+/**
+ * Block of pixels that can be drawn to, along with the commands waiting
+ * to be drawn into it.  Pixels are packed non premultiplied ARGB with
+ * the first row at the bottom, the same layout GL uses.
+ *
+ * @author kitfox
+ */
+class SoftSurface
+{
+    final int width;
+    final int height;
+    final int[] pixels;
+
+    final ArrayList<SoftCommand> pending = new ArrayList<SoftCommand>();
+    int pendingPrimitives;
+    //True while a pending command on another surface reads these pixels
+    boolean sampled;
+
+    public SoftSurface(int width, int height)
+    {
+        this(width, height, new int[width * height]);
+    }
+
+    public SoftSurface(int width, int height, int[] pixels)
+    {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    public boolean isPending()
+    {
+        return !pending.isEmpty();
+    }
+}
@@ -95,8 +95,8 @@ public class ShapeLinesProvider extends CyVertexBufferDataProvider
     public BoundingBox3d getBounds()
     {
         CyRectangle2d bounds = shape.getBounds();
-        return new BoundingBox3d(bounds.getX(), bounds.getY(), 0,
-                bounds.getWidth(), bounds.getHeight(), 0);
+        return new BoundingBox3d(bounds.getMinX(), bounds.getMinY(), 0,
+                bounds.getMaxX(), bounds.getMaxY(), 0);
     }
 
     //-------------------------
@@ -17,19 +17,20 @@
 package com.kitfox.coyote.shape;
 
 import com.kitfox.coyote.math.BufferUtil;
-import com.kitfox.coyote.math.CyVector2d;
 import com.kitfox.coyote.math.d3.BoundingBox3d;
 import com.kitfox.coyote.renderer.CyMaterial;
 import com.kitfox.coyote.renderer.CyVertexBufferDataProvider;
 import com.kitfox.coyote.renderer.CyGLWrapper.BufferUsage;
 import com.kitfox.coyote.renderer.CyGLWrapper.DrawMode;
+import com.kitfox.coyote.renderer.CyGLWrapper.IndiciesType;
 import com.kitfox.coyote.shape.bezier.path.cut.Coord;
 import com.kitfox.coyote.shape.tessellator3.PathTessellator3;
 import java.lang.ref.SoftReference;
+import java.nio.Buffer;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 
 /**
  *
@@ -52,7 +53,16 @@ public class ShapeMeshProvider extends CyVertexBufferDataProvider
         this(shape, 10000);
     }
 
-    private BufferInfo getBufferInfo()
+    /**
+     * Tessellate the shape now rather than when the mesh is first
+     * read.  Shapes can be tessellated on any thread.
+     */
+    public void tessellate()
+    {
+        getBufferInfo();
+    }
+
+    private synchronized BufferInfo getBufferInfo()
     {
         BufferInfo info = bufferInfo == null ? null : bufferInfo.get();
         if (info == null)
@@ -71,11 +81,17 @@ public class ShapeMeshProvider extends CyVertexBufferDataProvider
     }
 
     @Override
-    public ShortBuffer getIndexData()
+    public Buffer getIndexData()
     {
         return getBufferInfo().indexBuf;
     }
 
+    @Override
+    public IndiciesType getIndexType()
+    {
+        return getBufferInfo().indexType;
+    }
+
     @Override
     public BufferUsage getVertexUsage()
     {
@@ -104,15 +120,16 @@ public class ShapeMeshProvider extends CyVertexBufferDataProvider
     public BoundingBox3d getBounds()
     {
         CyRectangle2d bounds = shape.getBounds();
-        return new BoundingBox3d(bounds.getX(), bounds.getY(), 0,
-                bounds.getWidth(), bounds.getHeight(), 0);
+        return new BoundingBox3d(bounds.getMinX(), bounds.getMinY(), 0,
+                bounds.getMaxX(), bounds.getMaxY(), 0);
     }
 
     //-------------------------
     class BufferInfo
     {
         FloatBuffer vertBuf;
-        ShortBuffer indexBuf;
+        Buffer indexBuf;
+        IndiciesType indexType;
 
         public void build()
         {
@@ -122,37 +139,43 @@ public class ShapeMeshProvider extends CyVertexBufferDataProvider
             flat.feedShape(shape);
 
             ArrayList<Coord> tris = tess.getTrianglesNonZero();
-            HashMap<CyVector2d, Integer> vertMap = new HashMap<CyVector2d, Integer>();
-            ArrayList<CyVector2d> vertIdx = new ArrayList<CyVector2d>();
-            ArrayList<Integer> eleIdx = new ArrayList<Integer>();
-            for (Coord c: tris)
+            VertexWelder welder = new VertexWelder(tris.size() / 2);
+            int[] eleIdx = new int[tris.size()];
+            for (int i = 0; i < eleIdx.length; ++i)
             {
-                CyVector2d pt = new CyVector2d(c.x, c.y);
-                Integer idx = vertMap.get(pt);
-                if (idx == null)
-                {
-                    idx = vertIdx.size();
-                    vertIdx.add(pt);
-                    vertMap.put(pt, idx);
-                }
-                eleIdx.add(idx);
+                Coord c = tris.get(i);
+                eleIdx[i] = welder.weld(c.x, c.y);
             }
 
-
-            vertBuf = BufferUtil.allocateFloat(vertIdx.size() * 2);
-            for (CyVector2d pt: vertIdx)
+            int numVerts = welder.size();
+            vertBuf = BufferUtil.allocateFloat(numVerts * 2);
+            for (int i = 0; i < numVerts; ++i)
             {
-                vertBuf.put((float)pt.x);
-                vertBuf.put((float)pt.y);
+                vertBuf.put(welder.getX(i));
+                vertBuf.put(welder.getY(i));
             }
             vertBuf.rewind();
 
-            indexBuf = BufferUtil.allocateShort(eleIdx.size());
-            for (Integer i: eleIdx)
+            //Short indices are unsigned, so can address up to 0xffff
+            if (numVerts <= 0x10000)
+            {
+                ShortBuffer buf = BufferUtil.allocateShort(eleIdx.length);
+                for (int i = 0; i < eleIdx.length; ++i)
+                {
+                    buf.put((short)eleIdx[i]);
+                }
+                buf.rewind();
+                indexBuf = buf;
+                indexType = IndiciesType.GL_UNSIGNED_SHORT;
+            }
+            else
             {
-                indexBuf.put((short)(int)i);
+                IntBuffer buf = BufferUtil.allocateInt(eleIdx.length);
+                buf.put(eleIdx);
+                buf.rewind();
+                indexBuf = buf;
+                indexType = IndiciesType.GL_UNSIGNED_INT;
             }
-            indexBuf.rewind();
 
             //Set buffer types
             setVertexArrayInfo(CyMaterial.KEY_POSITION,
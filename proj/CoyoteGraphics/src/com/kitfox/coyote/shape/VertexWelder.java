@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011 Mark McKay
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.shape;
+
+import java.util.Arrays;
+
+/**
+ * Merges duplicate integer vertices and assigns each unique vertex
+ * an index.  Coordinates are packed into a long and stored in an
+ * open addressing hash table, so welding does not allocate an object
+ * per vertex.
+ *
+ * @author kitfox
+ */
+public class VertexWelder
+{
+    //Hash table of packed coordinates and the index they map to.
+    // Indices are stored offset by one so that zero marks an empty slot.
+    private long[] keys;
+    private int[] indices;
+    private int mask;
+
+    //Unique vertices in the order they were first seen
+    private int[] coords;
+    private int size;
+
+    public VertexWelder()
+    {
+        this(64);
+    }
+
+    /**
+     * @param expectedSize Number of unique vertices expected.  The
+     * tables will grow if this is exceeded.
+     */
+    public VertexWelder(int expectedSize)
+    {
+        int capacity = 16;
+        while (capacity < expectedSize * 2)
+        {
+            capacity <<= 1;
+        }
+        allocateTable(capacity);
+        coords = new int[Math.max(expectedSize, 8) * 2];
+    }
+
+    private void allocateTable(int capacity)
+    {
+        keys = new long[capacity];
+        indices = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Find the index of the given vertex, adding it if it has not
+     * been seen before.
+     *
+     * @return Index of vertex
+     */
+    public int weld(int x, int y)
+    {
+        long key = pack(x, y);
+        int slot = hash(key) & mask;
+        while (indices[slot] != 0)
+        {
+            if (keys[slot] == key)
+            {
+                return indices[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        //New vertex
+        int idx = size++;
+        if (idx * 2 == coords.length)
+        {
+            coords = Arrays.copyOf(coords, coords.length * 2);
+        }
+        coords[idx * 2] = x;
+        coords[idx * 2 + 1] = y;
+
+        keys[slot] = key;
+        indices[slot] = idx + 1;
+
+        if (size * 2 > keys.length)
+        {
+            rehash();
+        }
+        return idx;
+    }
+
+    private void rehash()
+    {
+        long[] oldKeys = keys;
+        int[] oldIndices = indices;
+        allocateTable(oldKeys.length * 2);
+
+        for (int i = 0; i < oldKeys.length; ++i)
+        {
+            if (oldIndices[i] == 0)
+            {
+                continue;
+            }
+
+            long key = oldKeys[i];
+            int slot = hash(key) & mask;
+            while (indices[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            indices[slot] = oldIndices[i];
+        }
+    }
+
+    private static long pack(int x, int y)
+    {
+        return ((long)x << 32) | (y & 0xffffffffL);
+    }
+
+    private static int hash(long key)
+    {
+        //Murmur3 finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int)key;
+    }
+
+    /**
+     * @return Number of unique vertices
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    public int getX(int index)
+    {
+        return coords[index * 2];
+    }
+
+    public int getY(int index)
+    {
+        return coords[index * 2 + 1];
+    }
+
+    public void clear()
+    {
+        Arrays.fill(indices, 0);
+        size = 0;
+    }
+}
@@ -20,6 +20,7 @@ import com.kitfox.coyote.shape.bezier.BezierCurve2i;
 import com.kitfox.coyote.shape.bezier.path.cut.Coord;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 /**
  *
@@ -59,6 +60,84 @@ public class CurveCutter2i
             cutCurve(c0, cuts0), cutCurve(c1, cuts1)};
     }
 
+    /**
+     * Cut a group of curves against each other in one pass.  Each curve
+     * is flattened once, and the segments of all curves are swept from
+     * left to right so that only segments with overlapping x ranges are
+     * compared.  Curves are not cut against themselves.
+     *
+     * <p>Where two curves cross, the curve later in the list is treated
+     * as c0 of {@link #cutCurves(BezierCurve2i, BezierCurve2i, double)},
+     * the same as when the later curve is added to a mesh that already
+     * holds the earlier one.</p>
+     *
+     * @return Pieces of each curve, in the order the curves were given
+     */
+    public static BezierCurve2i[][] cutCurves(
+            List<? extends BezierCurve2i> curves, double flatnessSquared)
+    {
+        ArrayList<ArrayList<CutPoint>> cuts =
+                new ArrayList<ArrayList<CutPoint>>(curves.size());
+        ArrayList<SweepSegment> segs = new ArrayList<SweepSegment>();
+        for (int i = 0; i < curves.size(); ++i)
+        {
+            cuts.add(new ArrayList<CutPoint>());
+            for (CutSegment seg: CutSegment.createSegments(
+                    curves.get(i), flatnessSquared))
+            {
+                segs.add(new SweepSegment(seg, i));
+            }
+        }
+
+        Collections.sort(segs);
+
+        //Segments whose x range may still overlap later segments
+        ArrayList<SweepSegment> active = new ArrayList<SweepSegment>();
+        for (SweepSegment s0: segs)
+        {
+            int minX = s0.seg.getMinX();
+            for (int j = active.size() - 1; j >= 0; --j)
+            {
+                SweepSegment s1 = active.get(j);
+                if (s1.seg.getMaxX() < minX)
+                {
+                    //Will not overlap anything else
+                    int last = active.size() - 1;
+                    active.set(j, active.get(last));
+                    active.remove(last);
+                    continue;
+                }
+
+                if (s0.curve == s1.curve
+                        || !s0.seg.isBoundingBoxOverlap(s1.seg))
+                {
+                    continue;
+                }
+
+                if (s0.curve > s1.curve)
+                {
+                    s0.seg.cutAgainst(s1.seg,
+                            cuts.get(s0.curve), cuts.get(s1.curve));
+                }
+                else
+                {
+                    s1.seg.cutAgainst(s0.seg,
+                            cuts.get(s1.curve), cuts.get(s0.curve));
+                }
+            }
+            active.add(s0);
+        }
+
+        BezierCurve2i[][] parts = new BezierCurve2i[curves.size()][];
+        for (int i = 0; i < parts.length; ++i)
+        {
+            ArrayList<CutPoint> curveCuts = cuts.get(i);
+            prepareCutPoints(curveCuts);
+            parts[i] = cutCurve(curves.get(i), curveCuts);
+        }
+        return parts;
+    }
+
     private static BezierCurve2i[] cutCurve(
             BezierCurve2i c, ArrayList<CutPoint> cuts)
     {
@@ -126,4 +205,26 @@ public class CurveCutter2i
             }
         }
     }
+
+    //-----------------------------
+    static class SweepSegment implements Comparable<SweepSegment>
+    {
+        final CutSegment seg;
+        //Index of curve segment belongs to
+        final int curve;
+
+        public SweepSegment(CutSegment seg, int curve)
+        {
+            this.seg = seg;
+            this.curve = curve;
+        }
+
+        @Override
+        public int compareTo(SweepSegment oth)
+        {
+            int x0 = seg.getMinX();
+            int x1 = oth.seg.getMinX();
+            return x0 < x1 ? -1 : (x0 == x1 ? 0 : 1);
+        }
+    }
 }
@@ -25,15 +25,55 @@ import com.kitfox.coyote.shape.bezier.cutgraph.CurveCutter2i;
 import com.kitfox.coyote.shape.bezier.path.cut.Coord;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 
 /**
+ * A planar graph of bezier curves.
+ *
+ * <p>Vertices and edges are stored as immutable records in tables
+ * indexed by id.  Copying a mesh shares all records and table nodes with
+ * the original, so a copy costs nothing until one of the meshes is
+ * changed, and then only the records that change and the table nodes
+ * above them are duplicated.  This keeps both the time to make an edit
+ * and the memory held by undo history proportional to the size of
+ * the edit.</p>
+ *
+ * <p>{@link BezierMeshVertex2i} and {@link BezierMeshEdge2i} are views
+ * onto the records of one mesh.  Two views are equal if they refer to
+ * the same id in the same mesh.  Edge and vertex data objects are shared
+ * between copies as well, so they must not be modified in place unless
+ * they were obtained through editData().</p>
+ *
+ * <p>Once a mesh has enough edges, closest point picking and edge
+ * insertion use a uniform grid over vertex and edge bounds so that
+ * only nearby records are examined.  The grid is built the first time
+ * it is needed and kept up to date as records change.</p>
  *
  * @author kitfox
  */
 abstract public class BezierMesh2i<VertexData, EdgeData>
 {
-    HashMap<Coord, BezierMeshVertex2i> vertMap = new HashMap<Coord, BezierMeshVertex2i>();
+    MeshTable<VertexRecord> vertTable = new MeshTable<VertexRecord>();
+    MeshTable<EdgeRecord> edgeTable = new MeshTable<EdgeRecord>();
+    //Built on demand.  Not shared with copies.
+    private HashMap<Coord, Integer> coordIndex;
+
+    //Meshes with fewer edges than this are searched without the grid
+    public static final int INDEX_MIN_EDGES = 64;
+    //Smallest grid cell is 1 << MIN_CELL_SHIFT units wide
+    static final int MIN_CELL_SHIFT = 4;
+
+    private boolean spatialIndexEnabled = true;
+    //Built on demand.  Copies share grid nodes with the original.
+    private MeshGrid edgeGrid;
+    private MeshGrid vertGrid;
+
+    //Table nodes and data created with this token belong only to
+    // this mesh and can be changed in place
+    Object owner = new Object();
+    //Incremented on every change so views know to refresh their records
+    int modCount;
+
     final double flatnessSquared;
     int nextVertId;
     int nextEdgeId;
@@ -43,93 +83,141 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
         this.flatnessSquared = flatnessSquared;
     }
 
+    /**
+     * Creates a copy of the mesh.  The copy shares its records with
+     * the original, which is much cheaper than duplicating them.
+     *
+     * @param mesh Mesh to copy
+     */
     public BezierMesh2i(BezierMesh2i<VertexData, EdgeData> mesh)
     {
         this.flatnessSquared = mesh.flatnessSquared;
         this.nextVertId = mesh.nextVertId;
         this.nextEdgeId = mesh.nextEdgeId;
-        
-        //Duplicate verts
-        for (BezierMeshVertex2i v0: mesh.vertMap.values())
-        {
-            BezierMeshVertex2i v1 = new BezierMeshVertex2i(v0.getId(),
-                    v0.getCoord(), copyVertexData((VertexData)v0.getData()));
-            vertMap.put(v1.getCoord(), v1);
-        }
-        
-        //Duplicate edges
-        for (BezierMeshVertex2i v: mesh.vertMap.values())
+
+        vertTable = new MeshTable<VertexRecord>(mesh.vertTable);
+        edgeTable = new MeshTable<EdgeRecord>(mesh.edgeTable);
+
+        spatialIndexEnabled = mesh.spatialIndexEnabled;
+        if (mesh.edgeGrid != null)
         {
-            ArrayList<BezierMeshEdge2i> list = v.getEdgesOut();
-            for (BezierMeshEdge2i e0: list)
-            {
-                BezierMeshVertex2i v0 = vertMap.get(e0.getStart().getCoord());
-                BezierMeshVertex2i v1 = vertMap.get(e0.getEnd().getCoord());
-                
-                BezierMeshEdge2i e1 = new BezierMeshEdge2i(e0.getId(),
-                        v0, v1, copyEdgeData((EdgeData)e0.getData()),
-                        e0.getSmooth0(), e0.getSmooth1(), 
-                        e0.getK0(), e0.getK1());
-                v0.edgesOut.add(e1);
-                v1.edgesIn.add(e1);
-            }
+            edgeGrid = new MeshGrid(mesh.edgeGrid);
+            vertGrid = new MeshGrid(mesh.vertGrid);
         }
+
+        //Everything the original owned is now shared, so it may no
+        // longer change it in place either
+        mesh.owner = new Object();
     }
 
-//    public BezierMesh2i(BezierMesh2i<VertexData, EdgeData> mesh)
-//    {
-//        super(mesh.flatnessSquared);
-//        
-//        for (
-//    }
-    
     abstract public VertexData copyVertexData(VertexData data);
     abstract public EdgeData copyEdgeData(EdgeData data);
-    
+
     public double getFlatnessSquared()
     {
         return flatnessSquared;
     }
-    
+
     public CyRectangle2i getBounds()
     {
         CyRectangle2i bounds = null;
-        
-        for (BezierMeshVertex2i vert: getVertices())
+
+        for (EdgeRecord e: edgeTable.values())
         {
-            for (int i = 0; i < vert.getNumEdges(); ++i)
+            if (bounds == null)
             {
-                BezierMeshEdge2i e = vert.getEdge(i);
-                
-                if (bounds == null)
-                {
-                    bounds = new CyRectangle2i(e.getMinX(), e.getMinY());
-                }
-                bounds.union(e.getMinX(), e.getMinY());
-                bounds.union(e.getMaxX(), e.getMaxY());                
+                bounds = new CyRectangle2i(e.getMinX(), e.getMinY());
             }
+            bounds.union(e.getMinX(), e.getMinY());
+            bounds.union(e.getMaxX(), e.getMaxY());
         }
-        
+
         return bounds;
     }
-    
+
     public ArrayList<Coord> getCoords()
     {
-        return new ArrayList<Coord>(vertMap.keySet());
+        ArrayList<VertexRecord> verts = vertTable.values();
+        ArrayList<Coord> list = new ArrayList<Coord>(verts.size());
+        for (VertexRecord v: verts)
+        {
+            list.add(v.coord);
+        }
+        return list;
     }
 
     public BezierMeshVertex2i<VertexData> getClosestVertex(double x, double y)
     {
+        VertexRecord bestVert = useIndex()
+                ? findClosestVertexIndexed(x, y)
+                : null;
+
+        if (bestVert == null)
+        {
+            double bestDist2 = Double.POSITIVE_INFINITY;
+            for (VertexRecord v: vertTable.values())
+            {
+                Coord c = v.coord;
+                double dist2 = Math2DUtil.distSquared(c.x, c.y, x, y);
+                if (dist2 <= bestDist2)
+                {
+                    bestVert = v;
+                    bestDist2 = dist2;
+                }
+            }
+        }
+
+        return bestVert == null ? null
+                : new BezierMeshVertex2i<VertexData>(this, bestVert);
+    }
+
+    /**
+     * Search rings of grid cells outwards from the point until no
+     * closer vertex can be found.  Ties go to the highest id, the same
+     * as a linear search.
+     *
+     * @return Closest vertex, or null if the search would visit more
+     * cells than there are vertices
+     */
+    private VertexRecord findClosestVertexIndexed(double x, double y)
+    {
+        double cellSize = 1 << vertGrid.getCellShift();
+        int firstRing = vertGrid.getFirstRing(x, y);
+        int lastRing = vertGrid.getLastRing(x, y);
+        long cellsLeft = vertTable.size();
+
         double bestDist2 = Double.POSITIVE_INFINITY;
-        BezierMeshVertex2i bestVert = null;
-        for (BezierMeshVertex2i v: vertMap.values())
+        VertexRecord bestVert = null;
+        for (int ring = firstRing; ring <= lastRing; ++ring)
         {
-            Coord c = v.getCoord();
-            double dist2 = Math2DUtil.distSquared(c.x, c.y, x, y);
-            if (dist2 <= bestDist2)
+            if (bestVert != null && ring > 0)
             {
-                bestVert = v;
-                bestDist2 = dist2;
+                //Every point in this ring is at least this far away
+                double ringDist = (ring - 1) * cellSize;
+                if (ringDist * ringDist > bestDist2)
+                {
+                    break;
+                }
+            }
+
+            cellsLeft -= ring == 0 ? 1 : 8L * ring;
+            if (cellsLeft < 0)
+            {
+                return null;
+            }
+
+            int[] ids = vertGrid.queryRing(x, y, ring);
+            for (int i = 0; i < ids.length; ++i)
+            {
+                VertexRecord v = vertTable.get(ids[i]);
+                Coord c = v.coord;
+                double dist2 = Math2DUtil.distSquared(c.x, c.y, x, y);
+                if (dist2 < bestDist2
+                        || (dist2 == bestDist2 && v.id > bestVert.id))
+                {
+                    bestVert = v;
+                    bestDist2 = dist2;
+                }
             }
         }
         return bestVert;
@@ -137,18 +225,28 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
 
     /**
      * Finds the edge closest to the given point.
-     * 
+     *
      * @param x
      * @param y
      * @param maxDistSq
-     * @return 
+     * @return
      */
     public BezierMeshEdge2i<EdgeData> getClosestEdge(double x, double y, double maxDistSq)
     {
         double bestDistSq = maxDistSq;
         BezierMeshEdge2i bestEdge = null;
-        
-        ArrayList<BezierMeshEdge2i> edges = getEdges();
+
+        ArrayList<BezierMeshEdge2i> edges;
+        if (!Double.isInfinite(maxDistSq) && useIndex())
+        {
+            double radius = Math.sqrt(maxDistSq);
+            edges = getEdgeViews(edgeGrid.query(x - radius, y - radius,
+                    x + radius, y + radius));
+        }
+        else
+        {
+            edges = getEdges();
+        }
         for (BezierMeshEdge2i e: edges)
         {
             BezierCurve2i c = e.asCurve();
@@ -157,9 +255,9 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
                 //Bounding box test to filter out points too far away
                 continue;
             }
-            
+
             PickPoint pt = c.getClosestPoint(x, y);
-            
+
             if (pt.getDistSquared() <= bestDistSq)
             {
                 bestEdge = e;
@@ -168,60 +266,243 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
         }
         return bestEdge;
     }
-    
+
     public ArrayList<BezierMeshVertex2i> getVertices()
     {
-        return new ArrayList<BezierMeshVertex2i>(vertMap.values());
+        ArrayList<VertexRecord> verts = vertTable.values();
+        ArrayList<BezierMeshVertex2i> list =
+                new ArrayList<BezierMeshVertex2i>(verts.size());
+        for (VertexRecord v: verts)
+        {
+            list.add(new BezierMeshVertex2i<VertexData>(this, v));
+        }
+        return list;
+    }
+
+    /**
+     * @return Vertex with given id, or null if this mesh has no
+     * such vertex
+     */
+    public BezierMeshVertex2i<VertexData> getVertex(int id)
+    {
+        VertexRecord v = vertTable.get(id);
+        return v == null ? null : new BezierMeshVertex2i<VertexData>(this, v);
+    }
+
+    /**
+     * @return Edge with given id, or null if this mesh has no
+     * such edge
+     */
+    public BezierMeshEdge2i<EdgeData> getEdge(int id)
+    {
+        EdgeRecord e = edgeTable.get(id);
+        return e == null ? null : new BezierMeshEdge2i<EdgeData>(this, e);
+    }
+
+    public int getNumVertices()
+    {
+        return vertTable.size();
+    }
+
+    public int getNumEdges()
+    {
+        return edgeTable.size();
+    }
+
+    /**
+     * @return the spatialIndexEnabled
+     */
+    public boolean isSpatialIndexEnabled()
+    {
+        return spatialIndexEnabled;
+    }
+
+    /**
+     * @param spatialIndexEnabled If false, all searches look at every
+     * vertex and edge and no grid is kept.
+     */
+    public void setSpatialIndexEnabled(boolean spatialIndexEnabled)
+    {
+        this.spatialIndexEnabled = spatialIndexEnabled;
+        if (!spatialIndexEnabled)
+        {
+            edgeGrid = null;
+            vertGrid = null;
+        }
+    }
+
+    /**
+     * Builds the grid if the mesh has become large enough to need it.
+     *
+     * @return true if the grid is available
+     */
+    private boolean useIndex()
+    {
+        if (edgeGrid != null)
+        {
+            return true;
+        }
+        if (!spatialIndexEnabled || edgeTable.size() < INDEX_MIN_EDGES)
+        {
+            return false;
+        }
+
+        ArrayList<EdgeRecord> edges = edgeTable.values();
+
+        //Size cells to fit a typical edge
+        long span = 0;
+        for (EdgeRecord e: edges)
+        {
+            span += Math.max((long)e.getMaxX() - e.getMinX(),
+                    (long)e.getMaxY() - e.getMinY());
+        }
+        long avgSpan = span / edges.size();
+        int shift = MIN_CELL_SHIFT;
+        while (shift < 30 && (1L << shift) < avgSpan)
+        {
+            ++shift;
+        }
+
+        edgeGrid = new MeshGrid(shift);
+        vertGrid = new MeshGrid(shift);
+        for (EdgeRecord e: edges)
+        {
+            edgeGrid.insert(e.id, e.getMinX(), e.getMinY(),
+                    e.getMaxX(), e.getMaxY(), owner);
+        }
+        for (VertexRecord v: vertTable.values())
+        {
+            vertGrid.insert(v.id, v.coord.x, v.coord.y,
+                    v.coord.x, v.coord.y, owner);
+        }
+        return true;
+    }
+
+    private ArrayList<BezierMeshEdge2i> getEdgeViews(int[] ids)
+    {
+        ArrayList<BezierMeshEdge2i> edges =
+                new ArrayList<BezierMeshEdge2i>(ids.length);
+        for (int i = 0; i < ids.length; ++i)
+        {
+            edges.add(new BezierMeshEdge2i<EdgeData>(this, edgeTable.get(ids[i])));
+        }
+        return edges;
+    }
+
+    /**
+     * @return Edges that may overlap the bounds of the curve, in
+     * order of id
+     */
+    private ArrayList<BezierMeshEdge2i> getEdgesNear(BezierCurve2i curve)
+    {
+        if (!useIndex())
+        {
+            return getEdges();
+        }
+        return getEdgeViews(edgeGrid.query(
+                curve.getMinX(), curve.getMinY(),
+                curve.getMaxX(), curve.getMaxY()));
     }
-    
+
     abstract protected VertexData createDefaultVertexData(Coord c);
-    
-    protected BezierMeshVertex2i getOrCreateVertex(Coord c)
+
+    private HashMap<Coord, Integer> getCoordIndex()
+    {
+        if (coordIndex == null)
+        {
+            ArrayList<VertexRecord> verts = vertTable.values();
+            coordIndex = new HashMap<Coord, Integer>(verts.size() * 2);
+            for (VertexRecord v: verts)
+            {
+                coordIndex.put(v.coord, v.id);
+            }
+        }
+        return coordIndex;
+    }
+
+    /**
+     * Find the vertex at the coordinate.  Uses the grid if there is one
+     * and the coordinate map has not been built, since building the map
+     * takes time proportional to the size of the mesh.
+     */
+    private VertexRecord findVertex(Coord c)
+    {
+        if (coordIndex == null && useIndex())
+        {
+            int[] ids = vertGrid.query(c.x, c.y, c.x, c.y);
+            for (int i = 0; i < ids.length; ++i)
+            {
+                VertexRecord v = vertTable.get(ids[i]);
+                if (v.coord.equals(c))
+                {
+                    return v;
+                }
+            }
+            return null;
+        }
+
+        Integer id = getCoordIndex().get(c);
+        return id == null ? null : vertTable.get(id);
+    }
+
+    protected BezierMeshVertex2i<VertexData> getOrCreateVertex(Coord c)
     {
-        BezierMeshVertex2i v = vertMap.get(c);
-        if (v == null)
+        VertexRecord v = findVertex(c);
+        if (v != null)
         {
-            v = new BezierMeshVertex2i(nextVertId++, c, createDefaultVertexData(c));
-            vertMap.put(c, v);
+            return new BezierMeshVertex2i<VertexData>(this, v);
         }
-        return v;
+
+        v = new VertexRecord(nextVertId++, c,
+                createDefaultVertexData(c), owner,
+                VertexRecord.NO_EDGES, VertexRecord.NO_EDGES);
+        putVertex(v);
+        if (coordIndex != null)
+        {
+            coordIndex.put(c, v.id);
+        }
+        return new BezierMeshVertex2i<VertexData>(this, v);
     }
-    
+
     public ArrayList<BezierMeshEdge2i> getEdges()
     {
-        ArrayList<BezierMeshEdge2i> edges = new ArrayList<BezierMeshEdge2i>();
-        for (BezierMeshVertex2i v: vertMap.values())
+        ArrayList<EdgeRecord> records = edgeTable.values();
+        ArrayList<BezierMeshEdge2i> edges =
+                new ArrayList<BezierMeshEdge2i>(records.size());
+        for (EdgeRecord e: records)
         {
-            edges.addAll(v.edgesOut);
+            edges.add(new BezierMeshEdge2i<EdgeData>(this, e));
         }
         return edges;
     }
-    
+
     public ArrayList<BezierMeshEdge2i> addEdge(BezierCurve2i curve, EdgeData data)
     {
         if (curve.isPoint())
         {
             return new ArrayList<BezierMeshEdge2i>();
         }
-        
+
         ArrayList<BezierCurve2i> insertCurves = new ArrayList<BezierCurve2i>();
         insertCurves.add(curve);
-        
-        //Cut existing curves and collect list of curves to insert
-        ArrayList<BezierMeshEdge2i> initEdges = getEdges();
+
+        //Cut existing curves and collect list of curves to insert.
+        // Pieces of the curve stay within its bounds, so only edges
+        // near the whole curve need to be tested.
+        ArrayList<BezierMeshEdge2i> initEdges = getEdgesNear(curve);
         for (BezierMeshEdge2i e1: initEdges)
         {
             for (int i = 0; i < insertCurves.size(); ++i)
             {
                 BezierCurve2i c0 = insertCurves.get(i);
-                
+
                 if (!e1.isBoundingBoxOverlap(c0))
                 {
                     continue;
                 }
 
                 BezierCurve2i c1 = e1.asCurve();
-                BezierCurve2i[][] splitCurves = 
+                BezierCurve2i[][] splitCurves =
                         CurveCutter2i.cutCurves(c0, c1, flatnessSquared);
 
                 BezierCurve2i[] cuts0 = splitCurves[0];
@@ -231,7 +512,7 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
                 {
                     //Replace current edge with cut sections
                     removeEdge(e1);
-                    
+
                     for (int j = 0; j < cuts1.length; ++j)
                     {
                         BezierCurve2i cm = cuts1[j];
@@ -242,7 +523,7 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
                         addEdgeDirect(cm, e1.getData());
                     }
                 }
-                
+
                 if (cuts0.length > 1)
                 {
                     insertCurves.remove(i);
@@ -256,13 +537,13 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
                         ++i;
                         insertCurves.add(i, cuts0[j]);
                     }
-                    
+
 //                    insertCurves.addAll(i, Arrays.asList(cuts0));
 //                    i += cuts0.length - 1;
                 }
             }
         }
-        
+
         //Add new curve pieces
         ArrayList<BezierMeshEdge2i> retEdges = new ArrayList<BezierMeshEdge2i>();
         for (BezierCurve2i c: insertCurves)
@@ -271,8 +552,117 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
         }
         return retEdges;
     }
-    
-    protected BezierMeshEdge2i addEdgeDirect(BezierCurve2i curve, Object data)
+
+    /**
+     * Add many curves at once, such as all the curves of an imported
+     * shape.  This is like calling addEdge() for each curve in turn,
+     * but all crossings between the new curves and the edges they
+     * overlap are found in a single sweep.  Each vertex and edge is
+     * then created once, rather than edges being removed and recut as
+     * every later curve is added.  Since crossings are found on the
+     * whole curves rather than on pieces already cut and rounded,
+     * crossing points may land a few units away from where adding the
+     * curves one at a time would put them.
+     *
+     * @param curves Curves to add
+     * @param data Data for each curve, in the same order
+     * @return Edges made from the new curves
+     */
+    public ArrayList<BezierMeshEdge2i> addEdges(
+            List<? extends BezierCurve2i> curves,
+            List<? extends EdgeData> data)
+    {
+        ArrayList<BezierCurve2i> newCurves = new ArrayList<BezierCurve2i>();
+        ArrayList<EdgeData> dataList = new ArrayList<EdgeData>();
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < curves.size(); ++i)
+        {
+            BezierCurve2i curve = curves.get(i);
+            if (curve.isPoint())
+            {
+                continue;
+            }
+            newCurves.add(curve);
+            dataList.add(data.get(i));
+            minX = Math.min(minX, curve.getMinX());
+            minY = Math.min(minY, curve.getMinY());
+            maxX = Math.max(maxX, curve.getMaxX());
+            maxY = Math.max(maxY, curve.getMaxY());
+        }
+
+        ArrayList<BezierMeshEdge2i> retEdges = new ArrayList<BezierMeshEdge2i>();
+        if (newCurves.isEmpty())
+        {
+            return retEdges;
+        }
+
+        ArrayList<BezierMeshEdge2i> nearEdges = useIndex()
+                ? getEdgeViews(edgeGrid.query(minX, minY, maxX, maxY))
+                : getEdges();
+        ArrayList<BezierMeshEdge2i> initEdges = new ArrayList<BezierMeshEdge2i>();
+        for (BezierMeshEdge2i e: nearEdges)
+        {
+            EdgeRecord rec = edgeTable.get(e.getId());
+            if (rec.getMaxX() >= minX && rec.getMinX() <= maxX
+                    && rec.getMaxY() >= minY && rec.getMinY() <= maxY)
+            {
+                initEdges.add(e);
+            }
+        }
+
+        //Existing edges go first, since they were added before the
+        // new curves
+        int numInit = initEdges.size();
+        ArrayList<BezierCurve2i> cutList =
+                new ArrayList<BezierCurve2i>(numInit + newCurves.size());
+        for (BezierMeshEdge2i e: initEdges)
+        {
+            cutList.add(e.asCurve());
+        }
+        cutList.addAll(newCurves);
+
+        BezierCurve2i[][] parts =
+                CurveCutter2i.cutCurves(cutList, flatnessSquared);
+
+        for (int i = 0; i < numInit; ++i)
+        {
+            BezierCurve2i[] cuts = parts[i];
+            if (cuts.length == 1)
+            {
+                continue;
+            }
+
+            //Replace current edge with cut sections
+            BezierMeshEdge2i e = initEdges.get(i);
+            removeEdge(e);
+            for (int j = 0; j < cuts.length; ++j)
+            {
+                if (!cuts[j].isPoint())
+                {
+                    addEdgeDirect(cuts[j], e.getData());
+                }
+            }
+        }
+
+        for (int i = numInit; i < parts.length; ++i)
+        {
+            BezierCurve2i[] cuts = parts[i];
+            EdgeData curveData = dataList.get(i - numInit);
+            for (int j = 0; j < cuts.length; ++j)
+            {
+                if (!cuts[j].isPoint())
+                {
+                    retEdges.add(addEdgeDirect(cuts[j], curveData));
+                }
+            }
+        }
+        return retEdges;
+    }
+
+    protected BezierMeshEdge2i<EdgeData> addEdgeDirect(BezierCurve2i curve, Object data)
     {
         Coord c0 = new Coord(curve.getStartX(), curve.getStartY());
         Coord c1 = new Coord(curve.getEndX(), curve.getEndY());
@@ -282,40 +672,33 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
         BezierCubic2i cubic = curve.asCubic();
         Coord k0 = new Coord(cubic.getAx1(), cubic.getAy1());
         Coord k1 = new Coord(cubic.getAx2(), cubic.getAy2());
-        
-        BezierMeshEdge2i edge;
-        if (curve.getOrder() == 2)
-        {
-            edge = new BezierMeshEdge2i(nextEdgeId++, vm0, vm1, data, 
-                    BezierVertexSmooth.CORNER, BezierVertexSmooth.CORNER, 
-                    k0, k1);
-        }
-        else
-        {
-            edge = new BezierMeshEdge2i(nextEdgeId++, vm0, vm1, data, 
-                    BezierVertexSmooth.SMOOTH, BezierVertexSmooth.SMOOTH, 
-                    k0, k1);
-        }
-        
-        vm0.edgesOut.add(edge);
-        vm1.edgesIn.add(edge);
-        return edge;
+
+        BezierVertexSmooth smooth = curve.getOrder() == 2
+                ? BezierVertexSmooth.CORNER : BezierVertexSmooth.SMOOTH;
+
+        //Data passed in may be shared by several edges, so this mesh
+        // does not own it
+        EdgeRecord edge = new EdgeRecord(nextEdgeId++,
+                vm0.getId(), vm1.getId(), c0, c1, k0, k1,
+                smooth, smooth, data, null);
+        putEdge(edge);
+        linkEdge(edge);
+
+        return new BezierMeshEdge2i<EdgeData>(this, edge);
     }
-    
+
     public void removeEdge(BezierMeshEdge2i e)
     {
-        BezierMeshVertex2i v0 = e.getStart();
-        BezierMeshVertex2i v1 = e.getEnd();
-        
-        if (vertMap.get(v0.getCoord()) != v0 
-                || vertMap.get(v1.getCoord()) != v1)
+        EdgeRecord edge = e.mesh == this ? edgeTable.get(e.getId()) : null;
+        if (edge == null)
         {
             throw new UnsupportedOperationException("Graph does not contain edge");
         }
-        
-        v0.edgesOut.remove(e);
-        v1.edgesIn.remove(e);
-        
+
+        unlinkEdge(edge);
+        setEdgeRecord(edge.id, null);
+        ++modCount;
+
 //        if (v0.isEmpty())
 //        {
 //            vertMap.remove(v0.getCoord());
@@ -329,13 +712,11 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
 
     public void removeEmptyVertices()
     {
-        for (Iterator<BezierMeshVertex2i> it = vertMap.values().iterator();
-                it.hasNext();)
+        for (VertexRecord v: vertTable.values())
         {
-            BezierMeshVertex2i v = it.next();
             if (v.isEmpty())
             {
-                it.remove();
+                deleteVertex(v);
             }
         }
     }
@@ -346,56 +727,62 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
         {
             throw new UnsupportedOperationException();
         }
-        
-        if (!vertMap.containsKey(v.getCoord()))
+
+        VertexRecord vert = v.mesh == this ? vertTable.get(v.getId()) : null;
+        if (vert == null)
         {
             throw new UnsupportedOperationException();
         }
-        
-        vertMap.remove(v.getCoord());
+
+        deleteVertex(vert);
     }
 
     /**
      * Vertices that are empty can be moved.  This is mainly done
-     * during vertex dragging operations.  Vertices must be empty to be 
+     * during vertex dragging operations.  Vertices must be empty to be
      * moved to prevent overlapping edge segments.
-     * 
-     * @param moveVertexMap 
+     *
+     * @param moveVertexMap
      */
     public void moveEmptyVertices(HashMap<Coord, Coord> moveVertexMap)
     {
+        HashMap<Coord, Integer> index = getCoordIndex();
+
         //Remove current vertices
-        ArrayList<BezierMeshVertex2i> vertList = new ArrayList<BezierMeshVertex2i>();
+        ArrayList<VertexRecord> vertList = new ArrayList<VertexRecord>();
         for (Coord c0: moveVertexMap.keySet())
         {
-            BezierMeshVertex2i v = vertMap.remove(c0);
+            VertexRecord v = vertTable.get(index.remove(c0));
             if (!v.isEmpty())
             {
                 throw new UnsupportedOperationException("Vertex not empty");
             }
             vertList.add(v);
         }
-        
+
         //Reinsert vertices
-        for (BezierMeshVertex2i v: vertList)
+        for (VertexRecord v: vertList)
         {
-            Coord c0 = v.getCoord();
+            Coord c0 = v.coord;
             Coord c1 = moveVertexMap.get(c0);
-            
-            if (vertMap.containsKey(c1))
+
+            if (index.containsKey(c1))
             {
+                //Merges with vertex already there
+                setVertexRecord(v.id, null);
                 continue;
             }
-            
-            v.setCoord(c1);
-            vertMap.put(c1, v);
+
+            putVertex(v.setCoord(c1));
+            index.put(c1, v.id);
         }
+        ++modCount;
     }
 
     public ArrayList<CutLoop> createFaces()
     {
         ArrayList<BezierMeshEdge2i> edges = getEdges();
-        
+
         ArrayList<CutSegment> segments = new ArrayList<CutSegment>();
         for (BezierMeshEdge2i e: edges)
         {
@@ -403,7 +790,337 @@ abstract public class BezierMesh2i<VertexData, EdgeData>
 
             CutSegment.createSegments(c, e, flatnessSquared, segments);
         }
-        
+
         return CutGraph.createFaces(segments);
     }
+
+    //-----------------------------
+    // Record updates.  These are called by the vertex and edge views.
+
+    VertexRecord getVertexRecord(int id)
+    {
+        return vertTable.get(id);
+    }
+
+    EdgeRecord getEdgeRecord(int id)
+    {
+        return edgeTable.get(id);
+    }
+
+    void putVertex(VertexRecord v)
+    {
+        setVertexRecord(v.id, v);
+        ++modCount;
+    }
+
+    void putEdge(EdgeRecord e)
+    {
+        setEdgeRecord(e.id, e);
+        ++modCount;
+    }
+
+    private void setVertexRecord(int id, VertexRecord v)
+    {
+        VertexRecord old = vertTable.set(id, v, owner);
+        if (vertGrid == null)
+        {
+            return;
+        }
+
+        if (old != null && v != null && old.coord.equals(v.coord))
+        {
+            return;
+        }
+        if (old != null)
+        {
+            vertGrid.remove(id, old.coord.x, old.coord.y,
+                    old.coord.x, old.coord.y, owner);
+        }
+        if (v != null)
+        {
+            vertGrid.insert(id, v.coord.x, v.coord.y,
+                    v.coord.x, v.coord.y, owner);
+        }
+    }
+
+    private void setEdgeRecord(int id, EdgeRecord e)
+    {
+        EdgeRecord old = edgeTable.set(id, e, owner);
+        if (edgeGrid == null)
+        {
+            return;
+        }
+
+        if (old != null && e != null
+                && old.getMinX() == e.getMinX() && old.getMinY() == e.getMinY()
+                && old.getMaxX() == e.getMaxX() && old.getMaxY() == e.getMaxY())
+        {
+            return;
+        }
+        if (old != null)
+        {
+            edgeGrid.remove(id, old.getMinX(), old.getMinY(),
+                    old.getMaxX(), old.getMaxY(), owner);
+        }
+        if (e != null)
+        {
+            edgeGrid.insert(id, e.getMinX(), e.getMinY(),
+                    e.getMaxX(), e.getMaxY(), owner);
+        }
+    }
+
+    private void deleteVertex(VertexRecord v)
+    {
+        setVertexRecord(v.id, null);
+        if (coordIndex != null)
+        {
+            coordIndex.remove(v.coord);
+        }
+        ++modCount;
+    }
+
+    private void linkEdge(EdgeRecord e)
+    {
+        VertexRecord v0 = vertTable.get(e.start);
+        putVertex(v0.setEdgesOut(VertexRecord.append(v0.edgesOut, e.id)));
+
+        //Fetch after updating in case edge is a loop
+        VertexRecord v1 = vertTable.get(e.end);
+        putVertex(v1.setEdgesIn(VertexRecord.append(v1.edgesIn, e.id)));
+    }
+
+    private void unlinkEdge(EdgeRecord e)
+    {
+        VertexRecord v0 = vertTable.get(e.start);
+        putVertex(v0.setEdgesOut(VertexRecord.remove(v0.edgesOut, e.id)));
+
+        VertexRecord v1 = vertTable.get(e.end);
+        putVertex(v1.setEdgesIn(VertexRecord.remove(v1.edgesIn, e.id)));
+    }
+
+    void moveVertex(VertexRecord v, Coord coord)
+    {
+        if (coordIndex != null)
+        {
+            Integer id = coordIndex.get(v.coord);
+            if (id != null && id == v.id)
+            {
+                coordIndex.remove(v.coord);
+            }
+            coordIndex.put(coord, v.id);
+        }
+
+        putVertex(v.setCoord(coord));
+
+        //Edges keep a copy of their end points
+        for (int i = 0; i < v.edgesOut.length; ++i)
+        {
+            EdgeRecord e = edgeTable.get(v.edgesOut[i]);
+            putEdge(e.setStart(v.id, coord));
+        }
+        for (int i = 0; i < v.edgesIn.length; ++i)
+        {
+            EdgeRecord e = edgeTable.get(v.edgesIn[i]);
+            putEdge(e.setEnd(v.id, coord));
+        }
+    }
+
+    void reconnectEdge(EdgeRecord e, EdgeRecord newEdge)
+    {
+        unlinkEdge(e);
+        putEdge(newEdge);
+        linkEdge(newEdge);
+    }
+
+    //-----------------------------
+    /**
+     * Immutable state of a vertex
+     */
+    static class VertexRecord
+    {
+        static final int[] NO_EDGES = new int[0];
+
+        final int id;
+        final Coord coord;
+        final Object data;
+        //Mesh owner that may modify data in place
+        final Object dataOwner;
+        final int[] edgesIn;
+        final int[] edgesOut;
+
+        public VertexRecord(int id, Coord coord, Object data, Object dataOwner,
+                int[] edgesIn, int[] edgesOut)
+        {
+            this.id = id;
+            this.coord = coord;
+            this.data = data;
+            this.dataOwner = dataOwner;
+            this.edgesIn = edgesIn;
+            this.edgesOut = edgesOut;
+        }
+
+        public boolean isEmpty()
+        {
+            return edgesIn.length == 0 && edgesOut.length == 0;
+        }
+
+        public VertexRecord setCoord(Coord coord)
+        {
+            return new VertexRecord(id, coord, data, dataOwner, edgesIn, edgesOut);
+        }
+
+        public VertexRecord setData(Object data, Object dataOwner)
+        {
+            return new VertexRecord(id, coord, data, dataOwner, edgesIn, edgesOut);
+        }
+
+        public VertexRecord setEdgesIn(int[] edgesIn)
+        {
+            return new VertexRecord(id, coord, data, dataOwner, edgesIn, edgesOut);
+        }
+
+        public VertexRecord setEdgesOut(int[] edgesOut)
+        {
+            return new VertexRecord(id, coord, data, dataOwner, edgesIn, edgesOut);
+        }
+
+        static int[] append(int[] ids, int id)
+        {
+            int[] newIds = new int[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, ids.length);
+            newIds[ids.length] = id;
+            return newIds;
+        }
+
+        static int[] remove(int[] ids, int id)
+        {
+            for (int i = 0; i < ids.length; ++i)
+            {
+                if (ids[i] == id)
+                {
+                    if (ids.length == 1)
+                    {
+                        return NO_EDGES;
+                    }
+                    int[] newIds = new int[ids.length - 1];
+                    System.arraycopy(ids, 0, newIds, 0, i);
+                    System.arraycopy(ids, i + 1, newIds, i, ids.length - i - 1);
+                    return newIds;
+                }
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Immutable state of an edge.  The coordinates of the end vertices
+     * are copied here so that edge geometry can be read without
+     * looking up the vertices.
+     */
+    static class EdgeRecord
+    {
+        final int id;
+        final int start;
+        final int end;
+        final Coord c0;
+        final Coord c1;
+        final Coord k0;
+        final Coord k1;
+        final BezierVertexSmooth smooth0;
+        final BezierVertexSmooth smooth1;
+        final Object data;
+        //Mesh owner that may modify data in place
+        final Object dataOwner;
+
+        public EdgeRecord(int id, int start, int end,
+                Coord c0, Coord c1, Coord k0, Coord k1,
+                BezierVertexSmooth smooth0, BezierVertexSmooth smooth1,
+                Object data, Object dataOwner)
+        {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.c0 = c0;
+            this.c1 = c1;
+            this.k0 = k0;
+            this.k1 = k1;
+            this.smooth0 = smooth0;
+            this.smooth1 = smooth1;
+            this.data = data;
+            this.dataOwner = dataOwner;
+        }
+
+        public EdgeRecord setStart(int start, Coord c0)
+        {
+            return new EdgeRecord(id, start, end, c0, c1, k0, k1,
+                    smooth0, smooth1, data, dataOwner);
+        }
+
+        public EdgeRecord setEnd(int end, Coord c1)
+        {
+            return new EdgeRecord(id, start, end, c0, c1, k0, k1,
+                    smooth0, smooth1, data, dataOwner);
+        }
+
+        public EdgeRecord setKnots(Coord k0, Coord k1)
+        {
+            return new EdgeRecord(id, start, end, c0, c1, k0, k1,
+                    smooth0, smooth1, data, dataOwner);
+        }
+
+        public EdgeRecord setSmooth(BezierVertexSmooth smooth0,
+                BezierVertexSmooth smooth1)
+        {
+            return new EdgeRecord(id, start, end, c0, c1, k0, k1,
+                    smooth0, smooth1, data, dataOwner);
+        }
+
+        public EdgeRecord setData(Object data, Object dataOwner)
+        {
+            return new EdgeRecord(id, start, end, c0, c1, k0, k1,
+                    smooth0, smooth1, data, dataOwner);
+        }
+
+        public boolean isLine()
+        {
+            return smooth0 == BezierVertexSmooth.CORNER
+                    && smooth1 == BezierVertexSmooth.CORNER;
+        }
+
+        public int getMinX()
+        {
+            if (isLine())
+            {
+                return Math.min(c0.x, c1.x);
+            }
+            return Math.min(Math.min(c0.x, c1.x), Math.min(k0.x, k1.x));
+        }
+
+        public int getMaxX()
+        {
+            if (isLine())
+            {
+                return Math.max(c0.x, c1.x);
+            }
+            return Math.max(Math.max(c0.x, c1.x), Math.max(k0.x, k1.x));
+        }
+
+        public int getMinY()
+        {
+            if (isLine())
+            {
+                return Math.min(c0.y, c1.y);
+            }
+            return Math.min(Math.min(c0.y, c1.y), Math.min(k0.y, k1.y));
+        }
+
+        public int getMaxY()
+        {
+            if (isLine())
+            {
+                return Math.max(c0.y, c1.y);
+            }
+            return Math.max(Math.max(c0.y, c1.y), Math.max(k0.y, k1.y));
+        }
+    }
 }
@@ -19,75 +19,84 @@ package com.kitfox.coyote.shape.bezier.mesh;
 import com.kitfox.coyote.shape.bezier.BezierCubic2i;
 import com.kitfox.coyote.shape.bezier.BezierCurve2i;
 import com.kitfox.coyote.shape.bezier.BezierLine2i;
+import com.kitfox.coyote.shape.bezier.mesh.BezierMesh2i.EdgeRecord;
+import com.kitfox.coyote.shape.bezier.mesh.BezierMesh2i.VertexRecord;
 import com.kitfox.coyote.shape.bezier.path.cut.Coord;
-import static java.lang.Math.*;
 import java.util.ArrayList;
 
 /**
+ * View of an edge in a {@link BezierMesh2i}.  If the edge is
+ * removed from the mesh, the view keeps returning its last state.
  *
  * @author kitfox
  */
 public class BezierMeshEdge2i<EdgeData>
 {
+    final BezierMesh2i<?, EdgeData> mesh;
     private final int id;
-    private BezierMeshVertex2i start;
-    private BezierMeshVertex2i end;
-    private EdgeData data;
-    private BezierVertexSmooth smooth0;
-    private BezierVertexSmooth smooth1;
-    
-    private Coord k0;
-    private Coord k1;
+    private EdgeRecord rec;
+    private int modCount;
 
-    public BezierMeshEdge2i(int id, BezierMeshVertex2i start, BezierMeshVertex2i end)
+    BezierMeshEdge2i(BezierMesh2i<?, EdgeData> mesh, EdgeRecord rec)
     {
-        this(id, start, end, null);
+        this.mesh = mesh;
+        this.id = rec.id;
+        this.rec = rec;
+        this.modCount = mesh.modCount;
     }
 
-    public BezierMeshEdge2i(int id, BezierMeshVertex2i start, BezierMeshVertex2i end, EdgeData data)
+    private EdgeRecord rec()
     {
-        this(id, start, end, data, 
-                BezierVertexSmooth.CORNER, BezierVertexSmooth.CORNER,
-                start.getCoord(), end.getCoord());
+        if (modCount != mesh.modCount)
+        {
+            EdgeRecord cur = mesh.getEdgeRecord(id);
+            if (cur != null)
+            {
+                rec = cur;
+            }
+            modCount = mesh.modCount;
+        }
+        return rec;
     }
 
-    public BezierMeshEdge2i(int id, BezierMeshVertex2i start, BezierMeshVertex2i end,
-            EdgeData data, 
-            BezierVertexSmooth smooth0, BezierVertexSmooth smooth1, 
-            Coord k0, Coord k1)
+    private boolean isInMesh()
     {
-        this.id = id;
-        this.start = start;
-        this.end = end;
-        this.data = data;
-        this.smooth0 = smooth0;
-        this.smooth1 = smooth1;
-        this.k0 = k0;
-        this.k1 = k1;
+        return mesh.getEdgeRecord(id) != null;
     }
-    
+
+    private void update(EdgeRecord newRec)
+    {
+        //Do not bring back an edge that has been removed
+        if (isInMesh())
+        {
+            mesh.putEdge(newRec);
+        }
+        rec = newRec;
+        modCount = mesh.modCount;
+    }
+
     public boolean isLine()
     {
-        return smooth0 == BezierVertexSmooth.CORNER
-                && smooth1 == BezierVertexSmooth.CORNER;
+        return rec().isLine();
     }
-    
+
     public BezierCurve2i asCurve()
     {
-        Coord c0 = start.getCoord();
-        Coord c1 = end.getCoord();
-        
-        if (isLine())
+        EdgeRecord cur = rec();
+        Coord c0 = cur.c0;
+        Coord c1 = cur.c1;
+
+        if (cur.isLine())
         {
             return new BezierLine2i(c0.x, c0.y, c1.x, c1.y);
         }
 
-        return new BezierCubic2i(c0.x, c0.y, 
-                k0.x, k0.y,
-                k1.x, k1.y,
+        return new BezierCubic2i(c0.x, c0.y,
+                cur.k0.x, cur.k0.y,
+                cur.k1.x, cur.k1.y,
                 c1.x, c1.y);
     }
-    
+
     public boolean isBoundingBoxOverlap(BezierMeshEdge2i e1)
     {
         return e1.getMaxX() >= getMinX()
@@ -98,64 +107,49 @@ public class BezierMeshEdge2i<EdgeData>
 
     boolean isBoundingBoxOverlap(BezierCurve2i c)
     {
-//        return !(c.getMaxX() < getMinX() 
-//                || c.getMinX() > getMaxX()
-//                || c.getMaxY() < getMinY()
-//                || c.getMinY() > getMaxY()
-//                );
-        
-        return c.getMaxX() >= getMinX()
-                && c.getMinX() <= getMaxX()
-                && c.getMaxY() >= getMinY()
-                && c.getMinY() <= getMaxY();
-    }
-    
+        EdgeRecord cur = rec();
+        return c.getMaxX() >= cur.getMinX()
+                && c.getMinX() <= cur.getMaxX()
+                && c.getMaxY() >= cur.getMinY()
+                && c.getMinY() <= cur.getMaxY();
+    }
+
     public int getMinX()
     {
-        Coord c0 = start.getCoord();
-        Coord c1 = end.getCoord();
-        
-        if (isLine())
-        {
-            return min(c0.x, c1.x);
-        }
-        return min(min(c0.x, c1.x), min(k0.x, k1.x));
+        return rec().getMinX();
     }
-    
+
     public int getMaxX()
     {
-        Coord c0 = start.getCoord();
-        Coord c1 = end.getCoord();
-        
-        if (isLine())
-        {
-            return max(c0.x, c1.x);
-        }
-        return max(max(c0.x, c1.x), max(k0.x, k1.x));
+        return rec().getMaxX();
     }
-    
+
     public int getMinY()
     {
-        Coord c0 = start.getCoord();
-        Coord c1 = end.getCoord();
-        
-        if (isLine())
-        {
-            return min(c0.y, c1.y);
-        }
-        return min(min(c0.y, c1.y), min(k0.y, k1.y));
+        return rec().getMinY();
     }
-    
+
     public int getMaxY()
     {
-        Coord c0 = start.getCoord();
-        Coord c1 = end.getCoord();
-        
-        if (isLine())
+        return rec().getMaxY();
+    }
+
+    private BezierMeshVertex2i<?> getVertex(int vertId, Coord coord)
+    {
+        VertexRecord v = mesh.getVertexRecord(vertId);
+        if (v == null)
         {
-            return max(c0.y, c1.y);
+            //Vertex has been removed.  Return a detached view.
+            v = new VertexRecord(vertId, coord, null, null,
+                    VertexRecord.NO_EDGES, VertexRecord.NO_EDGES);
         }
-        return max(max(c0.y, c1.y), max(k0.y, k1.y));
+        return createVertex(mesh, v);
+    }
+
+    private static <VertexData> BezierMeshVertex2i<VertexData> createVertex(
+            BezierMesh2i<VertexData, ?> mesh, VertexRecord v)
+    {
+        return new BezierMeshVertex2i<VertexData>(mesh, v);
     }
 
     /**
@@ -163,7 +157,8 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public BezierMeshVertex2i getStart()
     {
-        return start;
+        EdgeRecord cur = rec();
+        return getVertex(cur.start, cur.c0);
     }
 
     /**
@@ -171,7 +166,14 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public void setStart(BezierMeshVertex2i start)
     {
-        this.start = start;
+        EdgeRecord cur = rec();
+        EdgeRecord newRec = cur.setStart(start.getId(), start.getCoord());
+        if (isInMesh())
+        {
+            mesh.reconnectEdge(cur, newRec);
+        }
+        rec = newRec;
+        modCount = mesh.modCount;
     }
 
     /**
@@ -179,7 +181,8 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public BezierMeshVertex2i getEnd()
     {
-        return end;
+        EdgeRecord cur = rec();
+        return getVertex(cur.end, cur.c1);
     }
 
     /**
@@ -187,15 +190,23 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public void setEnd(BezierMeshVertex2i end)
     {
-        this.end = end;
+        EdgeRecord cur = rec();
+        EdgeRecord newRec = cur.setEnd(end.getId(), end.getCoord());
+        if (isInMesh())
+        {
+            mesh.reconnectEdge(cur, newRec);
+        }
+        rec = newRec;
+        modCount = mesh.modCount;
     }
 
     /**
-     * @return the data
+     * @return the data.  This may be shared with other copies of the
+     * mesh and should not be modified.
      */
     public EdgeData getData()
     {
-        return data;
+        return castData(rec().data);
     }
 
     /**
@@ -203,7 +214,37 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public void setData(EdgeData data)
     {
-        this.data = data;
+        update(rec().setData(data, null));
+    }
+
+    /**
+     * Get the data of this edge so that it can be modified in place.
+     * If the data is shared with another copy of the mesh or with
+     * another edge, it is copied first.
+     *
+     * @return the data
+     */
+    public EdgeData editData()
+    {
+        EdgeRecord cur = rec();
+        if (cur.data == null || cur.dataOwner == mesh.owner)
+        {
+            return castData(cur.data);
+        }
+
+        EdgeData data = mesh.copyEdgeData(castData(cur.data));
+        update(cur.setData(data, mesh.owner));
+        return data;
+    }
+
+    /**
+     * Records are shared by meshes of any data type, so they hold
+     * their data untyped
+     */
+    @SuppressWarnings("unchecked")
+    private EdgeData castData(Object data)
+    {
+        return (EdgeData)data;
     }
 
     /**
@@ -211,7 +252,7 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public Coord getK0()
     {
-        return k0;
+        return rec().k0;
     }
 
     /**
@@ -219,7 +260,8 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public void setK0(Coord k0)
     {
-        this.k0 = k0;
+        EdgeRecord cur = rec();
+        update(cur.setKnots(k0, cur.k1));
     }
 
     /**
@@ -227,7 +269,7 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public Coord getK1()
     {
-        return k1;
+        return rec().k1;
     }
 
     /**
@@ -235,7 +277,8 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public void setK1(Coord k1)
     {
-        this.k1 = k1;
+        EdgeRecord cur = rec();
+        update(cur.setKnots(cur.k0, k1));
     }
 
     /**
@@ -243,7 +286,7 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public BezierVertexSmooth getSmooth0()
     {
-        return smooth0;
+        return rec().smooth0;
     }
 
     /**
@@ -251,7 +294,8 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public void setSmooth0(BezierVertexSmooth smooth0)
     {
-        this.smooth0 = smooth0;
+        EdgeRecord cur = rec();
+        update(cur.setSmooth(smooth0, cur.smooth1));
     }
 
     /**
@@ -259,7 +303,7 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public BezierVertexSmooth getSmooth1()
     {
-        return smooth1;
+        return rec().smooth1;
     }
 
     /**
@@ -267,78 +311,82 @@ public class BezierMeshEdge2i<EdgeData>
      */
     public void setSmooth1(BezierVertexSmooth smooth1)
     {
-        this.smooth1 = smooth1;
+        EdgeRecord cur = rec();
+        update(cur.setSmooth(cur.smooth0, smooth1));
     }
 
     public ArrayList<BezierMeshEdge2i> getConnectedEdges()
     {
         ArrayList<BezierMeshEdge2i> list = new ArrayList<BezierMeshEdge2i>();
-        
-        for (BezierMeshEdge2i<EdgeData> e = getPrevEdge(); 
-                e != null && e != this;
+
+        for (BezierMeshEdge2i<EdgeData> e = getPrevEdge();
+                e != null && !e.equals(this);
                 e = e.getPrevEdge())
         {
             list.add(0, e);
         }
-        
+
         list.add(this);
-        
-        for (BezierMeshEdge2i<EdgeData> e = getNextEdge(); 
+
+        for (BezierMeshEdge2i<EdgeData> e = getNextEdge();
                 e != null && !list.contains(e);
                 e = e.getNextEdge())
         {
             list.add(e);
         }
-        
+
         return list;
     }
 
     public BezierMeshEdge2i<EdgeData> getPrevEdge()
     {
+        BezierMeshVertex2i<?> start = getStart();
         if (start.getNumEdges() != 2)
         {
             return null;
         }
-        
+
         BezierMeshEdge2i<EdgeData> e0 = start.getEdge(0);
         BezierMeshEdge2i<EdgeData> e1 = start.getEdge(1);
-        
-        if (e0 == e1)
+
+        if (e0.equals(e1))
         {
             return null;
         }
-        
-        return e0 == this ? e1 : e0;
+
+        return e0.equals(this) ? e1 : e0;
     }
 
     public BezierMeshEdge2i<EdgeData> getNextEdge()
     {
+        BezierMeshVertex2i<?> end = getEnd();
         if (end.getNumEdges() != 2)
         {
             return null;
         }
-        
+
         BezierMeshEdge2i<EdgeData> e0 = end.getEdge(0);
         BezierMeshEdge2i<EdgeData> e1 = end.getEdge(1);
-        
-        if (e0 == e1)
+
+        if (e0.equals(e1))
         {
             return null;
         }
-        
-        return e0 == this ? e1 : e0;
+
+        return e0.equals(this) ? e1 : e0;
     }
-    
+
     @Override
     public String toString()
     {
+        EdgeRecord cur = rec();
         return "edge "
-                + start.getCoord() + " "
-                + k0 + " "
-                + k1 + " "
-                + end.getCoord() + " "
-                + smooth0 + " "
-                + smooth1 + " ";
+                + cur.c0 + " "
+                + cur.k0 + " "
+                + cur.k1 + " "
+                + cur.c1 + " "
+                + cur.smooth0 + " "
+                + cur.smooth1 + " ";
     }
 
     /**
@@ -348,4 +396,21 @@ public class BezierMeshEdge2i<EdgeData>
     {
         return id;
     }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof BezierMeshEdge2i))
+        {
+            return false;
+        }
+        BezierMeshEdge2i<?> other = (BezierMeshEdge2i<?>)obj;
+        return mesh == other.mesh && id == other.id;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return id;
+    }
 }
@@ -16,28 +16,48 @@
 
 package com.kitfox.coyote.shape.bezier.mesh;
 
+import com.kitfox.coyote.shape.bezier.mesh.BezierMesh2i.VertexRecord;
 import com.kitfox.coyote.shape.bezier.path.cut.Coord;
 import java.util.ArrayList;
 
 /**
+ * View of a vertex in a {@link BezierMesh2i}.  If the vertex is
+ * removed from the mesh, the view keeps returning its last state.
  *
  * @author kitfox
  */
 public class BezierMeshVertex2i<VertexData>
 {
+    final BezierMesh2i<VertexData, ?> mesh;
     private final int id;
-    private Coord coord;
-    //User defined data stored per vertex
-    private VertexData data;
-    
-    final ArrayList<BezierMeshEdge2i> edgesIn = new ArrayList<BezierMeshEdge2i>();
-    final ArrayList<BezierMeshEdge2i> edgesOut = new ArrayList<BezierMeshEdge2i>();
+    private VertexRecord rec;
+    private int modCount;
 
-    public BezierMeshVertex2i(int id, Coord coord, VertexData data)
+    BezierMeshVertex2i(BezierMesh2i<VertexData, ?> mesh, VertexRecord rec)
     {
-        this.id = id;
-        this.coord = coord;
-        this.data = data;
+        this.mesh = mesh;
+        this.id = rec.id;
+        this.rec = rec;
+        this.modCount = mesh.modCount;
+    }
+
+    private VertexRecord rec()
+    {
+        if (modCount != mesh.modCount)
+        {
+            VertexRecord cur = mesh.getVertexRecord(id);
+            if (cur != null)
+            {
+                rec = cur;
+            }
+            modCount = mesh.modCount;
+        }
+        return rec;
+    }
+
+    private boolean isInMesh()
+    {
+        return mesh.getVertexRecord(id) != null;
     }
 
     /**
@@ -45,7 +65,7 @@ public class BezierMeshVertex2i<VertexData>
      */
     public Coord getCoord()
     {
-        return coord;
+        return rec().coord;
     }
 
     /**
@@ -53,15 +73,23 @@ public class BezierMeshVertex2i<VertexData>
      */
     public void setCoord(Coord coord)
     {
-        this.coord = coord;
+        if (isInMesh())
+        {
+            mesh.moveVertex(rec(), coord);
+        }
+        else
+        {
+            rec = rec().setCoord(coord);
+        }
     }
 
     /**
-     * @return the data
+     * @return the data.  This may be shared with other copies of the
+     * mesh and should not be modified.
      */
     public VertexData getData()
     {
-        return data;
+        return castData(rec().data);
     }
 
     /**
@@ -69,23 +97,77 @@ public class BezierMeshVertex2i<VertexData>
      */
     public void setData(VertexData data)
     {
-        this.data = data;
+        update(rec().setData(data, null));
+    }
+
+    /**
+     * Get the data of this vertex so that it can be modified in place.
+     * If the data is shared with another copy of the mesh, it is
+     * copied first.
+     *
+     * @return the data
+     */
+    public VertexData editData()
+    {
+        VertexRecord cur = rec();
+        if (cur.data == null || cur.dataOwner == mesh.owner)
+        {
+            return castData(cur.data);
+        }
+
+        VertexData data = mesh.copyVertexData(castData(cur.data));
+        update(cur.setData(data, mesh.owner));
+        return data;
+    }
+
+    /**
+     * Records are shared by meshes of any data type, so they hold
+     * their data untyped
+     */
+    @SuppressWarnings("unchecked")
+    private VertexData castData(Object data)
+    {
+        return (VertexData)data;
+    }
+
+    private void update(VertexRecord newRec)
+    {
+        if (isInMesh())
+        {
+            mesh.putVertex(newRec);
+        }
+        rec = newRec;
+        modCount = mesh.modCount;
     }
 
     public boolean isEmpty()
     {
-        return edgesIn.isEmpty() && edgesOut.isEmpty();
+        return rec().isEmpty();
     }
 
     public int getNumEdges()
     {
-        return edgesIn.size() + edgesOut.size();
+        VertexRecord cur = rec();
+        return cur.edgesIn.length + cur.edgesOut.length;
     }
 
     public BezierMeshEdge2i getEdge(int index)
     {
-        return index < edgesIn.size() ? edgesIn.get(index)
-                : edgesOut.get(index - edgesIn.size());
+        VertexRecord cur = rec();
+        int edgeId = index < cur.edgesIn.length ? cur.edgesIn[index]
+                : cur.edgesOut[index - cur.edgesIn.length];
+        return mesh.getEdge(edgeId);
+    }
+
+    private ArrayList<BezierMeshEdge2i> getEdges(int[] ids)
+    {
+        ArrayList<BezierMeshEdge2i> list =
+                new ArrayList<BezierMeshEdge2i>(ids.length);
+        for (int i = 0; i < ids.length; ++i)
+        {
+            list.add(mesh.getEdge(ids[i]));
+        }
+        return list;
     }
 
     /**
@@ -93,7 +175,7 @@ public class BezierMeshVertex2i<VertexData>
      */
     public ArrayList<BezierMeshEdge2i> getEdgesIn()
     {
-        return new ArrayList<BezierMeshEdge2i>(edgesIn);
+        return getEdges(rec().edgesIn);
     }
 
     /**
@@ -101,7 +183,7 @@ public class BezierMeshVertex2i<VertexData>
      */
     public ArrayList<BezierMeshEdge2i> getEdgesOut()
     {
-        return new ArrayList<BezierMeshEdge2i>(edgesOut);
+        return getEdges(rec().edgesOut);
     }
 
     /**
@@ -112,4 +194,20 @@ public class BezierMeshVertex2i<VertexData>
         return id;
     }
 
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof BezierMeshVertex2i))
+        {
+            return false;
+        }
+        BezierMeshVertex2i<?> other = (BezierMeshVertex2i<?>)obj;
+        return mesh == other.mesh && id == other.id;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return id;
+    }
 }
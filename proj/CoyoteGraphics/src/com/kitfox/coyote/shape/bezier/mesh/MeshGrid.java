@@ -0,0 +1,522 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.shape.bezier.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid of mesh record ids, bucketed by bounding box.  An id is
+ * listed in every cell its box touches.  Ids whose boxes cover too many
+ * cells are kept in a separate list that every query returns.
+ *
+ * <p>Cells are kept in a trie of 4 by 4 nodes that grows outwards as
+ * ids are added further from the origin.  As with {@link MeshTable},
+ * each node remembers the owner that created it and a copy of the grid
+ * shares all nodes with the original.  Changing a cell copies at most
+ * one node per level of the trie.  Cell arrays are never changed in
+ * place.</p>
+ *
+ * @author kitfox
+ */
+class MeshGrid
+{
+    static final int[] NO_IDS = new int[0];
+    //Boxes covering more cells than this are not bucketed
+    static final int MAX_ITEM_CELLS = 64;
+
+    //Bits of each cell coordinate consumed by one level of the trie
+    private static final int BITS = 2;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private final int cellShift;
+    private Node root;
+    //Bits of each coordinate consumed by levels above the leaves
+    private int shift;
+    //Cell at the low corner of the root
+    private long originX;
+    private long originY;
+    //Number of cells holding ids
+    private int numCells;
+    private int[] large = NO_IDS;
+
+    //Range of cells that have ever held an id
+    private int minCx = Integer.MAX_VALUE;
+    private int minCy = Integer.MAX_VALUE;
+    private int maxCx = Integer.MIN_VALUE;
+    private int maxCy = Integer.MIN_VALUE;
+
+    public MeshGrid(int cellShift)
+    {
+        this.cellShift = cellShift;
+        this.root = new Node(null);
+    }
+
+    /**
+     * Create a grid sharing its cells with the given grid.  Neither grid
+     * may change shared nodes in place after this, so both must use
+     * owners that did not create any existing node.
+     */
+    public MeshGrid(MeshGrid grid)
+    {
+        this.cellShift = grid.cellShift;
+        this.root = grid.root;
+        this.shift = grid.shift;
+        this.originX = grid.originX;
+        this.originY = grid.originY;
+        this.numCells = grid.numCells;
+        this.large = grid.large;
+        this.minCx = grid.minCx;
+        this.minCy = grid.minCy;
+        this.maxCx = grid.maxCx;
+        this.maxCy = grid.maxCy;
+    }
+
+    public int getCellShift()
+    {
+        return cellShift;
+    }
+
+    private int cell(double value)
+    {
+        return (int)Math.floor(value) >> cellShift;
+    }
+
+    private boolean isLarge(int minX, int minY, int maxX, int maxY)
+    {
+        long w = (long)(maxX >> cellShift) - (minX >> cellShift) + 1;
+        long h = (long)(maxY >> cellShift) - (minY >> cellShift) + 1;
+        return w * h > MAX_ITEM_CELLS;
+    }
+
+    private boolean inRange(int cx, int cy)
+    {
+        long size = 1L << (shift + BITS);
+        long rx = cx - originX;
+        long ry = cy - originY;
+        return rx >= 0 && ry >= 0 && rx < size && ry < size;
+    }
+
+    private static int index(long rx, long ry, int level)
+    {
+        return (int)(((ry >>> level) & MASK) << BITS | ((rx >>> level) & MASK));
+    }
+
+    private int[] getCell(int cx, int cy)
+    {
+        if (!inRange(cx, cy))
+        {
+            return null;
+        }
+
+        long rx = cx - originX;
+        long ry = cy - originY;
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS)
+        {
+            node = (Node)node.slots[index(rx, ry, level)];
+            if (node == null)
+            {
+                return null;
+            }
+        }
+        return (int[])node.slots[index(rx, ry, 0)];
+    }
+
+    /**
+     * Set the ids of a cell.  Setting null empties the cell.
+     *
+     * @param owner Nodes created by this owner will be changed in place.
+     * All other nodes along the path are copied.
+     */
+    private void setCell(int cx, int cy, int[] ids, Object owner)
+    {
+        if (!inRange(cx, cy))
+        {
+            if (ids == null)
+            {
+                return;
+            }
+
+            //Add levels until the cell fits, keeping the old root on
+            // the side facing away from the cell
+            while (!inRange(cx, cy))
+            {
+                long size = 1L << (shift + BITS);
+                int i = 0;
+                int j = 0;
+                if (cx < originX)
+                {
+                    originX -= MASK * size;
+                    i = MASK;
+                }
+                if (cy < originY)
+                {
+                    originY -= MASK * size;
+                    j = MASK;
+                }
+
+                Node newRoot = new Node(owner);
+                newRoot.slots[(j << BITS) | i] = root;
+                root = newRoot;
+                shift += BITS;
+            }
+        }
+
+        long rx = cx - originX;
+        long ry = cy - originY;
+        root = root.editable(owner);
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS)
+        {
+            int idx = index(rx, ry, level);
+            Node child = (Node)node.slots[idx];
+            if (child == null)
+            {
+                if (ids == null)
+                {
+                    return;
+                }
+                child = new Node(owner);
+            }
+            else
+            {
+                child = child.editable(owner);
+            }
+            node.slots[idx] = child;
+            node = child;
+        }
+
+        int idx = index(rx, ry, 0);
+        if (node.slots[idx] == null && ids != null)
+        {
+            ++numCells;
+        }
+        else if (node.slots[idx] != null && ids == null)
+        {
+            --numCells;
+        }
+        node.slots[idx] = ids;
+    }
+
+    /**
+     * @param owner Owner of the mesh making the change
+     */
+    public void insert(int id, int minX, int minY, int maxX, int maxY,
+            Object owner)
+    {
+        if (isLarge(minX, minY, maxX, maxY))
+        {
+            large = append(large, id);
+            return;
+        }
+
+        int cx0 = minX >> cellShift;
+        int cy0 = minY >> cellShift;
+        int cx1 = maxX >> cellShift;
+        int cy1 = maxY >> cellShift;
+        for (int cy = cy0; cy <= cy1; ++cy)
+        {
+            for (int cx = cx0; cx <= cx1; ++cx)
+            {
+                int[] ids = getCell(cx, cy);
+                setCell(cx, cy, ids == null ? new int[]{id} : append(ids, id),
+                        owner);
+            }
+        }
+
+        minCx = Math.min(minCx, cx0);
+        minCy = Math.min(minCy, cy0);
+        maxCx = Math.max(maxCx, cx1);
+        maxCy = Math.max(maxCy, cy1);
+    }
+
+    /**
+     * Remove an id.  The box must be the same one it was inserted with.
+     *
+     * @param owner Owner of the mesh making the change
+     */
+    public void remove(int id, int minX, int minY, int maxX, int maxY,
+            Object owner)
+    {
+        if (isLarge(minX, minY, maxX, maxY))
+        {
+            large = remove(large, id);
+            return;
+        }
+
+        int cx0 = minX >> cellShift;
+        int cy0 = minY >> cellShift;
+        int cx1 = maxX >> cellShift;
+        int cy1 = maxY >> cellShift;
+        for (int cy = cy0; cy <= cy1; ++cy)
+        {
+            for (int cx = cx0; cx <= cx1; ++cx)
+            {
+                int[] ids = getCell(cx, cy);
+                if (ids == null)
+                {
+                    continue;
+                }
+                int[] newIds = remove(ids, id);
+                if (newIds != ids)
+                {
+                    setCell(cx, cy, newIds.length == 0 ? null : newIds, owner);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find ids whose cells touch the given box.  Ids are returned in
+     * increasing order without duplicates.  Some of them may not
+     * actually overlap the box.
+     */
+    public int[] query(double minX, double minY, double maxX, double maxY)
+    {
+        IdList list = new IdList();
+        list.addAll(large);
+
+        if (numCells == 0)
+        {
+            return list.toSortedSet();
+        }
+
+        int cx0 = Math.max(cell(minX), minCx);
+        int cy0 = Math.max(cell(minY), minCy);
+        int cx1 = Math.min(cell(maxX), maxCx);
+        int cy1 = Math.min(cell(maxY), maxCy);
+
+        if (cx0 > cx1 || cy0 > cy1)
+        {
+            return list.toSortedSet();
+        }
+
+        addCells(root, shift, 0, 0,
+                cx0 - originX, cy0 - originY, cx1 - originX, cy1 - originY,
+                list);
+        return list.toSortedSet();
+    }
+
+    /**
+     * Add the ids of every cell under the node within the given range.
+     * Coordinates are in cells relative to the origin of the root.
+     */
+    private void addCells(Node node, int level, long nodeX, long nodeY,
+            long rx0, long ry0, long rx1, long ry1, IdList list)
+    {
+        long size = 1L << level;
+        for (int j = 0; j < WIDTH; ++j)
+        {
+            long y = nodeY + j * size;
+            if (y > ry1 || y + size <= ry0)
+            {
+                continue;
+            }
+
+            for (int i = 0; i < WIDTH; ++i)
+            {
+                long x = nodeX + i * size;
+                if (x > rx1 || x + size <= rx0)
+                {
+                    continue;
+                }
+
+                Object child = node.slots[(j << BITS) | i];
+                if (child == null)
+                {
+                    continue;
+                }
+
+                if (level == 0)
+                {
+                    list.addAll((int[])child);
+                }
+                else
+                {
+                    addCells((Node)child, level - BITS, x, y,
+                            rx0, ry0, rx1, ry1, list);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find ids in the ring of cells at the given distance from the
+     * cell containing the point.  Distance is measured in cells
+     * along either axis.  Does not include the large list.
+     */
+    public int[] queryRing(double x, double y, int ring)
+    {
+        int cx = cell(x);
+        int cy = cell(y);
+        IdList list = new IdList();
+
+        int cy0 = Math.max(cy - ring, minCy);
+        int cy1 = Math.min(cy + ring, maxCy);
+        for (int j = cy0; j <= cy1; ++j)
+        {
+            if (j == cy - ring || j == cy + ring)
+            {
+                int cx0 = Math.max(cx - ring, minCx);
+                int cx1 = Math.min(cx + ring, maxCx);
+                for (int i = cx0; i <= cx1; ++i)
+                {
+                    list.addAll(getCell(i, j));
+                }
+            }
+            else
+            {
+                list.addAll(getCell(cx - ring, j));
+                if (ring != 0)
+                {
+                    list.addAll(getCell(cx + ring, j));
+                }
+            }
+        }
+
+        return list.toSortedSet();
+    }
+
+    /**
+     * @return Closest ring to the point that may hold any ids
+     */
+    public int getFirstRing(double x, double y)
+    {
+        int cx = cell(x);
+        int cy = cell(y);
+        long dx = Math.max(Math.max((long)minCx - cx, (long)cx - maxCx), 0);
+        long dy = Math.max(Math.max((long)minCy - cy, (long)cy - maxCy), 0);
+        return (int)Math.min(Math.max(dx, dy), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return Ring beyond which no cell holds any ids
+     */
+    public int getLastRing(double x, double y)
+    {
+        if (minCx > maxCx)
+        {
+            return -1;
+        }
+        int cx = cell(x);
+        int cy = cell(y);
+        long dx = Math.max(Math.abs((long)minCx - cx), Math.abs((long)maxCx - cx));
+        long dy = Math.max(Math.abs((long)minCy - cy), Math.abs((long)maxCy - cy));
+        return (int)Math.min(Math.max(dx, dy), Integer.MAX_VALUE);
+    }
+
+    public int[] getLarge()
+    {
+        return large;
+    }
+
+    static int[] append(int[] ids, int id)
+    {
+        int[] newIds = new int[ids.length + 1];
+        System.arraycopy(ids, 0, newIds, 0, ids.length);
+        newIds[ids.length] = id;
+        return newIds;
+    }
+
+    static int[] remove(int[] ids, int id)
+    {
+        for (int i = 0; i < ids.length; ++i)
+        {
+            if (ids[i] == id)
+            {
+                if (ids.length == 1)
+                {
+                    return NO_IDS;
+                }
+                int[] newIds = new int[ids.length - 1];
+                System.arraycopy(ids, 0, newIds, 0, i);
+                System.arraycopy(ids, i + 1, newIds, i, ids.length - i - 1);
+                return newIds;
+            }
+        }
+        return ids;
+    }
+
+    //-----------------------------
+    static class IdList
+    {
+        int[] ids = new int[16];
+        int size;
+
+        public void addAll(int[] values)
+        {
+            if (values == null)
+            {
+                return;
+            }
+            if (size + values.length > ids.length)
+            {
+                ids = Arrays.copyOf(ids,
+                        Math.max(ids.length * 2, size + values.length));
+            }
+            System.arraycopy(values, 0, ids, size, values.length);
+            size += values.length;
+        }
+
+        public int[] toSortedSet()
+        {
+            if (size == 0)
+            {
+                return NO_IDS;
+            }
+
+            Arrays.sort(ids, 0, size);
+            int count = 1;
+            for (int i = 1; i < size; ++i)
+            {
+                if (ids[i] != ids[count - 1])
+                {
+                    ids[count++] = ids[i];
+                }
+            }
+            return Arrays.copyOf(ids, count);
+        }
+    }
+
+    //-----------------------------
+    static class Node
+    {
+        final Object owner;
+        final Object[] slots;
+
+        public Node(Object owner)
+        {
+            this(owner, new Object[WIDTH * WIDTH]);
+        }
+
+        public Node(Object owner, Object[] slots)
+        {
+            this.owner = owner;
+            this.slots = slots;
+        }
+
+        public Node editable(Object owner)
+        {
+            if (owner != null && this.owner == owner)
+            {
+                return this;
+            }
+            return new Node(owner, slots.clone());
+        }
+    }
+}
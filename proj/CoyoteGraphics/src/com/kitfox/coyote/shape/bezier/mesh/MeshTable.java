@@ -0,0 +1,224 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.shape.bezier.mesh;
+
+import java.util.ArrayList;
+
+/**
+ * Table of mesh records indexed by id.  Records are kept in a 32 way
+ * trie so that a copy of the table can share all of its nodes with the
+ * original.  Each node remembers the owner that created it.  An owner
+ * may change its own nodes in place, but must copy any node that it
+ * shares with another table before changing it.  Changing one record
+ * therefore copies at most one node per level of the trie.
+ *
+ * @author kitfox
+ */
+class MeshTable<T>
+{
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private Node root;
+    //Bits of the id consumed by levels above the leaves
+    private int shift;
+    private int size;
+
+    public MeshTable()
+    {
+        root = new Node(null);
+    }
+
+    /**
+     * Create a table that shares all records with the given table.
+     * Neither table may change shared nodes in place after this, so
+     * both must use owners that did not create any existing node.
+     */
+    public MeshTable(MeshTable<T> table)
+    {
+        this.root = table.root;
+        this.shift = table.shift;
+        this.size = table.size;
+    }
+
+    private boolean inRange(int id)
+    {
+        return id >= 0 && ((id >>> shift) >>> BITS) == 0;
+    }
+
+    public T get(int id)
+    {
+        if (!inRange(id))
+        {
+            return null;
+        }
+
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS)
+        {
+            node = (Node)node.slots[(id >>> level) & MASK];
+            if (node == null)
+            {
+                return null;
+            }
+        }
+        return toRecord(node.slots[id & MASK]);
+    }
+
+    /**
+     * Slots hold either nodes or records, so they are untyped
+     */
+    @SuppressWarnings("unchecked")
+    private T toRecord(Object value)
+    {
+        return (T)value;
+    }
+
+    /**
+     * Set the record at the given id.  Setting null removes the record.
+     *
+     * @param owner Nodes created by this owner will be changed in place.
+     * All other nodes along the path are copied.
+     * @return Record previously at id
+     */
+    public T set(int id, T value, Object owner)
+    {
+        if (id < 0)
+        {
+            throw new IllegalArgumentException("Invalid id " + id);
+        }
+
+        if (!inRange(id))
+        {
+            if (value == null)
+            {
+                return null;
+            }
+
+            //Add levels until the id fits
+            while (!inRange(id))
+            {
+                Node newRoot = new Node(owner);
+                newRoot.slots[0] = root;
+                root = newRoot;
+                shift += BITS;
+            }
+        }
+
+        root = root.editable(owner);
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS)
+        {
+            int idx = (id >>> level) & MASK;
+            Node child = (Node)node.slots[idx];
+            if (child == null)
+            {
+                if (value == null)
+                {
+                    return null;
+                }
+                child = new Node(owner);
+            }
+            else
+            {
+                child = child.editable(owner);
+            }
+            node.slots[idx] = child;
+            node = child;
+        }
+
+        T oldValue = toRecord(node.slots[id & MASK]);
+        node.slots[id & MASK] = value;
+
+        if (oldValue == null && value != null)
+        {
+            ++size;
+        }
+        else if (oldValue != null && value == null)
+        {
+            --size;
+        }
+        return oldValue;
+    }
+
+    /**
+     * @return Number of records in table
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return All records in order of id
+     */
+    public ArrayList<T> values()
+    {
+        ArrayList<T> list = new ArrayList<T>(size);
+        appendValues(root, shift, list);
+        return list;
+    }
+
+    private void appendValues(Node node, int level, ArrayList<T> list)
+    {
+        for (int i = 0; i < WIDTH; ++i)
+        {
+            Object child = node.slots[i];
+            if (child == null)
+            {
+                continue;
+            }
+
+            if (level == 0)
+            {
+                list.add(toRecord(child));
+            }
+            else
+            {
+                appendValues((Node)child, level - BITS, list);
+            }
+        }
+    }
+
+    //-----------------------------
+    static class Node
+    {
+        final Object owner;
+        final Object[] slots;
+
+        public Node(Object owner)
+        {
+            this(owner, new Object[WIDTH]);
+        }
+
+        public Node(Object owner, Object[] slots)
+        {
+            this.owner = owner;
+            this.slots = slots;
+        }
+
+        public Node editable(Object owner)
+        {
+            if (owner != null && this.owner == owner)
+            {
+                return this;
+            }
+            return new Node(owner, slots.clone());
+        }
+    }
+}
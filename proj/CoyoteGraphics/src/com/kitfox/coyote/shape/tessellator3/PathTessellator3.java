@@ -33,6 +33,7 @@ public class PathTessellator3 extends PathConsumer
     boolean drawingPath;
     final double resolution;
     final double resolutionI;
+    final boolean sweepLine;
 
     ArrayList<TessSeg> segments = new ArrayList<TessSeg>();
     ArrayList<TessSeg> curCtr = new ArrayList<TessSeg>();
@@ -61,9 +62,23 @@ public class PathTessellator3 extends PathConsumer
      * to during calculation.
      */
     public PathTessellator3(double resolution)
+    {
+        this(resolution, true);
+    }
+
+    /**
+     * @param resolution Unit distance all vertices will be rounded
+     * to during calculation.
+     * @param sweepLine If true, segment intersections and winding levels
+     * are found by sweeping across the shape so that only segments
+     * with overlapping extents are compared.  If false, every pair 
+     * of segments is compared.  Both produce the same contours.
+     */
+    public PathTessellator3(double resolution, boolean sweepLine)
     {
         this.resolution = resolution;
         this.resolutionI = 1 / resolution;
+        this.sweepLine = sweepLine;
     }
 
     @Override
@@ -139,7 +154,14 @@ public class PathTessellator3 extends PathConsumer
             closeSubpath();
         }
         
-        splitOverlappingSegments();
+        if (sweepLine)
+        {
+            segments = TessSweep.splitSegments(segments);
+        }
+        else
+        {
+            splitOverlappingSegments();
+        }
         createGraph();
     }
     
@@ -222,7 +244,7 @@ public class PathTessellator3 extends PathConsumer
             graph.addEdge(s);
         }
         
-        graph.prepareGraph();
+        graph.prepareGraph(sweepLine);
         
         while (!graph.isEmpty())
         {
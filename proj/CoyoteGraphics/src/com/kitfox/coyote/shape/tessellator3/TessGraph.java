@@ -100,13 +100,27 @@ public class TessGraph
         return edgeMap.isEmpty();
     }
     
-    void prepareGraph()
+    /**
+     * Sorts edges around each vertex and calculates the winding level
+     * on either side of every edge.
+     *
+     * @param sweepLine If true, edges are swept left to right so that
+     * each edge is only tested against the edges whose x span covers
+     * its reference point.  Otherwise every pair of edges is tested.
+     */
+    void prepareGraph(boolean sweepLine)
     {
         for (Vertex v: vertMap.values())
         {
             v.sortRadial();
         }
         
+        if (sweepLine)
+        {
+            calcWindingSweep();
+            return;
+        }
+
         for (Edge e: edgeMap.values())
         {
             calcWinding(e);
@@ -137,56 +151,152 @@ public class TessGraph
                 continue;
             }
 
-            TessSeg s = e.seg;
-            Coord c0 = s.v0;
-            Coord c1 = s.v1;
+            refWeight += windingCrossing(e, cr0, cr1);
+        }
 
-            if (c0.x == c1.x)
+        setWinding(e0, refWeight, reversedRef);
+    }
+
+    private void calcWindingSweep()
+    {
+        //Non vertical edges sorted by left end
+        ArrayList<Edge> spans = new ArrayList<Edge>();
+        for (Edge e: edgeMap.values())
+        {
+            if (e.v0.p.x != e.v1.p.x)
             {
-                //Ignore verticals
-                continue;
+                spans.add(e);
+            }
+        }
+        Collections.sort(spans, new Comparator<Edge>()
+        {
+            @Override
+            public int compare(Edge e0, Edge e1)
+            {
+                return compareInt(minX(e0), minX(e1));
+            }
+        });
+
+        //All edges sorted by right end, which is their reference point
+        ArrayList<Edge> queries = new ArrayList<Edge>(edgeMap.values());
+        Collections.sort(queries, new Comparator<Edge>()
+        {
+            @Override
+            public int compare(Edge e0, Edge e1)
+            {
+                return compareInt(maxX(e0), maxX(e1));
             }
+        });
 
-            boolean reversed = false;
+        ArrayList<Edge> active = new ArrayList<Edge>();
+        int spanIdx = 0;
+        
+        for (Edge e0: queries)
+        {
+            Coord cr0 = e0.v0.p;
+            Coord cr1 = e0.v1.p;
+            boolean reversedRef = false;
 
-            if (c0.x > c1.x)
+            if (cr0.x > cr1.x)
             {
-                Coord c = c0;
-                c0 = c1;
-                c1 = c;
-                reversed = true;
+                Coord c = cr0;
+                cr0 = cr1;
+                cr1 = c;
+                reversedRef = true;
             }
-            
-            if (!(c0.x < cr1.x && cr1.x <= c1.x))
+
+            //Only edges with c0.x < cr1.x <= c1.x can cross
+            while (spanIdx < spans.size() 
+                    && minX(spans.get(spanIdx)) < cr1.x)
             {
-                //X span must cross reference point
-                continue;
+                active.add(spans.get(spanIdx++));
             }
-            
-            if (cr1.equals(c1))
+
+            int refWeight = 0;
+            int keep = 0;
+            for (int i = 0; i < active.size(); ++i)
             {
-                int drx = cr0.x - cr1.x;
-                int dry = cr0.y - cr1.y;
-                int dex = c0.x - c1.x;
-                int dey = c0.y - c1.y;
-                
-                int cross = drx * dey - dry * dex;
-                if (cross > 0)
+                Edge e = active.get(i);
+                if (maxX(e) < cr1.x)
                 {
-                    refWeight += !reversed ? e.weight : -e.weight;
+                    //Sweep has passed this edge
+                    continue;
+                }
+                active.set(keep++, e);
+
+                if (e != e0)
+                {
+                    refWeight += windingCrossing(e, cr0, cr1);
                 }
-                continue;
             }
-            
-            int side = Math2DUtil.getLineSide(
-                    c0.x, c0.y, c1.x - c0.x, c1.y - c0.y, 
-                    cr1.x, cr1.y);
-            
-            if (side > 0)
+            active.subList(keep, active.size()).clear();
+
+            setWinding(e0, refWeight, reversedRef);
+        }
+    }
+
+    /**
+     * @return Weight edge e contributes to the winding at reference
+     * point cr1, where cr0 is the left end of the reference edge.
+     */
+    private int windingCrossing(Edge e, Coord cr0, Coord cr1)
+    {
+        TessSeg s = e.seg;
+        Coord c0 = s.v0;
+        Coord c1 = s.v1;
+
+        if (c0.x == c1.x)
+        {
+            //Ignore verticals
+            return 0;
+        }
+
+        boolean reversed = false;
+
+        if (c0.x > c1.x)
+        {
+            Coord c = c0;
+            c0 = c1;
+            c1 = c;
+            reversed = true;
+        }
+
+        if (!(c0.x < cr1.x && cr1.x <= c1.x))
+        {
+            //X span must cross reference point
+            return 0;
+        }
+
+        if (cr1.equals(c1))
+        {
+            int drx = cr0.x - cr1.x;
+            int dry = cr0.y - cr1.y;
+            int dex = c0.x - c1.x;
+            int dey = c0.y - c1.y;
+
+            int cross = drx * dey - dry * dex;
+            if (cross > 0)
             {
-                refWeight += !reversed ? e.weight : -e.weight;
+                return !reversed ? e.weight : -e.weight;
             }
+            return 0;
+        }
+
+        int side = Math2DUtil.getLineSide(
+                c0.x, c0.y, c1.x - c0.x, c1.y - c0.y, 
+                cr1.x, cr1.y);
+
+        if (side > 0)
+        {
+            return !reversed ? e.weight : -e.weight;
         }
+        return 0;
+    }
+
+    private void setWinding(Edge e0, int refWeight, boolean reversedRef)
+    {
+        Coord cr0 = e0.v0.p;
+        Coord cr1 = e0.v1.p;
 
         //Calc winding for right side of edge
         int windingRight = refWeight;
@@ -201,6 +311,21 @@ public class TessGraph
         e0.windingRight = windingRight;
         e0.windingLeft = windingRight + e0.weight;
     }
+
+    private static int minX(Edge e)
+    {
+        return Math.min(e.v0.p.x, e.v1.p.x);
+    }
+
+    private static int maxX(Edge e)
+    {
+        return Math.max(e.v0.p.x, e.v1.p.x);
+    }
+
+    private static int compareInt(int a, int b)
+    {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
     
     TessLoop extractContour()
     {
@@ -148,10 +148,37 @@ public class TessSeg
                 (int)Math2DUtil.lerp(v0.x, v1.x, frac[0]),
                 (int)Math2DUtil.lerp(v0.y, v1.y, frac[0]));
         
-        newSegs.add(new TessSeg(v0, c));
-        newSegs.add(new TessSeg(c, v1));
-        newSegs.add(new TessSeg(s.v0, c));
-        newSegs.add(new TessSeg(c, s.v1));
+        //Rounding can snap the crossing onto an end point.  Do not
+        // create zero length segments.
+        boolean split0 = !c.equals(v0) && !c.equals(v1);
+        boolean split1 = !c.equals(s.v0) && !c.equals(s.v1);
+        
+        if (!split0 && !split1)
+        {
+            newSegs.add(this);
+            newSegs.add(s);
+            return false;
+        }
+        
+        if (split0)
+        {
+            newSegs.add(new TessSeg(v0, c));
+            newSegs.add(new TessSeg(c, v1));
+        }
+        else
+        {
+            newSegs.add(this);
+        }
+        
+        if (split1)
+        {
+            newSegs.add(new TessSeg(s.v0, c));
+            newSegs.add(new TessSeg(c, s.v1));
+        }
+        else
+        {
+            newSegs.add(s);
+        }
         return true;
     }
 
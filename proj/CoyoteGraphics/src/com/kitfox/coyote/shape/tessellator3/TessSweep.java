@@ -0,0 +1,213 @@
+/*
+ * Copyright 2011 Mark McKay
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.shape.tessellator3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+
+/**
+ * Sweep line version of the segment splitting pass.
+ *
+ * Segments are swept left to right by the low end of their x span.  Only
+ * pairs whose bounding boxes overlap can split each other, so only those
+ * pairs are handed to TessSeg.split().  Since coordinates are snapped to
+ * integers after every split, new pieces can create new crossings, so
+ * the sweep is repeated on the pieces created by the last pass until
+ * nothing splits.  Pairs of segments that both survived the last pass
+ * unchanged are known not to split and are not tested again.
+ *
+ * Candidate pairs are visited in the same order as the brute force pass
+ * in PathTessellator3, so the resulting segments are identical.
+ *
+ * @author kitfox
+ */
+class TessSweep
+{
+    private TessSweep()
+    {
+    }
+
+    static ArrayList<TessSeg> splitSegments(ArrayList<TessSeg> segments)
+    {
+        HashSet<TessSeg> consumed = new HashSet<TessSeg>();
+        ArrayList<TessSeg> newSegs = new ArrayList<TessSeg>();
+        ArrayList<TessSeg> splitSegs = new ArrayList<TessSeg>();
+
+        //Segments that were created during the last pass
+        BitSet dirty = new BitSet();
+        dirty.set(0, segments.size());
+        BitSet newDirty = new BitSet();
+
+        boolean hadSplit;
+        do
+        {
+            hadSplit = false;
+
+            long[] pairs = findCandidatePairs(segments, dirty);
+            int pairIdx = 0;
+
+            NEXT_SEG:
+            for (int i = 0; i < segments.size(); ++i)
+            {
+                while (pairIdx < pairs.length && pairLow(pairs[pairIdx]) < i)
+                {
+                    ++pairIdx;
+                }
+
+                TessSeg s0 = segments.get(i);
+                if (consumed.contains(s0))
+                {
+                    continue;
+                }
+
+                for (; pairIdx < pairs.length && pairLow(pairs[pairIdx]) == i;
+                        ++pairIdx)
+                {
+                    TessSeg s1 = segments.get(pairHigh(pairs[pairIdx]));
+                    if (consumed.contains(s1))
+                    {
+                        continue;
+                    }
+
+                    splitSegs.clear();
+                    if (s0.split(s1, splitSegs))
+                    {
+                        hadSplit = true;
+
+                        consumed.add(s1);
+                        newDirty.set(newSegs.size(),
+                                newSegs.size() + splitSegs.size());
+                        newSegs.addAll(splitSegs);
+                        continue NEXT_SEG;
+                    }
+                }
+
+                //No splits, append to keep list
+                newSegs.add(s0);
+            }
+
+            consumed.clear();
+            ArrayList<TessSeg> tmp = segments;
+            segments = newSegs;
+            newSegs = tmp;
+            newSegs.clear();
+
+            BitSet tmpDirty = dirty;
+            dirty = newDirty;
+            newDirty = tmpDirty;
+            newDirty.clear();
+
+        } while (hadSplit);
+
+        return segments;
+    }
+
+    /**
+     * Find all pairs of segments with overlapping bounding boxes where
+     * at least one of the pair is dirty.
+     *
+     * @return Pairs packed as (low index << 32 | high index), sorted
+     * in ascending order.
+     */
+    private static long[] findCandidatePairs(ArrayList<TessSeg> segments,
+            BitSet dirty)
+    {
+        final int size = segments.size();
+        int[] minX = new int[size];
+        int[] maxX = new int[size];
+        int[] minY = new int[size];
+        int[] maxY = new int[size];
+        long[] order = new long[size];
+
+        for (int i = 0; i < size; ++i)
+        {
+            TessSeg s = segments.get(i);
+            minX[i] = Math.min(s.v0.x, s.v1.x);
+            maxX[i] = Math.max(s.v0.x, s.v1.x);
+            minY[i] = Math.min(s.v0.y, s.v1.y);
+            maxY[i] = Math.max(s.v0.y, s.v1.y);
+            order[i] = ((long)minX[i] << 32) | i;
+        }
+
+        //Sort by low x, breaking ties by index
+        Arrays.sort(order);
+
+        int[] active = new int[16];
+        int numActive = 0;
+        long[] pairs = new long[size];
+        int numPairs = 0;
+
+        for (int k = 0; k < size; ++k)
+        {
+            int idx = (int)order[k];
+            int x = minX[idx];
+            boolean idxDirty = dirty.get(idx);
+
+            int keep = 0;
+            for (int a = 0; a < numActive; ++a)
+            {
+                int oth = active[a];
+                if (maxX[oth] < x)
+                {
+                    //Sweep has passed this segment
+                    continue;
+                }
+                active[keep++] = oth;
+
+                if (!idxDirty && !dirty.get(oth))
+                {
+                    continue;
+                }
+                if (maxY[oth] < minY[idx] || maxY[idx] < minY[oth])
+                {
+                    continue;
+                }
+
+                if (numPairs == pairs.length)
+                {
+                    pairs = Arrays.copyOf(pairs, pairs.length * 2 + 1);
+                }
+                pairs[numPairs++] = oth < idx
+                        ? ((long)oth << 32) | idx
+                        : ((long)idx << 32) | oth;
+            }
+            numActive = keep;
+
+            if (numActive == active.length)
+            {
+                active = Arrays.copyOf(active, active.length * 2);
+            }
+            active[numActive++] = idx;
+        }
+
+        pairs = Arrays.copyOf(pairs, numPairs);
+        Arrays.sort(pairs);
+        return pairs;
+    }
+
+    private static int pairLow(long pair)
+    {
+        return (int)(pair >>> 32);
+    }
+
+    private static int pairHigh(long pair)
+    {
+        return (int)pair;
+    }
+}
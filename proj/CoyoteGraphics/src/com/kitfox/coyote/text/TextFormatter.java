@@ -353,6 +353,7 @@ abstract public class TextFormatter<GlyphShape>
     {
         LineToken<T>[] lines;
         private CyRectangle2d endCursorBounds;
+        private Object renderCache;
 
         public LineSetToken(LineToken<T>[] lines)
         {
@@ -407,6 +408,24 @@ abstract public class TextFormatter<GlyphShape>
                 line.visit(visitor);
             }
         }
+
+        /**
+         * @return Data a renderer has built to draw this layout, such
+         * as vertex buffers.  Since a layout does not change, this is
+         * kept until the text is laid out again.
+         */
+        public Object getRenderCache()
+        {
+            return renderCache;
+        }
+
+        /**
+         * @param renderCache the renderCache to set
+         */
+        public void setRenderCache(Object renderCache)
+        {
+            this.renderCache = renderCache;
+        }
 //        public void append(Double path)
 //        {
 //            for (LineToken line: lines)
@@ -19,6 +19,9 @@ package com.kitfox.coyote.text.bitmap;
 import com.kitfox.coyote.renderer.CyDrawStack;
 import com.kitfox.coyote.renderer.CyRendererUtil2D;
 import com.kitfox.coyote.renderer.CyTextureSource;
+import com.kitfox.coyote.text.TextFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -27,8 +30,9 @@ import com.kitfox.coyote.renderer.CyTextureSource;
 public class BitmapFont
 {
     private final GlyphSymbolTable symbols;
-    private final CyTextureSource glyphPlate;
-    private final CyTextureSource glyphShadowPlate;
+    //One plate per page.  Shadow plates may be null.
+    private final ArrayList<CyTextureSource> glyphPlates = new ArrayList<CyTextureSource>();
+    private final ArrayList<CyTextureSource> glyphShadowPlates = new ArrayList<CyTextureSource>();
     private final int lineHeight;
     private final int lineAscent;
 
@@ -43,12 +47,56 @@ public class BitmapFont
             int lineHeight, int lineAscent)
     {
         this.symbols = symbols;
-        this.glyphPlate = glyphPlate;
-        this.glyphShadowPlate = glyphShadowPlate;
+        this.glyphPlates.add(glyphPlate);
+        this.glyphShadowPlates.add(glyphShadowPlate);
         this.lineHeight = lineHeight;
         this.lineAscent = lineAscent;
     }
 
+    /**
+     * @param glyphPlates Plate for each page of glyphs
+     * @param glyphShadowPlates Shadow plate for each page of glyphs,
+     * or null if there are no shadows
+     */
+    public BitmapFont(GlyphSymbolTable symbols,
+            List<? extends CyTextureSource> glyphPlates,
+            List<? extends CyTextureSource> glyphShadowPlates,
+            int lineHeight, int lineAscent)
+    {
+        this.symbols = symbols;
+        for (int i = 0; i < glyphPlates.size(); ++i)
+        {
+            this.glyphPlates.add(glyphPlates.get(i));
+            this.glyphShadowPlates.add(glyphShadowPlates == null
+                    ? null : glyphShadowPlates.get(i));
+        }
+        this.lineHeight = lineHeight;
+        this.lineAscent = lineAscent;
+    }
+
+    /**
+     * Set the plates of a page.  If the page is past the last page,
+     * it is added.  Used when glyphs are added to a font after it
+     * is created.
+     */
+    public void setPage(int page, CyTextureSource glyphPlate,
+            CyTextureSource glyphShadowPlate)
+    {
+        if (page == glyphPlates.size())
+        {
+            glyphPlates.add(glyphPlate);
+            glyphShadowPlates.add(glyphShadowPlate);
+            return;
+        }
+        glyphPlates.set(page, glyphPlate);
+        glyphShadowPlates.set(page, glyphShadowPlate);
+    }
+
+    public int getNumPages()
+    {
+        return glyphPlates.size();
+    }
+
     public int getSpaceWidth()
     {
         GlyphDef glyph = symbols.getGlyph(' ');
@@ -74,13 +122,46 @@ public class BitmapFont
         int dw = glyph.getWidth();
         int dh = glyph.getHeight();
 
-        CyRendererUtil2D.inst().drawImage(rend, glyphPlate,
+        CyRendererUtil2D.inst().drawImage(rend, glyphPlates.get(glyph.getPage()),
                 sx, sy, sw, sh,
                 dx, dy, dw, dh);
     }
 
+    /**
+     * Draw laid out text with one draw call for each page of glyphs
+     * it uses.  The vertex buffers are built the first time the
+     * layout is drawn and kept with the layout.
+     */
+    public void renderText(CyDrawStack rend,
+            TextFormatter<GlyphDef>.LineSetToken<GlyphDef> text)
+    {
+        getTextRun(text).render(rend);
+    }
+
+    public void renderTextShadow(CyDrawStack rend,
+            TextFormatter<GlyphDef>.LineSetToken<GlyphDef> text)
+    {
+        getTextRun(text).renderShadow(rend);
+    }
+
+    private BitmapTextRun getTextRun(
+            TextFormatter<GlyphDef>.LineSetToken<GlyphDef> text)
+    {
+        Object cache = text.getRenderCache();
+        if (cache instanceof BitmapTextRun
+                && ((BitmapTextRun)cache).getFont() == this)
+        {
+            return (BitmapTextRun)cache;
+        }
+
+        BitmapTextRun run = new BitmapTextRun(this, text);
+        text.setRenderCache(run);
+        return run;
+    }
+
     public void renderGlyphShadow(CyDrawStack rend, GlyphDef glyph, int x, int y)
     {
+        CyTextureSource glyphShadowPlate = glyphShadowPlates.get(glyph.getPage());
         if (glyphShadowPlate == null)
         {
             return;
@@ -105,7 +186,20 @@ public class BitmapFont
      */
     public CyTextureSource getGlyphs()
     {
-        return glyphPlate;
+        return glyphPlates.get(0);
+    }
+
+    public CyTextureSource getGlyphs(int page)
+    {
+        return glyphPlates.get(page);
+    }
+
+    /**
+     * @return Shadow plate of the page, or null if there is none
+     */
+    public CyTextureSource getGlyphShadows(int page)
+    {
+        return glyphShadowPlates.get(page);
     }
 
     /**
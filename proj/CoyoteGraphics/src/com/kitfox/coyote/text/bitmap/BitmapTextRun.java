@@ -0,0 +1,325 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.text.bitmap;
+
+import com.kitfox.coyote.material.textureMesh.CyMaterialTextureMeshDrawRecord;
+import com.kitfox.coyote.material.textureMesh.CyMaterialTextureMeshDrawRecordFactory;
+import com.kitfox.coyote.math.BufferUtil;
+import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.math.d3.BoundingBox3d;
+import com.kitfox.coyote.renderer.CyDrawStack;
+import com.kitfox.coyote.renderer.CyGLWrapper.BufferUsage;
+import com.kitfox.coyote.renderer.CyGLWrapper.DrawMode;
+import com.kitfox.coyote.renderer.CyGLWrapper.IndiciesType;
+import com.kitfox.coyote.renderer.CyMaterial;
+import com.kitfox.coyote.renderer.CyTextureSource;
+import com.kitfox.coyote.renderer.CyVertexBuffer;
+import com.kitfox.coyote.renderer.CyVertexBufferDataProvider;
+import com.kitfox.coyote.text.GlyphVisitor;
+import com.kitfox.coyote.text.TextFormatter;
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+
+/**
+ * Quads for every glyph of a block of laid out text, gathered into one
+ * vertex buffer for each page of the font.  Drawing the run takes one
+ * draw call per page rather than one per glyph.
+ *
+ * <p>Glyphs are placed the same way BitmapFont.renderGlyph() places
+ * them.  A run does not change once built, so it is kept with the
+ * layout it was built from (see BitmapFont.renderText()).</p>
+ *
+ * @author kitfox
+ */
+public class BitmapTextRun
+{
+    private final BitmapFont font;
+    //Mesh for each page.  Null for pages with no glyphs in this run.
+    private final ArrayList<GlyphQuads> pages = new ArrayList<GlyphQuads>();
+    private int numGlyphs;
+
+    private final CyMatrix4d texMatrix = new CyMatrix4d();
+
+    public BitmapTextRun(BitmapFont font,
+            TextFormatter<GlyphDef>.LineSetToken<GlyphDef> text)
+    {
+        this.font = font;
+
+        text.visit(new GlyphVisitor<GlyphDef>()
+        {
+            @Override
+            public void visit(float x, int y, GlyphDef glyph)
+            {
+                if (glyph != null)
+                {
+                    addGlyph(glyph, (int)x, y);
+                }
+            }
+        });
+
+        for (GlyphQuads quads : pages)
+        {
+            if (quads != null)
+            {
+                quads.finishBuild();
+            }
+        }
+    }
+
+    private void addGlyph(GlyphDef glyph, int x, int y)
+    {
+        int page = glyph.getPage();
+        while (pages.size() <= page)
+        {
+            pages.add(null);
+        }
+
+        GlyphQuads quads = pages.get(page);
+        if (quads == null)
+        {
+            quads = new GlyphQuads();
+            pages.set(page, quads);
+        }
+
+        int dx = x - glyph.getOriginX() + glyph.getX();
+        int dy = y - glyph.getOriginY() + glyph.getY();
+        quads.addQuad(dx, dy, glyph.getX(), glyph.getY(),
+                glyph.getWidth(), glyph.getHeight());
+        ++numGlyphs;
+    }
+
+    public BitmapFont getFont()
+    {
+        return font;
+    }
+
+    public int getNumGlyphs()
+    {
+        return numGlyphs;
+    }
+
+    public void render(CyDrawStack rend)
+    {
+        render(rend, false);
+    }
+
+    public void renderShadow(CyDrawStack rend)
+    {
+        render(rend, true);
+    }
+
+    private void render(CyDrawStack rend, boolean shadow)
+    {
+        for (int i = 0; i < pages.size(); ++i)
+        {
+            GlyphQuads quads = pages.get(i);
+            if (quads == null)
+            {
+                continue;
+            }
+
+            CyTextureSource plate = shadow
+                    ? font.getGlyphShadows(i) : font.getGlyphs(i);
+            if (plate == null || !rend.intersectsFrustum(quads.getBounds()))
+            {
+                continue;
+            }
+
+            CyMaterialTextureMeshDrawRecord rec =
+                    CyMaterialTextureMeshDrawRecordFactory.inst().allocRecord();
+
+            rec.setMvpMatrix(rend.getModelViewProjXform());
+            rec.setOpacity(rend.getOpacity());
+            rec.setMesh(quads.buffer);
+
+            //Texture coordinates are in pixels of the plate.  Plates are
+            // uploaded upside down, so flip the y axis.
+            texMatrix.setIdentity();
+            texMatrix.translate(0, 1, 0);
+            texMatrix.scale(1.0 / plate.getWidth(), -1.0 / plate.getHeight(), 1);
+            rec.setTexMatrix(texMatrix);
+
+            rec.setTexture(plate);
+
+            rend.addDrawRecord(rec);
+        }
+    }
+
+    //-----------------------------
+    static class GlyphQuads extends CyVertexBufferDataProvider
+    {
+        //Four corners of each quad
+        float[] positions = new float[64];
+        float[] texCoords = new float[64];
+        int numQuads;
+        BoundingBox3d bounds;
+        final CyVertexBuffer buffer;
+
+        public GlyphQuads()
+        {
+            buffer = new CyVertexBuffer(this);
+        }
+
+        void addQuad(int dx, int dy, int sx, int sy, int width, int height)
+        {
+            int offset = numQuads * 8;
+            if (offset + 8 > positions.length)
+            {
+                float[] newPositions = new float[positions.length * 2];
+                System.arraycopy(positions, 0, newPositions, 0, offset);
+                positions = newPositions;
+
+                float[] newTexCoords = new float[texCoords.length * 2];
+                System.arraycopy(texCoords, 0, newTexCoords, 0, offset);
+                texCoords = newTexCoords;
+            }
+
+            //Same corner order as CyVertexBufferDataSquare
+            setCorners(positions, offset, dx, dy, width, height);
+            setCorners(texCoords, offset, sx, sy, width, height);
+            ++numQuads;
+        }
+
+        private static void setCorners(float[] arr, int offset,
+                int x, int y, int width, int height)
+        {
+            arr[offset] = x;
+            arr[offset + 1] = y;
+            arr[offset + 2] = x + width;
+            arr[offset + 3] = y;
+            arr[offset + 4] = x + width;
+            arr[offset + 5] = y + height;
+            arr[offset + 6] = x;
+            arr[offset + 7] = y + height;
+        }
+
+        void finishBuild()
+        {
+            int numVerts = numQuads * 4;
+            setVertexArrayInfo(CyMaterial.KEY_POSITION,
+                    0 * BufferUtil.SIZEOF_FLOAT, 2);
+            setVertexArrayInfo(CyMaterial.KEY_TEXCOORD0,
+                    numVerts * 2 * BufferUtil.SIZEOF_FLOAT, 2);
+
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < numVerts * 2; i += 2)
+            {
+                minX = Math.min(minX, positions[i]);
+                minY = Math.min(minY, positions[i + 1]);
+                maxX = Math.max(maxX, positions[i]);
+                maxY = Math.max(maxY, positions[i + 1]);
+            }
+            bounds = new BoundingBox3d(minX, minY, 0, maxX, maxY, 0);
+        }
+
+        @Override
+        public FloatBuffer getVertexData()
+        {
+            int size = numQuads * 8;
+            FloatBuffer buf = BufferUtil.allocateFloat(size * 2);
+            buf.put(positions, 0, size);
+            buf.put(texCoords, 0, size);
+            buf.rewind();
+            return buf;
+        }
+
+        @Override
+        public Buffer getIndexData()
+        {
+            //Each quad is split into two triangles as a triangle fan
+            // would split it
+            int[] index = new int[numQuads * 6];
+            for (int i = 0; i < numQuads; ++i)
+            {
+                int v = i * 4;
+                index[i * 6] = v;
+                index[i * 6 + 1] = v + 1;
+                index[i * 6 + 2] = v + 2;
+                index[i * 6 + 3] = v;
+                index[i * 6 + 4] = v + 2;
+                index[i * 6 + 5] = v + 3;
+            }
+
+            if (getIndexType() == IndiciesType.GL_UNSIGNED_SHORT)
+            {
+                ShortBuffer buf = BufferUtil.allocateShort(index.length);
+                for (int i = 0; i < index.length; ++i)
+                {
+                    buf.put((short)index[i]);
+                }
+                buf.rewind();
+                return buf;
+            }
+
+            IntBuffer buf = BufferUtil.allocateInt(index.length);
+            buf.put(index);
+            buf.rewind();
+            return buf;
+        }
+
+        @Override
+        public IndiciesType getIndexType()
+        {
+            //Short indices are unsigned, so can address up to 0xffff
+            return numQuads * 4 <= 0x10000
+                    ? IndiciesType.GL_UNSIGNED_SHORT
+                    : IndiciesType.GL_UNSIGNED_INT;
+        }
+
+        @Override
+        public BufferUsage getVertexUsage()
+        {
+            return BufferUsage.GL_STATIC_DRAW;
+        }
+
+        @Override
+        public BufferUsage getIndexUsage()
+        {
+            return BufferUsage.GL_STATIC_DRAW;
+        }
+
+        @Override
+        public DrawMode getDrawMode()
+        {
+            return DrawMode.GL_TRIANGLES;
+        }
+
+        @Override
+        public int getIndexCount()
+        {
+            return numQuads * 6;
+        }
+
+        @Override
+        public BoundingBox3d getBounds()
+        {
+            return bounds;
+        }
+
+        @Override
+        public int getBatchSize()
+        {
+            return numQuads;
+        }
+    }
+}
@@ -29,8 +29,17 @@ public class GlyphDef
     private final int originX;
     private final int originY;
     private final int advanceX;
+    private final int page;
 
     public GlyphDef(int x, int y, int width, int height, int originX, int originY, int advanceX)
+    {
+        this(x, y, width, height, originX, originY, advanceX, 0);
+    }
+
+    /**
+     * @param page Index of the glyph plate this glyph is drawn on
+     */
+    public GlyphDef(int x, int y, int width, int height, int originX, int originY, int advanceX, int page)
     {
         this.x = x;
         this.y = y;
@@ -39,6 +48,7 @@ public class GlyphDef
         this.originX = originX;
         this.originY = originY;
         this.advanceX = advanceX;
+        this.page = page;
     }
 
     /**
@@ -96,4 +106,12 @@ public class GlyphDef
     {
         return advanceX;
     }
+
+    /**
+     * @return the page
+     */
+    public int getPage()
+    {
+        return page;
+    }
 }
@@ -74,6 +74,24 @@ public class GlyphSymbolTable
         return glyphs.get(code);
     }
 
+    public void addGlyph(char code, GlyphDef glyph)
+    {
+        glyphs.put(code, glyph);
+    }
+
+    /**
+     * @return Number of glyph plates referenced by the glyphs
+     */
+    public int getNumPages()
+    {
+        int num = 0;
+        for (GlyphDef glyph: glyphs.values())
+        {
+            num = Math.max(num, glyph.getPage() + 1);
+        }
+        return num;
+    }
+
     /**
      * @return the lineAdvanceY
      */
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.text.bitmap;
+
+import com.kitfox.coyote.shape.CyRectangle2i;
+import java.util.ArrayList;
+
+/**
+ * Packs rectangles into an area using a skyline.  The skyline is the
+ * upper edge of everything placed so far, kept as a list of horizontal
+ * segments.  Each new rectangle is set down on the skyline where its
+ * top edge ends up lowest, which keeps the packing tight for glyphs
+ * of similar heights.
+ *
+ * <p>Rectangles can be added at any time, and the area can be grown
+ * without moving anything already placed.</p>
+ *
+ * @author kitfox
+ */
+public class SkylinePacker
+{
+    private int width;
+    private int height;
+    private final ArrayList<Segment> skyline = new ArrayList<Segment>();
+    private long usedArea;
+
+    public SkylinePacker(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        skyline.add(new Segment(0, 0, width));
+    }
+
+    /**
+     * Find room for a rectangle and mark it as used.
+     *
+     * @return Position of the rectangle, or null if it does not fit
+     */
+    public CyRectangle2i insert(int w, int h)
+    {
+        int bestIndex = -1;
+        int bestTop = Integer.MAX_VALUE;
+        int bestSegWidth = Integer.MAX_VALUE;
+        int bestY = 0;
+
+        for (int i = 0; i < skyline.size(); ++i)
+        {
+            int y = fitAt(i, w, h);
+            if (y < 0)
+            {
+                continue;
+            }
+
+            int top = y + h;
+            Segment seg = skyline.get(i);
+            if (top < bestTop || (top == bestTop && seg.width < bestSegWidth))
+            {
+                bestIndex = i;
+                bestTop = top;
+                bestSegWidth = seg.width;
+                bestY = y;
+            }
+        }
+
+        if (bestIndex == -1)
+        {
+            return null;
+        }
+
+        int x = skyline.get(bestIndex).x;
+        addSkyline(bestIndex, x, bestY + h, w);
+        usedArea += (long)w * h;
+        return new CyRectangle2i(x, bestY, w, h);
+    }
+
+    /**
+     * @return Height the rectangle would rest at if its left edge were
+     * placed at the start of the given segment, or -1 if it does not fit
+     */
+    private int fitAt(int index, int w, int h)
+    {
+        Segment seg = skyline.get(index);
+        if (seg.x + w > width)
+        {
+            return -1;
+        }
+
+        int y = 0;
+        int remaining = w;
+        for (int i = index; remaining > 0; ++i)
+        {
+            Segment cur = skyline.get(i);
+            y = Math.max(y, cur.y);
+            if (y + h > height)
+            {
+                return -1;
+            }
+            remaining -= cur.width;
+        }
+        return y;
+    }
+
+    private void addSkyline(int index, int x, int y, int w)
+    {
+        skyline.add(index, new Segment(x, y, w));
+
+        //Trim segments now under the new one
+        int right = x + w;
+        while (index + 1 < skyline.size())
+        {
+            Segment next = skyline.get(index + 1);
+            if (next.x >= right)
+            {
+                break;
+            }
+
+            int nextRight = next.x + next.width;
+            if (nextRight <= right)
+            {
+                skyline.remove(index + 1);
+            }
+            else
+            {
+                next.width = nextRight - right;
+                next.x = right;
+                break;
+            }
+        }
+
+        mergeSkyline();
+    }
+
+    private void mergeSkyline()
+    {
+        for (int i = 0; i < skyline.size() - 1;)
+        {
+            Segment cur = skyline.get(i);
+            Segment next = skyline.get(i + 1);
+            if (cur.y == next.y)
+            {
+                cur.width += next.width;
+                skyline.remove(i + 1);
+            }
+            else
+            {
+                ++i;
+            }
+        }
+    }
+
+    /**
+     * Enlarge the packing area.  Rectangles already placed keep
+     * their positions.
+     */
+    public void grow(int newWidth, int newHeight)
+    {
+        if (newWidth < width || newHeight < height)
+        {
+            throw new IllegalArgumentException("Packer can only grow");
+        }
+
+        if (newWidth > width)
+        {
+            skyline.add(new Segment(width, 0, newWidth - width));
+            mergeSkyline();
+        }
+        width = newWidth;
+        height = newHeight;
+    }
+
+    /**
+     * @return the width
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return the height
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * @return Total area of the rectangles placed so far
+     */
+    public long getUsedArea()
+    {
+        return usedArea;
+    }
+
+    //-----------------------------
+    static class Segment
+    {
+        int x;
+        int y;
+        int width;
+
+        public Segment(int x, int y, int width)
+        {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+        }
+    }
+}
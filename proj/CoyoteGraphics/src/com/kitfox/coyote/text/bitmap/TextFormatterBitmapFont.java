@@ -35,8 +35,9 @@ public class TextFormatterBitmapFont extends TextFormatter<GlyphDef>
     @Override
     protected GlyphInfo<GlyphDef> createGlyph(char ch)
     {
+        //Newlines and characters missing from the font have no glyph
         GlyphDef gd = font.getSymbols().getGlyph(ch);
-        return new GlyphInfo<GlyphDef>(ch, gd, gd.getAdvanceX());
+        return new GlyphInfo<GlyphDef>(ch, gd, gd == null ? 0 : gd.getAdvanceX());
     }
 
     @Override
@@ -22,9 +22,11 @@ import com.kitfox.coyote.renderer.CyGLWrapper.DataType;
 import com.kitfox.coyote.renderer.CyGLWrapper.InternalFormatTex;
 import com.kitfox.coyote.renderer.CyGLWrapper.TexTarget;
 import com.kitfox.coyote.renderer.jogl.TexSourceAWTBufferedImage;
+import com.kitfox.coyote.shape.CyRectangle2i;
 import com.kitfox.coyote.text.bitmap.BitmapFont;
 import com.kitfox.coyote.text.bitmap.GlyphDef;
 import com.kitfox.coyote.text.bitmap.GlyphSymbolTable;
+import com.kitfox.coyote.text.bitmap.SkylinePacker;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
@@ -37,8 +39,12 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 
 /**
  *
@@ -46,6 +52,9 @@ import java.util.HashMap;
  */
 public class BitmapFontBuilder
 {
+    //Size pages start at before growing to fit more glyphs
+    public static final int MIN_PAGE_SIZE = 64;
+
     private Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 24);
     private int margin = 2;
 //    private boolean antiAliased = false;
@@ -54,6 +63,7 @@ public class BitmapFontBuilder
 //    private Paint fillPaint = Color.WHITE;
     private Color color = Color.WHITE;
     private Color background;
+    private int maxPageSize = 1024;
 
     public BitmapFontBuilder()
     {
@@ -77,125 +87,28 @@ public class BitmapFontBuilder
             characters = new char[]{' '};
         }
 
-        AffineTransform xform = new AffineTransform();
-        FontRenderContext frc = new FontRenderContext(xform, false, false);
-
-        HashMap<Character, GlyphPlacement> charMap = new HashMap<Character, GlyphPlacement>();
-
-        //Find glyphs
-        Rectangle allBounds = null;
-        int xpos = 0;
-        for (char ch : characters)
-        {
-            if (charMap.containsKey(ch))
-            {
-                continue;
-            }
-
-            GlyphVector vec = getFont().createGlyphVector(frc, new char[]
-                    {
-                        ch
-                    });
-
-            Rectangle pixBounds = vec.getPixelBounds(frc, 0, 0);
-            allBounds = allBounds == null ? pixBounds : pixBounds.union(allBounds);
-
-            Rectangle2D logicBounds = vec.getLogicalBounds();
-            float advance = (float) logicBounds.getWidth();
-
-            int xoffset = xpos - pixBounds.x + getMargin();
-            xpos += pixBounds.width + getMargin() * 2;
-
-            GlyphPlacement place = new GlyphPlacement(ch, vec, xoffset, pixBounds, advance);
-            charMap.put(ch, place);
-        }
-
-        //Draw background
-        final int plateWidth = xpos;
-        final int plateHeight = allBounds.height + getMargin() * 2;
-//        BufferedImage compositePlate = new BufferedImage(plateWidth, plateHeight, BufferedImage.TYPE_INT_ARGB);
-//        Graphics2D g = compositePlate.createGraphics();
-//        if (background != null)
-//        {
-//            g.setColor(background);
-//            g.fillRect(0, 0, compositePlate.getWidth(), compositePlate.getHeight());
-//        }
-//        g.dispose();
-
-//        g.setStroke(getStroke());
-
-        //Place glyphs
-        BufferedImage glyphPlate = new BufferedImage(plateWidth, plateHeight, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = glyphPlate.createGraphics();
-        g.setPaint(color);
-
-        HashMap<Character, GlyphDef> glyphs = new HashMap<Character, GlyphDef>();
-
-        for (GlyphPlacement place : charMap.values())
-        {
-            int xorigin = place.x;
-            int yorigin = -allBounds.y + getMargin();
-
-            glyphs.put(place.ch, new GlyphDef(
-                    place.pixBounds.x + xorigin - margin,
-                    place.pixBounds.y + yorigin - margin,
-                    place.pixBounds.width + margin * 2,
-                    place.pixBounds.height + margin * 2,
-                    xorigin,
-                    yorigin,
-                    (int) place.advance));
-
-
-            //Draw to image
-            g.drawGlyphVector(place.vec, xorigin, yorigin);
-        }
+        FontRenderContext frc = createFontRenderContext();
+        LineMetrics lineMet = font.getLineMetrics(characters, 0, characters.length, frc);
 
-        g.dispose();
+        Data data = new Data(lineMet.getHeight(), lineMet.getAscent());
+        data.addCharacters(characters);
+        return data;
+    }
 
+    private static FontRenderContext createFontRenderContext()
+    {
+        AffineTransform xform = new AffineTransform();
+        return new FontRenderContext(xform, false, false);
+    }
 
-        //Caclculate shadow
-        BufferedImage glyphPlateShadow = new BufferedImage(plateWidth, plateHeight, BufferedImage.TYPE_INT_ARGB);
-        if (outlineColor != null)
+    private static int nextPowerOfTwo(int value)
+    {
+        int size = 1;
+        while (size < value)
         {
-            int rgb = outlineColor.getRGB();
-
-//            Graphics2D gg = glyphPlateShadow.createGraphics();
-            WritableRaster raster = glyphPlate.getRaster();
-
-            for (int j = 0; j < plateHeight; ++j)
-            {
-                for (int i = 0; i < plateWidth; ++i)
-                {
-//                    if (raster.getSample(i, j, 3) == 0
-//                            && nextToPixel(i, j, raster))
-                    if (nextToPixel(i, j, raster))
-                    {
-                        glyphPlateShadow.setRGB(i, j, rgb);
-                    }
-                }
-            }
-
-//            g.drawImage(glyphPlateShadow, 0, 0, null);
+            size <<= 1;
         }
-//
-//        if (background != null)
-//        {
-//            g.setColor(background);
-//            g.fillRect(0, 0, plateWidth, plateHeight);
-//        }
-
-
-//try {
-//    ImageIO.write(glyphPlate, "png", new File("glyphs.png"));
-//} catch (IOException ex) {
-//    Logger.getLogger(BitmapFont.class.getName()).log(Level.SEVERE, null, ex);
-//}
-
-        LineMetrics lineMet = font.getLineMetrics(characters, 0, characters.length, frc);
-        return new Data(
-                new GlyphSymbolTable(glyphs, (int)lineMet.getHeight(), (int)lineMet.getAscent()),
-                glyphPlate, glyphPlateShadow,
-                lineMet.getHeight(), lineMet.getAscent());
+        return size;
     }
 
     private static boolean nextToPixel(int i, int j, Raster raster)
@@ -251,6 +164,23 @@ public class BitmapFontBuilder
         this.font = font;
     }
 
+    /**
+     * @return the maxPageSize
+     */
+    public int getMaxPageSize()
+    {
+        return maxPageSize;
+    }
+
+    /**
+     * @param maxPageSize Largest width and height of a glyph plate.
+     * Rounded up to a power of two.
+     */
+    public void setMaxPageSize(int maxPageSize)
+    {
+        this.maxPageSize = nextPowerOfTwo(maxPageSize);
+    }
+
     /**
      * @return the margin
      */
@@ -411,44 +341,156 @@ public class BitmapFontBuilder
     }
 
     //---------------------------------
+    /**
+     * Glyph plates and symbols of a font.  More characters can be
+     * added at any time.  Glyphs are packed into pages no larger than
+     * the maximum page size, which grow as needed and are always a
+     * power of two in size.  A new page is started when the last one
+     * is full.
+     */
     public class Data
     {
+        //Builder settings when the data was created
+        private final Font font = BitmapFontBuilder.this.font;
+        private final int margin = BitmapFontBuilder.this.margin;
+        private final Color color = BitmapFontBuilder.this.color;
+        private final Color outlineColor = BitmapFontBuilder.this.outlineColor;
+        private final int maxPageSize = BitmapFontBuilder.this.maxPageSize;
+
+        private final HashMap<Character, GlyphDef> glyphs = new HashMap<Character, GlyphDef>();
         private final GlyphSymbolTable symbols;
-        private final BufferedImage glyphPlate;
-        private final BufferedImage glyphShadowPlate;
+        private final ArrayList<Page> pages = new ArrayList<Page>();
         private final float lineHeight;
         private final float lineAscent;
+        private BitmapFont bitmapFont;
 
-        public Data(GlyphSymbolTable symbols,
-                BufferedImage glyphPlate, BufferedImage glyphShadowPlate,
-                float lineHeight, float lineAscent)
+        Data(float lineHeight, float lineAscent)
         {
-            this.symbols = symbols;
-            this.glyphPlate = glyphPlate;
-            this.glyphShadowPlate = glyphShadowPlate;
             this.lineHeight = lineHeight;
             this.lineAscent = lineAscent;
+            symbols = new GlyphSymbolTable(glyphs, (int)lineHeight, (int)lineAscent);
         }
 
+        public int addCharacters(CharSequence text)
+        {
+            char[] arr = new char[text.length()];
+            for (int i = 0; i < arr.length; ++i)
+            {
+                arr[i] = text.charAt(i);
+            }
+            return addCharacters(arr);
+        }
+
+        /**
+         * Add glyphs for any of the characters not already in the font.
+         * If a font has already been built from this data, it is
+         * updated too.
+         *
+         * @return Number of glyphs added
+         */
+        public int addCharacters(char[] characters)
+        {
+            FontRenderContext frc = createFontRenderContext();
+
+            //Find glyphs
+            ArrayList<GlyphPlacement> places = new ArrayList<GlyphPlacement>();
+            HashSet<Character> found = new HashSet<Character>();
+            for (char ch : characters)
+            {
+                if (glyphs.containsKey(ch) || !found.add(ch))
+                {
+                    continue;
+                }
+
+                GlyphVector vec = font.createGlyphVector(frc, new char[]
+                        {
+                            ch
+                        });
+
+                Rectangle pixBounds = vec.getPixelBounds(frc, 0, 0);
+                Rectangle2D logicBounds = vec.getLogicalBounds();
+                float advance = (float) logicBounds.getWidth();
+
+                places.add(new GlyphPlacement(ch, vec, pixBounds, advance));
+            }
+
+            //Skyline packs tightest when taller glyphs are placed first
+            Collections.sort(places, new Comparator<GlyphPlacement>()
+            {
+                @Override
+                public int compare(GlyphPlacement p0, GlyphPlacement p1)
+                {
+                    return p1.pixBounds.height - p0.pixBounds.height;
+                }
+            });
+
+            //Place glyphs
+            for (GlyphPlacement place : places)
+            {
+                int width = place.pixBounds.width + margin * 2;
+                int height = place.pixBounds.height + margin * 2;
+
+                Page page = null;
+                CyRectangle2i rect = null;
+                for (int i = 0; i < pages.size() && rect == null; ++i)
+                {
+                    page = pages.get(i);
+                    rect = page.insert(width, height);
+                }
+
+                if (rect == null)
+                {
+                    int size = Math.max(MIN_PAGE_SIZE,
+                            nextPowerOfTwo(Math.max(width, height)));
+                    page = new Page(pages.size(), size);
+                    pages.add(page);
+                    rect = page.insert(width, height);
+                }
+
+                int xorigin = rect.getX() - place.pixBounds.x + margin;
+                int yorigin = rect.getY() - place.pixBounds.y + margin;
+
+                glyphs.put(place.ch, new GlyphDef(
+                        rect.getX(), rect.getY(), width, height,
+                        xorigin, yorigin,
+                        (int) place.advance, page.index));
+
+                page.drawGlyph(place.vec, xorigin, yorigin, rect);
+            }
+
+            if (bitmapFont != null)
+            {
+                for (Page page : pages)
+                {
+                    page.updateFont();
+                }
+            }
+
+            return places.size();
+        }
+
+        /**
+         * @return A font drawing from this data.  The same font is
+         * returned each time, and is kept up to date as characters
+         * are added.
+         */
         public BitmapFont buildFont()
         {
-            CyTextureImage imgGlyph = new CyTextureImage(
-                    TexTarget.GL_TEXTURE_2D,
-                    InternalFormatTex.GL_RGBA,
-                    DataType.GL_UNSIGNED_BYTE,
-                    glyphPlate.getWidth(), glyphPlate.getHeight(),
-                    CyTransparency.TRANSLUCENT,
-                    new TexSourceAWTBufferedImage(glyphPlate));
-
-            CyTextureImage imgGlyphShadow = new CyTextureImage(
-                    TexTarget.GL_TEXTURE_2D,
-                    InternalFormatTex.GL_RGBA,
-                    DataType.GL_UNSIGNED_BYTE,
-                    glyphShadowPlate.getWidth(), glyphShadowPlate.getHeight(),
-                    CyTransparency.TRANSLUCENT,
-                    new TexSourceAWTBufferedImage(glyphShadowPlate));
-
-            return new BitmapFont(symbols, imgGlyph, imgGlyphShadow, (int)lineHeight, (int)lineAscent);
+            if (bitmapFont == null)
+            {
+                ArrayList<CyTextureImage> plates = new ArrayList<CyTextureImage>();
+                ArrayList<CyTextureImage> shadowPlates = new ArrayList<CyTextureImage>();
+                for (Page page : pages)
+                {
+                    page.createTextures();
+                    plates.add(page.imgGlyph);
+                    shadowPlates.add(page.imgGlyphShadow);
+                }
+
+                bitmapFont = new BitmapFont(symbols, plates, shadowPlates,
+                        (int)lineHeight, (int)lineAscent);
+            }
+            return bitmapFont;
         }
 
         /**
@@ -459,20 +501,35 @@ public class BitmapFontBuilder
             return symbols;
         }
 
+        public int getNumPages()
+        {
+            return pages.size();
+        }
+
         /**
-         * @return the glyphPlate
+         * @return the glyphPlate of the first page
          */
         public BufferedImage getGlyphPlate()
         {
-            return glyphPlate;
+            return getGlyphPlate(0);
+        }
+
+        public BufferedImage getGlyphPlate(int page)
+        {
+            return pages.get(page).glyphPlate;
         }
 
         /**
-         * @return the glyphShadowPlate
+         * @return the glyphShadowPlate of the first page
          */
         public BufferedImage getGlyphShadowPlate()
         {
-            return glyphShadowPlate;
+            return getGlyphShadowPlate(0);
+        }
+
+        public BufferedImage getGlyphShadowPlate(int page)
+        {
+            return pages.get(page).glyphShadowPlate;
         }
 
         /**
@@ -490,6 +547,156 @@ public class BitmapFontBuilder
         {
             return lineAscent;
         }
+
+        //---------------------------------
+        class Page
+        {
+            final int index;
+            final SkylinePacker packer;
+            BufferedImage glyphPlate;
+            BufferedImage glyphShadowPlate;
+            //Textures are only created once a font is built
+            TexSourceAWTBufferedImage srcGlyph;
+            TexSourceAWTBufferedImage srcGlyphShadow;
+            CyTextureImage imgGlyph;
+            CyTextureImage imgGlyphShadow;
+            boolean resized;
+            boolean changed;
+
+            Page(int index, int size)
+            {
+                this.index = index;
+                packer = new SkylinePacker(size, size);
+                glyphPlate = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                glyphShadowPlate = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                resized = true;
+            }
+
+            /**
+             * Find room for a glyph, doubling the size of the page
+             * until it fits or the page reaches the maximum size.
+             */
+            CyRectangle2i insert(int width, int height)
+            {
+                while (true)
+                {
+                    CyRectangle2i rect = packer.insert(width, height);
+                    if (rect != null)
+                    {
+                        return rect;
+                    }
+
+                    int pw = packer.getWidth();
+                    int ph = packer.getHeight();
+                    if (pw >= maxPageSize && ph >= maxPageSize)
+                    {
+                        return null;
+                    }
+
+                    //Grow the shorter side so pages stay close to square
+                    if (pw < maxPageSize && (pw <= ph || ph >= maxPageSize))
+                    {
+                        pw *= 2;
+                    }
+                    else
+                    {
+                        ph *= 2;
+                    }
+                    grow(pw, ph);
+                }
+            }
+
+            private void grow(int width, int height)
+            {
+                packer.grow(width, height);
+                glyphPlate = copyImage(glyphPlate, width, height);
+                glyphShadowPlate = copyImage(glyphShadowPlate, width, height);
+                resized = true;
+            }
+
+            private BufferedImage copyImage(BufferedImage img, int width, int height)
+            {
+                BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = copy.createGraphics();
+                g.drawImage(img, 0, 0, null);
+                g.dispose();
+                return copy;
+            }
+
+            void drawGlyph(GlyphVector vec, int xorigin, int yorigin, CyRectangle2i rect)
+            {
+                Graphics2D g = glyphPlate.createGraphics();
+                g.setPaint(color);
+                g.drawGlyphVector(vec, xorigin, yorigin);
+                g.dispose();
+
+                //Caclculate shadow.  Glyphs are surrounded by their
+                // margin, so only the glyph's own rectangle needs checking.
+                if (outlineColor != null)
+                {
+                    int rgb = outlineColor.getRGB();
+                    WritableRaster raster = glyphPlate.getRaster();
+
+                    for (int j = rect.getMinY(); j < rect.getMaxY(); ++j)
+                    {
+                        for (int i = rect.getMinX(); i < rect.getMaxX(); ++i)
+                        {
+                            if (nextToPixel(i, j, raster))
+                            {
+                                glyphShadowPlate.setRGB(i, j, rgb);
+                            }
+                        }
+                    }
+                }
+
+                changed = true;
+            }
+
+            void createTextures()
+            {
+                srcGlyph = new TexSourceAWTBufferedImage(glyphPlate);
+                srcGlyphShadow = new TexSourceAWTBufferedImage(glyphShadowPlate);
+
+                imgGlyph = new CyTextureImage(
+                        TexTarget.GL_TEXTURE_2D,
+                        InternalFormatTex.GL_RGBA,
+                        DataType.GL_UNSIGNED_BYTE,
+                        glyphPlate.getWidth(), glyphPlate.getHeight(),
+                        CyTransparency.TRANSLUCENT,
+                        srcGlyph);
+
+                imgGlyphShadow = new CyTextureImage(
+                        TexTarget.GL_TEXTURE_2D,
+                        InternalFormatTex.GL_RGBA,
+                        DataType.GL_UNSIGNED_BYTE,
+                        glyphShadowPlate.getWidth(), glyphShadowPlate.getHeight(),
+                        CyTransparency.TRANSLUCENT,
+                        srcGlyphShadow);
+
+                resized = false;
+                changed = false;
+            }
+
+            /**
+             * Bring the font's plates for this page up to date.  Pages
+             * that changed size need new textures.  Otherwise the
+             * existing textures are reloaded.
+             */
+            void updateFont()
+            {
+                if (resized)
+                {
+                    createTextures();
+                    bitmapFont.setPage(index, imgGlyph, imgGlyphShadow);
+                }
+                else if (changed)
+                {
+                    srcGlyph.imageChanged();
+                    srcGlyphShadow.imageChanged();
+                    changed = false;
+                }
+            }
+        }
     }
 
     class GlyphPlacement
@@ -497,15 +704,13 @@ public class BitmapFontBuilder
 
         final char ch;
         GlyphVector vec;
-        int x;
         Rectangle pixBounds;
         float advance;
 
-        GlyphPlacement(char ch, GlyphVector vec, int x, Rectangle pixBounds, float advance)
+        GlyphPlacement(char ch, GlyphVector vec, Rectangle pixBounds, float advance)
         {
             this.ch = ch;
             this.vec = vec;
-            this.x = x;
             this.pixBounds = pixBounds;
             this.advance = advance;
         }
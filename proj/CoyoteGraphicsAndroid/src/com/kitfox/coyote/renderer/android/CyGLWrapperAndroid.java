@@ -1530,6 +1530,9 @@ public class CyGLWrapperAndroid
                 return GLES20.GL_UNSIGNED_BYTE;
             case GL_UNSIGNED_SHORT:
                 return GLES20.GL_UNSIGNED_SHORT;
+            case GL_UNSIGNED_INT:
+                //Requires OES_element_index_uint
+                return GLES20.GL_UNSIGNED_INT;
             default:
                 throw new RuntimeException();
         }
@@ -30,7 +30,6 @@ import com.kitfox.coyote.renderer.CyGLContext;
 import com.kitfox.coyote.renderer.CyGLWrapper;
 import com.kitfox.coyote.renderer.CyGLWrapper.Capability;
 import com.kitfox.coyote.renderer.CyGLWrapper.DepthFunc;
-import com.kitfox.coyote.renderer.CyGLWrapper.IndiciesType;
 import com.kitfox.coyote.renderer.CyGLWrapper.ShaderType;
 import com.kitfox.coyote.renderer.CyGLWrapper.VertexDataType;
 import java.nio.FloatBuffer;
@@ -101,15 +100,15 @@ public class CyMaterialPhong extends CyMaterial
         }
     }
 
-    protected void bind(CyGLWrapper gl)
+    protected void bind(CyGLContext ctx, CyGLWrapper gl)
     {
         if (programId == 0)
         {
             init(gl);
         }
-        gl.glDepthMask(false);
+        ctx.depthMask(gl, false);
 
-        gl.glUseProgram(programId);
+        ctx.useProgram(gl, programId);
     }
 
     protected void render(CyGLContext ctx, CyGLWrapper gl, CyMaterialPhongDrawRecord rec)
@@ -121,7 +120,7 @@ public class CyMaterialPhong extends CyMaterial
 
 //        if (alpha >= 1)
 //        {
-            gl.glDisable(Capability.GL_BLEND);
+            ctx.setCapability(gl, Capability.GL_BLEND, false);
 //        }
 //        else
 //        {
@@ -130,10 +129,10 @@ public class CyMaterialPhong extends CyMaterial
 //                    CyGLWrapper.BlendFactor.GL_ONE_MINUS_SRC_ALPHA);
 //        }
         
-        gl.glEnable(Capability.GL_CULL_FACE);
-        gl.glEnable(Capability.GL_DEPTH_TEST);
+        ctx.setCapability(gl, Capability.GL_CULL_FACE, true);
+        ctx.setCapability(gl, Capability.GL_DEPTH_TEST, true);
         gl.glDepthFunc(DepthFunc.GL_LEQUAL);
-        gl.glDepthMask(true);
+        ctx.depthMask(gl, true);
         
 
         //Upload uniforms
@@ -181,8 +180,7 @@ public class CyMaterialPhong extends CyMaterial
             gl.glEnableVertexAttribArray(a_normal);
         }
 
-        gl.glDrawElements(mesh.getDrawMode(), mesh.getIndexCount(),
-                IndiciesType.GL_UNSIGNED_SHORT, 0);
+        ctx.drawElements(gl, mesh);
     }
 
 }
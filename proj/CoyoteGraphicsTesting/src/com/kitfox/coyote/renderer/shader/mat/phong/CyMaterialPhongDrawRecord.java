@@ -46,7 +46,7 @@ public class CyMaterialPhongDrawRecord extends CyDrawRecordMaterialSimple
             ctx.registerMaterial(mat);
         }
 
-        mat.bind(gl);
+        mat.bind(ctx, gl);
 
         mat.render(ctx, gl, this);
     }
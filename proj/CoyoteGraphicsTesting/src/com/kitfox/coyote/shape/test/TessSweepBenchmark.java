@@ -0,0 +1,130 @@
+/*
+ * Copyright 2011 Mark McKay
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.shape.test;
+
+import com.kitfox.coyote.shape.CyPath2d;
+import com.kitfox.coyote.shape.bezier.path.cut.Coord;
+import com.kitfox.coyote.shape.tessellator3.PathTessellator3;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares tessellation time of the sweep line and brute force modes
+ * of PathTessellator3 as the number of segments grows.  Shapes are made
+ * of many small overlapping flattened circles, which is similar to what
+ * flattened SWF shapes look like.
+ *
+ * @author kitfox
+ */
+public class TessSweepBenchmark
+{
+    //Largest shape the brute force mode is run on
+    static final int BRUTE_FORCE_LIMIT = 4000;
+    static final int POINTS_PER_CIRCLE = 16;
+
+    public TessSweepBenchmark()
+    {
+        //Warm up
+        for (int i = 0; i < 3; ++i)
+        {
+            runTest(1000, false);
+        }
+
+        for (int numSegs = 1000; numSegs <= 100000; numSegs *= 2)
+        {
+            runTest(numSegs, true);
+        }
+        runTest(100000, true);
+    }
+
+    private void runTest(int numSegs, boolean print)
+    {
+        CyPath2d path = createCircles(numSegs, new Random(numSegs));
+
+        long sweepStart = System.nanoTime();
+        ArrayList<Coord> sweepTris = tessellate(path, true);
+        long sweepTime = System.nanoTime() - sweepStart;
+
+        String bruteResult = "-";
+        String match = "-";
+        if (numSegs <= BRUTE_FORCE_LIMIT)
+        {
+            long bruteStart = System.nanoTime();
+            ArrayList<Coord> bruteTris = tessellate(path, false);
+            long bruteTime = System.nanoTime() - bruteStart;
+
+            bruteResult = "" + (bruteTime / 1000000) + "ms";
+            match = "" + sweepTris.equals(bruteTris);
+        }
+
+        if (print)
+        {
+            System.err.println("segs: " + numSegs
+                    + " sweep: " + (sweepTime / 1000000) + "ms"
+                    + " brute: " + bruteResult
+                    + " tris: " + (sweepTris.size() / 3)
+                    + " identical: " + match);
+        }
+    }
+
+    private ArrayList<Coord> tessellate(CyPath2d path, boolean sweepLine)
+    {
+        PathTessellator3 tess = new PathTessellator3(1, sweepLine);
+        tess.feedShape(path);
+        return tess.getTrianglesNonZero();
+    }
+
+    private CyPath2d createCircles(int numSegs, Random rand)
+    {
+        int numCircles = numSegs / POINTS_PER_CIRCLE;
+        //Keep density constant as shape grows
+        double size = Math.sqrt(numCircles) * 40;
+
+        CyPath2d path = new CyPath2d();
+        for (int i = 0; i < numCircles; ++i)
+        {
+            double cx = rand.nextDouble() * size;
+            double cy = rand.nextDouble() * size;
+            double radius = 10 + rand.nextDouble() * 30;
+
+            for (int j = 0; j < POINTS_PER_CIRCLE; ++j)
+            {
+                double angle = Math.PI * 2 * j / POINTS_PER_CIRCLE;
+                double x = cx + Math.cos(angle) * radius;
+                double y = cy + Math.sin(angle) * radius;
+                if (j == 0)
+                {
+                    path.moveTo(x, y);
+                }
+                else
+                {
+                    path.lineTo(x, y);
+                }
+            }
+            path.close();
+        }
+        return path;
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new TessSweepBenchmark();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.test.bezier;
+
+import com.kitfox.coyote.shape.bezier.BezierCurve2i;
+import com.kitfox.coyote.shape.bezier.BezierLine2i;
+import com.kitfox.coyote.shape.bezier.BezierQuad2i;
+import com.kitfox.coyote.shape.bezier.mesh.BezierMeshVertex2i;
+import com.kitfox.coyote.test.bezier.BezierMeshIndexBenchmark.TestMesh;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Compares building a mesh from a detailed shape one curve at a time
+ * with addEdge() against adding all the curves at once with
+ * addEdges().  The shapes are closed paths that wander over the same
+ * area and cross themselves often, like the outlines in an imported
+ * SWF shape.  Paths with quads are only built in batches.
+ *
+ * <p>Building one curve at a time can fail when an edge crosses more
+ * than one piece of a new curve, since addEdge() then tries to cut the
+ * edge again after already replacing it.  That is reported rather than
+ * timed.</p>
+ *
+ * @author kitfox
+ */
+public class BezierMeshBatchBenchmark
+{
+    static final int SEG_LENGTH = 2000;
+    static final int MAX_SINGLE_CURVES = 20000;
+
+    public BezierMeshBatchBenchmark()
+    {
+        int[] sizes = {1000, 5000, 20000, 50000};
+        for (int i = 0; i < sizes.length; ++i)
+        {
+            runTest(sizes[i], false);
+        }
+        for (int i = 0; i < sizes.length; ++i)
+        {
+            runTest(sizes[i], true);
+        }
+    }
+
+    private void runTest(int numCurves, boolean quads)
+    {
+        //Keep density the same as the shape grows
+        int side = (int)Math.sqrt(numCurves) * SEG_LENGTH / 2;
+        ArrayList<BezierCurve2i> curves = createPath(numCurves, side,
+                quads, new Random(numCurves));
+        ArrayList<Object> data = new ArrayList<Object>(
+                Collections.nCopies(curves.size(), null));
+
+        TestMesh batch = new TestMesh();
+        long t0 = System.nanoTime();
+        batch.addEdges(curves, data);
+        long buildBatch = System.nanoTime() - t0;
+
+        String line = (quads ? "mixed" : "lines")
+                + " curves: " + numCurves
+                + " edges: " + batch.getNumEdges()
+                + " verts: " + batch.getNumVertices()
+                + " build batch: " + (buildBatch / 1000000) + "ms";
+
+        if (!quads && numCurves <= MAX_SINGLE_CURVES)
+        {
+            TestMesh single = new TestMesh();
+            t0 = System.nanoTime();
+            try
+            {
+                for (int i = 0; i < curves.size(); ++i)
+                {
+                    single.addEdge(curves.get(i), null);
+                }
+                long buildSingle = System.nanoTime() - t0;
+
+                line += " build single: " + (buildSingle / 1000000) + "ms"
+                        + " single edges: " + single.getNumEdges()
+                        + " verts: " + single.getNumVertices()
+                        + " shared verts: " + countSharedVertices(batch, single);
+            } catch (UnsupportedOperationException ex)
+            {
+                line += " build single failed: " + ex.getMessage();
+            }
+        }
+
+        System.err.println(line);
+    }
+
+    /**
+     * Curves crossing at the same point can be cut at slightly
+     * different places depending on the order they are cut in, so
+     * meshes are compared by how many vertices they have in common.
+     */
+    private int countSharedVertices(TestMesh m0, TestMesh m1)
+    {
+        int count = 0;
+        for (BezierMeshVertex2i<?> v: m0.getVertices())
+        {
+            BezierMeshVertex2i<?> w = m1.getClosestVertex(
+                    v.getCoord().x, v.getCoord().y);
+            if (w != null && w.getCoord().equals(v.getCoord()))
+            {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private ArrayList<BezierCurve2i> createPath(int numCurves, int side,
+            boolean quads, Random rand)
+    {
+        ArrayList<BezierCurve2i> curves = new ArrayList<BezierCurve2i>();
+        int sx = rand.nextInt(side);
+        int sy = rand.nextInt(side);
+        int px = sx;
+        int py = sy;
+        for (int i = 0; i < numCurves - 1; ++i)
+        {
+            int x = clamp(px + rand.nextInt(SEG_LENGTH) - SEG_LENGTH / 2, side);
+            int y = clamp(py + rand.nextInt(SEG_LENGTH) - SEG_LENGTH / 2, side);
+            if (!quads || rand.nextBoolean())
+            {
+                curves.add(new BezierLine2i(px, py, x, y));
+            }
+            else
+            {
+                int kx = clamp((px + x) / 2 + rand.nextInt(SEG_LENGTH) - SEG_LENGTH / 2, side);
+                int ky = clamp((py + y) / 2 + rand.nextInt(SEG_LENGTH) - SEG_LENGTH / 2, side);
+                curves.add(new BezierQuad2i(px, py, kx, ky, x, y));
+            }
+            px = x;
+            py = y;
+        }
+        //Close the path
+        curves.add(new BezierLine2i(px, py, sx, sy));
+        return curves;
+    }
+
+    private static int clamp(int value, int side)
+    {
+        return Math.max(0, Math.min(side, value));
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new BezierMeshBatchBenchmark();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.test.bezier;
+
+import com.kitfox.coyote.shape.bezier.BezierLine2i;
+import com.kitfox.coyote.shape.bezier.mesh.BezierMesh2i;
+import com.kitfox.coyote.shape.bezier.mesh.BezierMeshVertex2i;
+import com.kitfox.coyote.shape.bezier.path.cut.Coord;
+import java.util.Random;
+
+/**
+ * Copies indexed meshes of random short strokes and adds one more short
+ * stroke to each copy, as an undoable edit does.  Reports the time
+ * taken for each copy and edit against the size of the mesh, which
+ * should stay about the same as the mesh grows.  Checks that the edit
+ * shows up in the copy and leaves the original alone.
+ *
+ * @author kitfox
+ */
+public class BezierMeshCopyBenchmark
+{
+    static final int STROKE_LENGTH = 1000;
+    static final int NUM_EDITS = 200;
+
+    public BezierMeshCopyBenchmark()
+    {
+        int[] sizes = {10000, 40000, 160000};
+        for (int i = 0; i < sizes.length; ++i)
+        {
+            runTest(sizes[i]);
+        }
+    }
+
+    private void runTest(int numEdges)
+    {
+        //Keep density the same as the mesh grows
+        int side = (int)Math.sqrt(numEdges) * STROKE_LENGTH / 2;
+
+        Random rand = new Random(numEdges);
+        TestMesh mesh = new TestMesh();
+        for (int i = 0; i < numEdges; ++i)
+        {
+            mesh.addEdge(createStroke(rand, side), null);
+        }
+        int meshEdges = mesh.getNumEdges();
+
+        BezierLine2i[] edits = new BezierLine2i[NUM_EDITS];
+        Coord[] before = new Coord[NUM_EDITS];
+        for (int i = 0; i < edits.length; ++i)
+        {
+            edits[i] = createStroke(rand, side);
+            before[i] = mesh.getClosestVertex(
+                    edits[i].getStartX(), edits[i].getStartY()).getCoord();
+        }
+
+        //Warm up
+        for (int i = 0; i < edits.length; ++i)
+        {
+            new TestMesh(mesh).addEdge(edits[i], null);
+        }
+
+        boolean same = true;
+        long time = 0;
+        for (int i = 0; i < edits.length; ++i)
+        {
+            BezierLine2i edit = edits[i];
+            long t0 = System.nanoTime();
+            TestMesh copy = new TestMesh(mesh);
+            copy.addEdge(edit, null);
+            time += System.nanoTime() - t0;
+
+            BezierMeshVertex2i<?> v = copy.getClosestVertex(
+                    edit.getStartX(), edit.getStartY());
+            same &= v.getCoord().equals(
+                    new Coord(edit.getStartX(), edit.getStartY()));
+            same &= copy.getNumEdges() > meshEdges;
+        }
+
+        same &= mesh.getNumEdges() == meshEdges;
+        for (int i = 0; i < edits.length; ++i)
+        {
+            same &= mesh.getClosestVertex(edits[i].getStartX(),
+                    edits[i].getStartY()).getCoord().equals(before[i]);
+        }
+
+        System.err.println("strokes: " + numEdges
+                + " edges: " + meshEdges
+                + " copy and edit: " + (time / NUM_EDITS / 1000) + "us"
+                + (same ? "" : " MISMATCH"));
+    }
+
+    private BezierLine2i createStroke(Random rand, int side)
+    {
+        int x = rand.nextInt(side);
+        int y = rand.nextInt(side);
+        return new BezierLine2i(x, y,
+                x + rand.nextInt(STROKE_LENGTH) - STROKE_LENGTH / 2,
+                y + rand.nextInt(STROKE_LENGTH) - STROKE_LENGTH / 2);
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new BezierMeshCopyBenchmark();
+    }
+
+    //---------------------------------
+    static class TestMesh extends BezierMesh2i<Object, Object>
+    {
+        public TestMesh()
+        {
+            super(1);
+        }
+
+        public TestMesh(TestMesh mesh)
+        {
+            super(mesh);
+        }
+
+        @Override
+        public Object copyVertexData(Object data)
+        {
+            return data;
+        }
+
+        @Override
+        public Object copyEdgeData(Object data)
+        {
+            return data;
+        }
+
+        @Override
+        protected Object createDefaultVertexData(Coord c)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.test.bezier;
+
+import com.kitfox.coyote.shape.bezier.BezierLine2i;
+import com.kitfox.coyote.shape.bezier.mesh.BezierMesh2i;
+import com.kitfox.coyote.shape.bezier.mesh.BezierMeshEdge2i;
+import com.kitfox.coyote.shape.bezier.mesh.BezierMeshVertex2i;
+import com.kitfox.coyote.shape.bezier.path.cut.Coord;
+import java.util.Random;
+
+/**
+ * Times edge insertion and closest vertex and edge picking on meshes
+ * of random short strokes, with and without the mesh grid.  Searching
+ * without the grid is only timed on the smaller meshes since building
+ * large meshes that way takes minutes.
+ *
+ * @author kitfox
+ */
+public class BezierMeshIndexBenchmark
+{
+    static final int STROKE_LENGTH = 1000;
+    static final int NUM_PICKS = 2000;
+    static final int MAX_LINEAR_EDGES = 20000;
+
+    public BezierMeshIndexBenchmark()
+    {
+        int[] sizes = {10000, 20000, 50000, 100000, 200000};
+        for (int i = 0; i < sizes.length; ++i)
+        {
+            runTest(sizes[i]);
+        }
+    }
+
+    private void runTest(int numEdges)
+    {
+        //Keep density the same as the mesh grows
+        int side = (int)Math.sqrt(numEdges) * STROKE_LENGTH / 2;
+
+        Random rand = new Random(numEdges);
+        BezierLine2i[] strokes = new BezierLine2i[numEdges];
+        for (int i = 0; i < strokes.length; ++i)
+        {
+            int x = rand.nextInt(side);
+            int y = rand.nextInt(side);
+            strokes[i] = new BezierLine2i(x, y,
+                    x + rand.nextInt(STROKE_LENGTH) - STROKE_LENGTH / 2,
+                    y + rand.nextInt(STROKE_LENGTH) - STROKE_LENGTH / 2);
+        }
+
+        double[] picks = new double[NUM_PICKS * 2];
+        for (int i = 0; i < picks.length; ++i)
+        {
+            picks[i] = rand.nextDouble() * side;
+        }
+
+        TestMesh indexed = new TestMesh();
+        long buildIndexed = build(indexed, strokes);
+        long pickIndexed = pick(indexed, picks);
+
+        String line = "strokes: " + numEdges
+                + " edges: " + indexed.getNumEdges()
+                + " build indexed: " + (buildIndexed / 1000000) + "ms"
+                + " pick indexed: " + (pickIndexed / NUM_PICKS) + "ns";
+
+        if (numEdges <= MAX_LINEAR_EDGES)
+        {
+            TestMesh linear = new TestMesh();
+            linear.setSpatialIndexEnabled(false);
+            long buildLinear = build(linear, strokes);
+            long pickLinear = pick(linear, picks);
+
+            line += " build linear: " + (buildLinear / 1000000) + "ms"
+                    + " pick linear: " + (pickLinear / NUM_PICKS) + "ns"
+                    + (isSamePicks(indexed, linear, picks) ? "" : " MISMATCH");
+        }
+
+        System.err.println(line);
+    }
+
+    private long build(TestMesh mesh, BezierLine2i[] strokes)
+    {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < strokes.length; ++i)
+        {
+            mesh.addEdge(strokes[i], null);
+        }
+        return System.nanoTime() - t0;
+    }
+
+    private long pick(TestMesh mesh, double[] picks)
+    {
+        double pickRadiusSq = STROKE_LENGTH * STROKE_LENGTH;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < picks.length; i += 2)
+        {
+            mesh.getClosestVertex(picks[i], picks[i + 1]);
+            mesh.getClosestEdge(picks[i], picks[i + 1], pickRadiusSq);
+        }
+        return System.nanoTime() - t0;
+    }
+
+    private boolean isSamePicks(TestMesh m0, TestMesh m1, double[] picks)
+    {
+        double pickRadiusSq = STROKE_LENGTH * STROKE_LENGTH;
+        for (int i = 0; i < picks.length; i += 2)
+        {
+            BezierMeshVertex2i<?> v0 = m0.getClosestVertex(picks[i], picks[i + 1]);
+            BezierMeshVertex2i<?> v1 = m1.getClosestVertex(picks[i], picks[i + 1]);
+            if (!v0.getCoord().equals(v1.getCoord()))
+            {
+                return false;
+            }
+
+            BezierMeshEdge2i<?> e0 = m0.getClosestEdge(picks[i], picks[i + 1], pickRadiusSq);
+            BezierMeshEdge2i<?> e1 = m1.getClosestEdge(picks[i], picks[i + 1], pickRadiusSq);
+            if ((e0 == null) != (e1 == null)
+                    || (e0 != null && !e0.toString().equals(e1.toString())))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new BezierMeshIndexBenchmark();
+    }
+
+    //---------------------------------
+    static class TestMesh extends BezierMesh2i<Object, Object>
+    {
+        public TestMesh()
+        {
+            super(1);
+        }
+
+        @Override
+        public Object copyVertexData(Object data)
+        {
+            return data;
+        }
+
+        @Override
+        public Object copyEdgeData(Object data)
+        {
+            return data;
+        }
+
+        @Override
+        protected Object createDefaultVertexData(Coord c)
+        {
+            return null;
+        }
+    }
+}
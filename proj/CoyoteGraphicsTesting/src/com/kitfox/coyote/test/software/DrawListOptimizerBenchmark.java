@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.test.software;
+
+import com.kitfox.coyote.material.color.CyMaterialColorDrawRecord;
+import com.kitfox.coyote.material.color.CyMaterialColorDrawRecordFactory;
+import com.kitfox.coyote.math.CyColor4f;
+import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.renderer.CyDrawStack;
+import com.kitfox.coyote.renderer.CyGLWrapper;
+import com.kitfox.coyote.renderer.CyRenderStats;
+import com.kitfox.coyote.renderer.CyRendererUtil2D;
+import com.kitfox.coyote.renderer.CyTextureImage;
+import com.kitfox.coyote.renderer.CyTransparency;
+import com.kitfox.coyote.renderer.jogl.TexSourceAWTBufferedImage;
+import com.kitfox.coyote.renderer.vertex.CyVertexBufferDataSquare;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Draws a grid of cards, each an opaque colored rectangle with an
+ * opaque icon and a translucent highlight on top, with and without
+ * the draw list optimizer.  Part of the grid is scrolled out of view.
+ * Reports the draw calls and GL state changes made per frame and
+ * checks that both give the same pixels.
+ *
+ * @author kitfox
+ */
+public class DrawListOptimizerBenchmark
+{
+    static final int WIDTH = 1280;
+    static final int HEIGHT = 720;
+    static final int CARD_WIDTH = 60;
+    static final int CARD_HEIGHT = 40;
+    static final int COLUMNS = 20;
+    //Rows past the bottom of the view are not visible
+    static final int ROWS = 24;
+    static final int NUM_FRAMES = 20;
+
+    final CyTextureImage icon;
+
+    public DrawListOptimizerBenchmark()
+    {
+        BufferedImage img = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 0, 16, 16);
+        g.setColor(Color.YELLOW);
+        g.fillOval(2, 2, 12, 12);
+        g.dispose();
+        icon = new CyTextureImage(CyGLWrapper.TexTarget.GL_TEXTURE_2D,
+                CyGLWrapper.InternalFormatTex.GL_RGBA,
+                CyGLWrapper.DataType.GL_UNSIGNED_BYTE,
+                img.getWidth(), img.getHeight(), CyTransparency.OPAQUE,
+                new TexSourceAWTBufferedImage(img));
+
+        int[] plain = runTest(false);
+        int[] optimized = runTest(true);
+
+        System.err.println("Plain and optimized frames "
+                + (Arrays.equals(plain, optimized) ? "match" : "DIFFER"));
+    }
+
+    private int[] runTest(boolean optimize)
+    {
+        SoftwareFrameRenderer renderer =
+                new SoftwareFrameRenderer(WIDTH, HEIGHT, 1);
+        renderer.setOptimize(optimize);
+        long time = renderer.renderFrames(new SoftwareFrameRenderer.Scene()
+        {
+            @Override
+            public void draw(CyDrawStack stack)
+            {
+                drawCards(stack);
+            }
+        }, NUM_FRAMES);
+
+        CyRenderStats stats = renderer.getRenderStats();
+        System.err.println((optimize ? "optimized" : "plain")
+                + " frame: " + (time / NUM_FRAMES / 1000) + "us"
+                + " state changes requested: "
+                + (stats.getStateChanges() + stats.getStateChangesSkipped())
+                + " " + stats);
+
+        int[] argb = renderer.getRGB();
+        renderer.dispose();
+        return argb;
+    }
+
+    private void drawCards(CyDrawStack stack)
+    {
+        CyRendererUtil2D.clear(stack, .2f, .3f, .3f, 1);
+
+        CyColor4f highlight = new CyColor4f(1, 1, 1, .4f);
+        for (int j = 0; j < ROWS; ++j)
+        {
+            for (int i = 0; i < COLUMNS; ++i)
+            {
+                int x = i * (CARD_WIDTH + 4) + 2;
+                int y = j * (CARD_HEIGHT + 4) + 2;
+                CyColor4f color = new CyColor4f(i / (float)COLUMNS,
+                        j / (float)ROWS, .5f, 1);
+
+                fillRect(stack, color, x, y, CARD_WIDTH, CARD_HEIGHT);
+                CyRendererUtil2D.drawImage(stack, icon, 0, 0, 16, 16,
+                        x + 4, y + 4, 32, 32);
+                fillRect(stack, highlight, x, y, CARD_WIDTH, CARD_HEIGHT / 4);
+            }
+        }
+    }
+
+    /**
+     * Add a rectangle without checking if it is in view, as scene
+     * nodes that draw their own records do.
+     */
+    private void fillRect(CyDrawStack stack, CyColor4f color,
+            double x, double y, double w, double h)
+    {
+        CyMatrix4d model = stack.getModelXform();
+        stack.translate(x, y, 0);
+        stack.scale(w, h, 1);
+
+        CyMaterialColorDrawRecord rec =
+                CyMaterialColorDrawRecordFactory.inst().allocRecord();
+        rec.setMvpMatrix(stack.getModelViewProjXform());
+        rec.setOpacity(1);
+        rec.setColor(color);
+        rec.setMesh(CyVertexBufferDataSquare.inst().getBuffer());
+        stack.addDrawRecord(rec);
+
+        stack.setModelXform(model);
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new DrawListOptimizerBenchmark();
+    }
+}
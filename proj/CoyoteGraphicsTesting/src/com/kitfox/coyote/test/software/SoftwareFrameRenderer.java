@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.test.software;
+
+import com.kitfox.coyote.drawRecord.CyDrawGroupZOrder;
+import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.renderer.CyDrawStack;
+import com.kitfox.coyote.renderer.CyGLContext;
+import com.kitfox.coyote.renderer.CyRenderStats;
+import com.kitfox.coyote.renderer.software.CyGLWrapperSoftware;
+
+/**
+ * Draws frames of a scene with the software renderer for the rendering
+ * benchmarks.  Each frame is drawn into a new draw list with a
+ * projection that maps one unit to one pixel, with the origin at the
+ * top left.
+ *
+ * @author kitfox
+ */
+public class SoftwareFrameRenderer
+{
+    final int width;
+    final int height;
+    final CyGLWrapperSoftware gl;
+    final CyGLContext ctx = new CyGLContext();
+    final int[] argb;
+    boolean optimize = true;
+
+    /**
+     * @param numThreads Number of threads the software renderer
+     * rasterizes with
+     */
+    public SoftwareFrameRenderer(int width, int height, int numThreads)
+    {
+        this.width = width;
+        this.height = height;
+        gl = new CyGLWrapperSoftware(width, height, numThreads);
+        argb = new int[width * height];
+    }
+
+    /**
+     * @param optimize If false, the draw list optimizer is turned off
+     */
+    public void setOptimize(boolean optimize)
+    {
+        this.optimize = optimize;
+    }
+
+    /**
+     * Draw the scene once so that buffers and textures are uploaded,
+     * then draw it again the given number of times.
+     *
+     * @return Time taken to draw the timed frames in nanoseconds
+     */
+    public long renderFrames(Scene scene, int numFrames)
+    {
+        renderFrame(scene);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < numFrames; ++i)
+        {
+            renderFrame(scene);
+        }
+        return System.nanoTime() - start;
+    }
+
+    public void renderFrame(Scene scene)
+    {
+        ctx.processActions(gl);
+
+        CyDrawGroupZOrder group = new CyDrawGroupZOrder();
+        group.setOptimize(optimize);
+        CyDrawStack stack = new CyDrawStack(width, height, group);
+
+        CyMatrix4d proj = new CyMatrix4d();
+        proj.gluOrtho2D(0, width, height, 0);
+        stack.setProjXform(proj);
+
+        scene.draw(stack);
+
+        group.render(ctx, gl, null);
+        group.dispose();
+
+        gl.getRGB(argb);
+    }
+
+    /**
+     * @return Pixels of the last frame drawn
+     */
+    public int[] getRGB()
+    {
+        return argb;
+    }
+
+    public CyRenderStats getRenderStats()
+    {
+        return ctx.getRenderStats();
+    }
+
+    public void dispose()
+    {
+        gl.dispose();
+    }
+
+    //-----------------------------
+    /**
+     * Content drawn into each frame
+     */
+    public static interface Scene
+    {
+        public void draw(CyDrawStack stack);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.test.software;
+
+import com.kitfox.coyote.material.checker.CyMaterialCheckerDrawRecord;
+import com.kitfox.coyote.material.checker.CyMaterialCheckerDrawRecordFactory;
+import com.kitfox.coyote.material.gradient.CyMaterialGradientDrawRecord;
+import com.kitfox.coyote.material.gradient.CyMaterialGradientDrawRecordFactory;
+import com.kitfox.coyote.math.CyColor4f;
+import com.kitfox.coyote.math.CyGradientStops;
+import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.renderer.CyDrawStack;
+import com.kitfox.coyote.renderer.CyGLWrapper;
+import com.kitfox.coyote.renderer.CyRendererUtil2D;
+import com.kitfox.coyote.renderer.CyTextureImage;
+import com.kitfox.coyote.renderer.CyTransparency;
+import com.kitfox.coyote.renderer.CyVertexBuffer;
+import com.kitfox.coyote.renderer.jogl.TexSourceAWTBufferedImage;
+import com.kitfox.coyote.renderer.vertex.CyVertexBufferDataSquare;
+import com.kitfox.coyote.shape.CyEllipse2d;
+import com.kitfox.coyote.shape.ShapeMeshProvider;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+/**
+ * Draws a scene using the color, gradient, texture blit and checker
+ * materials with the software renderer.  Times it with one thread and
+ * with one thread per processor and checks that both give the same
+ * pixels.  If a file name is given, the frame is saved there as a PNG.
+ *
+ * @author kitfox
+ */
+public class SoftwareRendererBenchmark
+{
+    static final int WIDTH = 1280;
+    static final int HEIGHT = 720;
+    static final int NUM_ELLIPSES = 2000;
+    static final int NUM_FRAMES = 20;
+
+    final CyVertexBuffer[] ellipses = new CyVertexBuffer[NUM_ELLIPSES];
+    final double[] positions = new double[NUM_ELLIPSES * 2];
+    final CyColor4f[] colors = new CyColor4f[NUM_ELLIPSES];
+    final CyTextureImage image;
+    final CyGradientStops stops;
+
+    public SoftwareRendererBenchmark(String outFile)
+    {
+        Random rand = new Random(0);
+        for (int i = 0; i < NUM_ELLIPSES; ++i)
+        {
+            double w = 10 + rand.nextDouble() * 90;
+            double h = 10 + rand.nextDouble() * 90;
+            positions[i * 2] = rand.nextDouble() * (WIDTH - w);
+            positions[i * 2 + 1] = rand.nextDouble() * (HEIGHT - h);
+            ellipses[i] = new CyVertexBuffer(new ShapeMeshProvider(
+                    new CyEllipse2d(0, 0, w, h)));
+            colors[i] = new CyColor4f(rand.nextFloat(), rand.nextFloat(),
+                    rand.nextFloat(), .3f + rand.nextFloat() * .7f);
+        }
+
+        BufferedImage img = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 0, 64, 64);
+        g.setColor(Color.YELLOW);
+        g.fillOval(8, 8, 48, 48);
+        g.dispose();
+        image = new CyTextureImage(CyGLWrapper.TexTarget.GL_TEXTURE_2D,
+                CyGLWrapper.InternalFormatTex.GL_RGBA,
+                CyGLWrapper.DataType.GL_UNSIGNED_BYTE,
+                img.getWidth(), img.getHeight(), CyTransparency.TRANSLUCENT,
+                new TexSourceAWTBufferedImage(img));
+
+        stops = new CyGradientStops(new float[]{0, .5f, 1},
+                new CyColor4f[]{CyColor4f.RED, CyColor4f.GREEN, CyColor4f.BLUE},
+                CyGradientStops.Cycle.REFLECT, CyGradientStops.Style.LINEAR);
+
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        int[] single = runTest(1, null);
+        int[] multi = runTest(numThreads, outFile);
+
+        System.err.println("Single and multithreaded frames "
+                + (Arrays.equals(single, multi) ? "match" : "DIFFER"));
+    }
+
+    private int[] runTest(int numThreads, String outFile)
+    {
+        SoftwareFrameRenderer renderer =
+                new SoftwareFrameRenderer(WIDTH, HEIGHT, numThreads);
+        long time = renderer.renderFrames(new SoftwareFrameRenderer.Scene()
+        {
+            @Override
+            public void draw(CyDrawStack stack)
+            {
+                drawScene(stack);
+            }
+        }, NUM_FRAMES);
+
+        System.err.println("threads: " + numThreads
+                + " frame: " + (time / NUM_FRAMES / 1000000) + "ms");
+
+        int[] argb = renderer.getRGB();
+        if (outFile != null)
+        {
+            BufferedImage img = new BufferedImage(WIDTH, HEIGHT,
+                    BufferedImage.TYPE_INT_ARGB);
+            img.setRGB(0, 0, WIDTH, HEIGHT, argb, 0, WIDTH);
+            try
+            {
+                ImageIO.write(img, "png", new File(outFile));
+            } catch (IOException ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+
+        renderer.dispose();
+        return argb;
+    }
+
+    private void drawScene(CyDrawStack stack)
+    {
+        CyRendererUtil2D.clear(stack, .2f, .3f, .3f, 1);
+
+        //Checker background over the left half
+        {
+            CyVertexBuffer mesh = CyVertexBufferDataSquare.inst().getBuffer();
+            CyMatrix4d model = stack.getModelXform();
+            stack.scale(WIDTH / 2, HEIGHT, 1);
+
+            CyMaterialCheckerDrawRecord rec =
+                    CyMaterialCheckerDrawRecordFactory.inst().allocRecord();
+            rec.setMvpMatrix(stack.getModelViewProjXform());
+            rec.setMvMatrix(stack.getModelXform());
+            rec.setOpacity(1);
+            rec.setMesh(mesh);
+            rec.setColorFg(CyColor4f.WHITE);
+            rec.setColorBg(CyColor4f.GREY);
+            rec.setLineWidth(16);
+            stack.addDrawRecord(rec);
+
+            stack.setModelXform(model);
+        }
+
+        //Gradient over the right half
+        {
+            CyVertexBuffer mesh = CyVertexBufferDataSquare.inst().getBuffer();
+            CyMatrix4d model = stack.getModelXform();
+            stack.translate(WIDTH / 2, 0, 0);
+            stack.scale(WIDTH / 2, HEIGHT, 1);
+
+            CyMaterialGradientDrawRecord rec =
+                    CyMaterialGradientDrawRecordFactory.inst().allocRecord();
+            rec.setMvpMatrix(stack.getModelViewProjXform());
+            rec.setOpacity(1);
+            rec.setMesh(mesh);
+            rec.setStops(stops);
+            CyMatrix4d texMatrix = CyMatrix4d.createIdentity();
+            texMatrix.scale(2, 1, 1);
+            rec.setLocalToTexMatrix(texMatrix);
+            stack.addDrawRecord(rec);
+
+            stack.setModelXform(model);
+        }
+
+        for (int i = 0; i < NUM_ELLIPSES; ++i)
+        {
+            CyMatrix4d model = stack.getModelXform();
+            stack.translate(positions[i * 2], positions[i * 2 + 1], 0);
+            CyRendererUtil2D.fillShape(stack, colors[i], ellipses[i]);
+            stack.setModelXform(model);
+        }
+
+        for (int i = 0; i < 10; ++i)
+        {
+            CyRendererUtil2D.drawImage(stack, image, 0, 0, 64, 64,
+                    40 + i * 120, 40, 100, 100);
+        }
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new SoftwareRendererBenchmark(args.length > 0 ? args[0] : null);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.test.software;
+
+import com.kitfox.coyote.material.color.CyMaterialColorDrawRecord;
+import com.kitfox.coyote.material.color.CyMaterialColorDrawRecordFactory;
+import com.kitfox.coyote.math.CyColor4f;
+import com.kitfox.coyote.renderer.CyDrawStack;
+import com.kitfox.coyote.renderer.CyRenderStats;
+import com.kitfox.coyote.renderer.CyRendererUtil2D;
+import com.kitfox.coyote.renderer.CyVertexBuffer;
+import com.kitfox.coyote.renderer.CyVertexBufferBatch;
+import com.kitfox.coyote.shape.CyEllipse2d;
+import com.kitfox.coyote.shape.ShapeMeshProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Draws a grid of small shapes of a few colors, the way the faces of
+ * a mesh are drawn, once with a vertex buffer per shape and once with
+ * the shapes of each color merged into a CyVertexBufferBatch.  Reports
+ * the draw calls made per frame and checks that both give the same
+ * pixels.
+ *
+ * @author kitfox
+ */
+public class VertexBufferBatchBenchmark
+{
+    static final int WIDTH = 800;
+    static final int HEIGHT = 600;
+    static final int CELL = 20;
+    static final int NUM_COLORS = 4;
+    static final int NUM_FRAMES = 20;
+
+    final CyColor4f[] colors = {
+        new CyColor4f(1, 0, 0, 1),
+        new CyColor4f(0, 1, 0, 1),
+        new CyColor4f(0, 0, 1, 1),
+        new CyColor4f(1, 1, 0, .5f),
+    };
+
+    final ArrayList<ShapeMeshProvider> shapes = new ArrayList<ShapeMeshProvider>();
+
+    public VertexBufferBatchBenchmark()
+    {
+        for (int j = 0; j < HEIGHT / CELL; ++j)
+        {
+            for (int i = 0; i < WIDTH / CELL; ++i)
+            {
+                shapes.add(new ShapeMeshProvider(
+                        new CyEllipse2d(i * CELL + 2, j * CELL + 2,
+                        CELL - 4, CELL - 4)));
+            }
+        }
+
+        ArrayList<CyVertexBuffer> single = new ArrayList<CyVertexBuffer>();
+        for (int i = 0; i < shapes.size(); ++i)
+        {
+            single.add(new CyVertexBuffer(shapes.get(i)));
+        }
+
+        CyVertexBufferBatch[] batches = new CyVertexBufferBatch[NUM_COLORS];
+        ArrayList<CyVertexBuffer> batched = new ArrayList<CyVertexBuffer>();
+        for (int i = 0; i < NUM_COLORS; ++i)
+        {
+            batches[i] = new CyVertexBufferBatch();
+            batched.add(new CyVertexBuffer(batches[i]));
+        }
+        for (int i = 0; i < shapes.size(); ++i)
+        {
+            batches[i % NUM_COLORS].addMesh(shapes.get(i));
+        }
+
+        int[] plain = runTest("single", single);
+        int[] merged = runTest("batched", batched);
+
+        int builds = 0;
+        for (int i = 0; i < NUM_COLORS; ++i)
+        {
+            builds += batches[i].getNumBuilds();
+        }
+        System.err.println("Batches built " + builds + " times over "
+                + (NUM_FRAMES + 1) + " frames");
+        System.err.println("Single and batched frames "
+                + (Arrays.equals(plain, merged) ? "match" : "DIFFER"));
+    }
+
+    private int[] runTest(String name, final ArrayList<CyVertexBuffer> meshes)
+    {
+        SoftwareFrameRenderer renderer =
+                new SoftwareFrameRenderer(WIDTH, HEIGHT, 1);
+        //Measure batching on its own
+        renderer.setOptimize(false);
+        long time = renderer.renderFrames(new SoftwareFrameRenderer.Scene()
+        {
+            @Override
+            public void draw(CyDrawStack stack)
+            {
+                drawShapes(stack, meshes);
+            }
+        }, NUM_FRAMES);
+
+        CyRenderStats stats = renderer.getRenderStats();
+        System.err.println(name + " frame: " + (time / NUM_FRAMES / 1000) + "us "
+                + stats);
+
+        int[] argb = renderer.getRGB();
+        renderer.dispose();
+        return argb;
+    }
+
+    private void drawShapes(CyDrawStack stack,
+            ArrayList<CyVertexBuffer> meshes)
+    {
+        CyRendererUtil2D.clear(stack, 1, 1, 1, 1);
+
+        //Each batch holds every NUM_COLORS'th shape.  Shapes do not
+        // overlap, so drawing them grouped by color gives the same result.
+        for (int c = 0; c < NUM_COLORS; ++c)
+        {
+            for (int i = c; i < meshes.size(); i += NUM_COLORS)
+            {
+                CyMaterialColorDrawRecord rec =
+                        CyMaterialColorDrawRecordFactory.inst().allocRecord();
+                rec.setMvpMatrix(stack.getModelViewProjXform());
+                rec.setOpacity(1);
+                rec.setColor(colors[c]);
+                rec.setMesh(meshes.get(i));
+                stack.addDrawRecord(rec);
+            }
+        }
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new VertexBufferBatchBenchmark();
+    }
+}
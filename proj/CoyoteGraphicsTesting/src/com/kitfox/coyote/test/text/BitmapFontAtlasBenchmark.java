@@ -0,0 +1,140 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.test.text;
+
+import com.kitfox.coyote.text.bitmap.BitmapFont;
+import com.kitfox.coyote.text.bitmap.GlyphDef;
+import com.kitfox.coyote.text.bitmap.awt.BitmapFontBuilder;
+import java.awt.Font;
+import java.util.ArrayList;
+
+/**
+ * Builds bitmap fonts for several character sets and reports the size
+ * of the glyph pages against the single row of glyphs the builder
+ * used to make.  Also adds characters to a font after it is built, as
+ * happens when text is streamed in.  Glyph rectangles are checked to
+ * not overlap.
+ *
+ * @author kitfox
+ */
+public class BitmapFontAtlasBenchmark
+{
+    public BitmapFontAtlasBenchmark()
+    {
+        Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 24);
+
+        runTest(font, "ascii", range(' ', '~'));
+        runTest(font, "latin extended", range(' ', '\u024f'));
+        runTest(font, "cjk", range('\u4e00', '\u5dff'));
+
+        //Start with ascii and add characters as text appears
+        BitmapFontBuilder builder = new BitmapFontBuilder();
+        builder.setFont(font);
+        BitmapFontBuilder.Data data = builder.build(range(' ', '~'));
+        BitmapFont bitmapFont = data.buildFont();
+        int pages = bitmapFont.getNumPages();
+        int added = data.addCharacters("\u00c5ngstr\u00f6m na\u00efve \u4e2d\u6587");
+        added += data.addCharacters("\u00c5ngstr\u00f6m again");
+        System.err.println("streamed: added " + added + " glyphs, pages "
+                + pages + " -> " + bitmapFont.getNumPages()
+                + (checkOverlaps(data) ? "" : " OVERLAP"));
+    }
+
+    private void runTest(Font font, String name, char[] chars)
+    {
+        BitmapFontBuilder builder = new BitmapFontBuilder();
+        builder.setFont(font);
+
+        long start = System.nanoTime();
+        BitmapFontBuilder.Data data = builder.build(chars);
+        long time = System.nanoTime() - start;
+
+        //Width of the plate if glyphs were placed in one row
+        int rowWidth = 0;
+        int rowHeight = 0;
+        ArrayList<GlyphDef> glyphs = data.getSymbols().getGlyphs();
+        for (GlyphDef glyph : glyphs)
+        {
+            rowWidth += glyph.getWidth();
+            rowHeight = Math.max(rowHeight, glyph.getHeight());
+        }
+
+        long pixels = 0;
+        StringBuilder sizes = new StringBuilder();
+        for (int i = 0; i < data.getNumPages(); ++i)
+        {
+            int w = data.getGlyphPlate(i).getWidth();
+            int h = data.getGlyphPlate(i).getHeight();
+            pixels += (long)w * h;
+            sizes.append(" ").append(w).append("x").append(h);
+        }
+
+        System.err.println(name + ": " + glyphs.size() + " glyphs"
+                + " time: " + (time / 1000000) + "ms"
+                + " row: " + rowWidth + "x" + rowHeight
+                + " (" + ((long)rowWidth * rowHeight * 4 / 1024) + "kb)"
+                + " pages:" + sizes
+                + " (" + (pixels * 4 / 1024) + "kb)"
+                + (checkOverlaps(data) ? "" : " OVERLAP"));
+    }
+
+    private boolean checkOverlaps(BitmapFontBuilder.Data data)
+    {
+        ArrayList<GlyphDef> glyphs = data.getSymbols().getGlyphs();
+        for (int i = 0; i < glyphs.size(); ++i)
+        {
+            GlyphDef g0 = glyphs.get(i);
+            if (g0.getX() + g0.getWidth() > data.getGlyphPlate(g0.getPage()).getWidth()
+                    || g0.getY() + g0.getHeight() > data.getGlyphPlate(g0.getPage()).getHeight())
+            {
+                return false;
+            }
+
+            for (int j = i + 1; j < glyphs.size(); ++j)
+            {
+                GlyphDef g1 = glyphs.get(j);
+                if (g0.getPage() == g1.getPage()
+                        && g0.getX() < g1.getX() + g1.getWidth()
+                        && g1.getX() < g0.getX() + g0.getWidth()
+                        && g0.getY() < g1.getY() + g1.getHeight()
+                        && g1.getY() < g0.getY() + g0.getHeight())
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static char[] range(char first, char last)
+    {
+        char[] chars = new char[last - first + 1];
+        for (int i = 0; i < chars.length; ++i)
+        {
+            chars[i] = (char)(first + i);
+        }
+        return chars;
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new BitmapFontAtlasBenchmark();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.coyote.test.text;
+
+import com.kitfox.coyote.renderer.CyDrawStack;
+import com.kitfox.coyote.renderer.CyRenderStats;
+import com.kitfox.coyote.renderer.CyRendererUtil2D;
+import com.kitfox.coyote.test.software.SoftwareFrameRenderer;
+import com.kitfox.coyote.text.GlyphVisitor;
+import com.kitfox.coyote.text.Justify;
+import com.kitfox.coyote.text.TextFormatter;
+import com.kitfox.coyote.text.bitmap.BitmapFont;
+import com.kitfox.coyote.text.bitmap.GlyphDef;
+import com.kitfox.coyote.text.bitmap.TextFormatterBitmapFont;
+import com.kitfox.coyote.text.bitmap.awt.BitmapFontBuilder;
+import java.awt.Font;
+import java.util.Arrays;
+
+/**
+ * Draws a page of text with a bitmap font, once a glyph at a time and
+ * once as a text run.  Reports the draw calls made per frame and
+ * checks that both give the same pixels.
+ *
+ * @author kitfox
+ */
+public class BitmapTextRunBenchmark
+{
+    static final int WIDTH = 1280;
+    static final int HEIGHT = 720;
+    static final int NUM_FRAMES = 20;
+
+    static final String PARAGRAPH =
+            "The quick brown fox jumps over the lazy dog.  "
+            + "Pack my box with five dozen liquor jugs!  "
+            + "How vexingly quick daft zebras jump; "
+            + "sphinx of black quartz, judge my vow.  ";
+
+    final BitmapFont font;
+    final TextFormatter<GlyphDef>.LineSetToken<GlyphDef> text;
+
+    public BitmapTextRunBenchmark()
+    {
+        char[] ascii = new char['~' - ' ' + 1];
+        for (int i = 0; i < ascii.length; ++i)
+        {
+            ascii[i] = (char)(' ' + i);
+        }
+
+        BitmapFontBuilder builder = new BitmapFontBuilder();
+        builder.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+        font = builder.build(ascii).buildFont();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20; ++i)
+        {
+            sb.append(PARAGRAPH);
+        }
+        sb.append('\n');
+        String page = sb.toString();
+        for (int i = 0; i < 3; ++i)
+        {
+            sb.append(page);
+        }
+
+        TextFormatterBitmapFont formatter = new TextFormatterBitmapFont(font);
+        text = formatter.layout(sb.toString(), WIDTH - 40, Justify.LEFT);
+
+        int[] glyphs = runTest(false);
+        int[] run = runTest(true);
+
+        System.err.println("Glyph and run frames "
+                + (Arrays.equals(glyphs, run) ? "match" : "DIFFER"));
+    }
+
+    private int[] runTest(final boolean useRun)
+    {
+        SoftwareFrameRenderer renderer =
+                new SoftwareFrameRenderer(WIDTH, HEIGHT, 1);
+        long time = renderer.renderFrames(new SoftwareFrameRenderer.Scene()
+        {
+            @Override
+            public void draw(CyDrawStack stack)
+            {
+                drawText(stack, useRun);
+            }
+        }, NUM_FRAMES);
+
+        CyRenderStats stats = renderer.getRenderStats();
+        System.err.println((useRun ? "run" : "glyphs")
+                + " frame: " + (time / NUM_FRAMES / 1000) + "us "
+                + stats);
+
+        int[] argb = renderer.getRGB();
+        renderer.dispose();
+        return argb;
+    }
+
+    private void drawText(final CyDrawStack stack, boolean useRun)
+    {
+        CyRendererUtil2D.clear(stack, .2f, .2f, .3f, 1);
+
+        stack.translate(20, 20 + font.getLineAscent(), 0);
+        if (useRun)
+        {
+            font.renderText(stack, text);
+        }
+        else
+        {
+            text.visit(new GlyphVisitor<GlyphDef>()
+            {
+                @Override
+                public void visit(float x, int y, GlyphDef glyph)
+                {
+                    if (glyph != null)
+                    {
+                        font.renderGlyph(stack, glyph, (int)x, y);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new BitmapTextRunBenchmark();
+    }
+}
@@ -291,6 +291,27 @@ public class RavenPaintLayout
     {
         return toCache().toString();
     }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == null)
+        {
+            return false;
+        }
+        if (getClass() != obj.getClass())
+        {
+            return false;
+        }
+        final RavenPaintLayout other = (RavenPaintLayout) obj;
+        return p2l.equals(other.p2l);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return p2l.hashCode();
+    }
     
     
 }
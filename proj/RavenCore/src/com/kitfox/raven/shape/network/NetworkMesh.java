@@ -24,6 +24,7 @@ import com.kitfox.cache.parser.ParseException;
 import com.kitfox.coyote.shape.CyPathIterator;
 import com.kitfox.coyote.shape.CyShape;
 import com.kitfox.coyote.shape.bezier.BezierCubic2i;
+import com.kitfox.coyote.shape.bezier.BezierCurve2i;
 import com.kitfox.coyote.shape.bezier.BezierLine2i;
 import com.kitfox.coyote.shape.bezier.BezierQuad2i;
 import com.kitfox.coyote.shape.bezier.mesh.BezierMesh2i;
@@ -31,8 +32,13 @@ import com.kitfox.coyote.shape.bezier.mesh.BezierMeshEdge2i;
 import com.kitfox.coyote.shape.bezier.mesh.BezierMeshVertex2i;
 import com.kitfox.coyote.shape.bezier.mesh.BezierVertexSmooth;
 import com.kitfox.coyote.shape.bezier.path.cut.Coord;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,6 +54,15 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
     public static final String PROP_EDGES = "edges";
     public static final String PROP_DATAKEYS = "dataKeys";
     public static final String PROP_DATAVALS = "dataVals";
+
+    //Version of the encoding written by toBinary()
+    public static final int BINARY_VERSION = 1;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    //Codes of vertex smoothing in the binary encoding
+    static final BezierVertexSmooth[] SMOOTH_CODES = {
+        BezierVertexSmooth.CORNER, BezierVertexSmooth.SMOOTH,
+        BezierVertexSmooth.AUTO_SMOOTH, BezierVertexSmooth.FREE
+    };
     
     //Default resolution of 2 pixels (ie 200 * 200)
     public static final double FLATNESS_SQ = 10000;
@@ -86,6 +101,7 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
     public static NetworkMesh create(CyShape shape, NetworkDataEdge data)
     {
         NetworkMesh mesh = new NetworkMesh();
+        ArrayList<BezierCurve2i> curves = new ArrayList<BezierCurve2i>();
         
         double[] coords = new double[6];
         double sx = 0;
@@ -108,7 +124,7 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
                     BezierLine2i curve = new BezierLine2i(
                             (int)mx, (int)my, 
                             (int)coords[0], (int)coords[1]);
-                    mesh.addEdge(curve, new NetworkDataEdge(data));
+                    curves.add(curve);
                     mx = coords[0];
                     my = coords[1];
                     break;
@@ -119,7 +135,7 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
                             (int)mx, (int)my, 
                             (int)coords[0], (int)coords[1],
                             (int)coords[2], (int)coords[3]);
-                    mesh.addEdge(curve, new NetworkDataEdge(data));
+                    curves.add(curve);
                     mx = coords[2];
                     my = coords[3];
                     break;
@@ -131,7 +147,7 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
                             (int)coords[0], (int)coords[1],
                             (int)coords[2], (int)coords[3],
                             (int)coords[4], (int)coords[5]);
-                    mesh.addEdge(curve, new NetworkDataEdge(data));
+                    curves.add(curve);
                     mx = coords[4];
                     my = coords[5];
                     break;
@@ -143,7 +159,7 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
                         BezierLine2i curve = new BezierLine2i(
                                 (int)mx, (int)my, 
                                 (int)coords[0], (int)coords[1]);
-                        mesh.addEdge(curve, new NetworkDataEdge(data));
+                        curves.add(curve);
                     }
                     mx = coords[0];
                     my = coords[1];
@@ -152,6 +168,15 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
             }
         }
         
+        //Each edge gets its own copy of the data
+        ArrayList<NetworkDataEdge> dataList = 
+                new ArrayList<NetworkDataEdge>(curves.size());
+        for (int i = 0; i < curves.size(); ++i)
+        {
+            dataList.add(new NetworkDataEdge(data));
+        }
+        mesh.addEdges(curves, dataList);
+        
         return mesh;
     }
 
@@ -176,11 +201,38 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
         return null;
     }
     
+    /**
+     * Create a mesh from data written by toBinary().  The mesh is read
+     * starting at the buffer's position, which is left at the end of
+     * the mesh.
+     *
+     * @throws IOException if the data is truncated or damaged
+     */
+    public static NetworkMesh create(ByteBuffer buf) throws IOException
+    {
+        BinaryLoader loader = new BinaryLoader(buf);
+        return loader.load();
+    }
+
     public CacheMap toCache()
     {
         CacheBuilder builder = new CacheBuilder();
         return builder.build();
     }
+
+    /**
+     * Encode this mesh in binary.  This holds the same tables as
+     * toCache(), with coordinates delta encoded as varints and each
+     * edge packed into a smoothing byte and four coordinate indices.
+     * Data keys and values are stored once and referred to by index.
+     *
+     * @return Buffer holding the mesh from its position to its limit
+     */
+    public ByteBuffer toBinary()
+    {
+        BinaryBuilder builder = new BinaryBuilder();
+        return builder.build();
+    }
     
     @Override
     public String toString()
@@ -448,7 +500,7 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
             pointMap.put(c, i);
         }
         
-        private Integer getDataValueIdx(String val)
+        Integer getDataValueIdx(String val)
         {
             Integer i = dataValueMap.get(val);
             if (i == null)
@@ -460,7 +512,7 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
             return i;
         }
 
-        private Integer getDataKeyIdx(Class<? extends NetworkDataType> key)
+        Integer getDataKeyIdx(Class<? extends NetworkDataType> key)
         {
             Integer i = dataKeyMap.get(key);
             if (i == null)
@@ -509,11 +561,8 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
             return list;
         }
         
-        public CacheMap build()
+        void buildCoords()
         {
-            CacheMap map = new CacheMap(CACHE_NAME);
-
-            //Build coord list
             for (BezierMeshVertex2i v: getVertices())
             {
                 appendCoord(v.getCoord(), pointMap, pointIdx);
@@ -524,6 +573,14 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
                 appendCoord(e.getK0(), pointMap, pointIdx);
                 appendCoord(e.getK1(), pointMap, pointIdx);
             }
+        }
+
+        public CacheMap build()
+        {
+            CacheMap map = new CacheMap(CACHE_NAME);
+
+            //Build coord list
+            buildCoords();
 
             //Store coord list
             {
@@ -601,4 +658,384 @@ public class NetworkMesh extends BezierMesh2i<NetworkDataVertex, NetworkDataEdge
             return map;
         }
     }
+
+    /**
+     * Convert a value from a data map to text with the type it is
+     * stored under
+     */
+    private static <T> String asText(NetworkDataType<T> type, Object value)
+    {
+        return type.asText(type.getDataType().cast(value));
+    }
+
+    //--------------------------
+    /**
+     * Writes the binary encoding.  Vertices and edges are written
+     * first, since writing them fills in the data tables.  The tables
+     * are then written ahead of them so the loader can read in one pass.
+     */
+    class BinaryBuilder
+    {
+        //Indexes coordinates, data keys and data values the same way
+        // the cache does
+        final CacheBuilder tables = new CacheBuilder();
+        //Copies of edge data share their values, so remember the index
+        // of each value object rather than converting it to text again
+        final HashMap<Class<?>, IdentityHashMap<Object, Integer>> valueIdxMap
+                = new HashMap<Class<?>, IdentityHashMap<Object, Integer>>();
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+
+        private void ensureSpace(int size)
+        {
+            if (buf.remaining() >= size)
+            {
+                return;
+            }
+
+            ByteBuffer newBuf = ByteBuffer.allocate(
+                    Math.max(buf.capacity() * 2, buf.position() + size));
+            buf.flip();
+            newBuf.put(buf);
+            buf = newBuf;
+        }
+
+        private void putVarInt(int value)
+        {
+            ensureSpace(5);
+            while ((value & ~0x7f) != 0)
+            {
+                buf.put((byte)((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            buf.put((byte)value);
+        }
+
+        private void putSignedVarInt(int value)
+        {
+            //Zigzag so small negative numbers stay small
+            putVarInt((value << 1) ^ (value >> 31));
+        }
+
+        private void putString(String text)
+        {
+            byte[] data = text.getBytes(UTF8);
+            putVarInt(data.length);
+            ensureSpace(data.length);
+            buf.put(data);
+        }
+
+        private int getSmoothCode(BezierVertexSmooth smooth)
+        {
+            for (int i = 0; i < SMOOTH_CODES.length; ++i)
+            {
+                if (SMOOTH_CODES[i] == smooth)
+                {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException();
+        }
+
+        private void putData(Map<? extends Class<?>, ?> dataMap)
+        {
+            putVarInt(dataMap.size());
+            for (Map.Entry<? extends Class<?>, ?> entry: dataMap.entrySet())
+            {
+                Class<?> key = entry.getKey();
+                IdentityHashMap<Object, Integer> valueMap = valueIdxMap.get(key);
+                if (valueMap == null)
+                {
+                    valueMap = new IdentityHashMap<Object, Integer>();
+                    valueIdxMap.put(key, valueMap);
+                }
+
+                Object value = entry.getValue();
+                Integer valIdx = valueMap.get(value);
+                if (valIdx == null)
+                {
+                    NetworkDataType<?> type = NetworkDataTypeIndex.inst()
+                            .getServiceByClass(key.asSubclass(NetworkDataType.class));
+                    valIdx = tables.getDataValueIdx(asText(type, value));
+                    valueMap.put(value, valIdx);
+                }
+
+                putVarInt(tables.getDataKeyIdx(
+                        key.asSubclass(NetworkDataType.class)));
+                putVarInt(valIdx);
+            }
+        }
+
+        public ByteBuffer build()
+        {
+            tables.buildCoords();
+            HashMap<Coord, Integer> pointMap = tables.pointMap;
+            ArrayList<Coord> pointIdx = tables.pointIdx;
+
+            putVarInt(getNumVertices());
+            for (BezierMeshVertex2i<?> v: getVertices())
+            {
+                NetworkDataVertex data = (NetworkDataVertex)v.getData();
+                putVarInt(pointMap.get(v.getCoord()));
+                putData(data.dataMap);
+            }
+
+            putVarInt(getNumEdges());
+            for (BezierMeshEdge2i<?> e: getEdges())
+            {
+                ensureSpace(1);
+                buf.put((byte)(getSmoothCode(e.getSmooth0())
+                        | (getSmoothCode(e.getSmooth1()) << 2)));
+                putVarInt(pointMap.get(e.getStart().getCoord()));
+                putVarInt(pointMap.get(e.getK0()));
+                putVarInt(pointMap.get(e.getK1()));
+                putVarInt(pointMap.get(e.getEnd().getCoord()));
+
+                NetworkDataEdge data = (NetworkDataEdge)e.getData();
+                putData(data.dataMapEdge);
+                putData(data.dataMapLeft);
+                putData(data.dataMapRight);
+            }
+
+            ByteBuffer body = buf;
+            body.flip();
+            buf = ByteBuffer.allocate(body.remaining() 
+                    + pointIdx.size() * 4 + 64);
+
+            putVarInt(BINARY_VERSION);
+
+            putVarInt(pointIdx.size());
+            int px = 0;
+            int py = 0;
+            for (Coord c: pointIdx)
+            {
+                putSignedVarInt(c.x - px);
+                putSignedVarInt(c.y - py);
+                px = c.x;
+                py = c.y;
+            }
+
+            putVarInt(tables.dataKeyIdx.size());
+            for (Class<?> key: tables.dataKeyIdx)
+            {
+                putString(key.getName());
+            }
+
+            putVarInt(tables.dataValueIdx.size());
+            for (String val: tables.dataValueIdx)
+            {
+                putString(val);
+            }
+
+            ensureSpace(body.remaining());
+            buf.put(body);
+            buf.flip();
+            return buf;
+        }
+    }
+
+    //--------------------------
+    static class BinaryLoader
+    {
+        final ByteBuffer buf;
+        Coord[] points;
+        NetworkDataType<?>[] dataKeys;
+        String[] dataValues;
+        //Values decoded so far, by key then value index
+        Object[][] decoded;
+
+        public BinaryLoader(ByteBuffer buf)
+        {
+            this.buf = buf;
+        }
+
+        private byte getByte() throws IOException
+        {
+            if (!buf.hasRemaining())
+            {
+                throw new IOException("Mesh data ends at byte "
+                        + buf.position());
+            }
+            return buf.get();
+        }
+
+        private int getVarInt() throws IOException
+        {
+            int value = 0;
+            //An int takes at most 5 bytes
+            for (int shift = 0; shift < 35; shift += 7)
+            {
+                byte b = getByte();
+                value |= (b & 0x7f) << shift;
+                if (b >= 0)
+                {
+                    return value;
+                }
+            }
+            throw new IOException("Varint too long at byte "
+                    + buf.position());
+        }
+
+        private int getSignedVarInt() throws IOException
+        {
+            int value = getVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Read a count of entries that each take at least one byte, so
+         * a damaged count cannot cause a huge allocation
+         */
+        private int getCount(String name) throws IOException
+        {
+            int count = getVarInt();
+            if (count < 0 || count > buf.remaining())
+            {
+                throw new IOException("Invalid " + name + " count " + count
+                        + " with " + buf.remaining() + " bytes left");
+            }
+            return count;
+        }
+
+        /**
+         * Read an index into a table
+         */
+        private int getIndex(int size, String name) throws IOException
+        {
+            int idx = getVarInt();
+            if (idx < 0 || idx >= size)
+            {
+                throw new IOException(name + " index " + idx
+                        + " out of range of " + size);
+            }
+            return idx;
+        }
+
+        private Coord getPoint() throws IOException
+        {
+            return points[getIndex(points.length, "Point")];
+        }
+
+        private String getString() throws IOException
+        {
+            byte[] data = new byte[getCount("string byte")];
+            buf.get(data);
+            return new String(data, UTF8);
+        }
+
+        /**
+         * Data maps are keyed by the class of each data type
+         */
+        @SuppressWarnings("unchecked")
+        private Class<? extends NetworkDataType<?>> getKey(NetworkDataType<?> type)
+        {
+            return (Class<? extends NetworkDataType<?>>)type.getClass();
+        }
+
+        private void getData(
+                Map<? super Class<? extends NetworkDataType<?>>, Object> dataMap)
+                throws IOException
+        {
+            int size = getCount("data entry");
+            for (int i = 0; i < size; ++i)
+            {
+                int keyIdx = getIndex(dataKeys.length, "Data key");
+                int valIdx = getIndex(dataValues.length, "Data value");
+
+                //Values are shared between meshes and copies of data
+                // anyhow, so each is only decoded once
+                Object[] values = decoded[keyIdx];
+                if (values == null)
+                {
+                    values = decoded[keyIdx] = new Object[dataValues.length];
+                }
+                Object value = values[valIdx];
+                if (value == null)
+                {
+                    value = values[valIdx] = 
+                            dataKeys[keyIdx].fromText(dataValues[valIdx]);
+                }
+
+                dataMap.put(getKey(dataKeys[keyIdx]), value);
+            }
+        }
+
+        public NetworkMesh load() throws IOException
+        {
+            int version = getVarInt();
+            if (version < 1 || version > BINARY_VERSION)
+            {
+                throw new IOException(
+                        "Unknown mesh encoding version " + version);
+            }
+
+            NetworkMesh mesh = new NetworkMesh();
+
+            points = new Coord[getCount("point")];
+            int px = 0;
+            int py = 0;
+            for (int i = 0; i < points.length; ++i)
+            {
+                px += getSignedVarInt();
+                py += getSignedVarInt();
+                points[i] = new Coord(px, py);
+            }
+
+            dataKeys = new NetworkDataType<?>[getCount("data key")];
+            for (int i = 0; i < dataKeys.length; ++i)
+            {
+                String name = getString();
+                dataKeys[i] = NetworkDataTypeIndex.inst()
+                        .getServiceByClass(name);
+                if (dataKeys[i] == null)
+                {
+                    throw new IOException("Unknown data key " + name);
+                }
+            }
+            decoded = new Object[dataKeys.length][];
+
+            dataValues = new String[getCount("data value")];
+            for (int i = 0; i < dataValues.length; ++i)
+            {
+                dataValues[i] = getString();
+            }
+
+            int numVertices = getCount("vertex");
+            for (int i = 0; i < numVertices; ++i)
+            {
+                Coord coord = getPoint();
+                NetworkDataVertex data = new NetworkDataVertex();
+                getData(data.dataMap);
+                BezierMeshVertex2i<NetworkDataVertex> v = 
+                        mesh.getOrCreateVertex(coord);
+                v.setData(data);
+            }
+
+            int numEdges = getCount("edge");
+            for (int i = 0; i < numEdges; ++i)
+            {
+                int smooth = getByte();
+                Coord c0 = getPoint();
+                Coord ck0 = getPoint();
+                Coord ck1 = getPoint();
+                Coord c1 = getPoint();
+
+                NetworkDataEdge data = new NetworkDataEdge();
+                getData(data.dataMapEdge);
+                getData(data.dataMapLeft);
+                getData(data.dataMapRight);
+
+                BezierMeshEdge2i<NetworkDataEdge> e = mesh.addEdgeDirect(
+                        new BezierCubic2i(
+                            c0.x, c0.y,
+                            ck0.x, ck0.y,
+                            ck1.x, ck1.y,
+                            c1.x, c1.y
+                        ), data);
+                e.setSmooth0(SMOOTH_CODES[smooth & 0x3]);
+                e.setSmooth1(SMOOTH_CODES[(smooth >> 2) & 0x3]);
+            }
+
+            return mesh;
+        }
+    }
 }
@@ -20,6 +20,10 @@ import com.kitfox.raven.util.service.ServiceInst;
 import com.kitfox.raven.util.tree.*;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  *
@@ -87,6 +91,9 @@ public class NetworkMeshEditor extends PropertyWrapperEditor<NetworkMesh>
     @ServiceInst(service=PropertyProvider.class)
     public static class Provider extends PropertyProvider<NetworkMesh>
     {
+        static final int VERTEX_BYTES = 100;
+        static final int EDGE_BYTES = 300;
+
         public Provider()
         {
             super(NetworkMesh.class);
@@ -109,6 +116,31 @@ public class NetworkMeshEditor extends PropertyWrapperEditor<NetworkMesh>
         {
             return NetworkMesh.create(text);
         }
+
+        @Override
+        public void writeBinary(NetworkMesh value, DataOutput out) throws IOException
+        {
+            ByteBuffer buf = value.toBinary();
+            out.writeInt(buf.remaining());
+            out.write(buf.array(), buf.arrayOffset() + buf.position(),
+                    buf.remaining());
+        }
+
+        @Override
+        public NetworkMesh readBinary(DataInput in) throws IOException
+        {
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return NetworkMesh.create(ByteBuffer.wrap(data));
+        }
+
+        @Override
+        public long getSizeEstimate(NetworkMesh value)
+        {
+            //Measured on meshes of stroked curves with painted faces
+            return 512 + value.getNumVertices() * VERTEX_BYTES
+                    + value.getNumEdges() * EDGE_BYTES;
+        }
     }
     
 }
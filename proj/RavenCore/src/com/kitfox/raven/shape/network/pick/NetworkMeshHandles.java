@@ -449,7 +449,7 @@ public class NetworkMeshHandles extends NetworkHandles
                 BezierMeshVertex2i v0, v1;
                 BezierVertexSmooth s0, s1;
                 Coord k0, k1;
-                if (e0.getStart() == v)
+                if (e0.getStart().equals(v))
                 {
                     v0 = e0.getEnd();
                     s0 = e0.getSmooth1();
@@ -462,7 +462,7 @@ public class NetworkMeshHandles extends NetworkHandles
                     k0 = e0.getK0();
                 }
 
-                if (e1.getStart() == v)
+                if (e1.getStart().equals(v))
                 {
                     v1 = e1.getEnd();
                     s1 = e1.getSmooth1();
@@ -541,7 +541,7 @@ public class NetworkMeshHandles extends NetworkHandles
 
         public void setEdgeLayout(RavenPaintLayout layout)
         {
-            NetworkDataEdge data = e.getData();
+            NetworkDataEdge data = e.editData();
             data.putEdge(NetworkDataTypePaintLayout.class, layout);
         }
         
@@ -953,7 +953,7 @@ public class NetworkMeshHandles extends NetworkHandles
                 {
                     continue;
                 }
-                NetworkDataEdge data = (NetworkDataEdge)e.getData();
+                NetworkDataEdge data = (NetworkDataEdge)e.editData();
                 
                 if (data == null)
                 {
@@ -984,7 +984,7 @@ public class NetworkMeshHandles extends NetworkHandles
                 {
                     continue;
                 }
-                NetworkDataEdge data = (NetworkDataEdge)e.getData();
+                NetworkDataEdge data = (NetworkDataEdge)e.editData();
                 
                 if (data == null)
                 {
@@ -1014,7 +1014,7 @@ public class NetworkMeshHandles extends NetworkHandles
                 {
                     continue;
                 }
-                NetworkDataEdge data = (NetworkDataEdge)e.getData();
+                NetworkDataEdge data = (NetworkDataEdge)e.editData();
                 
                 if (seg.isRight())
                 {
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.util;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs a task for every index of a range, split into batches across a
+ * pool of daemon threads, and waits for them all to finish.
+ *
+ * <p>The range is split into a few batches per thread so that threads
+ * which finish early can take on more.  Ranges too small to be worth
+ * handing to other threads are run on the calling thread.  The threads
+ * are started the first time they are needed.</p>
+ *
+ * @author kitfox
+ */
+public class ParallelBatchRunner
+{
+    static final int BATCHES_PER_THREAD = 4;
+
+    private final String threadName;
+    private final int numThreads;
+    private final int minParallel;
+    private ExecutorService pool;
+
+    /**
+     * @param threadName Name given to the threads of the pool
+     * @param numThreads Number of threads to run tasks on.  If less
+     * than 2, every task is run on the calling thread.
+     * @param minParallel Ranges with fewer indices than this are run on
+     * the calling thread, since handing work to other threads would
+     * cost more than it saves
+     */
+    public ParallelBatchRunner(String threadName, int numThreads,
+            int minParallel)
+    {
+        this.threadName = threadName;
+        this.numThreads = numThreads;
+        this.minParallel = minParallel;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * @return true if a range of the given size would be split across
+     * the pool
+     */
+    public boolean isParallel(int size)
+    {
+        return numThreads >= 2 && size >= minParallel;
+    }
+
+    /**
+     * Run the task for every index from 0 up to size and wait for them
+     * all to finish.  If the task throws, the exception is passed on
+     * once every batch is done.
+     *
+     * @param size Number of indices
+     * @param task Task that can be run for different indices at the
+     * same time
+     */
+    public void run(int size, Task task)
+    {
+        if (!isParallel(size))
+        {
+            for (int i = 0; i < size; ++i)
+            {
+                task.run(i);
+            }
+            return;
+        }
+
+        int numBatches = Math.min(size, numThreads * BATCHES_PER_THREAD);
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>(numBatches);
+        ExecutorService exec = getPool();
+        for (int i = 0; i < numBatches; ++i)
+        {
+            int start = (int)((long)size * i / numBatches);
+            int end = (int)((long)size * (i + 1) / numBatches);
+            futures.add(exec.submit(new Batch(task, start, end)));
+        }
+
+        //Every batch must be finished before returning, even if one
+        // of them failed
+        Throwable failure = null;
+        for (int i = 0; i < futures.size(); ++i)
+        {
+            Throwable ex = waitFor(futures.get(i));
+            if (failure == null)
+            {
+                failure = ex;
+            }
+        }
+
+        if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException)failure;
+        }
+        if (failure instanceof Error)
+        {
+            throw (Error)failure;
+        }
+        if (failure != null)
+        {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    /**
+     * Wait for a batch to finish.  Interrupts are held until it
+     * is done.
+     *
+     * @return Exception thrown by the batch, or null
+     */
+    private static Throwable waitFor(Future<?> future)
+    {
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    future.get();
+                    return null;
+                } catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                } catch (ExecutionException ex)
+                {
+                    return ex.getCause();
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized ExecutorService getPool()
+    {
+        if (pool == null)
+        {
+            pool = Executors.newFixedThreadPool(numThreads,
+                    new DaemonThreadFactory(threadName));
+        }
+        return pool;
+    }
+
+    /**
+     * Stop the threads of this runner.  They will be started again
+     * if run() is called.
+     */
+    public synchronized void dispose()
+    {
+        if (pool != null)
+        {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    //-----------------------------
+    /**
+     * Work to be done for one index of a range
+     */
+    public static interface Task
+    {
+        public void run(int index);
+    }
+
+    //-----------------------------
+    /**
+     * Creates named daemon threads, so that pools left running do not
+     * keep the application from exiting
+     */
+    public static class DaemonThreadFactory implements ThreadFactory
+    {
+        final String name;
+
+        public DaemonThreadFactory(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    //-----------------------------
+    static class Batch implements Runnable
+    {
+        final Task task;
+        final int start;
+        final int end;
+
+        public Batch(Task task, int start, int end)
+        {
+            this.task = task;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public void run()
+        {
+            for (int i = start; i < end; ++i)
+            {
+                task.run(i);
+            }
+        }
+    }
+}
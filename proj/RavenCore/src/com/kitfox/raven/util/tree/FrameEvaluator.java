@@ -0,0 +1,133 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.util.tree;
+
+import com.kitfox.raven.util.ParallelBatchRunner;
+import java.util.List;
+
+/**
+ * Interpolates the track curves of many properties for one frame on
+ * several threads.
+ *
+ * <p>Properties do not depend on each other when they are interpolated,
+ * so each one is evaluated independently and the results are stored in
+ * its value cache.  Only the interpolation runs on the pool.  Caches
+ * are filled on the calling thread after every value is computed, so
+ * the values are the same ones sequential evaluation would produce.
+ * Properties can then be synchronized to the frame without doing any
+ * interpolation, and their listeners are notified on the calling
+ * thread as usual.</p>
+ *
+ * <p>Properties must not be modified by other threads while
+ * evaluate() runs.</p>
+ *
+ * @author kitfox
+ */
+public class FrameEvaluator
+{
+    //With fewer properties than this, handing work to other threads
+    // costs more than it saves
+    public static final int MIN_PARALLEL = 16;
+
+    private static FrameEvaluator shared;
+
+    private final ParallelBatchRunner runner;
+
+    /**
+     * @param numThreads Number of threads to interpolate with.  If less
+     * than 2, evaluate() does nothing and properties are interpolated
+     * as they are synchronized.
+     */
+    public FrameEvaluator(int numThreads)
+    {
+        this.runner = new ParallelBatchRunner("Frame evaluator",
+                numThreads, MIN_PARALLEL);
+    }
+
+    /**
+     * @return Evaluator with one thread per processor, shared by all
+     * documents
+     */
+    public static synchronized FrameEvaluator getShared()
+    {
+        if (shared == null)
+        {
+            shared = new FrameEvaluator(
+                    Runtime.getRuntime().availableProcessors());
+        }
+        return shared;
+    }
+
+    public int getNumThreads()
+    {
+        return runner.getNumThreads();
+    }
+
+    /**
+     * Compute and cache the value of every property at the given frame
+     * that is interpolated there and not already cached.
+     *
+     * @param properties Properties to evaluate
+     * @param key Frame to evaluate at
+     */
+    public void evaluate(final List<? extends PropertyWrapper<?, ?>> properties,
+            final FrameKey key)
+    {
+        int size = properties.size();
+        if (!runner.isParallel(size))
+        {
+            return;
+        }
+
+        final PropertyData<?>[] values = new PropertyData<?>[size];
+        runner.run(size, new ParallelBatchRunner.Task() {
+            @Override
+            public void run(int index)
+            {
+                values[index] = properties.get(index).evaluateTrack(key);
+            }
+        });
+
+        for (int i = 0; i < size; ++i)
+        {
+            if (values[i] != null)
+            {
+                putTrackValue(properties.get(i), key, values[i]);
+            }
+        }
+    }
+
+    /**
+     * @param data Value computed by evaluateTrack() of the same property
+     */
+    @SuppressWarnings("unchecked")
+    private static <PropType> void putTrackValue(
+            PropertyWrapper<?, PropType> wrapper, FrameKey key,
+            PropertyData<?> data)
+    {
+        wrapper.putTrackValue(key, (PropertyData<PropType>)data);
+    }
+
+    /**
+     * Stop the threads of this evaluator.  They will be started again
+     * if evaluate() is called.
+     */
+    public void dispose()
+    {
+        runner.dispose();
+    }
+}
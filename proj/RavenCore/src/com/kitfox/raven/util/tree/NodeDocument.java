@@ -55,6 +55,9 @@ abstract public class NodeDocument
     private final PluginsManager pluginsManager = new PluginsManager();
 
     private final DocumentCode documentCode = new DocumentCode();
+
+    private ValueCachePolicy valueCachePolicy = new ValueCachePolicy.EntryCount();
+    private FrameEvaluator frameEvaluator = FrameEvaluator.getShared();
     
     protected void load(NodeDocumentType type)
     {
@@ -314,6 +317,45 @@ abstract public class NodeDocument
         metaProperties.put(key, props);
     }
 
+    /**
+     * @return Policy that limits how many animation frames properties 
+     * in this document keep cached
+     */
+    public ValueCachePolicy getValueCachePolicy()
+    {
+        return valueCachePolicy;
+    }
+
+    /**
+     * Properties that are already over the budget of the new policy
+     * will be trimmed the next time they cache a frame.
+     * 
+     * @param valueCachePolicy 
+     */
+    public void setValueCachePolicy(ValueCachePolicy valueCachePolicy)
+    {
+        if (valueCachePolicy == null)
+        {
+            throw new IllegalArgumentException("Cache policy cannot be null");
+        }
+        this.valueCachePolicy = valueCachePolicy;
+    }
+
+    /**
+     * @return Evaluator used to interpolate animated properties when a
+     * symbol changes frame, or null if they are interpolated one at a
+     * time as they are synchronized
+     */
+    public FrameEvaluator getFrameEvaluator()
+    {
+        return frameEvaluator;
+    }
+
+    public void setFrameEvaluator(FrameEvaluator frameEvaluator)
+    {
+        this.frameEvaluator = frameEvaluator;
+    }
+
     /**
      * @return the documentCode
      */
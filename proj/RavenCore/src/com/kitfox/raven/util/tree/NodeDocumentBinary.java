@@ -0,0 +1,725 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.util.tree;
+
+import com.kitfox.xml.schema.ravendocumentschema.ChildrenType;
+import com.kitfox.xml.schema.ravendocumentschema.InterpolationType;
+import com.kitfox.xml.schema.ravendocumentschema.MetaPropertyEntryType;
+import com.kitfox.xml.schema.ravendocumentschema.MetaPropertySetGroupType;
+import com.kitfox.xml.schema.ravendocumentschema.MetaPropertySetType;
+import com.kitfox.xml.schema.ravendocumentschema.NodeDocumentType;
+import com.kitfox.xml.schema.ravendocumentschema.NodeObjectType;
+import com.kitfox.xml.schema.ravendocumentschema.NodeSymbolType;
+import com.kitfox.xml.schema.ravendocumentschema.PluginPropertiesType;
+import com.kitfox.xml.schema.ravendocumentschema.PluginPropertyEntry;
+import com.kitfox.xml.schema.ravendocumentschema.PluginsType;
+import com.kitfox.xml.schema.ravendocumentschema.PropertyDataType;
+import com.kitfox.xml.schema.ravendocumentschema.PropertyStyleType;
+import com.kitfox.xml.schema.ravendocumentschema.PropertyType;
+import com.kitfox.xml.schema.ravendocumentschema.RepeatType;
+import com.kitfox.xml.schema.ravendocumentschema.TrackKeyType;
+import com.kitfox.xml.schema.ravendocumentschema.TrackType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Reads and writes documents in a chunked binary format, as an
+ * alternative to the XML format.
+ *
+ * <p>A file starts with a magic number and a format version, followed
+ * by chunks.  Each chunk is a four character tag and the length of its
+ * data, so chunks a reader does not know can be skipped.  The document
+ * header, plugin settings and meta properties each have a chunk, as
+ * does every symbol.  An END chunk closes the file.</p>
+ *
+ * <p>Properties and track keys are stored as typed records.  Inline
+ * values are written by PropertyProvider.writeBinary() with their
+ * length in front of them.  They are read back still encoded, and only
+ * decoded when the value is first asked for (see PropertyDataInline).
+ * Values that are never looked at are never decoded, and are copied
+ * as they are when the document is saved again.</p>
+ *
+ * <p>Documents are read into the same NodeDocumentType tree the XML
+ * format is read into, so both formats are loaded by
+ * NodeDocument.load().</p>
+ *
+ * @author kitfox
+ */
+public class NodeDocumentBinary
+{
+    //"RVNB"
+    public static final int MAGIC = 0x52564e42;
+    public static final int FORMAT_VERSION = 1;
+
+    static final int CHUNK_HEADER = tag("HEAD");
+    static final int CHUNK_PLUGINS = tag("PLUG");
+    static final int CHUNK_META = tag("META");
+    static final int CHUNK_SYMBOL = tag("SYMB");
+    static final int CHUNK_END = tag("END ");
+
+    //Chunk buffers start no larger than this and grow as data is read
+    static final int CHUNK_BLOCK_SIZE = 1 << 16;
+
+    static final int STYLE_INLINE = 0;
+    static final int STYLE_REFERENCE = 1;
+    static final int STYLE_RESOURCE = 2;
+
+    //Track enums are stored by ordinal, so their order must not change
+    private static final TrackCurve.Repeat[] REPEAT_VALUES =
+            TrackCurve.Repeat.values();
+    private static final TrackKey.Interp[] INTERP_VALUES =
+            TrackKey.Interp.values();
+
+    private NodeDocumentBinary()
+    {
+    }
+
+    private static int tag(String name)
+    {
+        return (name.charAt(0) << 24) | (name.charAt(1) << 16)
+                | (name.charAt(2) << 8) | name.charAt(3);
+    }
+
+    /**
+     * @return true if the file starts with the magic number of a binary
+     * document
+     */
+    public static boolean isBinary(File file)
+    {
+        try
+        {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try
+            {
+                return in.readInt() == MAGIC;
+            }
+            finally
+            {
+                in.close();
+            }
+        } catch (IOException ex)
+        {
+            return false;
+        }
+    }
+
+    public static void save(NodeDocument doc, File file) throws IOException
+    {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try
+        {
+            write(doc, out);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    public static void write(NodeDocument doc, OutputStream out) throws IOException
+    {
+        new DocumentWriter(out).writeDocument(doc);
+    }
+
+    public static NodeDocumentType load(File file) throws IOException
+    {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try
+        {
+            return read(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Read a binary document into the tree NodeDocument.load() builds
+     * documents from.
+     */
+    public static NodeDocumentType read(InputStream in) throws IOException
+    {
+        DataInputStream din = new DataInputStream(in);
+        if (din.readInt() != MAGIC)
+        {
+            throw new IOException("Not a binary Raven document");
+        }
+        int version = din.readInt();
+        if (version > FORMAT_VERSION)
+        {
+            throw new IOException("Unsupported document version " + version);
+        }
+
+        NodeDocumentType type = new NodeDocumentType();
+        while (true)
+        {
+            int tag = din.readInt();
+            byte[] data = readChunk(din, tag, din.readInt());
+
+            if (tag == CHUNK_END)
+            {
+                break;
+            }
+
+            ChunkInput chunk = new ChunkInput(tag, data);
+            if (tag == CHUNK_HEADER)
+            {
+                type.setVersion(chunk.readText());
+                type.setNextSymbolUid(chunk.readInt());
+                type.setCurSymbol(chunk.readInt());
+            }
+            else if (tag == CHUNK_PLUGINS)
+            {
+                type.setPlugins(readPlugins(chunk));
+            }
+            else if (tag == CHUNK_META)
+            {
+                type.setPropertySetGroups(readMeta(chunk));
+            }
+            else if (tag == CHUNK_SYMBOL)
+            {
+                type.getSymbols().add(readSymbol(chunk));
+            }
+            //Skip chunks added by later versions
+        }
+
+        return type;
+    }
+
+    /**
+     * Read the data of a chunk.  The length comes from the file, so the
+     * buffer is grown as data arrives rather than allocated up front.
+     */
+    private static byte[] readChunk(DataInputStream in, int tag, int length)
+            throws IOException
+    {
+        if (length < 0)
+        {
+            throw new IOException("Invalid length " + length
+                    + " of chunk " + tagName(tag));
+        }
+
+        byte[] data = new byte[Math.min(length, CHUNK_BLOCK_SIZE)];
+        int size = 0;
+        while (size < length)
+        {
+            if (size == data.length)
+            {
+                data = Arrays.copyOf(data,
+                        (int)Math.min(length, (long)data.length * 2));
+            }
+            int count = in.read(data, size, data.length - size);
+            if (count < 0)
+            {
+                throw new EOFException("Chunk " + tagName(tag) + " ends after "
+                        + size + " of " + length + " bytes");
+            }
+            size += count;
+        }
+        return data;
+    }
+
+    private static String tagName(int tag)
+    {
+        return "" + (char)((tag >> 24) & 0xff) + (char)((tag >> 16) & 0xff)
+                + (char)((tag >> 8) & 0xff) + (char)(tag & 0xff);
+    }
+
+    /**
+     * Read an enum stored by ordinal
+     */
+    private static <T> T readOrdinal(ChunkInput in, T[] values, String name)
+            throws IOException
+    {
+        int ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= values.length)
+        {
+            throw new IOException("Unknown " + name + " " + ordinal
+                    + " in chunk " + tagName(in.tag));
+        }
+        return values[ordinal];
+    }
+
+    private static PluginsType readPlugins(ChunkInput in) throws IOException
+    {
+        PluginsType type = new PluginsType();
+        int numPlugins = in.readInt();
+        for (int i = 0; i < numPlugins; ++i)
+        {
+            PluginPropertiesType propType = new PluginPropertiesType();
+            type.getProperties().add(propType);
+            propType.setClazz(in.readText());
+
+            int numProps = in.readInt();
+            for (int j = 0; j < numProps; ++j)
+            {
+                PluginPropertyEntry entry = new PluginPropertyEntry();
+                propType.getProperty().add(entry);
+                entry.setName(in.readText());
+                entry.setValue(in.readText());
+            }
+        }
+        return type;
+    }
+
+    private static MetaPropertySetGroupType readMeta(ChunkInput in) throws IOException
+    {
+        MetaPropertySetGroupType groups = new MetaPropertySetGroupType();
+        int numSets = in.readInt();
+        for (int i = 0; i < numSets; ++i)
+        {
+            MetaPropertySetType set = new MetaPropertySetType();
+            groups.getPropertySet().add(set);
+            set.setKey(in.readText());
+
+            int numEntries = in.readInt();
+            for (int j = 0; j < numEntries; ++j)
+            {
+                MetaPropertyEntryType entry = new MetaPropertyEntryType();
+                set.getEntry().add(entry);
+                entry.setName(in.readText());
+                entry.setValue(in.readText());
+            }
+        }
+        return groups;
+    }
+
+    private static NodeSymbolType readSymbol(ChunkInput in) throws IOException
+    {
+        NodeSymbolType type = new NodeSymbolType();
+        type.setClazz(in.readText());
+        type.setSymbolUid(in.readInt());
+        type.setName(in.readText());
+        type.setNextUid(in.readInt());
+        type.setRoot(readNode(in));
+        return type;
+    }
+
+    private static NodeObjectType readNode(ChunkInput in) throws IOException
+    {
+        NodeObjectType type = new NodeObjectType();
+        type.setClazz(in.readText());
+        type.setUid(in.readInt());
+        type.setName(in.readText());
+
+        int numProps = in.readInt();
+        for (int i = 0; i < numProps; ++i)
+        {
+            type.getProperty().add(readProperty(in));
+        }
+
+        int numChildWrappers = in.readInt();
+        for (int i = 0; i < numChildWrappers; ++i)
+        {
+            ChildrenType childType = new ChildrenType();
+            type.getChild().add(childType);
+            childType.setName(in.readText());
+
+            int numChildren = in.readInt();
+            for (int j = 0; j < numChildren; ++j)
+            {
+                childType.getNode().add(readNode(in));
+            }
+        }
+
+        return type;
+    }
+
+    private static PropertyType readProperty(ChunkInput in) throws IOException
+    {
+        PropertyType type = new PropertyType();
+        type.setName(in.readText());
+        type.setDirect(readData(in));
+
+        if (!in.readBoolean())
+        {
+            return type;
+        }
+
+        TrackType trackType = new TrackType();
+        type.setTrack(trackType);
+        trackType.setBefore(RepeatType.valueOf(
+                readOrdinal(in, REPEAT_VALUES, "repeat").name()));
+        trackType.setAfter(RepeatType.valueOf(
+                readOrdinal(in, REPEAT_VALUES, "repeat").name()));
+
+        int numKeys = in.readInt();
+        for (int i = 0; i < numKeys; ++i)
+        {
+            TrackKeyType keyType = new TrackKeyType();
+            trackType.getKey().add(keyType);
+
+            keyType.setFrame(in.readInt());
+            keyType.setInterpolation(InterpolationType.valueOf(
+                    readOrdinal(in, INTERP_VALUES, "interpolation").name()));
+            keyType.setTanInX(in.readDouble());
+            keyType.setTanInY(in.readDouble());
+            keyType.setTanOutX(in.readDouble());
+            keyType.setTanOutY(in.readDouble());
+            keyType.setData(readData(in));
+        }
+
+        return type;
+    }
+
+    private static PropertyDataType readData(ChunkInput in) throws IOException
+    {
+        int style = in.readByte();
+        switch (style)
+        {
+            case STYLE_INLINE:
+            {
+                int length = in.readLength();
+                byte[] data = null;
+                if (length >= 0)
+                {
+                    data = new byte[length];
+                    in.readFully(data);
+                }
+                return new EncodedData(data);
+            }
+            case STYLE_REFERENCE:
+            {
+                PropertyDataType type = new PropertyDataType();
+                type.setStyle(PropertyStyleType.REFERENCE);
+                type.setValue("" + in.readInt());
+                return type;
+            }
+            case STYLE_RESOURCE:
+            {
+                PropertyDataType type = new PropertyDataType();
+                type.setStyle(PropertyStyleType.RESOURCE);
+                type.setValue(in.readText());
+                return type;
+            }
+            default:
+                throw new IOException("Unknown property style " + style);
+        }
+    }
+
+    /**
+     * Write a string that may be null or longer than
+     * DataOutput.writeUTF() allows.
+     */
+    public static void writeString(DataOutput out, String text) throws IOException
+    {
+        if (text == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] data = text.getBytes("UTF-8");
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    public static String readString(DataInput in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return new String(data, "UTF-8");
+    }
+
+    //-----------------------------
+    /**
+     * Data of one chunk being read.  Lengths read from it are checked
+     * against the bytes left in the chunk, so a damaged file is reported
+     * instead of causing huge allocations.
+     */
+    static class ChunkInput extends DataInputStream
+    {
+        final int tag;
+
+        public ChunkInput(int tag, byte[] data)
+        {
+            super(new ByteArrayInputStream(data));
+            this.tag = tag;
+        }
+
+        /**
+         * Read a length, which may be -1 for a null value
+         */
+        public int readLength() throws IOException
+        {
+            int length = readInt();
+            if (length < -1 || length > available())
+            {
+                throw new IOException("Length " + length
+                        + " runs past the end of chunk " + tagName(tag));
+            }
+            return length;
+        }
+
+        /**
+         * Read a string written by writeString()
+         */
+        public String readText() throws IOException
+        {
+            int length = readLength();
+            if (length < 0)
+            {
+                return null;
+            }
+
+            byte[] data = new byte[length];
+            readFully(data);
+            return new String(data, "UTF-8");
+        }
+    }
+
+    //-----------------------------
+    /**
+     * Inline data read from a binary document that has not been
+     * decoded yet.  PropertyWrapper.load() turns it into a
+     * PropertyDataInline that decodes it when first used.
+     */
+    static class EncodedData extends PropertyDataType
+    {
+        //Null if the value was null
+        final byte[] data;
+
+        public EncodedData(byte[] data)
+        {
+            this.data = data;
+            setStyle(PropertyStyleType.INLINE);
+        }
+    }
+
+    //-----------------------------
+    static class DocumentWriter
+    {
+        final DataOutputStream out;
+        //Data of the chunk being written
+        final ByteArrayOutputStream chunkBuf = new ByteArrayOutputStream();
+        final DataOutputStream chunk = new DataOutputStream(chunkBuf);
+        //Inline value being written
+        final ByteArrayOutputStream valueBuf = new ByteArrayOutputStream();
+        final DataOutputStream value = new DataOutputStream(valueBuf);
+
+        public DocumentWriter(OutputStream out)
+        {
+            this.out = new DataOutputStream(out);
+        }
+
+        void writeDocument(NodeDocument doc) throws IOException
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            writeString(chunk, NodeDocument.VERSION);
+            chunk.writeInt(doc.nextSymbolUid);
+            chunk.writeInt(doc.curSymbol == null
+                    ? 0 : doc.curSymbol.getSymbolUid());
+            endChunk(CHUNK_HEADER);
+
+            writePlugins(doc.getPluginsManager().export());
+            endChunk(CHUNK_PLUGINS);
+
+            chunk.writeInt(doc.metaProperties.size());
+            for (String key: doc.metaProperties.keySet())
+            {
+                Properties prop = doc.metaProperties.get(key);
+                writeString(chunk, key);
+
+                Set<String> names = prop.stringPropertyNames();
+                chunk.writeInt(names.size());
+                for (String name: names)
+                {
+                    writeString(chunk, name);
+                    writeString(chunk, prop.getProperty(name));
+                }
+            }
+            endChunk(CHUNK_META);
+
+            for (NodeSymbol<?> sym: doc.symbolMap.values())
+            {
+                writeString(chunk, sym.getClass().getName());
+                chunk.writeInt(sym.symbolUid);
+                writeString(chunk, sym.name);
+                chunk.writeInt(sym.nextUid);
+                writeNode(sym, sym.getRoot());
+                endChunk(CHUNK_SYMBOL);
+            }
+
+            endChunk(CHUNK_END);
+            out.flush();
+        }
+
+        private void endChunk(int tag) throws IOException
+        {
+            out.writeInt(tag);
+            out.writeInt(chunkBuf.size());
+            chunkBuf.writeTo(out);
+            chunkBuf.reset();
+        }
+
+        private void writePlugins(PluginsType type) throws IOException
+        {
+            chunk.writeInt(type.getProperties().size());
+            for (PluginPropertiesType propType: type.getProperties())
+            {
+                writeString(chunk, propType.getClazz());
+                chunk.writeInt(propType.getProperty().size());
+                for (PluginPropertyEntry entry: propType.getProperty())
+                {
+                    writeString(chunk, entry.getName());
+                    writeString(chunk, entry.getValue());
+                }
+            }
+        }
+
+        private void writeNode(NodeSymbol<?> sym, NodeObject node) throws IOException
+        {
+            writeString(chunk, node.getClass().getCanonicalName());
+            chunk.writeInt(node.getUid());
+            writeString(chunk, node.getName());
+
+            int numProps = node.getNumPropertyWrappers();
+            chunk.writeInt(numProps);
+            for (int i = 0; i < numProps; ++i)
+            {
+                PropertyWrapper<?, ?> wrap = node.getPropertyWrapper(i);
+                writeProperty(sym, wrap);
+            }
+
+            int numChildWrappers = node.getNumChildWrappers();
+            chunk.writeInt(numChildWrappers);
+            for (int i = 0; i < numChildWrappers; ++i)
+            {
+                ChildWrapper<?, ?> wrap = node.getChildWrapper(i);
+                writeString(chunk, wrap.getName());
+
+                int numChildren = wrap.size();
+                chunk.writeInt(numChildren);
+                for (int j = 0; j < numChildren; ++j)
+                {
+                    writeNode(sym, wrap.get(j));
+                }
+            }
+        }
+
+        private <T> void writeProperty(NodeSymbol<?> sym, PropertyWrapper<?, T> wrap)
+                throws IOException
+        {
+            writeString(chunk, wrap.getName());
+
+            PropertyProvider<T> prov =
+                    PropertyProviderIndex.inst().getProviderBest(wrap.getPropertyType());
+            writeData(sym, prov, wrap.directValue);
+
+            TrackCurve<T> curve = wrap.curve;
+            if (curve == null || curve.isEmpty())
+            {
+                chunk.writeBoolean(false);
+                return;
+            }
+
+            chunk.writeBoolean(true);
+            chunk.writeByte(curve.getBefore().ordinal());
+            chunk.writeByte(curve.getAfter().ordinal());
+
+            ArrayList<Integer> frames = curve.getFrames();
+            chunk.writeInt(frames.size());
+            for (Integer frame: frames)
+            {
+                TrackKey<T> key = curve.getKey(frame);
+
+                chunk.writeInt(frame);
+                chunk.writeByte(key.getInterp().ordinal());
+                chunk.writeDouble(key.getTanInX());
+                chunk.writeDouble(key.getTanInY());
+                chunk.writeDouble(key.getTanOutX());
+                chunk.writeDouble(key.getTanOutY());
+                writeData(sym, prov, key.getData());
+            }
+        }
+
+        private <T> void writeData(NodeSymbol<?> sym, PropertyProvider<T> prov,
+                PropertyData<T> data) throws IOException
+        {
+            if (data instanceof PropertyDataReference)
+            {
+                chunk.writeByte(STYLE_REFERENCE);
+                chunk.writeInt(((PropertyDataReference)data).getUid());
+                return;
+            }
+
+            if (data instanceof PropertyDataResource)
+            {
+                URI uri = ((PropertyDataResource)data).getUri();
+                chunk.writeByte(STYLE_RESOURCE);
+                writeString(chunk, uri == null ? null : uri.toString());
+                return;
+            }
+
+            chunk.writeByte(STYLE_INLINE);
+            if (!(data instanceof PropertyDataInline) || prov == null)
+            {
+                chunk.writeInt(-1);
+                return;
+            }
+
+            PropertyDataInline<T> inline = (PropertyDataInline<T>)data;
+            byte[] encoded = inline.getEncoded(prov);
+            if (encoded != null)
+            {
+                //Never decoded since it was read, so copy it as it is
+                chunk.writeInt(encoded.length);
+                chunk.write(encoded);
+                return;
+            }
+
+            T val = inline.getValue(sym);
+            if (val == null)
+            {
+                chunk.writeInt(-1);
+                return;
+            }
+
+            prov.writeBinary(val, value);
+            chunk.writeInt(valueBuf.size());
+            valueBuf.writeTo(chunk);
+            valueBuf.reset();
+        }
+    }
+}
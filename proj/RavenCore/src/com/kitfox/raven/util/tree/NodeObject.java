@@ -156,6 +156,15 @@ public class NodeObject
         }
     }
 
+    private void notifySymbolNodeRenamed(String oldName, String newName)
+    {
+        NodeSymbol<?> doc = getSymbol();
+        if (doc != null)
+        {
+            doc.notifyNodeRenamed(oldName, newName);
+        }
+    }
+
     public Icon getIcon()
     {
         NodeObjectProvider provider =
@@ -734,6 +743,7 @@ public class NodeObject
         public void undo(History history)
         {
             name = oldName;
+            notifySymbolNodeRenamed(newName, oldName);
             propertyChangeSupport.firePropertyChange(PROP_NAME, newName, oldName);
             fireNodeNameChanged();
         }
@@ -743,6 +753,7 @@ public class NodeObject
         {
 //        String oldName = name;
             name = newName;
+            notifySymbolNodeRenamed(oldName, newName);
             propertyChangeSupport.firePropertyChange(PROP_NAME, oldName, newName);
             fireNodeNameChanged();
 //        }
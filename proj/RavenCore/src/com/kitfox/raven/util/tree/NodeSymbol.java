@@ -27,7 +27,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -44,6 +44,8 @@ abstract public class NodeSymbol<RootType extends NodeRoot>
     
     public static final String PROP_NAME = "name";
     String name = "symbol";
+
+    public static final String PROP_FRAME = "frame";
     
     int nextUid;
     
@@ -56,6 +58,23 @@ abstract public class NodeSymbol<RootType extends NodeRoot>
     //Index for rapidly looking up nodes by uid
     HashMap<Integer, NodeObject> nodeIndex =
             new HashMap<Integer, NodeObject>();
+    //Number of nodes in the tree using each name
+    HashMap<String, Integer> nameCount = new HashMap<String, Integer>();
+    //Properties with track keys.  These are the only ones that change
+    // when the frame changes.
+    LinkedHashSet<PropertyWrapper<?, ?>> animatedProperties =
+            new LinkedHashSet<PropertyWrapper<?, ?>>();
+    //Frame properties were last synchronized to
+    int frameSynch;
+    //Set while synchronizing to a frame, so that a single frame event is
+    // sent instead of an event for each property
+    boolean synchingFrame;
+
+    //Nesting depth of bulk updates.  Child events are held until the
+    // outermost bulk update commits.
+    int bulkUpdateDepth;
+    ArrayList<PendingChildEvent> pendingEvents =
+            new ArrayList<PendingChildEvent>();
 
     protected NodeSymbol(int symbolUid, NodeDocument document)
     {
@@ -137,6 +156,11 @@ abstract public class NodeSymbol<RootType extends NodeRoot>
         
         this.root = root;
         root.setSymbol(this);
+
+        nodeIndex.clear();
+        nameCount.clear();
+        animatedProperties.clear();
+        indexNodes(root);
     }
     
     public String getName()
@@ -234,25 +258,275 @@ abstract public class NodeSymbol<RootType extends NodeRoot>
         }
     }
 
+    protected void fireSymbolFrameChanged(PropertyChangeEvent evt)
+    {
+        ArrayList<NodeSymbolListener> list =
+                new ArrayList<NodeSymbolListener>(listeners);
+        for (int i = 0; i < list.size(); ++i)
+        {
+            list.get(i).symbolFrameChanged(evt);
+        }
+    }
+
     protected void notifySymbolPropertyChanged(PropertyChangeEvent evt)
     {
+        if (synchingFrame)
+        {
+            //Covered by the frame changed event
+            return;
+        }
         fireSymbolPropertyChanged(evt);
     }
 
+    /**
+     * Synchronize every animated property to the given frame.  Properties
+     * without track keys have the same value on every frame, so they
+     * are skipped.  Values are first interpolated by the document's
+     * FrameEvaluator, if it has one.  Property and node listeners are
+     * then told about each value that changes, but symbol listeners
+     * only receive a single symbolFrameChanged() event.
+     *
+     * @param frame Frame to synchronize to
+     */
+    public void synchToFrame(int frame)
+    {
+        int frameOld = frameSynch;
+        frameSynch = frame;
+
+        FrameKey key = new FrameKey(frame);
+        ArrayList<PropertyWrapper<?, ?>> list =
+                new ArrayList<PropertyWrapper<?, ?>>(animatedProperties);
+
+        FrameEvaluator evaluator = document == null
+                ? null : document.getFrameEvaluator();
+        if (evaluator != null)
+        {
+            evaluator.evaluate(list, key);
+        }
+
+        synchingFrame = true;
+        try
+        {
+            for (int i = 0; i < list.size(); ++i)
+            {
+                list.get(i).synchToTrack(key);
+            }
+        }
+        finally
+        {
+            synchingFrame = false;
+        }
+
+        fireSymbolFrameChanged(new PropertyChangeEvent(this, PROP_FRAME,
+                frameOld, frame));
+    }
+
+    /**
+     * @return Properties in this symbol that have track keys
+     */
+    public ArrayList<PropertyWrapper<?, ?>> getAnimatedProperties()
+    {
+        return new ArrayList<PropertyWrapper<?, ?>>(animatedProperties);
+    }
+
+    /**
+     * Called by PropertyWrapper when its track curve changes.
+     */
+    void notifyPropertyTrackChanged(PropertyWrapper<?, ?> wrapper)
+    {
+        if (wrapper.hasTrackKeys())
+        {
+            animatedProperties.add(wrapper);
+        }
+        else
+        {
+            animatedProperties.remove(wrapper);
+        }
+        propertyTrackChanged(wrapper);
+    }
+
+    /**
+     * Called when the track keys of a property in this symbol change.
+     * The value of the property may have changed on any frame other
+     * than the one the symbol is synchronized to.
+     *
+     * @param wrapper Property whose track changed
+     */
+    protected void propertyTrackChanged(PropertyWrapper<?, ?> wrapper)
+    {
+    }
+
     void notifySymbolNodeChildAdded(ChildWrapperEvent evt)
     {
-        nodeIndex.clear();
-        root.buildUidIndex(nodeIndex);
+        NodeObject node = evt.getNode();
+        if (node != null && node.getSymbol() == this)
+        {
+            indexNodes(node);
+        }
+
+        if (bulkUpdateDepth > 0)
+        {
+            pendingEvents.add(new PendingChildEvent(evt, true));
+            return;
+        }
         fireSymbolNodeChildAdded(evt);
     }
 
     void notifySymbolNodeChildRemoved(ChildWrapperEvent evt)
     {
-        nodeIndex.clear();
-        root.buildUidIndex(nodeIndex);
+        NodeObject node = evt.getNode();
+        //A node that was moved may already have been added back
+        // somewhere else in this symbol
+        if (node != null && node.getSymbol() != this)
+        {
+            unindexNodes(node);
+        }
+
+        if (bulkUpdateDepth > 0)
+        {
+            pendingEvents.add(new PendingChildEvent(evt, false));
+            return;
+        }
         fireSymbolNodeChildRemoved(evt);
     }
 
+    /**
+     * Called by NodeObject when a node in this symbol is renamed.
+     */
+    void notifyNodeRenamed(String oldName, String newName)
+    {
+        removeName(oldName);
+        addName(newName);
+    }
+
+    private void indexNodes(NodeObject subtree)
+    {
+        subtree.visit(new NodeVisitor()
+        {
+            @Override
+            public void visit(NodeObject node)
+            {
+                NodeObject oldNode = nodeIndex.put(node.getUid(), node);
+                if (oldNode == node)
+                {
+                    return;
+                }
+                if (oldNode != null)
+                {
+                    removeName(oldNode.getName());
+                    removeAnimatedProperties(oldNode);
+                }
+                addName(node.getName());
+
+                for (int i = 0; i < node.getNumPropertyWrappers(); ++i)
+                {
+                    PropertyWrapper<?, ?> wrapper = node.getPropertyWrapper(i);
+                    if (wrapper.hasTrackKeys())
+                    {
+                        animatedProperties.add(wrapper);
+                    }
+                }
+            }
+        });
+    }
+
+    private void unindexNodes(NodeObject subtree)
+    {
+        subtree.visit(new NodeVisitor()
+        {
+            @Override
+            public void visit(NodeObject node)
+            {
+                if (nodeIndex.get(node.getUid()) == node)
+                {
+                    nodeIndex.remove(node.getUid());
+                    removeName(node.getName());
+                    removeAnimatedProperties(node);
+                }
+            }
+        });
+    }
+
+    private void removeAnimatedProperties(NodeObject node)
+    {
+        for (int i = 0; i < node.getNumPropertyWrappers(); ++i)
+        {
+            animatedProperties.remove(node.getPropertyWrapper(i));
+        }
+    }
+
+    private void addName(String name)
+    {
+        Integer count = nameCount.get(name);
+        nameCount.put(name, count == null ? 1 : count + 1);
+    }
+
+    private void removeName(String name)
+    {
+        Integer count = nameCount.get(name);
+        if (count == null)
+        {
+            return;
+        }
+        if (count == 1)
+        {
+            nameCount.remove(name);
+        }
+        else
+        {
+            nameCount.put(name, count - 1);
+        }
+    }
+
+    /**
+     * Start adding or removing many nodes at once.  Listeners are not
+     * told about child changes until the matching call to
+     * commitBulkUpdate().  Lookups by uid and createUniqueName() still
+     * see every change as it is made.  Bulk updates can be nested.
+     */
+    public void beginBulkUpdate()
+    {
+        ++bulkUpdateDepth;
+    }
+
+    /**
+     * Finish a bulk update.  When the outermost bulk update commits,
+     * listeners are sent every child event that was held, in the
+     * order the changes were made.
+     */
+    public void commitBulkUpdate()
+    {
+        if (bulkUpdateDepth == 0)
+        {
+            throw new IllegalStateException("No bulk update in progress");
+        }
+
+        if (--bulkUpdateDepth > 0)
+        {
+            return;
+        }
+
+        ArrayList<PendingChildEvent> events = pendingEvents;
+        pendingEvents = new ArrayList<PendingChildEvent>();
+        for (int i = 0; i < events.size(); ++i)
+        {
+            PendingChildEvent pending = events.get(i);
+            if (pending.added)
+            {
+                fireSymbolNodeChildAdded(pending.evt);
+            }
+            else
+            {
+                fireSymbolNodeChildRemoved(pending.evt);
+            }
+        }
+    }
+
+    public boolean isBulkUpdate()
+    {
+        return bulkUpdateDepth > 0;
+    }
+
     public int allocUid()
     {
         return ++nextUid;
@@ -271,10 +545,7 @@ abstract public class NodeSymbol<RootType extends NodeRoot>
 
     public String createUniqueName(String name)
     {
-        HashSet<String> set = new HashSet<String>();
-        root.getNames(set);
-
-        if (!set.contains(name))
+        if (!nameCount.containsKey(name))
         {
             return name;
         }
@@ -293,7 +564,7 @@ abstract public class NodeSymbol<RootType extends NodeRoot>
         {
             ++index;
             rootName = name + index;
-        } while (set.contains(rootName));
+        } while (nameCount.containsKey(rootName));
 
         return rootName;
     }
@@ -388,6 +659,18 @@ abstract public class NodeSymbol<RootType extends NodeRoot>
 
     //---------------------------------
     
+    class PendingChildEvent
+    {
+        final ChildWrapperEvent evt;
+        final boolean added;
+
+        public PendingChildEvent(ChildWrapperEvent evt, boolean added)
+        {
+            this.evt = evt;
+            this.added = added;
+        }
+    }
+
     public class RenameSymbolAction implements HistoryAction
     {
         final String oldName;
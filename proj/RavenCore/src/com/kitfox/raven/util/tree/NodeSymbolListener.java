@@ -28,4 +28,5 @@ public interface NodeSymbolListener
     public void symbolPropertyChanged(PropertyChangeEvent evt);
     public void symbolNodeChildAdded(ChildWrapperEvent evt);
     public void symbolNodeChildRemoved(ChildWrapperEvent evt);
+    public void symbolFrameChanged(PropertyChangeEvent evt);
 }
@@ -86,4 +86,16 @@ public class NodeSymbolWeakListener implements NodeSymbolListener
         }
         l.symbolNodeChildRemoved(evt);
     }
+
+    @Override
+    public void symbolFrameChanged(PropertyChangeEvent evt)
+    {
+        NodeSymbolListener l = ref.get();
+        if (l == null)
+        {
+            remove();
+            return;
+        }
+        l.symbolFrameChanged(evt);
+    }
 }
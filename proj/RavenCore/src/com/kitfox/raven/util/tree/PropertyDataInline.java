@@ -18,31 +18,116 @@ package com.kitfox.raven.util.tree;
 
 import com.kitfox.xml.schema.ravendocumentschema.PropertyDataType;
 import com.kitfox.xml.schema.ravendocumentschema.PropertyStyleType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Define a value that is completely owned by the property itself.
  *
+ * <p>Values read from binary documents are held in their encoded form
+ * until they are first asked for.</p>
+ *
  * @author kitfox
  */
 public class PropertyDataInline<T> extends PropertyData<T>
 {
-    final T value;
+    private T value;
+    //Value as written by PropertyProvider.writeBinary().  Cleared once
+    // it has been decoded.
+    private volatile byte[] encoded;
+    private final PropertyProvider<T> provider;
 
     public PropertyDataInline(T value)
     {
         this.value = value;
+        this.provider = null;
+    }
+
+    /**
+     * @param provider Provider that encoded the value
+     * @param encoded Value as written by provider.writeBinary()
+     */
+    public PropertyDataInline(PropertyProvider<T> provider, byte[] encoded)
+    {
+        this.provider = provider;
+        this.encoded = encoded;
     }
 
     @Override
     public T getValue(NodeSymbol document)
     {
+        return getValue();
+    }
+
+    private T getValue()
+    {
+        if (encoded != null)
+        {
+            decode();
+        }
         return value;
     }
 
+    private synchronized void decode()
+    {
+        byte[] data = encoded;
+        if (data == null)
+        {
+            //Another thread got here first
+            return;
+        }
+
+        try
+        {
+            value = provider.readBinary(
+                    new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (IOException ex)
+        {
+            Logger.getLogger(PropertyDataInline.class.getName()).log(
+                    Level.WARNING, "Could not decode property value", ex);
+        } catch (RuntimeException ex)
+        {
+            Logger.getLogger(PropertyDataInline.class.getName()).log(
+                    Level.WARNING, "Could not decode property value", ex);
+        }
+        encoded = null;
+    }
+
+    /**
+     * @return Encoded value if it has not been decoded yet and was
+     * encoded by prov.  Otherwise null.
+     */
+    byte[] getEncoded(PropertyProvider<?> prov)
+    {
+        byte[] data = encoded;
+        return prov == provider ? data : null;
+    }
+
+    /**
+     * Rough number of bytes of memory held by this data.  Does not
+     * decode the value.
+     */
+    long getSizeEstimate(PropertyProvider<T> prov)
+    {
+        byte[] data = encoded;
+        if (data != null)
+        {
+            return data.length;
+        }
+        T val = value;
+        return val == null || prov == null ? 0 : prov.getSizeEstimate(val);
+    }
+
     @Override
     public String toString()
     {
-        return "" + value;
+        return "" + getValue();
     }
 
     @Override
@@ -54,17 +139,78 @@ public class PropertyDataInline<T> extends PropertyData<T>
         }
 
         PropertyDataInline iobj = (PropertyDataInline)obj;
-        if (value == null && iobj.value == null)
+
+        //Values are compared when properties are loaded, so avoid
+        // decoding them if their encoded forms can be compared instead
+        byte[] data = encoded;
+        byte[] idata = iobj.encoded;
+        if (data != null && idata != null && provider == iobj.provider)
+        {
+            return Arrays.equals(data, idata);
+        }
+        if (data != null && idata == null)
+        {
+            Boolean same = isEncodingOf(data, iobj.getValue());
+            if (same != null)
+            {
+                return same;
+            }
+        }
+        if (data == null && idata != null)
+        {
+            Boolean same = iobj.isEncodingOf(idata, getValue());
+            if (same != null)
+            {
+                return same;
+            }
+        }
+
+        T val = getValue();
+        Object ival = iobj.getValue();
+        if (val == null && ival == null)
         {
             return true;
         }
-        return value != null && value.equals(iobj.value);
+        return val != null && val.equals(ival);
+    }
+
+    /**
+     * Check if a value encodes to the same bytes as this one.  Values
+     * that encode the same way decode the same way, so are equal.
+     * Values that encode differently are assumed to be different.
+     *
+     * @return Whether the encodings match, or null if val is not
+     * something the provider can encode
+     */
+    private Boolean isEncodingOf(byte[] data, Object val)
+    {
+        if (val == null)
+        {
+            //Null values are never left encoded
+            return false;
+        }
+        if (!provider.getPropertyType().isInstance(val))
+        {
+            return null;
+        }
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(data.length);
+        try
+        {
+            provider.writeBinary(provider.getPropertyType().cast(val),
+                    new DataOutputStream(bout));
+        } catch (IOException ex)
+        {
+            return null;
+        }
+        return Arrays.equals(data, bout.toByteArray());
     }
 
     @Override
     public int hashCode() {
         int hash = 5;
-        hash = 61 * hash + (this.value != null ? this.value.hashCode() : 0);
+        T val = getValue();
+        hash = 61 * hash + (val != null ? val.hashCode() : 0);
         return hash;
     }
 
@@ -16,6 +16,10 @@
 
 package com.kitfox.raven.util.tree;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Defines a property used by the RavenDocument.  Provides methods to
  * serialize properties, create property editors and to interpolate
@@ -186,4 +190,45 @@ abstract public class PropertyProvider<T>
 
     abstract public String asText(T value);
     abstract public T fromText(String text);
+
+    /**
+     * Write a value for the binary document format.  The default
+     * implementation writes the text form of the value.  Override
+     * along with readBinary() for types that have a more compact binary
+     * form.
+     *
+     * @param value Value to write.  Never null.
+     * @param out Stream to write to
+     * @throws IOException
+     */
+    public void writeBinary(T value, DataOutput out) throws IOException
+    {
+        NodeDocumentBinary.writeString(out, asText(value));
+    }
+
+    /**
+     * Read a value written by writeBinary().
+     *
+     * @param in Stream to read from
+     * @return Value read
+     * @throws IOException
+     */
+    public T readBinary(DataInput in) throws IOException
+    {
+        return fromText(NodeDocumentBinary.readString(in));
+    }
+
+    /**
+     * Rough number of bytes of memory held by a value.  Used to budget
+     * the undo history.  The default implementation returns the same
+     * small size for every value.  Override for types that can grow
+     * large.
+     *
+     * @param value Value to estimate.  Never null.
+     * @return Estimated size in bytes
+     */
+    public long getSizeEstimate(T value)
+    {
+        return 64;
+    }
 }
@@ -19,6 +19,7 @@ package com.kitfox.raven.util.tree;
 import com.kitfox.raven.util.tree.TrackKey.Interp;
 import com.kitfox.raven.util.undo.History;
 import com.kitfox.raven.util.undo.HistoryAction;
+import com.kitfox.raven.util.undo.HistoryActionCacheable;
 import com.kitfox.xml.schema.ravendocumentschema.InterpolationType;
 import com.kitfox.xml.schema.ravendocumentschema.PropertyDataType;
 import com.kitfox.xml.schema.ravendocumentschema.PropertyStyleType;
@@ -28,11 +29,17 @@ import com.kitfox.xml.schema.ravendocumentschema.TrackKeyType;
 import com.kitfox.xml.schema.ravendocumentschema.TrackType;
 import java.awt.Color;
 import java.beans.PropertyChangeEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -93,7 +100,10 @@ import java.util.logging.Logger;
  * to store custom data on it - this allows a NodeObject to derive custom
  * objects from the PropertyWrapper data and store them along side them in 
  * the cache.  Whenever a {@link FramKey} is determined to be invalid, its 
- * cache is erased and everything must be recalculated.</p>
+ * cache is erased and everything must be recalculated.  How many frames
+ * are kept is decided by the {@link ValueCachePolicy} of the document, 
+ * which drops the least recently used frames once its budget is 
+ * exceeded.</p>
  * 
  * <p>When a property is animated, its direct value (ie, current value) is 
  * repeatedly updated to the current {@link FrameKey}.  This is done by
@@ -142,9 +152,22 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
 //            = new HashMap<Integer, TrackCurve<PropType>>();
     TrackCurve<PropType> curve;
 
-    //Keep track of cached values and precomputed info
-    HashMap<FrameKey, ValueCache<PropType>> valueCache
+    //Provider used to write values to the history's file cache.
+    // Looked up when first needed.
+    private PropertyProvider<PropType> cacheProvider;
+
+    //Keep track of cached values and precomputed info.  Frame caches
+    // are kept in least recently used order so the cache policy can
+    // evict old ones.  The direct cache and pinned keyframes are 
+    // kept separately and never evicted.  Values are read from
+    // several threads at once, and reading a frame cache reorders it,
+    // so all access to the caches holds cacheLock.
+    private final Object cacheLock = new Object();
+    LinkedHashMap<FrameKey, ValueCache<PropType>> valueCache
+            = new LinkedHashMap<FrameKey, ValueCache<PropType>>(16, .75f, true);
+    HashMap<FrameKey, ValueCache<PropType>> pinnedCache
             = new HashMap<FrameKey, ValueCache<PropType>>();
+    long valueCacheSize;
 
     ArrayList<PropertyWrapperListener> listeners =
             new ArrayList<PropertyWrapperListener>();
@@ -258,11 +281,14 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
         }
         
         PropertyChangeEvent evt = new PropertyChangeEvent(this, name, oldValue, newValue);
-        ArrayList<PropertyWrapperListener> list =
-                new ArrayList<PropertyWrapperListener>(listeners);
-        for (int i = 0; i < list.size(); ++i)
+        if (!listeners.isEmpty())
         {
-            list.get(i).propertyWrapperDataChanged(evt);
+            ArrayList<PropertyWrapperListener> list =
+                    new ArrayList<PropertyWrapperListener>(listeners);
+            for (int i = 0; i < list.size(); ++i)
+            {
+                list.get(i).propertyWrapperDataChanged(evt);
+            }
         }
         node.notifyNodePropertyChanged(evt);
     }
@@ -439,6 +465,27 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
         return node;
     }
 
+    /**
+     * @return true if this property's track curve has at least one key
+     */
+    public boolean hasTrackKeys()
+    {
+        return curve != null && !curve.isEmpty();
+    }
+
+    /**
+     * Let the symbol know if this property has gained or lost its
+     * track keys.
+     */
+    private void notifySymbolTrackChanged()
+    {
+        NodeSymbol<?> sym = node.getSymbol();
+        if (sym != null)
+        {
+            sym.notifyPropertyTrackChanged(this);
+        }
+    }
+
     public boolean isKeyAt(int frame)
     {
         return curve == null ? false : curve.isKeyAt(frame);
@@ -541,6 +588,22 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
         return getValue(new FrameKey(frame));
     }
 
+    /**
+     * @return true if the value at the given frame is taken from the
+     * track curve.  Otherwise it is the direct value, which changes
+     * whenever the property is set or synched to another frame.
+     */
+    public boolean isTrackValueAt(FrameKey key)
+    {
+        if (FrameKey.DIRECT.equals(key))
+        {
+            return false;
+        }
+
+        int frame = key.getAnimFrame();
+        return curve.isKeyAt(frame) || curve.isInterpolatedAt(frame);
+    }
+
     protected ValueCache<PropType> getOrCreateValueCache(FrameKey key)
     {
 //        if (FrameKey.DIRECT.equals(key))
@@ -550,42 +613,173 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
 //            key = synchKey;
 //        }
         
-        ValueCache<PropType> cache = valueCache.get(key);
-        if (cache != null)
+        ValueCachePolicy policy = getValueCachePolicy();
+        synchronized (cacheLock)
         {
-            return cache;
+            ValueCache<PropType> cache = getCachedValue(key);
+            if (cache != null)
+            {
+                policy.recordHit();
+                return cache;
+            }
         }
         
-        //Cache is empty at key.  Build it
+        //Cache is empty at key.  Build it.  The curve is evaluated
+        // without holding the lock
         if (!FrameKey.DIRECT.equals(key))
         {
             int frame = key.getAnimFrame();
             if (curve.isKeyAt(frame))
             {
                 TrackKey<PropType> curveKey = curve.getKey(frame);
-                cache = new ValueCache(key, curveKey.getData());
-                valueCache.put(key, cache);
-                return cache;
+                return storeValueCache(
+                        new ValueCache<PropType>(key, curveKey.getData()),
+                        policy.isPinKeyFrames(), policy);
             }
             else if (curve.isInterpolatedAt(frame))
             {
                 PropType curveValue = curve.evaluate(frame, getNode().getSymbol());
-                cache = new ValueCache(key, new PropertyDataInline(curveValue));
-                valueCache.put(key, cache);
-                return cache;
+                return storeValueCache(
+                        new ValueCache<PropType>(key,
+                        new PropertyDataInline<PropType>(curveValue)),
+                        false, policy);
             }
         }
 
         //Not handled by anim curves.  Return direct value cache
-        cache = valueCache.get(FrameKey.DIRECT);
-        if (cache != null)
+        synchronized (cacheLock)
         {
+            ValueCache<PropType> cache = pinnedCache.get(FrameKey.DIRECT);
+            if (cache != null)
+            {
+                policy.recordHit();
+                return cache;
+            }
+
+            cache = new ValueCache<PropType>(FrameKey.DIRECT, directValue);
+            policy.recordMiss();
+            putCachedValue(cache, true, policy);
             return cache;
         }
+    }
+
+    /**
+     * Cache a newly built value, unless another thread cached the same
+     * frame first.
+     *
+     * @return The cache now held for the frame
+     */
+    private ValueCache<PropType> storeValueCache(ValueCache<PropType> cache,
+            boolean pinned, ValueCachePolicy policy)
+    {
+        synchronized (cacheLock)
+        {
+            ValueCache<PropType> oldCache = getCachedValue(cache.key);
+            if (oldCache != null)
+            {
+                policy.recordHit();
+                return oldCache;
+            }
 
-        cache = new ValueCache(FrameKey.DIRECT, directValue);
-        valueCache.put(FrameKey.DIRECT, cache);
-        return cache;
+            policy.recordMiss();
+            putCachedValue(cache, pinned, policy);
+            return cache;
+        }
+    }
+
+    /**
+     * Compute the track value at a frame that has not been cached yet.
+     * No caches are changed, so different properties can be evaluated
+     * on different threads at once, provided nothing else modifies them
+     * meanwhile.  Pass the result to putTrackValue() to cache it.
+     *
+     * @param key Frame to evaluate
+     * @return Interpolated value, or null if the frame is already cached
+     * or the track curve does not interpolate it.
+     */
+    PropertyData<PropType> evaluateTrack(FrameKey key)
+    {
+        if (FrameKey.DIRECT.equals(key))
+        {
+            return null;
+        }
+
+        synchronized (cacheLock)
+        {
+            if (pinnedCache.containsKey(key) || valueCache.containsKey(key))
+            {
+                return null;
+            }
+        }
+
+        int frame = key.getAnimFrame();
+        if (curve == null || curve.isKeyAt(frame) || !curve.isInterpolatedAt(frame))
+        {
+            return null;
+        }
+
+        PropType curveValue = curve.evaluate(frame, getNode().getSymbol());
+        return new PropertyDataInline<PropType>(curveValue);
+    }
+
+    /**
+     * Cache a value computed by evaluateTrack(), exactly as
+     * getOrCreateValueCache() would have.
+     */
+    void putTrackValue(FrameKey key, PropertyData<PropType> data)
+    {
+        storeValueCache(new ValueCache<PropType>(key, data), false,
+                getValueCachePolicy());
+    }
+
+    private ValueCachePolicy getValueCachePolicy()
+    {
+        NodeSymbol<?> sym = node.getSymbol();
+        NodeDocument doc = sym == null ? null : sym.getDocument();
+        return doc == null ? ValueCachePolicy.DETACHED : doc.getValueCachePolicy();
+    }
+
+    /**
+     * Caller must hold cacheLock
+     */
+    private ValueCache<PropType> getCachedValue(FrameKey key)
+    {
+        ValueCache<PropType> cache = pinnedCache.get(key);
+        return cache != null ? cache : valueCache.get(key);
+    }
+
+    private void putCachedValue(ValueCache<PropType> cache, boolean pinned,
+            ValueCachePolicy policy)
+    {
+        if (pinned)
+        {
+            pinnedCache.put(cache.key, cache);
+            return;
+        }
+
+        cache.cacheSize = policy.estimateSize(cache);
+        valueCacheSize += cache.cacheSize;
+        valueCache.put(cache.key, cache);
+        trimValueCache(policy);
+    }
+
+    private void trimValueCache(ValueCachePolicy policy)
+    {
+        long budget = policy.getBudget();
+        for (Iterator<ValueCache<PropType>> it = valueCache.values().iterator();
+                valueCacheSize > budget && it.hasNext();)
+        {
+            ValueCache<PropType> cache = it.next();
+            if (cache.key.equals(synchKey))
+            {
+                //Keep the frame we're currently showing
+                continue;
+            }
+
+            it.remove();
+            valueCacheSize -= cache.cacheSize;
+            policy.recordEviction();
+        }
     }
 
     public PropertyData<PropType> getData(FrameKey frame)
@@ -712,6 +906,7 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
             if (trackType != null)
             {
                 curve = createTrackCurve(trackType);
+                notifySymbolTrackChanged();
             }
 //            for (TrackType trackType: type.getTrack())
 //            {
@@ -765,6 +960,16 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
                     return new PropertyDataInline<PropType>(null);
                 }
 
+                if (type instanceof NodeDocumentBinary.EncodedData)
+                {
+                    //Read from a binary document.  Leave it encoded
+                    // until it is used.
+                    byte[] data = ((NodeDocumentBinary.EncodedData)type).data;
+                    return data == null
+                            ? new PropertyDataInline<PropType>(null)
+                            : new PropertyDataInline<PropType>(prov, data);
+                }
+
                 PropType value = prov.fromText(type.getValue());
                 return new PropertyDataInline<PropType>(value);
             case REFERENCE:
@@ -839,17 +1044,44 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
             }
         }
         
-        //Drop cache values
-        for (int i = startFrame; i <= endFrame; ++i)
+        //Drop cache values.  Only frames that are actually cached are
+        // visited, since the span between keys can be very long
+        synchronized (cacheLock)
         {
-            FrameKey cacheKey = new FrameKey(i);
-            valueCache.remove(cacheKey);
+            for (Iterator<ValueCache<PropType>> it = valueCache.values().iterator();
+                    it.hasNext();)
+            {
+                ValueCache<PropType> cache = it.next();
+                int cacheFrame = cache.key.getAnimFrame();
+                if (cacheFrame >= startFrame && cacheFrame <= endFrame)
+                {
+                    it.remove();
+                    valueCacheSize -= cache.cacheSize;
+                }
+            }
+
+            for (Iterator<FrameKey> it = pinnedCache.keySet().iterator(); 
+                    it.hasNext();)
+            {
+                FrameKey cacheKey = it.next();
+                int cacheFrame = cacheKey.getAnimFrame();
+                if (!FrameKey.DIRECT.equals(cacheKey)
+                        && cacheFrame >= startFrame && cacheFrame <= endFrame)
+                {
+                    it.remove();
+                }
+            }
         }
     }
     
     public void invalidateCache()
     {
-        valueCache.clear();
+        synchronized (cacheLock)
+        {
+            valueCache.clear();
+            pinnedCache.clear();
+            valueCacheSize = 0;
+        }
         
 //        for (Iterator<FrameKey> it = valueCache.keySet().iterator(); it.hasNext();)
 //        {
@@ -863,7 +1095,10 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
     
     public void invalidateCacheAtDirect()
     {
-        valueCache.remove(FrameKey.DIRECT);
+        synchronized (cacheLock)
+        {
+            pinnedCache.remove(FrameKey.DIRECT);
+        }
     }
 
     public <T> T getUserCacheValue(Class<T> clsKey)
@@ -874,7 +1109,10 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
     public <T> T getUserCacheValue(Class<T> clsKey, FrameKey frameKey)
     {
         ValueCache<PropType> cache = getOrCreateValueCache(frameKey);
-        return cache.getUserCache(clsKey);
+        synchronized (cacheLock)
+        {
+            return cache.getUserCache(clsKey);
+        }
     }
 
     public <T> void setUserCacheValue(Class<T> clsKey, T data)
@@ -885,7 +1123,111 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
     public <T> void setUserCacheValue(Class<T> clsKey, FrameKey frameKey, T data)
     {
         ValueCache<PropType> cache = getOrCreateValueCache(frameKey);
-        cache.setUserCache(clsKey, data);
+        
+        synchronized (cacheLock)
+        {
+            cache.setUserCache(clsKey, data);
+
+            if (valueCache.get(cache.key) == cache)
+            {
+                //User data counts against the cache budget
+                ValueCachePolicy policy = getValueCachePolicy();
+                valueCacheSize -= cache.cacheSize;
+                cache.cacheSize = policy.estimateSize(cache);
+                valueCacheSize += cache.cacheSize;
+                trimValueCache(policy);
+            }
+        }
+    }
+
+    /**
+     * Inline data can be written to the history's file cache by the
+     * actions that hold it.  It is read back as data that decodes
+     * when it is next used.
+     */
+    private boolean isCacheable(PropertyData<PropType> data)
+    {
+        return data instanceof PropertyDataInline
+                && getCacheProvider() != null;
+    }
+
+    private PropertyProvider<PropType> getCacheProvider()
+    {
+        if (cacheProvider == null)
+        {
+            cacheProvider = PropertyProviderIndex.inst().getProviderBest(propertyType);
+        }
+        return cacheProvider;
+    }
+
+    private long getSizeEstimate(PropertyData<PropType> data)
+    {
+        if (!(data instanceof PropertyDataInline))
+        {
+            return 0;
+        }
+        return ((PropertyDataInline<PropType>)data).getSizeEstimate(
+                getCacheProvider());
+    }
+
+    private void writeCacheData(PropertyData<PropType> data, DataOutput out)
+            throws IOException
+    {
+        PropertyProvider<PropType> prov = getCacheProvider();
+        PropertyDataInline<PropType> inline = (PropertyDataInline<PropType>)data;
+        byte[] encoded = inline.getEncoded(prov);
+        if (encoded == null)
+        {
+            PropType value = inline.getValue(node.getSymbol());
+            if (value == null)
+            {
+                out.writeInt(-1);
+                return;
+            }
+
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            prov.writeBinary(value, new DataOutputStream(bout));
+            encoded = bout.toByteArray();
+        }
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    private PropertyData<PropType> readCacheData(DataInput in)
+            throws IOException
+    {
+        int size = in.readInt();
+        if (size == -1)
+        {
+            return new PropertyDataInline<PropType>(null);
+        }
+
+        byte[] encoded = new byte[size];
+        in.readFully(encoded);
+        return new PropertyDataInline<PropType>(getCacheProvider(), encoded);
+    }
+
+    private void writeCacheKey(TrackKey<PropType> key, DataOutput out)
+            throws IOException
+    {
+        out.writeByte(key.getInterp().ordinal());
+        out.writeDouble(key.getTanInX());
+        out.writeDouble(key.getTanInY());
+        out.writeDouble(key.getTanOutX());
+        out.writeDouble(key.getTanOutY());
+        writeCacheData(key.getData(), out);
+    }
+
+    private TrackKey<PropType> readCacheKey(DataInput in)
+            throws IOException
+    {
+        TrackKey.Interp interp = TrackKey.Interp.values()[in.readByte()];
+        double tanInX = in.readDouble();
+        double tanInY = in.readDouble();
+        double tanOutX = in.readDouble();
+        double tanOutY = in.readDouble();
+        return new TrackKey<PropType>(readCacheData(in), interp,
+                tanInX, tanInY, tanOutX, tanOutY);
     }
     
     //----------------------------------------------
@@ -911,6 +1253,7 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
             invalidateCacheAtKey(frame);
             
             curve.removeKey(frame);
+            notifySymbolTrackChanged();
             firePropertyTrackKeyChanged(frame);
 //            if (removeCurve)
 //            {
@@ -931,6 +1274,7 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
             curve.setKey(frame, keyOld);
 //            interpCache.remove(trackUid);
             invalidateCacheAtKey(frame);
+            notifySymbolTrackChanged();
             firePropertyTrackKeyChanged(frame);
         }
 
@@ -941,12 +1285,15 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
         }
     }
 
-    public class SetTrackKeyAction implements HistoryAction
+    public class SetTrackKeyAction implements HistoryActionCacheable
     {
 //        private final boolean createCurve;
 //        private final TrackCurve<PropType> curve;
-        private final TrackKey<PropType> keyOld;
-        private final TrackKey<PropType> keyNew;
+        //Keys with inline data are null while the action is unloaded
+        private TrackKey<PropType> keyOld;
+        private TrackKey<PropType> keyNew;
+        private final boolean cacheOld;
+        private final boolean cacheNew;
         private final int frame;
 //        private final int trackUid;
 
@@ -964,6 +1311,8 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
             this.keyOld = PropertyWrapper.this.curve.getKey(frame);
             this.keyNew = new TrackKey<PropType>(dataNew, interp,
                     dxIn, dyIn, dxOut, dyOut);
+            this.cacheOld = keyOld != null && isCacheable(keyOld.getData());
+            this.cacheNew = isCacheable(dataNew);
         }
 
         @Override
@@ -977,6 +1326,7 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
             curve.setKey(frame, keyNew);
 //            interpCache.remove(trackUid);
             invalidateCacheAtKey(frame);
+            notifySymbolTrackChanged();
             firePropertyTrackKeyChanged(frame);
         }
 
@@ -987,11 +1337,13 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
             if (keyOld == null)
             {
                 curve.removeKey(frame);
+                notifySymbolTrackChanged();
                 firePropertyTrackKeyChanged(frame);
             }
             else
             {
                 curve.setKey(frame, keyOld);
+                notifySymbolTrackChanged();
                 firePropertyTrackKeyChanged(frame);
             }
 
@@ -1008,6 +1360,54 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
         {
             return "Set Key";
         }
+
+        @Override
+        public long getSizeEstimate()
+        {
+            //The new key is in the curve, or is the old key of a later
+            // action, so only the old key is counted
+            return History.ACTION_SIZE_DEFAULT
+                    + (cacheOld ? PropertyWrapper.this.getSizeEstimate(keyOld.getData()) : 0);
+        }
+
+        @Override
+        public void writeCache(DataOutput out) throws IOException
+        {
+            if (cacheOld)
+            {
+                writeCacheKey(keyOld, out);
+            }
+            if (cacheNew)
+            {
+                writeCacheKey(keyNew, out);
+            }
+        }
+
+        @Override
+        public void unloadCache()
+        {
+            if (cacheOld)
+            {
+                keyOld = null;
+            }
+            if (cacheNew)
+            {
+                keyNew = null;
+            }
+        }
+
+        @Override
+        public void readCache(DataInput in) throws IOException
+        {
+            if (cacheOld)
+            {
+                keyOld = readCacheKey(in);
+            }
+            if (cacheNew)
+            {
+                keyNew = readCacheKey(in);
+            }
+        }
     }
 
 //    public class DeleteTrackCurveAction implements HistoryAction
@@ -1061,6 +1461,7 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
             curve = curveNew;
 //            trackMap.put(trackUid, curveNew);
             invalidateCache();
+            notifySymbolTrackChanged();
             firePropertyTrackChanged();
         }
 
@@ -1069,6 +1470,7 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
         {
             invalidateCache();
             curve = curveOld;
+            notifySymbolTrackChanged();
 //            if (curveOld == null)
 //            {
 //                trackMap.remove(trackUid);
@@ -1087,11 +1489,14 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
         }
     }
 
-    public class SetValueDirectAction implements HistoryAction
+    public class SetValueDirectAction implements HistoryActionCacheable
     {
-        final PropertyData<PropType> dataOld;
-        final PropertyData<PropType> dataNew;
+        //Inline data is null while the action is unloaded
+        PropertyData<PropType> dataOld;
+        PropertyData<PropType> dataNew;
         final FrameKey synchOld;
+        final boolean cacheOld;
+        final boolean cacheNew;
 
         public SetValueDirectAction(PropertyData<PropType> dataOld,
                 PropertyData<PropType> dataNew)
@@ -1099,6 +1504,8 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
             this.dataOld = dataOld;
             this.dataNew = dataNew;
             this.synchOld = synchKey;
+            this.cacheOld = isCacheable(dataOld);
+            this.cacheNew = isCacheable(dataNew);
         }
 
         @Override
@@ -1124,7 +1531,60 @@ public class PropertyWrapper<NodeType extends NodeObject, PropType>
         @Override
         public String getTitle()
         {
+            if (dataNew == null)
+            {
+                //Don't read the value back in just for the title
+                return "Set " + name;
+            }
             return "Set " + name + ": " + dataNew;
         }
+
+        @Override
+        public long getSizeEstimate()
+        {
+            //The new value is the current one, or is the old value of a
+            // later action, so only the old value is counted
+            return History.ACTION_SIZE_DEFAULT
+                    + (cacheOld ? PropertyWrapper.this.getSizeEstimate(dataOld) : 0);
+        }
+
+        @Override
+        public void writeCache(DataOutput out) throws IOException
+        {
+            if (cacheOld)
+            {
+                writeCacheData(dataOld, out);
+            }
+            if (cacheNew)
+            {
+                writeCacheData(dataNew, out);
+            }
+        }
+
+        @Override
+        public void unloadCache()
+        {
+            if (cacheOld)
+            {
+                dataOld = null;
+            }
+            if (cacheNew)
+            {
+                dataNew = null;
+            }
+        }
+
+        @Override
+        public void readCache(DataInput in) throws IOException
+        {
+            if (cacheOld)
+            {
+                dataOld = readCacheData(in);
+            }
+            if (cacheNew)
+            {
+                dataNew = readCacheData(in);
+            }
+        }
     }
 }
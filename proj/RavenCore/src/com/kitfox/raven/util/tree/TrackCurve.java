@@ -18,8 +18,9 @@ package com.kitfox.raven.util.tree;
 
 import java.awt.geom.Path2D;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  *
@@ -33,12 +34,14 @@ public class TrackCurve<T>
     private Repeat before;
     private Repeat after;
     
-    private HashMap<Integer, TrackKey<T>> keyMap =
-            new HashMap<Integer, TrackKey<T>>();
+    //Key frames in ascending order, with keys in a parallel array
+    private int[] frames = new int[4];
+    private TrackKey<T>[] keys = allocKeys(4);
+    private int numKeys;
 
-    ArrayList<TrackEntry> entries;
-    private int minFrame = Integer.MAX_VALUE;
-    private int maxFrame = Integer.MIN_VALUE;
+    //Index of span last found by findSpan().  Consecutive frames
+    // usually fall in the same or next span.
+    private int lastSpan;
 
     public TrackCurve(Class<T> dataType)
     {
@@ -55,44 +58,102 @@ public class TrackCurve<T>
 
         if (keyMap != null)
         {
-            this.keyMap.putAll(keyMap);
+            for (Map.Entry<Integer, TrackKey<T>> entry: keyMap.entrySet())
+            {
+                setKey(entry.getKey(), entry.getValue());
+            }
         }
     }
 
     public TrackCurve(TrackCurve<T> curve)
     {
-        this(curve.dataType, curve.before, curve.after, curve.keyMap);
+        this(curve.dataType, curve.before, curve.after, null);
+
+        this.frames = Arrays.copyOf(curve.frames, curve.frames.length);
+        this.keys = Arrays.copyOf(curve.keys, curve.keys.length);
+        this.numKeys = curve.numKeys;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> TrackKey<T>[] allocKeys(int size)
+    {
+        return (TrackKey<T>[])new TrackKey<?>[size];
     }
 
     public ArrayList<Integer> getFrames()
     {
-        ArrayList<Integer> list = new ArrayList<Integer>(keyMap.keySet());
-        Collections.sort(list);
+        ArrayList<Integer> list = new ArrayList<Integer>(numKeys);
+        for (int i = 0; i < numKeys; ++i)
+        {
+            list.add(frames[i]);
+        }
         return list;
     }
 
-    private void setDirty()
+    /**
+     * @return Index of frame in key array, or (-(insertion point) - 1)
+     * if there is no key at frame.
+     */
+    private int indexOf(int frame)
+    {
+        return Arrays.binarySearch(frames, 0, numKeys, frame);
+    }
+
+    /**
+     * Find span of keys that strictly contains the given frame.
+     *
+     * @return Index i such that frames[i] < frame < frames[i + 1], or
+     * -1 if frame lies on a key or outside of the keys.
+     */
+    private int findSpan(int frame)
     {
-        entries = null;
-        minFrame = Integer.MAX_VALUE;
-        maxFrame = Integer.MIN_VALUE;
+        //Check the last span used, and the one after it
+        int span = lastSpan;
+        if (span + 1 < numKeys && frames[span] < frame)
+        {
+            if (frame < frames[span + 1])
+            {
+                return span;
+            }
+            if (span + 2 < numKeys && frames[span + 1] < frame
+                    && frame < frames[span + 2])
+            {
+                lastSpan = span + 1;
+                return span + 1;
+            }
+        }
+
+        int idx = indexOf(frame);
+        if (idx >= 0)
+        {
+            return -1;
+        }
+
+        span = -idx - 2;
+        if (span < 0 || span + 1 >= numKeys)
+        {
+            return -1;
+        }
+        lastSpan = span;
+        return span;
     }
 
     public T evaluate(int frame, NodeSymbol doc)
     {
-        if (keyMap.isEmpty())
+        if (numKeys == 0)
         {
             return null;
         }
 
         //Remap frame if outside domain
-        buildCache();
+        int minFrame = frames[0];
+        int maxFrame = frames[numKeys - 1];
         int span = (int)Math.floor(
                 (float)(frame - minFrame) / (maxFrame - minFrame));
 
         Repeat repeatStyle = null;
-        TrackKey<T> minKey = keyMap.get(minFrame);
-        TrackKey<T> maxKey = keyMap.get(maxFrame);
+        TrackKey<T> minKey = keys[0];
+        TrackKey<T> maxKey = keys[numKeys - 1];
         TrackKey<T> repeatKey = null;
         if (span < 0)
         {
@@ -133,93 +194,87 @@ public class TrackCurve<T>
         }
 
         //If we hit a key, return it directly
-        TrackKey<T> key = keyMap.get(frame);
+        TrackKey<T> key = getKey(frame);
         if (key != null)
         {
             return key.getData().getValue(doc);
         }
 
         //Interpolate value
-        ArrayList<TrackEntry> arr = getEntries();
-
-        for (int i = 0; i < arr.size() - 1; ++i)
+        int i = findSpan(frame);
+        if (i == -1)
         {
-            TrackEntry e0 = arr.get(i);
-            TrackEntry e1 = arr.get(i + 1);
-            if (frame > e0.frame && frame < e1.frame)
-            {
-                TrackKey<T> k0 = e0.key;
-                TrackKey<T> k1 = e1.key;
-
-                if (k0.getInterp() == TrackKey.Interp.NONE)
-                {
-                    return null;
-                }
-
-                if (repeatStyle == Repeat.REPEAT_OFFSET)
-                {
-                    return prov.interpolateWithOffset(doc,
-                            k0, k1, frame, e0.frame, e1.frame,
-                            minKey, maxKey, span);
-                }
-                else
-                {
-                    return prov.interpolate(doc,
-                            k0, k1, frame, e0.frame, e1.frame);
-                }
-            }
+            return null;
         }
 
-        return null;
-    }
+        TrackKey<T> k0 = keys[i];
+        TrackKey<T> k1 = keys[i + 1];
 
-    private void buildCache()
-    {
-        if (entries == null)
+        if (k0.getInterp() == TrackKey.Interp.NONE)
         {
-            minFrame = Integer.MAX_VALUE;
-            maxFrame = Integer.MIN_VALUE;
-
-            entries = new ArrayList<TrackEntry>(keyMap.size());
-
-            for (Integer i: keyMap.keySet())
-            {
-                minFrame = Math.min(minFrame, i);
-                maxFrame = Math.max(maxFrame, i);
-
-                TrackKey<T> key = keyMap.get(i);
-                entries.add(new TrackEntry(i, key));
-            }
-            Collections.sort(entries);
+            return null;
         }
-    }
 
-    protected ArrayList<TrackEntry> getEntries()
-    {
-        buildCache();
-        return entries;
+        if (repeatStyle == Repeat.REPEAT_OFFSET)
+        {
+            return prov.interpolateWithOffset(doc,
+                    k0, k1, frame, frames[i], frames[i + 1],
+                    minKey, maxKey, span);
+        }
+        else
+        {
+            return prov.interpolate(doc,
+                    k0, k1, frame, frames[i], frames[i + 1]);
+        }
     }
 
     public TrackKey<T> getKey(int frame)
     {
-        return keyMap.get(frame);
+        int idx = indexOf(frame);
+        return idx < 0 ? null : keys[idx];
     }
 
     public void setKey(int frame, TrackKey<T> key)
     {
-        keyMap.put(frame, key);
-        setDirty();
+        int idx = indexOf(frame);
+        if (idx >= 0)
+        {
+            keys[idx] = key;
+            return;
+        }
+
+        idx = -idx - 1;
+        if (numKeys == frames.length)
+        {
+            frames = Arrays.copyOf(frames, numKeys * 2);
+            keys = Arrays.copyOf(keys, numKeys * 2);
+        }
+        System.arraycopy(frames, idx, frames, idx + 1, numKeys - idx);
+        System.arraycopy(keys, idx, keys, idx + 1, numKeys - idx);
+        frames[idx] = frame;
+        keys[idx] = key;
+        ++numKeys;
     }
 
     public TrackKey<T> removeKey(int frame)
     {
-        setDirty();
-        return keyMap.remove(frame);
+        int idx = indexOf(frame);
+        if (idx < 0)
+        {
+            return null;
+        }
+
+        TrackKey<T> key = keys[idx];
+        System.arraycopy(frames, idx + 1, frames, idx, numKeys - idx - 1);
+        System.arraycopy(keys, idx + 1, keys, idx, numKeys - idx - 1);
+        --numKeys;
+        keys[numKeys] = null;
+        return key;
     }
 
     public boolean isKeyAt(int frame)
     {
-        return keyMap.containsKey(frame);
+        return indexOf(frame) >= 0;
     }
 
     /**
@@ -233,29 +288,18 @@ public class TrackCurve<T>
      */
     public boolean isInterpolatedAt(int frame)
     {
-        if (keyMap.isEmpty() || isKeyAt(frame))
+        if (numKeys == 0)
         {
             return false;
         }
 
-        ArrayList<TrackEntry> arr = getEntries();
-
-        for (int i = 0; i < arr.size() - 1; ++i)
-        {
-            TrackEntry entry = arr.get(i);
-            TrackEntry entryNext = arr.get(i + 1);
-            if (frame > entry.frame && frame < entryNext.frame)
-            {
-                return entry.key.getInterp() != TrackKey.Interp.NONE;
-            }
-        }
-
-        return false;
+        int i = findSpan(frame);
+        return i != -1 && keys[i].getInterp() != TrackKey.Interp.NONE;
     }
 
     public int getNumKeys()
     {
-        return keyMap.size();
+        return numKeys;
     }
 
     /**
@@ -295,8 +339,7 @@ public class TrackCurve<T>
      */
     public int getMinFrame()
     {
-        buildCache();
-        return minFrame;
+        return numKeys == 0 ? Integer.MAX_VALUE : frames[0];
     }
 
     /**
@@ -304,8 +347,7 @@ public class TrackCurve<T>
      */
     public int getMaxFrame()
     {
-        buildCache();
-        return maxFrame;
+        return numKeys == 0 ? Integer.MIN_VALUE : frames[numKeys - 1];
     }
 
     public Path2D.Double getCurvePath(NodeSymbol doc)
@@ -344,9 +386,17 @@ public class TrackCurve<T>
         if (this.after != other.after) {
             return false;
         }
-        if (this.keyMap != other.keyMap && (this.keyMap == null || !this.keyMap.equals(other.keyMap))) {
+        if (this.numKeys != other.numKeys) {
             return false;
         }
+        for (int i = 0; i < numKeys; ++i) {
+            if (this.frames[i] != other.frames[i]) {
+                return false;
+            }
+            if (this.keys[i] != other.keys[i] && (this.keys[i] == null || !this.keys[i].equals(other.keys[i]))) {
+                return false;
+            }
+        }
         return true;
     }
 
@@ -355,7 +405,10 @@ public class TrackCurve<T>
         int hash = 7;
         hash = 79 * hash + (this.before != null ? this.before.hashCode() : 0);
         hash = 79 * hash + (this.after != null ? this.after.hashCode() : 0);
-        hash = 79 * hash + (this.keyMap != null ? this.keyMap.hashCode() : 0);
+        for (int i = 0; i < numKeys; ++i) {
+            hash = 79 * hash + frames[i];
+            hash = 79 * hash + (this.keys[i] != null ? this.keys[i].hashCode() : 0);
+        }
         return hash;
     }
 
@@ -368,7 +421,7 @@ public class TrackCurve<T>
 
     public boolean isEmpty()
     {
-        return keyMap.isEmpty();
+        return numKeys == 0;
     }
 
     public double getNumericValue(int frame, NodeSymbol doc)
@@ -379,56 +432,25 @@ public class TrackCurve<T>
 
     public int getPrevKeyFrame(int curFrame)
     {
-        int bestFrame = Integer.MIN_VALUE;
-
-        for (Integer frame: getFrames())
-        {
-            if (frame < curFrame && frame > bestFrame)
-            {
-                bestFrame = frame;
-            }
-        }
+        int idx = indexOf(curFrame);
+        //Index of first key at or after curFrame
+        int next = idx >= 0 ? idx : -idx - 1;
 
-        return bestFrame;
+        return next == 0 ? Integer.MIN_VALUE : frames[next - 1];
     }
 
     public int getNextKeyFrame(int curFrame)
     {
-        int bestFrame = Integer.MAX_VALUE;
-
-        for (Integer frame: getFrames())
-        {
-            if (frame > curFrame && frame < bestFrame)
-            {
-                bestFrame = frame;
-            }
-        }
+        int idx = indexOf(curFrame);
+        //Index of first key after curFrame
+        int next = idx >= 0 ? idx + 1 : -idx - 1;
 
-        return bestFrame;
+        return next == numKeys ? Integer.MAX_VALUE : frames[next];
     }
 
-
     
     //---------------------------------
 
-    public class TrackEntry implements Comparable<TrackEntry>
-    {
-        final int frame;
-        final TrackKey<T> key;
-
-        public TrackEntry(int frame, TrackKey<T> key)
-        {
-            this.frame = frame;
-            this.key = key;
-        }
-
-        @Override
-        public int compareTo(TrackEntry other)
-        {
-            return frame - other.frame;
-        }
-    }
-
     public static enum Repeat {
         NONE, //Do not write values
         CONST, //Write final value
@@ -81,11 +81,10 @@ public class TrackLibrary extends NodeObject
 //            return;
 //        }
 
-        FrameSynch synch = new FrameSynch(getFrameCur());
         NodeSymbol sym = getSymbol();
         if (sym != null)
         {
-            sym.getRoot().visit(synch);
+            sym.synchToFrame(getFrameCur());
         }
     }
 
@@ -158,27 +157,6 @@ public class TrackLibrary extends NodeObject
 
     //----------------------------------------
 
-    class FrameSynch implements NodeVisitor
-    {
-        final int frame;
-//        final int trackUid;
-
-        public FrameSynch(int frame)
-        {
-            this.frame = frame;
-//            this.trackUid = trackUid;
-        }
-
-        @Override
-        public void visit(NodeObject node)
-        {
-            for (PropertyWrapper wrapper: node.getPropertyWrappers())
-            {
-                wrapper.synchToTrack(frame);
-            }
-        }
-    }
-
     class CurFrameUpdater implements PropertyWrapperListener
     {
 
@@ -27,6 +27,8 @@ public class ValueCache<T>
     FrameKey key;
     PropertyData<T> data;
     HashMap<Class, Object> userCache;
+    //Size estimated by the ValueCachePolicy
+    long cacheSize;
 
     public ValueCache(FrameKey key, PropertyData<T> data)
     {
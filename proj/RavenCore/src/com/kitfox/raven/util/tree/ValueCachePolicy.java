@@ -0,0 +1,217 @@
+/*
+ * Copyright 2011 Mark McKay
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.util.tree;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides how many frame {@link ValueCache}s a {@link PropertyWrapper}
+ * may hold on to.  Each property keeps its frame caches in least recently
+ * used order, and once the total size reported by estimateSize() goes
+ * over the budget, the oldest ones are dropped.  The budget applies to
+ * each property separately.
+ *
+ * <p>The direct value cache is never evicted.  The cache of the frame
+ * the property is currently synchronized to is also kept, and keyframe
+ * caches are kept if pinKeyFrames is set.</p>
+ *
+ * <p>One policy is shared by all properties in a {@link NodeDocument}, and
+ * it counts hits, misses and evictions for the whole document.  Values
+ * may be read from several threads at once, so the counts are atomic.</p>
+ *
+ * @author kitfox
+ */
+abstract public class ValueCachePolicy
+{
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    //Used by properties that are not part of a document
+    static final ValueCachePolicy DETACHED = new EntryCount();
+
+    private boolean pinKeyFrames = true;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @return Largest total size of the unpinned caches of one property
+     */
+    abstract public long getBudget();
+
+    /**
+     * Estimate how much of the budget this cache uses.  This is called
+     * when the cache is created and again whenever user data is
+     * added to it.
+     */
+    abstract public long estimateSize(ValueCache<?> cache);
+
+    /**
+     * @return the pinKeyFrames
+     */
+    public boolean isPinKeyFrames()
+    {
+        return pinKeyFrames;
+    }
+
+    /**
+     * @param pinKeyFrames If true, caches of keyed frames do not count
+     * against the budget and are never evicted.
+     */
+    public void setPinKeyFrames(boolean pinKeyFrames)
+    {
+        this.pinKeyFrames = pinKeyFrames;
+    }
+
+    void recordHit()
+    {
+        hits.incrementAndGet();
+    }
+
+    void recordMiss()
+    {
+        misses.incrementAndGet();
+    }
+
+    void recordEviction()
+    {
+        evictions.incrementAndGet();
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * @return Fraction of lookups that found a cached value, or 0
+     * if no lookups have been made
+     */
+    public double getHitRatio()
+    {
+        long numHits = hits.get();
+        long total = numHits + misses.get();
+        return total == 0 ? 0 : (double)numHits / total;
+    }
+
+    public void resetStatistics()
+    {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "(budget: " + getBudget()
+                + " hits: " + hits
+                + " misses: " + misses
+                + " evictions: " + evictions + ")";
+    }
+
+    //---------------------------------
+    /**
+     * Keeps up to a fixed number of frames per property.
+     */
+    public static class EntryCount extends ValueCachePolicy
+    {
+        private final int maxEntries;
+
+        public EntryCount()
+        {
+            this(DEFAULT_MAX_ENTRIES);
+        }
+
+        public EntryCount(int maxEntries)
+        {
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        public long getBudget()
+        {
+            return maxEntries;
+        }
+
+        @Override
+        public long estimateSize(ValueCache<?> cache)
+        {
+            return 1;
+        }
+    }
+
+    /**
+     * Keeps frames per property up to an estimated number of bytes.
+     * Values and user data are given a flat size by default, since
+     * user data such as mesh layouts usually costs far more than the
+     * value itself.  Override estimateValueBytes() and
+     * estimateUserCacheBytes() to measure the types used in a scene.
+     */
+    public static class EstimatedBytes extends ValueCachePolicy
+    {
+        public static final long DEFAULT_VALUE_BYTES = 64;
+        public static final long DEFAULT_USER_CACHE_BYTES = 4096;
+
+        private final long maxBytes;
+
+        public EstimatedBytes(long maxBytes)
+        {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public long getBudget()
+        {
+            return maxBytes;
+        }
+
+        @Override
+        public long estimateSize(ValueCache<?> cache)
+        {
+            long size = estimateValueBytes(cache.data);
+            if (cache.userCache != null)
+            {
+                for (Object value: cache.userCache.values())
+                {
+                    size += estimateUserCacheBytes(value);
+                }
+            }
+            return size;
+        }
+
+        protected long estimateValueBytes(PropertyData<?> data)
+        {
+            return DEFAULT_VALUE_BYTES;
+        }
+
+        protected long estimateUserCacheBytes(Object value)
+        {
+            return DEFAULT_USER_CACHE_BYTES;
+        }
+    }
+}
@@ -24,6 +24,9 @@ import com.kitfox.raven.util.tree.PropertyWrapper;
 import com.kitfox.raven.util.tree.PropertyWrapperEditor;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.awt.event.MouseListener;
 import javax.swing.JPopupMenu;
 
@@ -135,6 +138,18 @@ public class BooleanEditor extends PropertyWrapperEditor<Boolean>
             return "" + value;
         }
 
+        @Override
+        public void writeBinary(Boolean value, DataOutput out) throws IOException
+        {
+            out.writeBoolean(value);
+        }
+
+        @Override
+        public Boolean readBinary(DataInput in) throws IOException
+        {
+            return in.readBoolean();
+        }
+
         @Override
         public Boolean fromText(String text)
         {
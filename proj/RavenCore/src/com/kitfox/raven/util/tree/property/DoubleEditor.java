@@ -26,6 +26,9 @@ import com.kitfox.raven.util.tree.PropertyWrapperEditor;
 import com.kitfox.raven.util.tree.TrackKey;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
@@ -259,6 +262,18 @@ public class DoubleEditor extends PropertyWrapperEditor<Double>
             return "" + value;
         }
 
+        @Override
+        public void writeBinary(Double value, DataOutput out) throws IOException
+        {
+            out.writeDouble(value);
+        }
+
+        @Override
+        public Double readBinary(DataInput in) throws IOException
+        {
+            return in.readDouble();
+        }
+
         @Override
         public Double fromText(String text)
         {
@@ -26,6 +26,9 @@ import com.kitfox.raven.util.tree.PropertyWrapperEditor;
 import com.kitfox.raven.util.tree.TrackKey;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
@@ -254,6 +257,18 @@ public class FloatEditor extends PropertyWrapperEditor<Float>
             return "" + value;
         }
 
+        @Override
+        public void writeBinary(Float value, DataOutput out) throws IOException
+        {
+            out.writeFloat(value);
+        }
+
+        @Override
+        public Float readBinary(DataInput in) throws IOException
+        {
+            return in.readFloat();
+        }
+
         @Override
         public Float createNumericValue(PropertyWrapper wrapper, double value)
         {
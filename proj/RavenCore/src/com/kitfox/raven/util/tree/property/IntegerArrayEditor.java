@@ -25,6 +25,9 @@ import com.kitfox.raven.util.tree.PropertyWrapper;
 import com.kitfox.raven.util.tree.PropertyWrapperEditor;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  *
@@ -107,6 +110,27 @@ public class IntegerArrayEditor extends PropertyWrapperEditor<int[]>
             return NumberText.asString(value, " ");
         }
 
+        @Override
+        public void writeBinary(int[] value, DataOutput out) throws IOException
+        {
+            out.writeInt(value.length);
+            for (int i = 0; i < value.length; ++i)
+            {
+                out.writeInt(value[i]);
+            }
+        }
+
+        @Override
+        public int[] readBinary(DataInput in) throws IOException
+        {
+            int[] value = new int[in.readInt()];
+            for (int i = 0; i < value.length; ++i)
+            {
+                value[i] = in.readInt();
+            }
+            return value;
+        }
+
         @Override
         public int[] fromText(String text)
         {
@@ -26,6 +26,9 @@ import com.kitfox.raven.util.tree.PropertyWrapperEditor;
 import com.kitfox.raven.util.tree.TrackKey;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
@@ -256,6 +259,18 @@ public class IntegerEditor extends PropertyWrapperEditor<Integer>
             return "" + value;
         }
 
+        @Override
+        public void writeBinary(Integer value, DataOutput out) throws IOException
+        {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer readBinary(DataInput in) throws IOException
+        {
+            return in.readInt();
+        }
+
         @Override
         public Integer fromText(String text)
         {
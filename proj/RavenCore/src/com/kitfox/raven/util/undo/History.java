@@ -16,44 +16,289 @@
 
 package com.kitfox.raven.util.undo;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.EventObject;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Records actions so they can be undone and redone.
+ *
+ * <p>The history is limited by the estimated number of bytes its
+ * actions hold rather than by how many there are.  Actions that
+ * implement {@link HistoryActionCacheable} report their own size, and
+ * once the actions in memory go over the memory budget, the ones
+ * furthest from the undo cursor have their data written to a file
+ * cache.  It is read back when the user undoes or redoes that far.</p>
  *
  * @author kitfox
  */
 public class History
 {
-    private final ArrayList<HistoryAction> actionList = new ArrayList<HistoryAction>();  //Points to gap just before index location
+    //Size of an action that does not estimate its own
+    public static final long ACTION_SIZE_DEFAULT = 256;
+    //Don't bother compacting the file cache until this much of it is
+    // unused
+    static final long FILE_CACHE_COMPACT_SIZE = 16 << 20;
+
+    private final ArrayList<Entry> actionList = new ArrayList<Entry>();  //Points to gap just before index location
     private int undoCursor;
-    private int maxUndo = 100;
+    //Most bytes of actions to keep, in memory and in the file cache
+    private long maxUndoSize = 1L << 30;
+    //Most bytes of actions to keep in memory
+    private long memoryBudget = 64L << 20;
+    //Estimated bytes of all actions, and of those loaded in memory
+    private long undoSize;
+    private long memorySize;
 
     //Cache for writing large objects to so they don't have to fill up
-    // memory
+    // memory.  Written to the end only.  Space used by actions that
+    // have left the history is reclaimed when there is enough of it.
     RandomAccessFile fileCache;
+    File fileCacheFile;
     long fileCachePosition = 0;
-    ArrayList<FileCacheFrame> fileCacheFrames = new ArrayList<FileCacheFrame>();
+    //Bytes of the file cache still used by actions in the history
+    long fileCacheUsed = 0;
+    //Set if the file cache could not be written.  Actions stay in
+    // memory after this.
+    boolean fileCacheFailed;
 
     ArrayList<HistoryListener> listeners = new ArrayList<HistoryListener>();
 
     ArrayList<HistoryTransaction> xactionStack = new ArrayList<HistoryTransaction>();
 
+    /**
+     * @return Estimated number of bytes held by the action
+     */
+    public static long getSizeEstimate(HistoryAction action)
+    {
+        return action instanceof HistoryActionCacheable
+                ? ((HistoryActionCacheable)action).getSizeEstimate()
+                : ACTION_SIZE_DEFAULT;
+    }
+
     private void trimToMaxSize()
     {
-        //Trim to max size
-        while (actionList.size() > maxUndo)
+        //Trim to max size.  Always keep the most recent action, and
+        // never drop one that can still be redone.
+        while (undoSize > maxUndoSize && undoCursor > 1)
         {
-            actionList.remove(0);
+            removeEntry(0);
             --undoCursor;
         }
+
+        fitToMemoryBudget();
+        trimFileCache();
+    }
+
+    private void removeEntry(int index)
+    {
+        Entry entry = actionList.remove(index);
+        undoSize -= entry.size;
+        if (entry.loaded)
+        {
+            memorySize -= entry.size;
+        }
+        if (entry.frame != null)
+        {
+            fileCacheUsed -= entry.frame.size;
+        }
+    }
+
+    /**
+     * Move data of the actions furthest from the undo cursor to the
+     * file cache until the rest fit in the memory budget
+     */
+    private void fitToMemoryBudget()
+    {
+        int lo = 0;
+        int hi = actionList.size() - 1;
+        while (memorySize > memoryBudget && lo <= hi && !fileCacheFailed)
+        {
+            Entry entry;
+            if (undoCursor - lo >= hi + 1 - undoCursor)
+            {
+                entry = actionList.get(lo++);
+            }
+            else
+            {
+                entry = actionList.get(hi--);
+            }
+
+            unload(entry);
+        }
+    }
+
+    private void unload(Entry entry)
+    {
+        if (!entry.loaded || !(entry.action instanceof HistoryActionCacheable))
+        {
+            return;
+        }
+
+        HistoryActionCacheable action = (HistoryActionCacheable)entry.action;
+        if (entry.frame == null)
+        {
+            //Data never changes once written, so an action that has
+            // been read back in only needs to be written once
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            try
+            {
+                action.writeCache(new DataOutputStream(bout));
+                entry.frame = writeFileCache(bout.toByteArray());
+            } catch (IOException ex)
+            {
+                Logger.getLogger(History.class.getName()).log(Level.WARNING,
+                        "Could not write undo history to file cache", ex);
+                fileCacheFailed = true;
+                return;
+            }
+            fileCacheUsed += entry.frame.size;
+        }
+
+        action.unloadCache();
+        entry.loaded = false;
+        memorySize -= entry.size;
+    }
+
+    /**
+     * Read data of the action back in from the file cache
+     *
+     * @return false if it could not be read
+     */
+    private boolean load(Entry entry)
+    {
+        if (entry.loaded)
+        {
+            return true;
+        }
+
+        try
+        {
+            byte[] data = readFileCache(entry.frame);
+            ((HistoryActionCacheable)entry.action).readCache(
+                    new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (IOException ex)
+        {
+            Logger.getLogger(History.class.getName()).log(Level.SEVERE,
+                    "Could not read undo history from file cache", ex);
+            return false;
+        }
+
+        entry.loaded = true;
+        memorySize += entry.size;
+        return true;
+    }
+
+    private FileCacheFrame writeFileCache(byte[] data) throws IOException
+    {
+        if (fileCache == null)
+        {
+            fileCacheFile = File.createTempFile("historyCache", ".dat");
+            fileCacheFile.deleteOnExit();
+            fileCache = new RandomAccessFile(fileCacheFile, "rw");
+            fileCachePosition = 0;
+        }
+
+        fileCache.seek(fileCachePosition);
+        fileCache.write(data);
+
+        FileCacheFrame frame = new FileCacheFrame(fileCachePosition, data.length);
+        fileCachePosition += data.length;
+        return frame;
+    }
+
+    private byte[] readFileCache(FileCacheFrame frame) throws IOException
+    {
+        byte[] data = new byte[frame.size];
+        fileCache.seek(frame.position);
+        fileCache.readFully(data);
+        return data;
+    }
+
+    /**
+     * Reclaim space in the file cache used by actions that are no
+     * longer in the history
+     */
+    private void trimFileCache()
+    {
+        if (fileCache == null)
+        {
+            return;
+        }
+
+        long unused = fileCachePosition - fileCacheUsed;
+        try
+        {
+            if (fileCacheUsed == 0)
+            {
+                if (fileCachePosition != 0)
+                {
+                    fileCache.setLength(0);
+                    fileCachePosition = 0;
+                }
+            }
+            else if (unused > fileCacheUsed && unused > FILE_CACHE_COMPACT_SIZE)
+            {
+                compactFileCache();
+            }
+        } catch (IOException ex)
+        {
+            Logger.getLogger(History.class.getName()).log(Level.WARNING,
+                    "Could not trim undo history file cache", ex);
+        }
+    }
+
+    /**
+     * Copy data still in use to a new file cache
+     */
+    private void compactFileCache() throws IOException
+    {
+        File newFile = File.createTempFile("historyCache", ".dat");
+        newFile.deleteOnExit();
+        RandomAccessFile newCache = new RandomAccessFile(newFile, "rw");
+
+        ArrayList<FileCacheFrame> frames = new ArrayList<FileCacheFrame>();
+        long position = 0;
+        try
+        {
+            for (int i = 0; i < actionList.size(); ++i)
+            {
+                FileCacheFrame frame = actionList.get(i).frame;
+                if (frame == null)
+                {
+                    frames.add(null);
+                    continue;
+                }
+
+                newCache.write(readFileCache(frame));
+                frames.add(new FileCacheFrame(position, frame.size));
+                position += frame.size;
+            }
+        } catch (IOException ex)
+        {
+            newCache.close();
+            newFile.delete();
+            throw ex;
+        }
+
+        for (int i = 0; i < actionList.size(); ++i)
+        {
+            actionList.get(i).frame = frames.get(i);
+        }
+
+        fileCache.close();
+        fileCacheFile.delete();
+        fileCache = newCache;
+        fileCacheFile = newFile;
+        fileCachePosition = position;
     }
 
     public void beginTransaction(String title)
@@ -87,19 +332,22 @@ public class History
         }
     }
 
-    protected void add(HistoryAction action)
+    protected synchronized void add(HistoryAction action)
     {
         //Remove future actions
         while (actionList.size() > undoCursor)
         {
-            actionList.remove(actionList.size() - 1);
+            removeEntry(actionList.size() - 1);
         }
 
-        trimToMaxSize();
-
-        actionList.add(action);
+        Entry entry = new Entry(action, getSizeEstimate(action));
+        actionList.add(entry);
+        undoSize += entry.size;
+        memorySize += entry.size;
         ++undoCursor;
 
+        trimToMaxSize();
+
         fireUndoHistoryChanged();
     }
 
@@ -119,9 +367,22 @@ public class History
         {
             return;
         }
-        HistoryAction action = actionList.get(undoCursor - 1);
-        action.undo(this);
+        Entry entry = actionList.get(undoCursor - 1);
+        if (!load(entry))
+        {
+            //Can't undo past this action any more
+            for (int i = 0; i < undoCursor; ++i)
+            {
+                removeEntry(0);
+            }
+            undoCursor = 0;
+            trimFileCache();
+            fireUndoHistoryChanged();
+            return;
+        }
+        entry.action.undo(this);
         --undoCursor;
+        fitToMemoryBudget();
         fireUndoHistoryChanged();
     }
 
@@ -131,9 +392,21 @@ public class History
         {
             return;
         }
-        HistoryAction action = actionList.get(undoCursor);
-        action.redo(this);
+        Entry entry = actionList.get(undoCursor);
+        if (!load(entry))
+        {
+            //Can't redo this action or any after it
+            while (actionList.size() > undoCursor)
+            {
+                removeEntry(actionList.size() - 1);
+            }
+            trimFileCache();
+            fireUndoHistoryChanged();
+            return;
+        }
+        entry.action.redo(this);
         ++undoCursor;
+        fitToMemoryBudget();
         fireUndoHistoryChanged();
     }
 
@@ -159,33 +432,76 @@ public class History
     }
 
     /**
-     * @return the maxUndo
+     * @return Most bytes of actions the history keeps, in memory and
+     * in the file cache
+     */
+    public long getMaxUndoSize()
+    {
+        return maxUndoSize;
+    }
+
+    /**
+     * @param maxUndoSize Most bytes of actions the history keeps.  The
+     * oldest actions are dropped once there are more.
      */
-    public int getMaxUndo()
+    public synchronized void setMaxUndoSize(long maxUndoSize)
     {
-        return maxUndo;
+        this.maxUndoSize = maxUndoSize;
+        trimToMaxSize();
     }
 
     /**
-     * @param maxUndo the maxUndo to set
+     * @return Most bytes of actions kept in memory
      */
-    public synchronized void setMaxUndo(int maxUndo)
+    public long getMemoryBudget()
     {
-        this.maxUndo = maxUndo;
+        return memoryBudget;
+    }
+
+    /**
+     * @param memoryBudget Most bytes of actions kept in memory.  Data
+     * of the actions furthest from the undo cursor is moved to the file
+     * cache once there are more.
+     */
+    public synchronized void setMemoryBudget(long memoryBudget)
+    {
+        this.memoryBudget = memoryBudget;
         trimToMaxSize();
     }
 
+    /**
+     * @return Estimated bytes of all actions in the history
+     */
+    public long getUndoSize()
+    {
+        return undoSize;
+    }
+
+    /**
+     * @return Estimated bytes of actions loaded in memory
+     */
+    public long getMemorySize()
+    {
+        return memorySize;
+    }
+
     /**
      * @return the actionList
      */
-    public ArrayList<HistoryAction> getActionList()
+    public synchronized ArrayList<HistoryAction> getActionList()
     {
-        return new ArrayList<HistoryAction>(actionList);
+        ArrayList<HistoryAction> list = new ArrayList<HistoryAction>(actionList.size());
+        for (int i = 0; i < actionList.size(); ++i)
+        {
+            list.add(actionList.get(i).action);
+        }
+        return list;
     }
 
     public HistoryAction[] getActionListAsArray()
     {
-        return actionList.toArray(new HistoryAction[actionList.size()]);
+        ArrayList<HistoryAction> list = getActionList();
+        return list.toArray(new HistoryAction[list.size()]);
     }
 
     /**
@@ -204,7 +520,7 @@ public class History
     {
         idx = Math.min(Math.max(0, idx), actionList.size());
 
-        while (undoCursor < idx)
+        while (undoCursor < idx && canRedo())
         {
             redo();
         }
@@ -215,7 +531,7 @@ public class History
         }
     }
 
-    public void clear()
+    public synchronized void clear()
     {
         if (!xactionStack.isEmpty())
         {
@@ -224,73 +540,56 @@ public class History
 
         actionList.clear();
         undoCursor = 0;
+        undoSize = 0;
+        memorySize = 0;
+        fileCacheUsed = 0;
+        trimFileCache();
     }
-    public void pushFileCache(byte[] data)
+
+    /**
+     * Remove the file cache.  Call when the history is no longer needed.
+     * Any transactions still open are dropped.
+     */
+    public synchronized void dispose()
     {
-        if (fileCache == null)
+        xactionStack.clear();
+        clear();
+
+        if (fileCache != null)
         {
             try
             {
-                File file = File.createTempFile("historyCache", "dat");
-                fileCache = new RandomAccessFile(file, "rw");
+                fileCache.close();
             } catch (IOException ex)
             {
-                Logger.getLogger(History.class.getName()).log(Level.SEVERE, null, ex);
+                Logger.getLogger(History.class.getName()).log(Level.WARNING, null, ex);
             }
-        }
-
-        try
-        {
-            FileChannel chan = fileCache.getChannel();
-            MappedByteBuffer buf = chan.map(FileChannel.MapMode.READ_WRITE,
-                    fileCachePosition, data.length);
-            buf.put(data);
-
-            fileCacheFrames.add(new FileCacheFrame(fileCachePosition, data.length));
-            fileCachePosition += data.length;
-        } catch (IOException ex)
-        {
-            Logger.getLogger(History.class.getName()).log(Level.SEVERE, null, ex);
+            fileCacheFile.delete();
+            fileCache = null;
+            fileCacheFile = null;
+            fileCachePosition = 0;
         }
     }
 
-    public byte[] popFileCache()
-    {
-        if (fileCachePosition == 0)
-        {
-            return null;
-        }
-
-        FileCacheFrame frame = fileCacheFrames.remove(fileCacheFrames.size() - 1);
-        fileCachePosition = frame.position;
 
-        byte[] data = new byte[frame.size];
-        FileChannel chan = fileCache.getChannel();
-        MappedByteBuffer buf;
-        try
-        {
-            buf = chan.map(FileChannel.MapMode.READ_WRITE, fileCachePosition, data.length);
-            buf.get(data);
-        } catch (IOException ex)
+    //--------------------------------
+    class Entry
+    {
+        final HistoryAction action;
+        //Estimated when the action was added
+        final long size;
+        //Where the action's data was written to the file cache, or null
+        // if it has not been
+        FileCacheFrame frame;
+        boolean loaded = true;
+
+        public Entry(HistoryAction action, long size)
         {
-            Logger.getLogger(History.class.getName()).log(Level.SEVERE, null, ex);
+            this.action = action;
+            this.size = size;
         }
-
-        return data;
-    }
-
-    public void pushFileCacheString(String text)
-    {
-        pushFileCache(text.getBytes());
     }
 
-    public String popFileCacheString()
-    {
-        byte[] data = popFileCache();
-        return new String(data);
-    }
-
-
     //--------------------------------
     class FileCacheFrame
     {
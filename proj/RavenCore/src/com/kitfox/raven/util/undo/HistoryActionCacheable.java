@@ -0,0 +1,56 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.util.undo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * An action that can tell the history how much memory it holds, and
+ * give up its data while it is far from the undo cursor.  The history
+ * writes the data to its file cache and hands it back before the
+ * action is next undone or redone.
+ *
+ * @author kitfox
+ */
+public interface HistoryActionCacheable extends HistoryAction
+{
+    /**
+     * @return Rough number of bytes of memory held by this action
+     * while its data is loaded
+     */
+    public long getSizeEstimate();
+
+    /**
+     * Write the data this action can do without while it is not being
+     * used.  The data must not change afterwards, since it may be
+     * unloaded and read back many times after being written once.
+     */
+    public void writeCache(DataOutput out) throws IOException;
+
+    /**
+     * Drop the data written by writeCache().  The action is not undone
+     * or redone again until readCache() has been called.
+     */
+    public void unloadCache();
+
+    /**
+     * Restore the data written by writeCache()
+     */
+    public void readCache(DataInput in) throws IOException;
+}
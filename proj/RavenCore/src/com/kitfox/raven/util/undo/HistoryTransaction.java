@@ -16,13 +16,16 @@
 
 package com.kitfox.raven.util.undo;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
  *
  * @author kitfox
  */
-public class HistoryTransaction implements HistoryAction
+public class HistoryTransaction implements HistoryActionCacheable
 {
     final String title;
     ArrayList<HistoryAction> list = new ArrayList<HistoryAction>();
@@ -60,4 +63,54 @@ public class HistoryTransaction implements HistoryAction
     {
         return title;
     }
+
+    @Override
+    public long getSizeEstimate()
+    {
+        long size = 0;
+        for (int i = 0; i < list.size(); ++i)
+        {
+            size += History.getSizeEstimate(list.get(i));
+        }
+        return size;
+    }
+
+    @Override
+    public void writeCache(DataOutput out) throws IOException
+    {
+        for (int i = 0; i < list.size(); ++i)
+        {
+            HistoryAction action = list.get(i);
+            if (action instanceof HistoryActionCacheable)
+            {
+                ((HistoryActionCacheable)action).writeCache(out);
+            }
+        }
+    }
+
+    @Override
+    public void unloadCache()
+    {
+        for (int i = 0; i < list.size(); ++i)
+        {
+            HistoryAction action = list.get(i);
+            if (action instanceof HistoryActionCacheable)
+            {
+                ((HistoryActionCacheable)action).unloadCache();
+            }
+        }
+    }
+
+    @Override
+    public void readCache(DataInput in) throws IOException
+    {
+        for (int i = 0; i < list.size(); ++i)
+        {
+            HistoryAction action = list.get(i);
+            if (action instanceof HistoryActionCacheable)
+            {
+                ((HistoryActionCacheable)action).readCache(in);
+            }
+        }
+    }
 }
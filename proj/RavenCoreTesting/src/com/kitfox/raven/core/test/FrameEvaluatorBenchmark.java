@@ -0,0 +1,282 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.core.test;
+
+import com.kitfox.raven.util.tree.FrameEvaluator;
+import com.kitfox.raven.util.tree.FrameKey;
+import com.kitfox.raven.util.tree.NodeObject;
+import com.kitfox.raven.util.tree.NodeSymbol;
+import com.kitfox.raven.util.tree.PropertyDataInline;
+import com.kitfox.raven.util.tree.PropertyProvider;
+import com.kitfox.raven.util.tree.PropertyProviderIndex;
+import com.kitfox.raven.util.tree.PropertyWrapper;
+import com.kitfox.raven.util.tree.PropertyWrapperEditor;
+import com.kitfox.raven.util.tree.TrackKey;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times stepping through the frames of a scene full of expensive
+ * animated properties, interpolating them on the calling thread and
+ * with a FrameEvaluator using different numbers of threads.  Every
+ * run is checked against the values computed sequentially.
+ *
+ * <p>The properties hold morph shapes, each a list of point
+ * coordinates that are blended point by point.</p>
+ *
+ * @author kitfox
+ */
+public class FrameEvaluatorBenchmark
+{
+    //Properties keep every frame cached, so the scene is kept small
+    // enough to fit in memory
+    static final int NUM_PROPERTIES = 1000;
+    static final int NUM_POINTS = 128;
+    static final int NUM_FRAMES = 60;
+    static final int ROUNDS = 3;
+
+    public FrameEvaluatorBenchmark() throws IOException
+    {
+        registerProvider();
+
+        long[] reference = new long[NUM_FRAMES];
+        long timeSeq = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            timeSeq = Math.min(timeSeq, runTest(null, reference));
+        }
+        System.err.println("properties: " + NUM_PROPERTIES
+                + " points: " + NUM_POINTS
+                + " sequential: " + (timeSeq / NUM_FRAMES / 1000) + "us/frame");
+
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int numThreads = 1; numThreads <= maxThreads; numThreads *= 2)
+        {
+            runThreads(numThreads, reference, timeSeq);
+        }
+        if (Integer.bitCount(maxThreads) != 1)
+        {
+            runThreads(maxThreads, reference, timeSeq);
+        }
+    }
+
+    private void runThreads(int numThreads, long[] reference, long timeSeq)
+    {
+        FrameEvaluator evaluator = new FrameEvaluator(numThreads);
+        long time = Long.MAX_VALUE;
+        boolean match = true;
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            long[] hashes = new long[NUM_FRAMES];
+            time = Math.min(time, runTest(evaluator, hashes));
+            match &= Arrays.equals(reference, hashes);
+        }
+        evaluator.dispose();
+
+        System.err.println("threads: " + numThreads
+                + " time: " + (time / NUM_FRAMES / 1000) + "us/frame"
+                + " speedup: " + ((double)timeSeq / time)
+                + (match ? "" : " MISMATCH"));
+    }
+
+    /**
+     * Step through every frame of a new scene, the way
+     * NodeSymbol.synchToFrame() does.
+     *
+     * @param hashes Filled with a hash of the exact values of
+     * every frame
+     * @return Time taken in nanoseconds
+     */
+    private long runTest(FrameEvaluator evaluator, long[] hashes)
+    {
+        ArrayList<PropertyWrapper<MorphNode, Morph>> props = createScene();
+
+        long t0 = System.nanoTime();
+        for (int frame = 1; frame < NUM_FRAMES; ++frame)
+        {
+            FrameKey key = new FrameKey(frame);
+            if (evaluator != null)
+            {
+                evaluator.evaluate(props, key);
+            }
+            for (int i = 0; i < props.size(); ++i)
+            {
+                props.get(i).synchToTrack(key);
+            }
+        }
+        long time = System.nanoTime() - t0;
+
+        //Hash values afterwards so it is not part of the timing
+        for (int frame = 1; frame < NUM_FRAMES; ++frame)
+        {
+            long hash = 0;
+            for (int i = 0; i < props.size(); ++i)
+            {
+                Morph morph = props.get(i).getValue(frame);
+                hash = hash * 31 + Arrays.hashCode(morph.points);
+            }
+            hashes[frame] = hash;
+        }
+        return time;
+    }
+
+    private ArrayList<PropertyWrapper<MorphNode, Morph>> createScene()
+    {
+        Random rand = new Random(1);
+        ArrayList<PropertyWrapper<MorphNode, Morph>> props =
+                new ArrayList<PropertyWrapper<MorphNode, Morph>>();
+        for (int i = 0; i < NUM_PROPERTIES; ++i)
+        {
+            MorphNode node = new MorphNode(i);
+            node.shape.setKeyAt(0,
+                    new PropertyDataInline<Morph>(createMorph(rand)),
+                    TrackKey.Interp.SMOOTH_STEP);
+            node.shape.setKeyAt(NUM_FRAMES,
+                    new PropertyDataInline<Morph>(createMorph(rand)),
+                    TrackKey.Interp.SMOOTH_STEP);
+            props.add(node.shape);
+        }
+        return props;
+    }
+
+    private Morph createMorph(Random rand)
+    {
+        double[] points = new double[NUM_POINTS * 2];
+        for (int i = 0; i < points.length; ++i)
+        {
+            points[i] = rand.nextDouble() * 1000;
+        }
+        return new Morph(points);
+    }
+
+    /**
+     * Property providers are normally found through the jar services
+     * of the classpath.  Add one for Morph for this run.
+     */
+    private void registerProvider() throws IOException
+    {
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+                "frameEvaluatorBenchmark");
+        File services = new File(dir, "META-INF/services");
+        services.mkdirs();
+
+        File file = new File(services, PropertyProvider.class.getName());
+        FileWriter writer = new FileWriter(file);
+        try
+        {
+            writer.write(MorphProvider.class.getName() + "\n");
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        URLClassLoader loader = new URLClassLoader(
+                new URL[]{dir.toURI().toURL()},
+                FrameEvaluatorBenchmark.class.getClassLoader());
+        PropertyProviderIndex.inst().reload(loader);
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws IOException
+    {
+        new FrameEvaluatorBenchmark();
+    }
+
+    //---------------------------------
+    public static class Morph
+    {
+        final double[] points;
+
+        public Morph(double[] points)
+        {
+            this.points = points;
+        }
+    }
+
+    public static class MorphProvider extends PropertyProvider<Morph>
+    {
+        public MorphProvider()
+        {
+            super(Morph.class);
+        }
+
+        @Override
+        public Morph interpolate(NodeSymbol doc,
+                TrackKey<Morph> k0, TrackKey<Morph> k1,
+                int frame, int k0Frame, int k1Frame)
+        {
+            double[] p0 = k0.getData().getValue(doc).points;
+            double[] p1 = k1.getData().getValue(doc).points;
+            double alpha = fraction(frame, k0Frame, k1Frame);
+
+            //Blend each point along an arc, as a shape morph would
+            double[] points = new double[p0.length];
+            for (int i = 0; i < points.length; i += 2)
+            {
+                double x = interpolate(k0.getInterp(),
+                        p0[i], 1, 0, p1[i], 1, 0, k1Frame - k0Frame, alpha);
+                double y = interpolate(k0.getInterp(),
+                        p0[i + 1], 1, 0, p1[i + 1], 1, 0, k1Frame - k0Frame, alpha);
+                double dx = p1[i] - p0[i];
+                double dy = p1[i + 1] - p0[i + 1];
+                double bulge = Math.sqrt(dx * dx + dy * dy)
+                        * alpha * (1 - alpha) * .25;
+                points[i] = x - dy * bulge / 1000;
+                points[i + 1] = y + dx * bulge / 1000;
+            }
+            return new Morph(points);
+        }
+
+        @Override
+        public PropertyWrapperEditor createEditor(PropertyWrapper wrapper)
+        {
+            return null;
+        }
+
+        @Override
+        public String asText(Morph value)
+        {
+            return Arrays.toString(value.points);
+        }
+
+        @Override
+        public Morph fromText(String text)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static class MorphNode extends NodeObject
+    {
+        final PropertyWrapper<MorphNode, Morph> shape =
+                new PropertyWrapper<MorphNode, Morph>(this, "shape", Morph.class);
+
+        public MorphNode(int uid)
+        {
+            super(uid);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.core.test;
+
+import com.kitfox.raven.shape.network.NetworkMesh;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes and decodes large meshes as cache text and in binary.
+ * Reports the size of each encoding and the time taken to write and
+ * read it, and checks that both read back as the same mesh.  Truncated
+ * and damaged binary data must be rejected with an IOException.
+ *
+ * @author kitfox
+ */
+public class NetworkMeshCodecBenchmark
+{
+    static final int[] GRID_SIZES = {10, 20, 40};
+    //Size of a cell in mesh units
+    static final int CELL = 3000;
+    static final int ROUNDS = 5;
+
+    public NetworkMeshCodecBenchmark() throws IOException
+    {
+        for (int i = 0; i < GRID_SIZES.length; ++i)
+        {
+            runTest(NetworkMeshGrid.create(GRID_SIZES[i], CELL, CELL / 3, 0));
+        }
+
+        checkDamaged(NetworkMeshGrid.create(GRID_SIZES[0], CELL, CELL / 3, 0));
+    }
+
+    private void runTest(NetworkMesh mesh) throws IOException
+    {
+        long timeTextWrite = Long.MAX_VALUE;
+        long timeTextRead = Long.MAX_VALUE;
+        long timeBinWrite = Long.MAX_VALUE;
+        long timeBinRead = Long.MAX_VALUE;
+        String text = null;
+        ByteBuffer buf = null;
+        NetworkMesh textMesh = null;
+        NetworkMesh binMesh = null;
+
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            long start = System.nanoTime();
+            text = mesh.toString();
+            timeTextWrite = Math.min(timeTextWrite, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            textMesh = NetworkMesh.create(text);
+            timeTextRead = Math.min(timeTextRead, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            buf = mesh.toBinary();
+            timeBinWrite = Math.min(timeBinWrite, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            binMesh = NetworkMesh.create(buf.duplicate());
+            timeBinRead = Math.min(timeBinRead, System.nanoTime() - start);
+        }
+
+        boolean same = textMesh.toString().equals(binMesh.toString());
+        System.err.println("vertices: " + mesh.getNumVertices()
+                + " edges: " + mesh.getNumEdges()
+                + (same ? "" : " MISMATCH"));
+        System.err.println("  text: " + (text.length() / 1024) + "k"
+                + " write " + (timeTextWrite / 1000) + "us"
+                + " read " + (timeTextRead / 1000) + "us");
+        System.err.println("  binary: " + (buf.remaining() / 1024) + "k"
+                + " write " + (timeBinWrite / 1000) + "us"
+                + " read " + (timeBinRead / 1000) + "us");
+    }
+
+    /**
+     * Damaged data must be reported with an IOException
+     */
+    private void checkDamaged(NetworkMesh mesh) throws IOException
+    {
+        ByteBuffer buf = mesh.toBinary();
+        byte[] data = new byte[buf.remaining()];
+        buf.get(data);
+
+        for (int len = 0; len < data.length; len += 61)
+        {
+            expectFailure("truncated to " + len, Arrays.copyOf(data, len));
+        }
+        expectFailure("truncated by one",
+                Arrays.copyOf(data, data.length - 1));
+
+        //Make sure the hand built mesh is read when it is not damaged
+        //version, one point at 0 0, no data keys or values,
+        // one vertex on point 0 without data, no edges
+        NetworkMesh.create(ByteBuffer.wrap(
+                new byte[]{1, 1, 0, 0, 0, 0, 1, 0, 0, 0}));
+        expectFailure("point index", new byte[]{1, 1, 0, 0, 0, 0, 1, 5, 0, 0});
+        expectFailure("data key index",
+                new byte[]{1, 1, 0, 0, 0, 0, 1, 0, 1, 0, 0, 0});
+        expectFailure("edge count", new byte[]{1, 1, 0, 0, 0, 0, 0, 100});
+        expectFailure("long varint", new byte[]{1, -1, -1, -1, -1, -1, 1});
+        expectFailure("version", new byte[]{2, 0, 0, 0, 0, 0});
+    }
+
+    private void expectFailure(String name, byte[] data)
+    {
+        try
+        {
+            NetworkMesh.create(ByteBuffer.wrap(data));
+        } catch (IOException ex)
+        {
+            return;
+        }
+        throw new IllegalStateException(name + " mesh was read without error");
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws IOException
+    {
+        new NetworkMeshCodecBenchmark();
+    }
+}
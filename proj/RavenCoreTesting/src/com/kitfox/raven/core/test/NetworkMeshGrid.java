@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.core.test;
+
+import com.kitfox.coyote.shape.CyPath2d;
+import com.kitfox.coyote.shape.CyStroke;
+import com.kitfox.raven.paint.RavenStroke;
+import com.kitfox.raven.paint.common.RavenPaintColor;
+import com.kitfox.raven.shape.network.NetworkDataEdge;
+import com.kitfox.raven.shape.network.NetworkMesh;
+import com.kitfox.raven.shape.network.keys.NetworkDataTypePaint;
+import com.kitfox.raven.shape.network.keys.NetworkDataTypeStroke;
+
+/**
+ * Builds the grid of stroked and filled cells the mesh benchmarks
+ * work on.
+ *
+ * @author kitfox
+ */
+public class NetworkMeshGrid
+{
+    private NetworkMeshGrid()
+    {
+    }
+
+    /**
+     * A grid of wavy lines, with a different fill on every row and
+     * column.
+     *
+     * @param grid Number of cells along each side
+     * @param cell Size of a cell in mesh units
+     * @param wave How far the lines bend from straight, in mesh units.
+     * If 0, the lines are straight.
+     * @param phase Moves the waves along the grid, so that meshes with
+     * a different phase have differently shaped lines
+     */
+    public static NetworkMesh create(int grid, int cell, int wave,
+            double phase)
+    {
+        NetworkMesh mesh = new NetworkMesh();
+        int size = grid * cell;
+        for (int i = 0; i <= grid; ++i)
+        {
+            int pos = i * cell;
+            int w0 = (int)(wave * Math.sin(i * .7 + phase));
+            int w1 = (int)(wave * Math.cos(i * .4 + phase));
+
+            CyPath2d horiz = new CyPath2d();
+            horiz.moveTo(0, pos);
+            horiz.cubicTo(size / 3, pos + w0, size * 2 / 3, pos - w1, size, pos);
+            mesh.addEdge(horiz, createData(i));
+
+            CyPath2d vert = new CyPath2d();
+            vert.moveTo(pos, 0);
+            vert.cubicTo(pos + w1, size / 3, pos - w0, size * 2 / 3, pos, size);
+            mesh.addEdge(vert, createData(grid + 1 + i));
+        }
+        return mesh;
+    }
+
+    /**
+     * Black stroke, with fill colors on either side that cycle with
+     * the index
+     */
+    public static NetworkDataEdge createData(int index)
+    {
+        NetworkDataEdge data = new NetworkDataEdge();
+        data.putEdge(NetworkDataTypePaint.class,
+                new RavenPaintColor(0, 0, 0));
+        data.putEdge(NetworkDataTypeStroke.class,
+                new RavenStroke(new CyStroke(2)));
+        data.putLeft(NetworkDataTypePaint.class,
+                new RavenPaintColor((index % 7) / 7f, .5f, 1));
+        data.putRight(NetworkDataTypePaint.class,
+                new RavenPaintColor(1, (index % 5) / 5f, .5f));
+        return data;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2011 Mark McKay
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.core.test;
+
+import com.kitfox.raven.util.tree.PropertyDataInline;
+import com.kitfox.raven.util.tree.TrackCurve;
+import com.kitfox.raven.util.tree.TrackKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Measures key span lookup in TrackCurve against the previous
+ * implementation, which kept keys in a HashMap and scanned a sorted
+ * entry list for every query.  Both sequential playback and random
+ * scrubbing are timed.
+ *
+ * @author kitfox
+ */
+public class TrackCurveBenchmark
+{
+    static final int NUM_FRAMES = 100000;
+    static final int ROUNDS = 5;
+
+    public TrackCurveBenchmark()
+    {
+        for (int numKeys = 10; numKeys <= 1000; numKeys *= 10)
+        {
+            runTest(numKeys);
+        }
+    }
+
+    private void runTest(int numKeys)
+    {
+        Random rand = new Random(numKeys);
+        TrackCurve<Double> curve = new TrackCurve<Double>(Double.class);
+        LinearScanCurve oldCurve = new LinearScanCurve();
+
+        for (int i = 0; i < numKeys; ++i)
+        {
+            int frame = rand.nextInt(NUM_FRAMES);
+            TrackKey<Double> key = new TrackKey<Double>(
+                    new PropertyDataInline<Double>((double)i),
+                    rand.nextBoolean()
+                    ? TrackKey.Interp.NONE : TrackKey.Interp.LINEAR);
+            curve.setKey(frame, key);
+            oldCurve.setKey(frame, key);
+        }
+
+        int[] randomFrames = new int[NUM_FRAMES];
+        for (int i = 0; i < randomFrames.length; ++i)
+        {
+            randomFrames[i] = rand.nextInt(NUM_FRAMES);
+        }
+
+        long seqOld = Long.MAX_VALUE;
+        long seqNew = Long.MAX_VALUE;
+        long randOld = Long.MAX_VALUE;
+        long randNew = Long.MAX_VALUE;
+        int mismatch = 0;
+
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            long t0 = System.nanoTime();
+            int countOld = 0;
+            for (int frame = 0; frame < NUM_FRAMES; ++frame)
+            {
+                countOld += oldCurve.isInterpolatedAt(frame) ? 1 : 0;
+            }
+            long t1 = System.nanoTime();
+            int countNew = 0;
+            for (int frame = 0; frame < NUM_FRAMES; ++frame)
+            {
+                countNew += curve.isInterpolatedAt(frame) ? 1 : 0;
+            }
+            long t2 = System.nanoTime();
+            mismatch += countOld - countNew;
+
+            seqOld = Math.min(seqOld, t1 - t0);
+            seqNew = Math.min(seqNew, t2 - t1);
+
+            t0 = System.nanoTime();
+            countOld = 0;
+            for (int i = 0; i < randomFrames.length; ++i)
+            {
+                countOld += oldCurve.isInterpolatedAt(randomFrames[i]) ? 1 : 0;
+            }
+            t1 = System.nanoTime();
+            countNew = 0;
+            for (int i = 0; i < randomFrames.length; ++i)
+            {
+                countNew += curve.isInterpolatedAt(randomFrames[i]) ? 1 : 0;
+            }
+            t2 = System.nanoTime();
+            mismatch += countOld - countNew;
+
+            randOld = Math.min(randOld, t1 - t0);
+            randNew = Math.min(randNew, t2 - t1);
+        }
+
+        System.err.println("keys: " + curve.getNumKeys()
+                + " sequential old: " + (seqOld / NUM_FRAMES) + "ns/frame"
+                + " new: " + (seqNew / NUM_FRAMES) + "ns/frame"
+                + " random old: " + (randOld / NUM_FRAMES) + "ns/frame"
+                + " new: " + (randNew / NUM_FRAMES) + "ns/frame"
+                + (mismatch == 0 ? "" : " MISMATCH"));
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new TrackCurveBenchmark();
+    }
+
+    //---------------------------------
+    /**
+     * Key lookup as TrackCurve used to do it.
+     */
+    static class LinearScanCurve
+    {
+        HashMap<Integer, TrackKey<Double>> keyMap =
+                new HashMap<Integer, TrackKey<Double>>();
+        ArrayList<Entry> entries;
+
+        public void setKey(int frame, TrackKey<Double> key)
+        {
+            keyMap.put(frame, key);
+            entries = null;
+        }
+
+        private ArrayList<Entry> getEntries()
+        {
+            if (entries == null)
+            {
+                entries = new ArrayList<Entry>(keyMap.size());
+                for (Integer i: keyMap.keySet())
+                {
+                    entries.add(new Entry(i, keyMap.get(i)));
+                }
+                Collections.sort(entries);
+            }
+            return entries;
+        }
+
+        public boolean isInterpolatedAt(int frame)
+        {
+            if (keyMap.isEmpty() || keyMap.containsKey(frame))
+            {
+                return false;
+            }
+
+            ArrayList<Entry> arr = getEntries();
+
+            for (int i = 0; i < arr.size() - 1; ++i)
+            {
+                Entry entry = arr.get(i);
+                Entry entryNext = arr.get(i + 1);
+                if (frame > entry.frame && frame < entryNext.frame)
+                {
+                    return entry.key.getInterp() != TrackKey.Interp.NONE;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    static class Entry implements Comparable<Entry>
+    {
+        final int frame;
+        final TrackKey<Double> key;
+
+        public Entry(int frame, TrackKey<Double> key)
+        {
+            this.frame = frame;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Entry other)
+        {
+            return frame - other.frame;
+        }
+    }
+}
@@ -35,6 +35,8 @@ public class DocumentIOHelper
 {
 //    private RavenFileChooser fileChooser = new RavenFileChooser();
     private JFileChooser fileChooser = new JFileChooser();
+    private final FileFilterSuffix binaryFilter = new FileFilterSuffix(
+            "Raven Binary File", RavenDocument.RAVEN_BINARY_FILE_SUFFIX);
     private final RavenViewManager viewManager;
 
     public DocumentIOHelper(RavenViewManager viewManager)
@@ -43,6 +45,7 @@ public class DocumentIOHelper
 
         fileChooser.addChoosableFileFilter(new FileFilterSuffix(
                 "Raven File", RavenDocument.RAVEN_FILE_SUFFIX));
+        fileChooser.addChoosableFileFilter(binaryFilter);
         fileChooser.addChoosableFileFilter(new FileFilterSuffix(
                 "XML File", "xml"));
     }
@@ -126,8 +129,11 @@ public class DocumentIOHelper
         File file = fileChooser.getSelectedFile();
         if (file.getName().indexOf('.') == -1)
         {
+            String suffix = fileChooser.getFileFilter() == binaryFilter
+                    ? RavenDocument.RAVEN_BINARY_FILE_SUFFIX
+                    : RavenDocument.RAVEN_FILE_SUFFIX;
             try {
-                file = new File(file.getCanonicalPath() + "." + RavenDocument.RAVEN_FILE_SUFFIX);
+                file = new File(file.getCanonicalPath() + "." + suffix);
             } catch (IOException ex) {
                 Logger.getLogger(RavenFrame.class.getName()).log(Level.SEVERE, null, ex);
             }
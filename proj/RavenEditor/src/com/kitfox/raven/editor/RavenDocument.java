@@ -18,13 +18,17 @@ package com.kitfox.raven.editor;
 
 import com.kitfox.raven.util.JAXBUtil;
 import com.kitfox.raven.util.tree.NodeDocument;
+import com.kitfox.raven.util.tree.NodeDocumentBinary;
 import com.kitfox.raven.util.tree.NodeSymbol;
 import com.kitfox.raven.util.tree.NodeSymbol.Environment;
 import com.kitfox.xml.schema.ravendocumentschema.NodeDocumentType;
 import com.kitfox.xml.schema.ravendocumentschema.ObjectFactory;
 import java.awt.Window;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.xml.bind.JAXBElement;
 
 /**
@@ -35,6 +39,8 @@ public class RavenDocument extends NodeDocument
         implements NodeSymbol.Environment
 {
     public static final String RAVEN_FILE_SUFFIX = "raven";
+    //Suffix of documents saved in the binary format
+    public static final String RAVEN_BINARY_FILE_SUFFIX = "ravenb";
 
     private final RavenEditor editor;
     private File source;
@@ -122,8 +128,22 @@ public class RavenDocument extends NodeDocument
     
     public static RavenDocument create(RavenEditor editor, File file)
     {
-        NodeDocumentType type = 
-                JAXBUtil.loadJAXB(NodeDocumentType.class, file);
+        NodeDocumentType type;
+        if (NodeDocumentBinary.isBinary(file))
+        {
+            try
+            {
+                type = NodeDocumentBinary.load(file);
+            } catch (IOException ex)
+            {
+                Logger.getLogger(RavenDocument.class.getName()).log(Level.SEVERE, null, ex);
+                type = null;
+            }
+        }
+        else
+        {
+            type = JAXBUtil.loadJAXB(NodeDocumentType.class, file);
+        }
         RavenDocument doc = create(editor, type);
         doc.setSource(file);
         return doc;
@@ -211,8 +231,24 @@ public class RavenDocument extends NodeDocument
 //    }
 //
 
+    /**
+     * Save the document.  Files with the binary suffix are saved in
+     * the binary format, all others as XML.
+     */
     public void save(File file)
     {
+        if (file.getName().endsWith("." + RAVEN_BINARY_FILE_SUFFIX))
+        {
+            try
+            {
+                NodeDocumentBinary.save(this, file);
+            } catch (IOException ex)
+            {
+                Logger.getLogger(RavenDocument.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            return;
+        }
+
         NodeDocumentType pref = export();
 
         ObjectFactory fact = new ObjectFactory();
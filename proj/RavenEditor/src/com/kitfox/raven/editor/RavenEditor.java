@@ -252,6 +252,11 @@ public class RavenEditor
 
     public void setDocument(RavenDocument document)
     {
+        if (this.document != null && this.document != document)
+        {
+            //Release the old document's undo file cache
+            this.document.getHistory().dispose();
+        }
         this.document = document;
 
         fireProjectChanged();
@@ -175,8 +175,7 @@ public class RavenNodeCamera extends RavenNodeXformable
         rend.setProjXform(mat);
 
         //Calc view matrix
-        getLocalToWorldTransform(mat);
-        mat.invert();
+        getWorldToLocalTransform(mat);
         rend.setViewXform(mat);
 
         //Render scene graph
@@ -126,6 +126,12 @@ public class RavenNodeImage extends RavenNodeXformable
         return img == null ? null : new CyRectangle2d(0, 0, img.getWidth(), img.getHeight());
     }
 
+    @Override
+    public CyRectangle2d getBoundsCullLocal(FrameKey key)
+    {
+        return getShapePickLocal(key);
+    }
+
 
 //    protected BufferedImage image;
 //    public static final String PROP_IMAGE = "image";
@@ -22,6 +22,7 @@ import com.kitfox.raven.util.service.ServiceInst;
 import com.kitfox.raven.util.tree.FrameKey;
 import com.kitfox.raven.util.tree.NodeObjectProvider;
 import com.kitfox.raven.util.tree.PropertyWrapper;
+import java.util.HashSet;
 
 /**
  *
@@ -77,7 +78,12 @@ public class RavenNodeInstance extends RavenNodeXformable
         RavenNodeXformable other = source.getValue();
         if (other != null)
         {
+            //The source is drawn here rather than where it lies in the
+            // scene, so its nodes must not be culled by their own bounds
+            HashSet<RavenNodeRenderable> visibleNodes = ctx.getVisibleNodes();
+            ctx.setVisibleNodes(null);
             other.renderContent(ctx);
+            ctx.setVisibleNodes(visibleNodes);
         }
     }
 
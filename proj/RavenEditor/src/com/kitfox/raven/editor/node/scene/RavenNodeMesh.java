@@ -20,6 +20,7 @@ import com.kitfox.coyote.math.CyColor4f;
 import com.kitfox.coyote.math.CyMatrix4d;
 import com.kitfox.coyote.renderer.CyDrawStack;
 import com.kitfox.coyote.renderer.CyVertexBuffer;
+import com.kitfox.coyote.renderer.CyVertexBufferBatch;
 import com.kitfox.coyote.shape.*;
 import com.kitfox.coyote.shape.bezier.mesh.BezierMeshEdge2i;
 import com.kitfox.coyote.shape.bezier.mesh.BezierMeshVertex2i;
@@ -51,7 +52,14 @@ import com.kitfox.raven.util.tree.NodeObjectProvider;
 import com.kitfox.raven.util.tree.PropertyWrapper;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  *
@@ -73,6 +81,18 @@ public class RavenNodeMesh extends RavenNodeXformable
         meshToLocal.scale(.01, .01, 1);
     }
     
+    //Most recently built layout.  Parts of it that are unaffected by
+    // an edit are carried over into the next layout.
+    private MeshLayout lastLayout;
+    
+    private TessellationPool tessPool = TessellationPool.getShared();
+    //If true, layouts are built in the background while the last
+    // finished layout is drawn
+    private boolean asyncLayout;
+    private Future<MeshLayout> pendingLayout;
+    private FrameKey pendingKey;
+    private NetworkMesh pendingMesh;
+    
     protected RavenNodeMesh(int uid)
     {
         super(uid);
@@ -86,7 +106,7 @@ public class RavenNodeMesh extends RavenNodeXformable
     @Override
     protected void renderContent(RenderContext ctx)
     {
-        MeshLayout meshLayout = getFaceSet(ctx.getFrame());
+        MeshLayout meshLayout = getFaceSet(ctx.getFrame(), asyncLayout);
         if (meshLayout == null)
         {
             return;
@@ -96,43 +116,172 @@ public class RavenNodeMesh extends RavenNodeXformable
 //        stack.pushFrame(null);
 //        stack.scale(.01, .01, 1);
         
-        for (FaceLayout lay: meshLayout.paths)
+        for (MeshBatch batch: meshLayout.faceBatches)
         {
-            if (lay.paint != null)
-            {
-                lay.paint.fillShape(stack, lay.paintLayout, lay.vertBuf,
-                        meshToLocal);
-            }
+            batch.paint.fillShape(stack, batch.paintLayout, batch.vertBuf,
+                    meshToLocal);
         }
         
-        for (EdgeLayout lay: meshLayout.edgeLayouts)
+        for (MeshBatch batch: meshLayout.edgeBatches)
         {
-            if (lay.paint != null && lay.vertBuf != null)
-            {
-                lay.paint.fillShape(stack, lay.paintLayout, lay.vertBuf,
-                        meshToLocal);
-            }
+            batch.paint.fillShape(stack, batch.paintLayout, batch.vertBuf,
+                    meshToLocal);
         }
         
 //        stack.popFrame();
     }
 
     protected MeshLayout getFaceSet(FrameKey key)
+    {
+        return getFaceSet(key, false);
+    }
+    
+    /**
+     * @param key Frame to get the layout of
+     * @param allowStale If true and the layout is not ready, start
+     * building it in the background and return the last layout built.
+     * Otherwise wait for the layout.
+     */
+    protected MeshLayout getFaceSet(FrameKey key, boolean allowStale)
     {
         MeshLayout faceSet = mesh.getUserCacheValue(MeshLayout.class, key);
-        if (faceSet == null)
+        if (faceSet != null)
+        {
+            return faceSet;
+        }
+        
+        NetworkMesh curMesh = mesh.getValue(key);
+        if (curMesh == null)
         {
-            NetworkMesh curMesh = mesh.getValue(key);
-            if (curMesh == null)
+            return null;
+        }
+        
+        if (pendingLayout != null && (!allowStale || pendingLayout.isDone()))
+        {
+            finishPendingLayout();
+            
+            faceSet = mesh.getUserCacheValue(MeshLayout.class, key);
+            if (faceSet != null)
             {
-                return null;
+                return faceSet;
             }
-            faceSet = new MeshLayout(curMesh);
-            mesh.setUserCacheValue(MeshLayout.class, key, faceSet);
         }
+        
+        if (allowStale && lastLayout != null)
+        {
+            if (pendingLayout == null)
+            {
+                startPendingLayout(key, curMesh);
+            }
+            return lastLayout;
+        }
+        
+        faceSet = new MeshLayout(curMesh, lastLayout, tessPool);
+        lastLayout = faceSet;
+        mesh.setUserCacheValue(MeshLayout.class, key, faceSet);
         return faceSet;
     }
     
+    private void startPendingLayout(FrameKey key, final NetworkMesh curMesh)
+    {
+        final MeshLayout prevLayout = lastLayout;
+        final TessellationPool pool = tessPool;
+        pendingKey = key;
+        pendingMesh = curMesh;
+        pendingLayout = pool.submitLayout(new Callable<MeshLayout>()
+        {
+            @Override
+            public MeshLayout call()
+            {
+                return new MeshLayout(curMesh, prevLayout, pool);
+            }
+        });
+    }
+    
+    /**
+     * Wait for the layout being built in the background and cache it,
+     * unless the mesh was changed while it was being built.
+     */
+    private void finishPendingLayout()
+    {
+        Future<MeshLayout> future = pendingLayout;
+        FrameKey key = pendingKey;
+        NetworkMesh builtMesh = pendingMesh;
+        pendingLayout = null;
+        pendingKey = null;
+        pendingMesh = null;
+        
+        MeshLayout layout = null;
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                layout = future.get();
+                break;
+            } catch (InterruptedException ex)
+            {
+                interrupted = true;
+            } catch (ExecutionException ex)
+            {
+                Logger.getLogger(RavenNodeMesh.class.getName()).log(Level.SEVERE, null, ex.getCause());
+                break;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (layout == null)
+        {
+            return;
+        }
+        
+        lastLayout = layout;
+        if (mesh.getValue(key) == builtMesh)
+        {
+            mesh.setUserCacheValue(MeshLayout.class, key, layout);
+        }
+    }
+
+    /**
+     * @return true if layouts are built in the background when drawing
+     */
+    public boolean isAsyncLayout()
+    {
+        return asyncLayout;
+    }
+
+    /**
+     * @param asyncLayout If true, a mesh that has changed is laid out
+     * in the background and the last finished layout is drawn until
+     * the new one is ready.  This keeps scrubbing through animated
+     * meshes from stalling, at the cost of drawing some frames late.
+     * Picking always waits for the current layout.
+     */
+    public void setAsyncLayout(boolean asyncLayout)
+    {
+        this.asyncLayout = asyncLayout;
+    }
+
+    /**
+     * @return Threads faces and strokes are tessellated on
+     */
+    public TessellationPool getTessellationPool()
+    {
+        return tessPool;
+    }
+
+    /**
+     * @param tessPool Threads to tessellate faces and strokes on.  If
+     * null, they are tessellated on the thread building the layout.
+     */
+    public void setTessellationPool(TessellationPool tessPool)
+    {
+        this.tessPool = tessPool;
+    }
+    
     @Override
     public CyShape getShapePickLocal(FrameKey key)
     {
@@ -140,6 +289,58 @@ public class RavenNodeMesh extends RavenNodeXformable
         return faceSet.outerPath;
     }
 
+    /**
+     * Found from the control points and strokes of the mesh, so the
+     * mesh does not need to be laid out.
+     */
+    @Override
+    public CyRectangle2d getBoundsCullLocal(FrameKey key)
+    {
+        CyRectangle2d bounds = mesh.getUserCacheValue(CyRectangle2d.class, key);
+        if (bounds != null)
+        {
+            return bounds;
+        }
+        
+        NetworkMesh curMesh = mesh.getValue(key);
+        if (curMesh == null)
+        {
+            return null;
+        }
+        
+        CyRectangle2i meshBounds = curMesh.getBounds();
+        if (meshBounds == null)
+        {
+            bounds = new CyRectangle2d();
+        }
+        else
+        {
+            double reach = 0;
+            for (BezierMeshEdge2i<?> e: curMesh.getEdges())
+            {
+                NetworkDataEdge data = (NetworkDataEdge)e.getData();
+                if (data == null)
+                {
+                    continue;
+                }
+                RavenStroke stroke = data.getEdge(NetworkDataTypeStroke.class);
+                if (stroke != null)
+                {
+                    reach = Math.max(reach, 
+                            SceneBoundsTree.getStrokeReach(stroke.getStroke()));
+                }
+            }
+            
+            bounds = new CyRectangle2d(meshBounds).createTransformedBounds(meshToLocal);
+            bounds = new CyRectangle2d(
+                    bounds.getX() - reach, bounds.getY() - reach,
+                    bounds.getWidth() + reach * 2, bounds.getHeight() + reach * 2);
+        }
+        
+        mesh.setUserCacheValue(CyRectangle2d.class, key, bounds);
+        return bounds;
+    }
+
     @Override
     protected void renderContent(RavenRenderer renderer)
     {
@@ -208,14 +409,14 @@ public class RavenNodeMesh extends RavenNodeXformable
         //Create a new mesh and set coresponding edge data
         NetworkMesh oldMesh = mesh.getValue();
         NetworkMesh newMesh = new NetworkMesh(oldMesh);
-        NetworkMeshHandles newHandles = new NetworkMeshHandles(newMesh);
+        NetworkMeshHandles oldHandles = getMeshHandles();
         
         for (NetworkHandleEdge edge: edges)
         {
-            HandleEdge handle = newHandles.getEdgeHandle(edge.getIndex());
-            BezierMeshEdge2i<NetworkDataEdge> bezEdge = newHandles.getEdge(handle);
+            HandleEdge handle = oldHandles.getEdgeHandle(edge.getIndex());
+            BezierMeshEdge2i<NetworkDataEdge> bezEdge = oldHandles.getEdge(handle);
             
-            NetworkDataEdge data = bezEdge.getData();
+            NetworkDataEdge data = editEdgeData(newMesh, bezEdge);
             data.putEdge(NetworkDataTypePaint.class, paint);
             data.putEdge(NetworkDataTypeStroke.class, stroke);
         }
@@ -231,14 +432,14 @@ public class RavenNodeMesh extends RavenNodeXformable
         //Create a new mesh and set coresponding edge data
         NetworkMesh oldMesh = mesh.getValue();
         NetworkMesh newMesh = new NetworkMesh(oldMesh);
-        NetworkMeshHandles newHandles = new NetworkMeshHandles(newMesh);
+        NetworkMeshHandles oldHandles = getMeshHandles();
         
         for (NetworkHandleEdge edge: edges)
         {
-            HandleEdge handle = newHandles.getEdgeHandle(edge.getIndex());
-            BezierMeshEdge2i<NetworkDataEdge> bezEdge = newHandles.getEdge(handle);
+            HandleEdge handle = oldHandles.getEdgeHandle(edge.getIndex());
+            BezierMeshEdge2i<NetworkDataEdge> bezEdge = oldHandles.getEdge(handle);
             
-            NetworkDataEdge data = bezEdge.getData();
+            NetworkDataEdge data = editEdgeData(newMesh, bezEdge);
             data.putEdge(NetworkDataTypePaint.class, paint);
         }
 
@@ -253,14 +454,14 @@ public class RavenNodeMesh extends RavenNodeXformable
         //Create a new mesh and set coresponding edge data
         NetworkMesh oldMesh = mesh.getValue();
         NetworkMesh newMesh = new NetworkMesh(oldMesh);
-        NetworkMeshHandles newHandles = new NetworkMeshHandles(newMesh);
+        NetworkMeshHandles oldHandles = getMeshHandles();
         
         for (NetworkHandleEdge edge: edges)
         {
-            HandleEdge handle = newHandles.getEdgeHandle(edge.getIndex());
-            BezierMeshEdge2i<NetworkDataEdge> bezEdge = newHandles.getEdge(handle);
+            HandleEdge handle = oldHandles.getEdgeHandle(edge.getIndex());
+            BezierMeshEdge2i<NetworkDataEdge> bezEdge = oldHandles.getEdge(handle);
             
-            NetworkDataEdge data = bezEdge.getData();
+            NetworkDataEdge data = editEdgeData(newMesh, bezEdge);
             data.putEdge(NetworkDataTypeStroke.class, stroke);
         }
 
@@ -275,13 +476,13 @@ public class RavenNodeMesh extends RavenNodeXformable
         //Create a new mesh and set coresponding edge data
         NetworkMesh oldMesh = mesh.getValue();
         NetworkMesh newMesh = new NetworkMesh(oldMesh);
-        NetworkMeshHandles newHandles = new NetworkMeshHandles(newMesh);
+        NetworkMeshHandles oldHandles = getMeshHandles();
         
         for (NetworkHandleFace face: faces)
         {
-            HandleFace handle = newHandles.getFaceHandle(face.getIndex());
+            HandleFace handle = oldHandles.getFaceHandle(face.getIndex());
             
-            CutLoop loop = newHandles.getFace(handle);
+            CutLoop loop = oldHandles.getFace(handle);
             for (CutSegHalf half: loop.getSegs())
             {
                 BezierMeshEdge2i<NetworkDataEdge> bezEdge = half.getEdge();
@@ -290,7 +491,7 @@ public class RavenNodeMesh extends RavenNodeXformable
                     //Is auto-inserted island connecting segment
                     continue;
                 }
-                NetworkDataEdge data = bezEdge.getData();
+                NetworkDataEdge data = editEdgeData(newMesh, bezEdge);
 
                 if (half.isRight())
                 {
@@ -306,6 +507,25 @@ public class RavenNodeMesh extends RavenNodeXformable
         mesh.setValue(newMesh, history);
     }
 
+    /**
+     * Find the edge in a copy of the current mesh that matches an
+     * edge of the current mesh, and return its data ready for editing.
+     * Only the data of edges that are edited is copied.
+     */
+    private NetworkDataEdge editEdgeData(NetworkMesh newMesh,
+            BezierMeshEdge2i<NetworkDataEdge> oldEdge)
+    {
+        BezierMeshEdge2i<NetworkDataEdge> edge =
+                newMesh.getEdge(oldEdge.getId());
+        NetworkDataEdge data = edge.editData();
+        if (data == null)
+        {
+            data = new NetworkDataEdge();
+            edge.setData(data);
+        }
+        return data;
+    }
+
     @Override
     public CyMatrix4d getGraphToWorldXform()
     {
@@ -349,10 +569,59 @@ public class RavenNodeMesh extends RavenNodeXformable
         ArrayList<EdgeLayout> edgeLayouts = new ArrayList<EdgeLayout>();
         ArrayList<FaceLayout> paths = new ArrayList<FaceLayout>();
         CyPath2d outerPath;
+        
+        //Faces and edges merged into as few meshes as possible
+        ArrayList<MeshBatch> faceBatches = new ArrayList<MeshBatch>();
+        ArrayList<MeshBatch> edgeBatches = new ArrayList<MeshBatch>();
+        
+        private int numFacesReused;
+        private int numEdgesReused;
+        private int numBatchesReused;
 
         public MeshLayout(NetworkMesh mesh)
         {
-            buildEdges(mesh);
+            this(mesh, null, null);
+        }
+
+        /**
+         * Faces and edge chains are keyed by the path of their
+         * boundary.  If a face or chain of the previous layout has
+         * the same boundary, its tessellated mesh is used again rather
+         * than being outlined and tessellated again.  Batches holding
+         * the same meshes as before keep their vertex buffers.
+         * 
+         * 
+         * <p>Faces and strokes that are not reused are independent of
+         * each other, so they are outlined and tessellated as separate
+         * jobs on the pool.  The layout is returned once every buffer
+         * is ready to be drawn.</p>
+         * 
+         * @param mesh Mesh to lay out
+         * @param prevLayout Layout of an earlier version of the mesh.
+         * May be null.
+         * @param pool Threads to tessellate on.  If null, everything 
+         * is done on the calling thread.
+         */
+        public MeshLayout(NetworkMesh mesh, MeshLayout prevLayout,
+                TessellationPool pool)
+        {
+            HashMap<CyPath2d, EdgeLayout> oldEdges = 
+                    new HashMap<CyPath2d, EdgeLayout>();
+            HashMap<CyPath2d, FaceLayout> oldFaces = 
+                    new HashMap<CyPath2d, FaceLayout>();
+            if (prevLayout != null)
+            {
+                for (EdgeLayout lay: prevLayout.edgeLayouts)
+                {
+                    oldEdges.put(lay.path, lay);
+                }
+                for (FaceLayout lay: prevLayout.paths)
+                {
+                    oldFaces.put(lay.path, lay);
+                }
+            }
+            
+            buildEdges(mesh, oldEdges);
             
             ArrayList<CutLoop> faces = mesh.createFaces();
 
@@ -361,7 +630,12 @@ public class RavenNodeMesh extends RavenNodeXformable
             {
                 if (loop.isCcw())
                 {
-                    paths.add(new FaceLayout(loop));
+                    FaceLayout lay = new FaceLayout(loop, oldFaces);
+                    if (lay.reused)
+                    {
+                        ++numFacesReused;
+                    }
+                    paths.add(lay);
                 }
                 else
                 {
@@ -373,9 +647,237 @@ public class RavenNodeMesh extends RavenNodeXformable
             {
                 outerPath = outPath.createTransformedPath(meshToLocal);
             }
+            
+            //Only what will be drawn is tessellated
+            ArrayList<Runnable> jobs = new ArrayList<Runnable>();
+            for (final EdgeLayout lay: edgeLayouts)
+            {
+                if (!lay.reused && lay.stroke != null && lay.paint != null)
+                {
+                    jobs.add(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            lay.tessellate();
+                        }
+                    });
+                }
+            }
+            for (final FaceLayout lay: paths)
+            {
+                if (!lay.reused && lay.paint != null)
+                {
+                    jobs.add(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            lay.tessellate();
+                        }
+                    });
+                }
+            }
+            runJobs(pool, jobs);
+            
+            buildBatches(prevLayout, pool);
+        }
+        
+        private void runJobs(TessellationPool pool, ArrayList<Runnable> jobs)
+        {
+            if (pool == null)
+            {
+                for (Runnable job: jobs)
+                {
+                    job.run();
+                }
+            }
+            else
+            {
+                pool.runAll(jobs);
+            }
+        }
+        
+        public int getNumFaces()
+        {
+            return paths.size();
+        }
+        
+        public int getNumEdges()
+        {
+            return edgeLayouts.size();
+        }
+        
+        public int getNumBatches()
+        {
+            return faceBatches.size() + edgeBatches.size();
+        }
+        
+        /**
+         * @return Number of faces whose mesh was taken from the
+         * previous layout
+         */
+        public int getNumFacesReused()
+        {
+            return numFacesReused;
+        }
+        
+        /**
+         * @return Number of edge chains whose mesh was taken from the
+         * previous layout
+         */
+        public int getNumEdgesReused()
+        {
+            return numEdgesReused;
+        }
+        
+        /**
+         * @return Number of batches whose vertex buffer was taken from
+         * the previous layout
+         */
+        public int getNumBatchesReused()
+        {
+            return numBatchesReused;
+        }
+        
+        /**
+         * Faces of a mesh never overlap, so all faces with the same
+         * paint can be drawn together.  Edge strokes can overlap, so
+         * only consecutive edges are combined to keep them in order.
+         */
+        private void buildBatches(MeshLayout prevLayout, TessellationPool pool)
+        {
+            LinkedHashMap<MeshBatch, MeshBatch> faceMap = 
+                    new LinkedHashMap<MeshBatch, MeshBatch>();
+            for (FaceLayout lay: paths)
+            {
+                if (lay.paint == null)
+                {
+                    continue;
+                }
+                
+                MeshBatch key = new MeshBatch(lay.paint, lay.paintLayout);
+                MeshBatch batch = faceMap.get(key);
+                if (batch == null)
+                {
+                    batch = key;
+                    faceMap.put(key, batch);
+                }
+                batch.members.add(lay.meshProv);
+            }
+            faceBatches.addAll(faceMap.values());
+            
+            MeshBatch lastBatch = null;
+            for (EdgeLayout lay: edgeLayouts)
+            {
+                if (lay.paint == null || lay.meshProv == null)
+                {
+                    continue;
+                }
+                
+                MeshBatch batch = new MeshBatch(lay.paint, lay.paintLayout);
+                if (batch.equals(lastBatch))
+                {
+                    batch = lastBatch;
+                }
+                else
+                {
+                    edgeBatches.add(batch);
+                    lastBatch = batch;
+                }
+                batch.members.add(lay.meshProv);
+            }
+            
+            //Old batches by paint
+            HashMap<MeshBatch, ArrayList<MeshBatch>> oldBatches = 
+                    new HashMap<MeshBatch, ArrayList<MeshBatch>>();
+            if (prevLayout != null)
+            {
+                addOldBatches(oldBatches, prevLayout.faceBatches);
+                addOldBatches(oldBatches, prevLayout.edgeBatches);
+            }
+            
+            ArrayList<Runnable> jobs = new ArrayList<Runnable>();
+            createBatchMeshes(faceBatches, oldBatches, jobs);
+            createBatchMeshes(edgeBatches, oldBatches, jobs);
+            runJobs(pool, jobs);
+            
+            //Whatever was not carried over no longer needs to track
+            // its members.  The previous layout may still be cached
+            // for another frame, so the batches remain drawable.
+            for (ArrayList<MeshBatch> list: oldBatches.values())
+            {
+                for (MeshBatch batch: list)
+                {
+                    batch.mesh.dispose();
+                }
+            }
+        }
+        
+        private void addOldBatches(HashMap<MeshBatch, ArrayList<MeshBatch>> map,
+                ArrayList<MeshBatch> batches)
+        {
+            for (MeshBatch batch: batches)
+            {
+                ArrayList<MeshBatch> list = map.get(batch);
+                if (list == null)
+                {
+                    list = new ArrayList<MeshBatch>();
+                    map.put(batch, list);
+                }
+                list.add(batch);
+            }
+        }
+        
+        /**
+         * Take the buffers of matching old batches, or create new ones.
+         * 
+         * @param jobs Jobs to fill the buffers of new batches are 
+         * added to this
+         */
+        private void createBatchMeshes(ArrayList<MeshBatch> batches,
+                HashMap<MeshBatch, ArrayList<MeshBatch>> oldBatches,
+                ArrayList<Runnable> jobs)
+        {
+            for (final MeshBatch batch: batches)
+            {
+                ArrayList<MeshBatch> list = oldBatches.get(batch);
+                MeshBatch oldBatch = null;
+                if (list != null)
+                {
+                    for (int i = 0; i < list.size(); ++i)
+                    {
+                        if (batch.hasSameMembers(list.get(i)))
+                        {
+                            oldBatch = list.remove(i);
+                            break;
+                        }
+                    }
+                }
+                
+                if (oldBatch != null)
+                {
+                    batch.mesh = oldBatch.mesh;
+                    batch.vertBuf = oldBatch.vertBuf;
+                    ++numBatchesReused;
+                }
+                else
+                {
+                    batch.createMesh();
+                    jobs.add(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            batch.mesh.build();
+                        }
+                    });
+                }
+            }
         }
         
-        private void buildEdges(NetworkMesh mesh)
+        private void buildEdges(NetworkMesh mesh,
+                HashMap<CyPath2d, EdgeLayout> oldEdges)
         {
             ArrayList<BezierMeshEdge2i> edges = mesh.getEdges();
             HashSet<BezierMeshEdge2i> visited = new HashSet<BezierMeshEdge2i>();
@@ -397,7 +899,7 @@ public class RavenNodeMesh extends RavenNodeXformable
                         break;
                     }
                     BezierMeshEdge2i adjEdge = v.getEdge(0);
-                    if (adjEdge == leadEdge)
+                    if (adjEdge.equals(leadEdge))
                     {
                         adjEdge = v.getEdge(1);
                     }
@@ -430,7 +932,7 @@ public class RavenNodeMesh extends RavenNodeXformable
                         break;
                     }
                     BezierMeshEdge2i adjEdge = v.getEdge(0);
-                    if (adjEdge == leadEdge)
+                    if (adjEdge.equals(leadEdge))
                     {
                         adjEdge = v.getEdge(1);
                     }
@@ -454,7 +956,12 @@ public class RavenNodeMesh extends RavenNodeXformable
                     edges.remove(adjEdge);
                 }
                 
-                edgeLayouts.add(new EdgeLayout(edgeChain));
+                EdgeLayout lay = new EdgeLayout(edgeChain, oldEdges);
+                if (lay.reused)
+                {
+                    ++numEdgesReused;
+                }
+                edgeLayouts.add(lay);
             }
         }
     }
@@ -463,14 +970,21 @@ public class RavenNodeMesh extends RavenNodeXformable
     {
         CyPath2d path;
         CyColor4f color;
-        CyVertexBuffer vertBuf;
+        ShapeMeshProvider meshProv;
         
         CyPath2d strokedPath;
         RavenStroke stroke;
         RavenPaint paint;
         RavenPaintLayout paintLayout;
+        boolean reused;
         
-        EdgeLayout(ArrayList<BezierMeshEdge2i> edgeChain)
+        /**
+         * @param oldEdges Chains of the previous layout by path.  If
+         * one matches this chain and has the same stroke, it is removed
+         * from the map and its mesh used for this chain.
+         */
+        EdgeLayout(ArrayList<BezierMeshEdge2i> edgeChain,
+                HashMap<CyPath2d, EdgeLayout> oldEdges)
         {
             BezierMeshEdge2i edgeStart = edgeChain.get(0);
             
@@ -503,17 +1017,29 @@ public class RavenNodeMesh extends RavenNodeXformable
             paint = data.getEdge(NetworkDataTypePaint.class);
             paintLayout = data.getEdge(NetworkDataTypePaintLayout.class);
             
-            if (stroke != null)
+            EdgeLayout oldLay = oldEdges.get(path);
+            if (oldLay != null && oldLay.meshProv != null
+                    && oldLay.stroke.equals(stroke))
             {
-                CyStroke cyStroke = stroke.getStroke().scale(100);
-                CyPath2d pathStroked = cyStroke.outlineShape(path);
-                
-                ShapeMeshProvider prov = new ShapeMeshProvider(pathStroked, TESS_FLAT_SQ);
-                vertBuf = new CyVertexBuffer(prov);
+                oldEdges.remove(path);
+                meshProv = oldLay.meshProv;
+                reused = true;
             }
 
             //Color for debugging - remove later
-            color = CyColor4f.randomRGB();
+            color = reused ? oldLay.color : CyColor4f.randomRGB();
+        }
+        
+        /**
+         * Outline the stroke and tessellate the outline.
+         */
+        void tessellate()
+        {
+            CyStroke cyStroke = stroke.getStroke().scale(100);
+            CyPath2d pathStroked = cyStroke.outlineShape(path);
+
+            meshProv = new ShapeMeshProvider(pathStroked, TESS_FLAT_SQ);
+            meshProv.tessellate();
         }
     }
     
@@ -521,16 +1047,32 @@ public class RavenNodeMesh extends RavenNodeXformable
     {
         CyPath2d path;
         CyColor4f color;
-        CyVertexBuffer vertBuf;
+        ShapeMeshProvider meshProv;
         RavenPaint paint;
         RavenPaintLayout paintLayout;
+        boolean reused;
 
-        private FaceLayout(CutLoop loop)
+        /**
+         * @param oldFaces Faces of the previous layout by path.  If one
+         * matches this face, it is removed from the map and its mesh
+         * used for this face.
+         */
+        private FaceLayout(CutLoop loop, HashMap<CyPath2d, FaceLayout> oldFaces)
         {
             this.path = loop.createPath();
-            this.color = CyColor4f.randomRGB();
-            ShapeMeshProvider prov = new ShapeMeshProvider(path, TESS_FLAT_SQ);
-            vertBuf = new CyVertexBuffer(prov);
+            
+            FaceLayout oldLay = oldFaces.remove(path);
+            if (oldLay != null)
+            {
+                color = oldLay.color;
+                meshProv = oldLay.meshProv;
+                reused = true;
+            }
+            else
+            {
+                color = CyColor4f.randomRGB();
+                meshProv = new ShapeMeshProvider(path, TESS_FLAT_SQ);
+            }
 
             //Decorate
             ArrayList<CutSegHalf> segs = loop.getSegs();
@@ -562,6 +1104,93 @@ public class RavenNodeMesh extends RavenNodeXformable
                 }
             }
         }
+        
+        void tessellate()
+        {
+            meshProv.tessellate();
+        }
+    }
+    
+    /**
+     * Meshes drawn with the same paint and layout.  Batches are equal
+     * if their paint and layout are.
+     */
+    static class MeshBatch
+    {
+        final RavenPaint paint;
+        final RavenPaintLayout paintLayout;
+        final ArrayList<ShapeMeshProvider> members = 
+                new ArrayList<ShapeMeshProvider>();
+        CyVertexBufferBatch mesh;
+        CyVertexBuffer vertBuf;
+
+        public MeshBatch(RavenPaint paint, RavenPaintLayout paintLayout)
+        {
+            this.paint = paint;
+            this.paintLayout = paintLayout;
+        }
+        
+        void createMesh()
+        {
+            mesh = new CyVertexBufferBatch();
+            for (ShapeMeshProvider prov: members)
+            {
+                mesh.addMesh(prov);
+            }
+            vertBuf = new CyVertexBuffer(mesh);
+        }
+        
+        /**
+         * @return true if both batches hold the very same meshes in
+         * the same order
+         */
+        boolean hasSameMembers(MeshBatch other)
+        {
+            if (members.size() != other.members.size())
+            {
+                return false;
+            }
+            for (int i = 0; i < members.size(); ++i)
+            {
+                if (members.get(i) != other.members.get(i))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj == null)
+            {
+                return false;
+            }
+            if (getClass() != obj.getClass())
+            {
+                return false;
+            }
+            final MeshBatch other = (MeshBatch) obj;
+            if (!this.paint.equals(other.paint))
+            {
+                return false;
+            }
+            if (this.paintLayout != other.paintLayout && (this.paintLayout == null || !this.paintLayout.equals(other.paintLayout)))
+            {
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = 7;
+            hash = 41 * hash + this.paint.hashCode();
+            hash = 41 * hash + (this.paintLayout != null ? this.paintLayout.hashCode() : 0);
+            return hash;
+        }
     }
     
     @ServiceInst(service=NodeObjectProvider.class)
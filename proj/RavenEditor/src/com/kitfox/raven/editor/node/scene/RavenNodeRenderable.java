@@ -34,6 +34,9 @@ import com.kitfox.raven.util.tree.PropertyWrapperFloat;
 import java.awt.geom.AffineTransform;
 import java.awt.image.ImageObserver;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  *
@@ -55,6 +58,27 @@ abstract public class RavenNodeRenderable extends RavenNode
 
     public static final double EPSILON = .0001;
 
+    //Most frames to keep world transforms for
+    static final int MAX_WORLD_TRANSFORMS = 4;
+
+    //World transforms at the frames they were most recently asked for
+    private final LinkedHashMap<FrameKey, WorldTransform> worldTransforms =
+            new LinkedHashMap<FrameKey, WorldTransform>(8, .75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FrameKey, WorldTransform> eldest)
+        {
+            return size() > MAX_WORLD_TRANSFORMS;
+        }
+    };
+    //Set when a world transform is cached here, and only cleared along
+    // with the rest of the subtree.  Since a world transform is built
+    // from the parent's, nothing below a node can be cached unless this
+    // is set.
+    private boolean worldTransformsCached;
+    //Counts clears, so a transform built while one happens is not kept
+    private int worldTransformsVersion;
+
 
     public RavenNodeRenderable(int uid)
     {
@@ -63,7 +87,7 @@ abstract public class RavenNodeRenderable extends RavenNode
 
     public CyMatrix4d getLocalToParentTransform(CyMatrix4d result)
     {
-        return getLocalToParentTransform(result);
+        return getLocalToParentTransform(FrameKey.DIRECT, result);
     }
 
     public CyMatrix4d getLocalToParentTransform(FrameKey frame, CyMatrix4d result)
@@ -113,9 +137,20 @@ abstract public class RavenNodeRenderable extends RavenNode
 
     public CyMatrix4d getLocalToWorldTransform(CyMatrix4d result)
     {
-        return getLocalToWorldTransform(null, result);
+        return getLocalToWorldTransform(FrameKey.DIRECT, result);
     }
     
+    /**
+     * Copies the local to world transform at the given frame into
+     * result.  The transform is cached, so this does not allocate
+     * anything if result is provided and the transform has not changed
+     * since it was last asked for.
+     *
+     * @param frame Frame to evaluate the transform at
+     * @param result Matrix to write the transform into.  If null, a new
+     * matrix is created.
+     * @return result
+     */
     public CyMatrix4d getLocalToWorldTransform(FrameKey frame, CyMatrix4d result)
     {
         if (result == null)
@@ -123,12 +158,167 @@ abstract public class RavenNodeRenderable extends RavenNode
             result = CyMatrix4d.createIdentity();
         }
 
-        CyMatrix4d p2w = getParentToWorldTransform(frame, result);
-        CyMatrix4d l2p = getLocalToParentTransform(frame, null);
-        p2w.mul(l2p);
+        result.set(getWorldTransform(frame).localToWorld);
+        return result;
+    }
+
+    public CyMatrix4d getWorldToLocalTransform(CyMatrix4d result)
+    {
+        return getWorldToLocalTransform(FrameKey.DIRECT, result);
+    }
+
+    /**
+     * Copies the inverse of the local to world transform at the given
+     * frame into result.  Cached the same way as
+     * {@link #getLocalToWorldTransform(FrameKey, CyMatrix4d)}.
+     *
+     * @param frame Frame to evaluate the transform at
+     * @param result Matrix to write the transform into.  If null, a new
+     * matrix is created.
+     * @return result
+     * @throws UnsupportedOperationException if the local to world
+     * transform cannot be inverted
+     */
+    public CyMatrix4d getWorldToLocalTransform(FrameKey frame, CyMatrix4d result)
+    {
+        if (result == null)
+        {
+            result = CyMatrix4d.createIdentity();
+        }
+
+        WorldTransform xform = getWorldTransform(frame);
+        synchronized (worldTransforms)
+        {
+            if (xform.worldToLocal == null)
+            {
+                CyMatrix4d w2l = new CyMatrix4d(xform.localToWorld);
+                w2l.invert();
+                xform.worldToLocal = w2l;
+            }
+            result.set(xform.worldToLocal);
+        }
         return result;
     }
 
+    private WorldTransform getWorldTransform(FrameKey frame)
+    {
+        if (frame == null)
+        {
+            frame = FrameKey.DIRECT;
+        }
+
+        int version;
+        synchronized (worldTransforms)
+        {
+            WorldTransform xform = worldTransforms.get(frame);
+            if (xform != null)
+            {
+                return xform;
+            }
+            version = worldTransformsVersion;
+        }
+
+        //Build outside of the lock.  Parents are locked in turn while
+        // their own transforms are fetched.
+        CyMatrix4d l2w = getParentToWorldTransform(frame, null);
+        l2w.mul(getLocalToParentTransform(frame, null));
+        WorldTransform xform = new WorldTransform(l2w);
+
+        synchronized (worldTransforms)
+        {
+            if (version == worldTransformsVersion)
+            {
+                worldTransforms.put(frame, xform);
+                worldTransformsCached = true;
+            }
+        }
+        return xform;
+    }
+
+    /**
+     * @return true if the world transform at the given frame is cached,
+     * so it will not be rebuilt the next time it is asked for
+     */
+    public boolean isWorldTransformCached(FrameKey frame)
+    {
+        synchronized (worldTransforms)
+        {
+            return worldTransforms.containsKey(frame);
+        }
+    }
+
+    /**
+     * Drops the cached world transforms of this node and every node
+     * below it.  Should be called whenever this node's local to parent
+     * transform changes, or it is moved to a new parent.
+     */
+    protected void clearWorldTransforms()
+    {
+        clearWorldTransforms(null);
+    }
+
+    /**
+     * Drops the cached world transforms of this node and every node
+     * below it at the frames where the given property takes its direct
+     * value.  Should be called when the direct value of a property the
+     * local to parent transform depends on changes, as happens every
+     * time the symbol is synched to a frame.  Transforms at frames the
+     * property's track covers are kept.
+     *
+     * @param prop Property whose direct value changed.  If null, every
+     * transform is dropped.
+     */
+    protected void clearWorldTransforms(PropertyWrapper<?, ?> prop)
+    {
+        synchronized (worldTransforms)
+        {
+            ++worldTransformsVersion;
+            if (!worldTransformsCached)
+            {
+                return;
+            }
+
+            if (prop == null)
+            {
+                worldTransforms.clear();
+                worldTransformsCached = false;
+            }
+            else
+            {
+                //Transforms may still be cached below this node at the
+                // frames that are kept, so leave worldTransformsCached set
+                for (Iterator<FrameKey> it = worldTransforms.keySet().iterator();
+                        it.hasNext();)
+                {
+                    if (!prop.isTrackValueAt(it.next()))
+                    {
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < getNumChildWrappers(); ++i)
+        {
+            ChildWrapper<?, ?> wrapper = getChildWrapper(i);
+            for (int j = 0; j < wrapper.size(); ++j)
+            {
+                NodeObject child = wrapper.get(j);
+                if (child instanceof RavenNodeRenderable)
+                {
+                    ((RavenNodeRenderable)child).clearWorldTransforms(prop);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void setParent(ChildWrapper parent)
+    {
+        clearWorldTransforms();
+        super.setParent(parent);
+    }
+
     public void render(RenderContext ctx)
     {
         CyDrawStack rend = ctx.getDrawStack();
@@ -139,6 +329,11 @@ abstract public class RavenNodeRenderable extends RavenNode
             return;
         }
 
+        if (ctx.isCulled(this))
+        {
+            return;
+        }
+
         float curOpacity = Math.max(Math.min(
                 opacity.getValue(frame), 1), 0);
         if (curOpacity == 0)
@@ -236,6 +431,19 @@ abstract public class RavenNodeRenderable extends RavenNode
 
     abstract public CyShape getShapePickLocal(FrameKey key);
 
+    /**
+     * Bounds in local space of everything this node draws, including
+     * the width of its strokes.  Used to skip nodes that are outside
+     * the view or the pick area.
+     *
+     * @return Bounds of the node, or null if they are not known.
+     * Nodes without bounds are always drawn and picked.
+     */
+    public CyRectangle2d getBoundsCullLocal(FrameKey key)
+    {
+        return null;
+    }
+
     public CyShape getShapeWorld()
     {
         return getShapeWorld(FrameKey.DIRECT);
@@ -393,4 +601,17 @@ abstract public class RavenNodeRenderable extends RavenNode
     @Deprecated
     abstract protected void renderContent(RavenRenderer renderer);
 
+    //-----------------------------------------------
+
+    static class WorldTransform
+    {
+        final CyMatrix4d localToWorld;
+        //Built the first time it is asked for
+        CyMatrix4d worldToLocal;
+
+        public WorldTransform(CyMatrix4d localToWorld)
+        {
+            this.localToWorld = localToWorld;
+        }
+    }
 }
@@ -17,6 +17,7 @@
 package com.kitfox.raven.editor.node.scene;
 
 import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.math.CyVector4d;
 import com.kitfox.coyote.shape.CyPath2d;
 import com.kitfox.coyote.shape.CyRectangle2d;
 import com.kitfox.coyote.shape.CyShape;
@@ -27,7 +28,9 @@ import com.kitfox.raven.util.tree.ChildWrapperList;
 import com.kitfox.raven.util.tree.FrameKey;
 import com.kitfox.raven.util.tree.NodeObject;
 import com.kitfox.raven.util.tree.NodeObjectProvider;
+import com.kitfox.raven.util.tree.NodeSymbol;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 /**
  *
@@ -48,10 +51,103 @@ public class RavenNodeSceneGraph extends RavenNodeRenderable
     @Override
     protected void renderContent(RenderContext ctx)
     {
+        HashSet<RavenNodeRenderable> oldVisible = ctx.getVisibleNodes();
+        ctx.setVisibleNodes(findVisibleNodes(ctx));
+        
         for (int i = 0; i < children.size(); ++i)
         {
             children.get(i).render(ctx);
         }
+        
+        ctx.setVisibleNodes(oldVisible);
+    }
+
+    /**
+     * @return Bounds tree of this scene at the given frame, or null
+     * if this scene is not the scene of a RavenSymbol
+     */
+    public SceneBoundsTree getBoundsTree(FrameKey frame)
+    {
+        NodeSymbol<?> sym = getSymbol();
+        if (!(sym instanceof RavenSymbol))
+        {
+            return null;
+        }
+        
+        SceneBoundsTree tree = ((RavenSymbol)sym).getSceneBoundsTree(frame);
+        return tree != null && tree.getScene() == this ? tree : null;
+    }
+
+    /**
+     * Find the area of this scene that lies in the view of the draw 
+     * stack, and the nodes that may be seen in it.
+     * 
+     * @return Nodes that may be seen, or null if every node 
+     * should be drawn
+     */
+    private HashSet<RavenNodeRenderable> findVisibleNodes(RenderContext ctx)
+    {
+        SceneBoundsTree tree = getBoundsTree(ctx.getFrame());
+        if (tree == null)
+        {
+            return null;
+        }
+        
+        CyMatrix4d clipToLocal = ctx.getDrawStack().getModelViewProjXform();
+        try
+        {
+            clipToLocal.invert();
+        } catch (UnsupportedOperationException ex)
+        {
+            return null;
+        }
+        
+        CyRectangle2d view = null;
+        CyVector4d corner = new CyVector4d();
+        for (int i = 0; i < 4; ++i)
+        {
+            corner.set((i & 1) == 0 ? -1 : 1, (i & 2) == 0 ? -1 : 1, 0, 1);
+            clipToLocal.transform(corner);
+            double x = corner.x / corner.w;
+            double y = corner.y / corner.w;
+            if (view == null)
+            {
+                view = new CyRectangle2d(x, y);
+            }
+            else
+            {
+                view.union(x, y);
+            }
+        }
+        
+        return tree.getVisibleNodes(view);
+    }
+
+    /**
+     * Leaves whose bounds overlap the pick area, in the order they
+     * are drawn.
+     * 
+     * @return Leaves to test, or null if every node should be tested
+     */
+    private ArrayList<SceneBoundsTree.Leaf> findPickLeaves(
+            CyRectangle2d rectangle, FrameKey key, CyMatrix4d worldToPick)
+    {
+        SceneBoundsTree tree = getBoundsTree(key);
+        if (tree == null)
+        {
+            return null;
+        }
+        
+        CyMatrix4d pickToWorld = new CyMatrix4d(worldToPick);
+        try
+        {
+            pickToWorld.invert();
+        } catch (UnsupportedOperationException ex)
+        {
+            return null;
+        }
+        
+        return tree.getLeaves(rectangle.createTransformedBounds(pickToWorld));
     }
 
     @Override
@@ -84,6 +180,25 @@ public class RavenNodeSceneGraph extends RavenNodeRenderable
             CyMatrix4d worldToPick, 
             Intersection intersection)
     {
+        ArrayList<SceneBoundsTree.Leaf> leaves = 
+                findPickLeaves(rectangle, key, worldToPick);
+        if (leaves != null)
+        {
+            CyMatrix4d parentToPick = new CyMatrix4d();
+            for (int i = 0; i < leaves.size(); ++i)
+            {
+                SceneBoundsTree.Leaf leaf = leaves.get(i);
+                parentToPick.mul(worldToPick, leaf.parentToWorld);
+                RavenNodeRenderable node = leaf.getNode().pickObject(
+                        rectangle, key, parentToPick, intersection);
+                if (node != null)
+                {
+                    return node;
+                }
+            }
+            return null;
+        }
+        
         for (int i = 0; i < children.size(); ++i)
         {
             RavenNodeXformable child = children.get(i);
@@ -103,6 +218,21 @@ public class RavenNodeSceneGraph extends RavenNodeRenderable
             Intersection intersection, 
             ArrayList<NodeObject> pickList)
     {
+        ArrayList<SceneBoundsTree.Leaf> leaves = 
+                findPickLeaves(rectangle, key, worldToPick);
+        if (leaves != null)
+        {
+            CyMatrix4d parentToPick = new CyMatrix4d();
+            for (int i = 0; i < leaves.size(); ++i)
+            {
+                SceneBoundsTree.Leaf leaf = leaves.get(i);
+                parentToPick.mul(worldToPick, leaf.parentToWorld);
+                leaf.getNode().pickObjects(rectangle, key, parentToPick,
+                        intersection, pickList);
+            }
+            return;
+        }
+        
         for (int i = 0; i < children.size(); ++i)
         {
             RavenNodeXformable child = children.get(i);
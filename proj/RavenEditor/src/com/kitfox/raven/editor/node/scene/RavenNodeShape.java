@@ -201,6 +201,22 @@ abstract public class RavenNodeShape extends RavenNodeXformable
         return createShapeLocal(key);
     }
 
+    @Override
+    public CyRectangle2d getBoundsCullLocal(FrameKey key)
+    {
+        CyRectangle2d bounds = getBoundsLocal(key);
+        RavenStroke cStroke = stroke.getValue(key);
+        if (bounds == null || cStroke == null)
+        {
+            return bounds;
+        }
+
+        double reach = SceneBoundsTree.getStrokeReach(cStroke.getStroke());
+        return new CyRectangle2d(
+                bounds.getX() - reach, bounds.getY() - reach,
+                bounds.getWidth() + reach * 2, bounds.getHeight() + reach * 2);
+    }
+
     @Override
     protected void renderContent(RenderContext ctx)
     {
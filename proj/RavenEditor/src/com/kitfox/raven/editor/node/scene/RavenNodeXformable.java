@@ -24,6 +24,9 @@ import com.kitfox.raven.util.tree.EventWrapper;
 import com.kitfox.raven.util.tree.FrameKey;
 import com.kitfox.raven.util.tree.NodeSymbol;
 import com.kitfox.raven.util.tree.NodeObject;
+import com.kitfox.raven.util.tree.PropertyTrackChangeEvent;
+import com.kitfox.raven.util.tree.PropertyTrackKeyChangeEvent;
+import com.kitfox.raven.util.tree.PropertyWrapper;
 import com.kitfox.raven.util.tree.PropertyWrapperAdapter;
 import com.kitfox.raven.util.tree.PropertyWrapperFloat;
 import java.awt.geom.AffineTransform;
@@ -98,6 +101,32 @@ abstract public class RavenNodeXformable extends RavenNodeRenderable
                 clearCache();
             }
         };
+
+        //The world transforms of this node and its children depend on
+        // every frame of these.  Setting or synching a property only
+        // changes the frames that take its direct value.
+        PropertyWrapperAdapter clearXform = new PropertyWrapperAdapter() {
+            @Override
+            public void propertyWrapperDataChanged(PropertyChangeEvent evt) {
+                clearWorldTransforms((PropertyWrapper<?, ?>)evt.getSource());
+            }
+            @Override
+            public void propertyWrapperTrackChanged(PropertyTrackChangeEvent evt) {
+                clearWorldTransforms();
+            }
+            @Override
+            public void propertyWrapperTrackKeyChanged(PropertyTrackKeyChangeEvent evt) {
+                clearWorldTransforms();
+            }
+        };
+        transX.addPropertyWrapperListener(clearXform);
+        transY.addPropertyWrapperListener(clearXform);
+        rotation.addPropertyWrapperListener(clearXform);
+        skewAngle.addPropertyWrapperListener(clearXform);
+        scaleX.addPropertyWrapperListener(clearXform);
+        scaleY.addPropertyWrapperListener(clearXform);
+        pivotX.addPropertyWrapperListener(clearXform);
+        pivotY.addPropertyWrapperListener(clearXform);
     }
 
     protected void clearCache()
@@ -176,26 +205,6 @@ abstract public class RavenNodeXformable extends RavenNodeRenderable
 //        return xform;
 //    }
 
-    @Override
-    public CyMatrix4d getLocalToWorldTransform(CyMatrix4d result)
-    {
-        return getLocalToWorldTransform(FrameKey.DIRECT, result);
-    }
-
-    @Override
-    public CyMatrix4d getLocalToWorldTransform(FrameKey frame, CyMatrix4d result)
-    {
-        if (result == null)
-        {
-            result = CyMatrix4d.createIdentity();
-        }
-
-        CyMatrix4d p2w = getParentToWorldTransform(frame, result);
-        CyMatrix4d l2p = getLocalToParentTransform(frame, null);
-        p2w.mul(l2p);
-        return result;
-    }
-
 
     @Deprecated
     @Override
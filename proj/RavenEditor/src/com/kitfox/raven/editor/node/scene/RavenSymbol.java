@@ -18,13 +18,22 @@ package com.kitfox.raven.editor.node.scene;
 
 import com.kitfox.raven.editor.node.scene.wizard.RavenNodeRootWizard;
 import com.kitfox.raven.util.service.ServiceInst;
+import com.kitfox.raven.util.tree.ChildWrapperEvent;
+import com.kitfox.raven.util.tree.FrameKey;
 import com.kitfox.raven.util.tree.NodeDocument;
+import com.kitfox.raven.util.tree.NodeObject;
 import com.kitfox.raven.util.tree.NodeObjectProvider;
 import com.kitfox.raven.util.tree.NodeObjectProviderIndex;
 import com.kitfox.raven.util.tree.NodeSymbol;
+import com.kitfox.raven.util.tree.NodeSymbolListener;
 import com.kitfox.raven.util.tree.NodeSymbolProvider;
+import com.kitfox.raven.util.tree.PropertyWrapper;
 import com.kitfox.raven.wizard.RavenWizardPageIterator;
 import com.kitfox.xml.schema.ravendocumentschema.NodeSymbolType;
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  *
@@ -32,9 +41,90 @@ import com.kitfox.xml.schema.ravendocumentschema.NodeSymbolType;
  */
 public class RavenSymbol extends NodeSymbol<RavenSymbolRoot>
 {
+    //Most frames to keep scene bounds for
+    static final int MAX_BOUNDS_TREES = 8;
+    
+    //Bounds of the scene at the frames it was most recently drawn or
+    // picked at
+    private final LinkedHashMap<FrameKey, SceneBoundsTree> boundsTrees =
+            new LinkedHashMap<FrameKey, SceneBoundsTree>(16, .75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FrameKey, SceneBoundsTree> eldest)
+        {
+            return size() > MAX_BOUNDS_TREES;
+        }
+    };
+    
     protected RavenSymbol(int symbolUid, NodeDocument document)
     {
         super(symbolUid, document);
+        
+        addNodeSymbolListener(new BoundsUpdater());
+    }
+
+    /**
+     * Bounding volume hierarchy of the scene at a frame.  It is kept 
+     * up to date as nodes in the scene change.
+     * 
+     * @return Bounds tree, or null if this symbol has no scene graph
+     */
+    public SceneBoundsTree getSceneBoundsTree(FrameKey frame)
+    {
+        RavenSymbolRoot root = getRoot();
+        RavenNodeSceneGraph scene = root == null ? null : root.getSceneGraph();
+        if (scene == null)
+        {
+            return null;
+        }
+        
+        synchronized (boundsTrees)
+        {
+            SceneBoundsTree tree = boundsTrees.get(frame);
+            if (tree == null || tree.getScene() != scene)
+            {
+                tree = new SceneBoundsTree(scene, frame);
+                boundsTrees.put(frame, tree);
+            }
+            return tree;
+        }
+    }
+    
+    private ArrayList<SceneBoundsTree> getBoundsTrees()
+    {
+        synchronized (boundsTrees)
+        {
+            return new ArrayList<SceneBoundsTree>(boundsTrees.values());
+        }
+    }
+    
+    /**
+     * Values without track keys are the same on every frame, so
+     * every tree is updated when a node changes.
+     */
+    private void updateBounds(NodeObject node, boolean direct, boolean keyed)
+    {
+        if (!(node instanceof RavenNodeRenderable))
+        {
+            return;
+        }
+        
+        ArrayList<SceneBoundsTree> trees = getBoundsTrees();
+        for (int i = 0; i < trees.size(); ++i)
+        {
+            SceneBoundsTree tree = trees.get(i);
+            if (tree.getFrame() == FrameKey.DIRECT ? direct : keyed)
+            {
+                tree.updateNode((RavenNodeRenderable)node);
+            }
+        }
+    }
+
+    @Override
+    protected void propertyTrackChanged(PropertyWrapper<?, ?> wrapper)
+    {
+        super.propertyTrackChanged(wrapper);
+        updateBounds(wrapper.getNode(), false, true);
     }
 
     public static RavenSymbol create(NodeDocument doc)
@@ -59,6 +149,59 @@ public class RavenSymbol extends NodeSymbol<RavenSymbolRoot>
 
     //-----------------------------------------------
     
+    class BoundsUpdater implements NodeSymbolListener
+    {
+        @Override
+        public void symbolNameChanged(PropertyChangeEvent evt)
+        {
+        }
+
+        @Override
+        public void symbolPropertyChanged(PropertyChangeEvent evt)
+        {
+            if (evt.getSource() instanceof PropertyWrapper)
+            {
+                PropertyWrapper<?, ?> wrapper = (PropertyWrapper<?, ?>)evt.getSource();
+                updateBounds(wrapper.getNode(), true, !wrapper.hasTrackKeys());
+            }
+        }
+
+        @Override
+        public void symbolNodeChildAdded(ChildWrapperEvent evt)
+        {
+            ArrayList<SceneBoundsTree> trees = getBoundsTrees();
+            for (int i = 0; i < trees.size(); ++i)
+            {
+                trees.get(i).updateStructure();
+            }
+            //A node that was moved needs its bounds found again
+            updateBounds(evt.getNode(), true, true);
+        }
+
+        @Override
+        public void symbolNodeChildRemoved(ChildWrapperEvent evt)
+        {
+            ArrayList<SceneBoundsTree> trees = getBoundsTrees();
+            for (int i = 0; i < trees.size(); ++i)
+            {
+                trees.get(i).updateStructure();
+            }
+        }
+
+        @Override
+        public void symbolFrameChanged(PropertyChangeEvent evt)
+        {
+            //Only animated properties change with the frame
+            ArrayList<PropertyWrapper<?, ?>> props = getAnimatedProperties();
+            for (int i = 0; i < props.size(); ++i)
+            {
+                updateBounds(props.get(i).getNode(), true, false);
+            }
+        }
+    }
+
+    //-----------------------------------------------
+    
     @ServiceInst(service=NodeSymbolProvider.class)
     public static class Provider extends NodeSymbolProvider<RavenSymbol>
     {
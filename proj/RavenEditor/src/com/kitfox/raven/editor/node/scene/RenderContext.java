@@ -32,6 +32,9 @@ public class RenderContext
     //Current frame we are rendering for
     private final FrameKey frame;
     private final boolean editor;
+    //Nodes of the scene being drawn that may be seen.  If null, every
+    // node is drawn.
+    private HashSet<RavenNodeRenderable> visibleNodes;
 
     HashSet<NodeSymbol> visitedSymbols = new HashSet<NodeSymbol>();
     
@@ -84,5 +87,31 @@ public class RenderContext
         return editor;
     }
 
+    /**
+     * @return Nodes that may be seen, or null if every node is drawn
+     */
+    public HashSet<RavenNodeRenderable> getVisibleNodes()
+    {
+        return visibleNodes;
+    }
+
+    /**
+     * @param visibleNodes Nodes that may be seen.  Nodes not in the set
+     * are skipped.  If null, every node is drawn.
+     */
+    public void setVisibleNodes(HashSet<RavenNodeRenderable> visibleNodes)
+    {
+        this.visibleNodes = visibleNodes;
+    }
+
+    /**
+     * @return true if the node lies outside the view and need not
+     * be drawn
+     */
+    public boolean isCulled(RavenNodeRenderable node)
+    {
+        return visibleNodes != null && !visibleNodes.contains(node);
+    }
+
     
 }
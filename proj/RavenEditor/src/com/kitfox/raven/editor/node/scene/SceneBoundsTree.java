@@ -0,0 +1,537 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.editor.node.scene;
+
+import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.shape.CyRectangle2d;
+import com.kitfox.coyote.shape.CyStroke;
+import com.kitfox.coyote.shape.CyStrokeJoin;
+import com.kitfox.raven.util.tree.ChildWrapper;
+import com.kitfox.raven.util.tree.FrameKey;
+import com.kitfox.raven.util.tree.NodeObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Bounding volume hierarchy over the world space bounds of the nodes
+ * of a scene graph at one frame.  Finds the nodes that may be seen in
+ * a view or touched by a pick area without visiting the rest of the
+ * scene.
+ *
+ * <p>Only the leaves of the scene are placed in the hierarchy.  Groups
+ * are found through the leaves under them.  Leaves that do not know
+ * their bounds match every query.</p>
+ *
+ * <p>When a node's transform or shape changes, updateNode() marks it
+ * and its bounds are found again on the next query.  The hierarchy is
+ * then refitted around the leaves that moved, or built again once many
+ * have moved since it was last built.</p>
+ *
+ * @author kitfox
+ */
+public class SceneBoundsTree
+{
+    //Most leaves a branch holds before it is split
+    static final int MAX_BRANCH_SIZE = 4;
+    //Build the hierarchy again once this fraction of the leaves have
+    // moved since it was built, rather than refitting it
+    static final double REBUILD_FRACTION = .25;
+
+    private final RavenNodeSceneGraph scene;
+    private final FrameKey frame;
+
+    //Leaves in drawing order
+    private ArrayList<Leaf> leaves = new ArrayList<Leaf>();
+    private HashMap<RavenNodeRenderable, Leaf> leafIndex =
+            new HashMap<RavenNodeRenderable, Leaf>();
+    //Leaves without bounds
+    private ArrayList<Leaf> unbounded = new ArrayList<Leaf>();
+    private Branch root;
+
+    //Subtrees whose bounds need to be found again
+    private final HashSet<RavenNodeRenderable> dirtyNodes =
+            new HashSet<RavenNodeRenderable>();
+    //Set when nodes have been added or removed
+    private boolean structureDirty = true;
+    //Set when leaves have gained or lost their bounds
+    private boolean membershipDirty;
+    //Leaves that have moved since the hierarchy was built
+    private int numMoved;
+
+    public SceneBoundsTree(RavenNodeSceneGraph scene, FrameKey frame)
+    {
+        this.scene = scene;
+        this.frame = frame;
+    }
+
+    public RavenNodeSceneGraph getScene()
+    {
+        return scene;
+    }
+
+    public FrameKey getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * Find the bounds of a node and everything under it again the next
+     * time this tree is queried.  Call when its transform or shape
+     * changes.
+     */
+    public synchronized void updateNode(RavenNodeRenderable node)
+    {
+        if (node != scene)
+        {
+            dirtyNodes.add(node);
+        }
+    }
+
+    /**
+     * Find the leaves of the scene again the next time this tree is
+     * queried.  Call when nodes are added or removed.
+     */
+    public synchronized void updateStructure()
+    {
+        structureDirty = true;
+    }
+
+    /**
+     * @return Number of leaves in the scene
+     */
+    public synchronized int getNumLeaves()
+    {
+        validate();
+        return leaves.size();
+    }
+
+    /**
+     * @param region Area in world space
+     * @return Leaves whose bounds overlap the region, and leaves without
+     * bounds, in drawing order
+     */
+    public synchronized ArrayList<Leaf> getLeaves(CyRectangle2d region)
+    {
+        validate();
+
+        BitSet hits = new BitSet(leaves.size());
+        if (root != null)
+        {
+            root.findLeaves(region.getMinX(), region.getMinY(),
+                    region.getMaxX(), region.getMaxY(), hits);
+        }
+        for (int i = 0; i < unbounded.size(); ++i)
+        {
+            hits.set(unbounded.get(i).order);
+        }
+
+        ArrayList<Leaf> list = new ArrayList<Leaf>(hits.cardinality());
+        for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1))
+        {
+            list.add(leaves.get(i));
+        }
+        return list;
+    }
+
+    /**
+     * @param region Area in world space
+     * @return Leaves that may be seen in the region, along with every
+     * group above them
+     */
+    public HashSet<RavenNodeRenderable> getVisibleNodes(CyRectangle2d region)
+    {
+        ArrayList<Leaf> list = getLeaves(region);
+        HashSet<RavenNodeRenderable> visible =
+                new HashSet<RavenNodeRenderable>();
+        for (int i = 0; i < list.size(); ++i)
+        {
+            NodeObject node = list.get(i).node;
+            visible.add((RavenNodeRenderable)node);
+
+            while (true)
+            {
+                ChildWrapper<?, ?> parent = node.getParent();
+                if (parent == null)
+                {
+                    break;
+                }
+                NodeObject parentNode = parent.getNode();
+                if (!(parentNode instanceof RavenNodeRenderable)
+                        || !visible.add((RavenNodeRenderable)parentNode))
+                {
+                    break;
+                }
+                node = parentNode;
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Furthest a stroke reaches out from the path it outlines
+     */
+    static double getStrokeReach(CyStroke stroke)
+    {
+        double reach = Math.sqrt(2);
+        if (stroke.getJoin() == CyStrokeJoin.MITER)
+        {
+            reach = Math.max(reach, stroke.getMiterLimit());
+        }
+        return stroke.getWidth() / 2 * reach;
+    }
+
+    private void validate()
+    {
+        if (!structureDirty && !dirtyNodes.isEmpty())
+        {
+            ArrayList<RavenNodeRenderable> list =
+                    new ArrayList<RavenNodeRenderable>(dirtyNodes);
+            dirtyNodes.clear();
+            for (int i = 0; i < list.size(); ++i)
+            {
+                RavenNodeRenderable node = list.get(i);
+                updateLeaves(node,
+                        node.getParentToWorldTransform(frame, null));
+            }
+
+            if (!structureDirty)
+            {
+                if (membershipDirty
+                        || numMoved > leaves.size() * REBUILD_FRACTION)
+                {
+                    buildHierarchy();
+                }
+                else if (root != null)
+                {
+                    root.refit();
+                }
+                return;
+            }
+        }
+
+        if (structureDirty)
+        {
+            findLeaves();
+            buildHierarchy();
+        }
+    }
+
+    /**
+     * Walk the scene to find every leaf in drawing order.  Leaves that
+     * are not under a dirty node keep the bounds they had.
+     */
+    private void findLeaves()
+    {
+        HashMap<RavenNodeRenderable, Leaf> oldIndex = leafIndex;
+        leaves = new ArrayList<Leaf>();
+        leafIndex = new HashMap<RavenNodeRenderable, Leaf>();
+        unbounded = new ArrayList<Leaf>();
+
+        CyMatrix4d sceneToWorld = CyMatrix4d.createIdentity();
+        for (int i = 0; i < scene.children.size(); ++i)
+        {
+            findLeaves(scene.children.get(i), sceneToWorld, false, oldIndex);
+        }
+
+        dirtyNodes.clear();
+        structureDirty = false;
+    }
+
+    private void findLeaves(RavenNodeXformable node, CyMatrix4d parentToWorld,
+            boolean dirty, HashMap<RavenNodeRenderable, Leaf> oldIndex)
+    {
+        dirty |= dirtyNodes.contains(node);
+
+        if (node instanceof RavenNodeGroup)
+        {
+            RavenNodeGroup group = (RavenNodeGroup)node;
+            CyMatrix4d localToWorld = new CyMatrix4d(parentToWorld);
+            localToWorld.mul(group.getLocalToParentTransform(frame, null));
+            for (int i = 0; i < group.children.size(); ++i)
+            {
+                findLeaves(group.children.get(i), localToWorld, dirty, oldIndex);
+            }
+            return;
+        }
+
+        Leaf leaf = oldIndex.get(node);
+        if (leaf == null || dirty)
+        {
+            leaf = new Leaf(node);
+            leaf.parentToWorld.set(parentToWorld);
+            findBounds(leaf);
+        }
+
+        leaf.order = leaves.size();
+        leaves.add(leaf);
+        leafIndex.put(node, leaf);
+        if (!leaf.bounded)
+        {
+            unbounded.add(leaf);
+        }
+    }
+
+    /**
+     * Find the bounds of the leaves under a node that has changed.
+     */
+    private void updateLeaves(RavenNodeRenderable node, CyMatrix4d parentToWorld)
+    {
+        if (node instanceof RavenNodeGroup)
+        {
+            RavenNodeGroup group = (RavenNodeGroup)node;
+            CyMatrix4d localToWorld = new CyMatrix4d(parentToWorld);
+            localToWorld.mul(group.getLocalToParentTransform(frame, null));
+            for (int i = 0; i < group.children.size(); ++i)
+            {
+                updateLeaves(group.children.get(i), localToWorld);
+            }
+            return;
+        }
+
+        Leaf leaf = leafIndex.get(node);
+        if (leaf == null)
+        {
+            //Not in the scene as last walked
+            structureDirty = true;
+            return;
+        }
+
+        boolean wasBounded = leaf.bounded;
+        leaf.parentToWorld.set(parentToWorld);
+        findBounds(leaf);
+        if (leaf.bounded != wasBounded)
+        {
+            membershipDirty = true;
+        }
+        ++numMoved;
+    }
+
+    private void findBounds(Leaf leaf)
+    {
+        CyRectangle2d local = leaf.node.getBoundsCullLocal(frame);
+        if (local == null)
+        {
+            leaf.bounded = false;
+            return;
+        }
+
+        CyMatrix4d localToWorld = new CyMatrix4d(leaf.parentToWorld);
+        localToWorld.mul(leaf.node.getLocalToParentTransform(frame, null));
+        CyRectangle2d world = local.createTransformedBounds(localToWorld);
+
+        leaf.bounded = true;
+        leaf.minX = world.getMinX();
+        leaf.minY = world.getMinY();
+        leaf.maxX = world.getMaxX();
+        leaf.maxY = world.getMaxY();
+    }
+
+    private void buildHierarchy()
+    {
+        Leaf[] bounded = new Leaf[leaves.size() - unbounded.size()];
+        int count = 0;
+        for (int i = 0; i < leaves.size(); ++i)
+        {
+            Leaf leaf = leaves.get(i);
+            if (leaf.bounded)
+            {
+                bounded[count++] = leaf;
+            }
+        }
+
+        root = count == 0 ? null : new Branch(bounded, 0, count);
+        membershipDirty = false;
+        numMoved = 0;
+    }
+
+    //-----------------------------
+    /**
+     * Node of the scene that has no children of its own
+     */
+    public static class Leaf
+    {
+        final RavenNodeRenderable node;
+        //Position in drawing order
+        int order;
+        final CyMatrix4d parentToWorld = new CyMatrix4d();
+        boolean bounded;
+        double minX;
+        double minY;
+        double maxX;
+        double maxY;
+
+        Leaf(RavenNodeRenderable node)
+        {
+            this.node = node;
+        }
+
+        public RavenNodeRenderable getNode()
+        {
+            return node;
+        }
+
+        /**
+         * @return Transform from the parent of the node to world space
+         */
+        public CyMatrix4d getParentToWorld()
+        {
+            return new CyMatrix4d(parentToWorld);
+        }
+
+        /**
+         * @return Bounds of the node in world space, or null if they
+         * are not known
+         */
+        public CyRectangle2d getBoundsWorld()
+        {
+            return bounded
+                    ? new CyRectangle2d(minX, minY, maxX - minX, maxY - minY)
+                    : null;
+        }
+
+        double getCenter(int axis)
+        {
+            return axis == 0 ? minX + maxX : minY + maxY;
+        }
+    }
+
+    //-----------------------------
+    static class Branch
+    {
+        double minX;
+        double minY;
+        double maxX;
+        double maxY;
+
+        //Either both children are set, or this holds the leaves
+        Branch child0;
+        Branch child1;
+        Leaf[] members;
+
+        /**
+         * Build the branch holding the given range of leaves.  Ranges
+         * that are too big are split in half along the longer axis of
+         * the centers of their leaves.
+         */
+        Branch(Leaf[] leaves, int start, int end)
+        {
+            double cMinX = Double.POSITIVE_INFINITY;
+            double cMinY = Double.POSITIVE_INFINITY;
+            double cMaxX = Double.NEGATIVE_INFINITY;
+            double cMaxY = Double.NEGATIVE_INFINITY;
+            for (int i = start; i < end; ++i)
+            {
+                Leaf leaf = leaves[i];
+                cMinX = Math.min(cMinX, leaf.getCenter(0));
+                cMaxX = Math.max(cMaxX, leaf.getCenter(0));
+                cMinY = Math.min(cMinY, leaf.getCenter(1));
+                cMaxY = Math.max(cMaxY, leaf.getCenter(1));
+            }
+
+            if (end - start <= MAX_BRANCH_SIZE)
+            {
+                members = Arrays.copyOfRange(leaves, start, end);
+            }
+            else
+            {
+                final int axis = cMaxX - cMinX >= cMaxY - cMinY ? 0 : 1;
+                Arrays.sort(leaves, start, end, new Comparator<Leaf>()
+                {
+                    @Override
+                    public int compare(Leaf l0, Leaf l1)
+                    {
+                        return Double.compare(l0.getCenter(axis),
+                                l1.getCenter(axis));
+                    }
+                });
+
+                int mid = (start + end) / 2;
+                child0 = new Branch(leaves, start, mid);
+                child1 = new Branch(leaves, mid, end);
+            }
+
+            fitBounds();
+        }
+
+        private void fitBounds()
+        {
+            if (members != null)
+            {
+                minX = minY = Double.POSITIVE_INFINITY;
+                maxX = maxY = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < members.length; ++i)
+                {
+                    Leaf leaf = members[i];
+                    minX = Math.min(minX, leaf.minX);
+                    minY = Math.min(minY, leaf.minY);
+                    maxX = Math.max(maxX, leaf.maxX);
+                    maxY = Math.max(maxY, leaf.maxY);
+                }
+                return;
+            }
+
+            minX = Math.min(child0.minX, child1.minX);
+            minY = Math.min(child0.minY, child1.minY);
+            maxX = Math.max(child0.maxX, child1.maxX);
+            maxY = Math.max(child0.maxY, child1.maxY);
+        }
+
+        /**
+         * Grow or shrink the bounds of this branch and those below it
+         * to fit the leaves they hold.
+         */
+        void refit()
+        {
+            if (members == null)
+            {
+                child0.refit();
+                child1.refit();
+            }
+            fitBounds();
+        }
+
+        void findLeaves(double x0, double y0, double x1, double y1,
+                BitSet hits)
+        {
+            if (x1 < minX || x0 > maxX || y1 < minY || y0 > maxY)
+            {
+                return;
+            }
+
+            if (members == null)
+            {
+                child0.findLeaves(x0, y0, x1, y1, hits);
+                child1.findLeaves(x0, y0, x1, y1, hits);
+                return;
+            }
+
+            for (int i = 0; i < members.length; ++i)
+            {
+                Leaf leaf = members[i];
+                if (x1 >= leaf.minX && x0 <= leaf.maxX
+                        && y1 >= leaf.minY && y0 <= leaf.maxY)
+                {
+                    hits.set(leaf.order);
+                }
+            }
+        }
+    }
+}
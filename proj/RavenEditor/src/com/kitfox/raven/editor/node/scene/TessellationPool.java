@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.editor.node.scene;
+
+import com.kitfox.raven.util.ParallelBatchRunner;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Threads for tessellating the faces and stroke outlines of mesh
+ * layouts.
+ *
+ * <p>runAll() splits a list of independent jobs across the pool and
+ * returns once every job is done.  Layouts can also be built in the
+ * background with submitLayout().  Those run on a thread of their own,
+ * so a layout being built can hand its jobs to the pool without
+ * waiting on itself.</p>
+ *
+ * @author kitfox
+ */
+public class TessellationPool
+{
+    //With fewer jobs than this, handing work to other threads
+    // costs more than it saves
+    public static final int MIN_PARALLEL = 8;
+
+    private static TessellationPool shared;
+
+    private final ParallelBatchRunner runner;
+    private ExecutorService layoutThread;
+
+    /**
+     * @param numThreads Number of threads to tessellate with.  If less
+     * than 2, runAll() runs every job on the calling thread.
+     */
+    public TessellationPool(int numThreads)
+    {
+        this.runner = new ParallelBatchRunner("Tessellator",
+                numThreads, MIN_PARALLEL);
+    }
+
+    /**
+     * @return Pool with one thread per processor, shared by all meshes
+     */
+    public static synchronized TessellationPool getShared()
+    {
+        if (shared == null)
+        {
+            shared = new TessellationPool(
+                    Runtime.getRuntime().availableProcessors());
+        }
+        return shared;
+    }
+
+    public int getNumThreads()
+    {
+        return runner.getNumThreads();
+    }
+
+    /**
+     * Run every job and wait for them all to finish.  If a job throws,
+     * the exception is passed on once the others are done.
+     *
+     * @param jobs Jobs that do not depend on each other
+     */
+    public void runAll(final List<? extends Runnable> jobs)
+    {
+        runner.run(jobs.size(), new ParallelBatchRunner.Task() {
+            @Override
+            public void run(int index)
+            {
+                jobs.get(index).run();
+            }
+        });
+    }
+
+    /**
+     * Build a layout in the background.  Layouts are built one at a
+     * time, in the order they are submitted.
+     */
+    public <T> Future<T> submitLayout(Callable<T> task)
+    {
+        return getLayoutThread().submit(task);
+    }
+
+    private synchronized ExecutorService getLayoutThread()
+    {
+        if (layoutThread == null)
+        {
+            layoutThread = Executors.newSingleThreadExecutor(
+                    new ParallelBatchRunner.DaemonThreadFactory("Mesh layout"));
+        }
+        return layoutThread;
+    }
+
+    /**
+     * Stop the threads of this pool.  They will be started again
+     * when more work is given to it.
+     */
+    public synchronized void dispose()
+    {
+        runner.dispose();
+        if (layoutThread != null)
+        {
+            layoutThread.shutdown();
+            layoutThread = null;
+        }
+    }
+}
@@ -152,8 +152,7 @@ abstract public class PaintLayoutManipulator extends Manipulator
         public void setEdgeLayoutWorld(RavenPaintLayout layout, boolean history)
         {
             CyMatrix4d w2l = ((RavenNodeXformable)node)
-                    .getLocalToWorldTransform((CyMatrix4d)null);
-            w2l.invert();
+                    .getWorldToLocalTransform((CyMatrix4d)null);
             layout = layout.transform(w2l);
             node.setMaterialEdgeLayout(subcomponent, layout, history);
         }
@@ -161,8 +160,7 @@ abstract public class PaintLayoutManipulator extends Manipulator
         public void setFaceLayoutWorld(RavenPaintLayout layout, boolean history)
         {
             CyMatrix4d w2l = ((RavenNodeXformable)node)
-                    .getLocalToWorldTransform((CyMatrix4d)null);
-            w2l.invert();
+                    .getWorldToLocalTransform((CyMatrix4d)null);
             layout = layout.transform(w2l);
             node.setMaterialFaceLayout(subcomponent, layout, history);
         }
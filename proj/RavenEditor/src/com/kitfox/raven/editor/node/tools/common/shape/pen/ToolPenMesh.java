@@ -330,7 +330,7 @@ public class ToolPenMesh extends ToolPenDelegate
             {
                 continue;
             }
-            NetworkDataEdge data = e.getData();
+            NetworkDataEdge data = e.editData();
             if (half.isRight())
             {
                 data.putRight(NetworkDataTypePaint.class, curPaint);
@@ -202,6 +202,11 @@ public class CameraDisplayPanel
         }
     }
 
+    @Override
+    public void symbolFrameChanged(PropertyChangeEvent evt)
+    {
+    }
+
     @Override
     public void render(CyDrawStack rend)
     {
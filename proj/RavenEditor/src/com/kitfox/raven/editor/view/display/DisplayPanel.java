@@ -237,6 +237,12 @@ public class DisplayPanel extends javax.swing.JPanel
         repaint();
     }
 
+    @Override
+    public void symbolFrameChanged(PropertyChangeEvent evt)
+    {
+        repaint();
+    }
+
     @Override
     public void displayTilesComputed(EventObject evt)
     {
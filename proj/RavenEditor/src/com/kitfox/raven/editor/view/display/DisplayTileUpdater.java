@@ -188,6 +188,12 @@ public class DisplayTileUpdater implements NodeSymbolListener
         setDirty();
     }
 
+    @Override
+    public void symbolFrameChanged(PropertyChangeEvent evt)
+    {
+        setDirty();
+    }
+
     private void reallocTiles()
     {
         if (scene == null || deviceBounds == null)
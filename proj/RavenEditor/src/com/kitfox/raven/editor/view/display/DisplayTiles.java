@@ -230,6 +230,12 @@ public class DisplayTiles implements NodeSymbolListener
         setAllTilesDirty();
     }
 
+    @Override
+    public void symbolFrameChanged(PropertyChangeEvent evt)
+    {
+        setAllTilesDirty();
+    }
+
     //--------------------------------------
 
     public class Tile
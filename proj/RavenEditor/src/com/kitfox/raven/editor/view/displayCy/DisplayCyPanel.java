@@ -217,6 +217,11 @@ public class DisplayCyPanel extends CoyotePanel
     {
     }
 
+    @Override
+    public void symbolFrameChanged(PropertyChangeEvent evt)
+    {
+    }
+
     @Override
     public void toolDisplayChanged(EventObject evt)
     {
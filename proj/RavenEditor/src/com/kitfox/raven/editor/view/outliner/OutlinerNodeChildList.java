@@ -212,19 +212,27 @@ public class OutlinerNodeChildList extends OutlinerNode
 
         History hist = doc.getHistory();
         hist.beginTransaction("Paste");
+        doc.beginBulkUpdate();
 
-        for (NodeObjectType type: xferLayers.getNodes())
+        try
         {
-            String cls = type.getClazz();
-            NodeObjectProvider prov = NodeObjectProviderIndex.inst().getProvider(cls);
-
-            if (wrapper.getChildType().isAssignableFrom(prov.getNodeType()))
+            for (NodeObjectType type: xferLayers.getNodes())
             {
-                NodeObject node = prov.createNode(doc, type);
-                wrapper.add(index, node);
-                ++index;
+                String cls = type.getClazz();
+                NodeObjectProvider prov = NodeObjectProviderIndex.inst().getProvider(cls);
+
+                if (wrapper.getChildType().isAssignableFrom(prov.getNodeType()))
+                {
+                    NodeObject node = prov.createNode(doc, type);
+                    wrapper.add(index, node);
+                    ++index;
+                }
             }
         }
+        finally
+        {
+            doc.commitBulkUpdate();
+        }
 
         hist.commitTransaction();
 
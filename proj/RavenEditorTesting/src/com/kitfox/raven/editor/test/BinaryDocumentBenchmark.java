@@ -0,0 +1,457 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.editor.test;
+
+import com.kitfox.raven.core.test.NetworkMeshGrid;
+import com.kitfox.raven.editor.RavenDocument;
+import com.kitfox.raven.editor.node.scene.RavenNodeCameraProxy;
+import com.kitfox.raven.editor.node.scene.RavenNodeComposition;
+import com.kitfox.raven.editor.node.scene.RavenNodeGroup;
+import com.kitfox.raven.editor.node.scene.RavenNodeImage;
+import com.kitfox.raven.editor.node.scene.RavenNodeMesh;
+import com.kitfox.raven.editor.node.scene.RavenNodeSceneGraph;
+import com.kitfox.raven.editor.node.scene.RavenNodeStroke;
+import com.kitfox.raven.editor.node.scene.RavenNodeSymbolRef;
+import com.kitfox.raven.editor.node.scene.RavenSymbol;
+import com.kitfox.raven.editor.node.scene.RavenSymbolRoot;
+import com.kitfox.raven.paint.RavenStroke;
+import com.kitfox.raven.shape.network.NetworkMesh;
+import com.kitfox.raven.util.JAXBUtil;
+import com.kitfox.raven.util.tree.NodeDocumentBinary;
+import com.kitfox.raven.util.tree.NodeObjectProvider;
+import com.kitfox.raven.util.tree.NodeObjectProviderIndex;
+import com.kitfox.raven.util.tree.PropertyDataInline;
+import com.kitfox.raven.util.tree.PropertyDataReference;
+import com.kitfox.raven.util.tree.PropertyDataResource;
+import com.kitfox.raven.util.tree.PropertyProvider;
+import com.kitfox.raven.util.tree.PropertyProviderIndex;
+import com.kitfox.raven.util.tree.PropertyWrapper;
+import com.kitfox.raven.util.tree.TrackCurve;
+import com.kitfox.raven.util.tree.TrackKey;
+import com.kitfox.xml.schema.ravendocumentschema.ObjectFactory;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Properties;
+import javax.imageio.ImageIO;
+
+/**
+ * Saves an animated document as XML and in the binary format, and
+ * loads both back.  Reports the size of each file and the time taken
+ * to save and load it, and fails if the binary file does not load into
+ * the same document as the one saved.
+ *
+ * <p>Documents are compared by their XML export, so every value of
+ * the loaded document is decoded for the comparison.  Loading is timed
+ * on its own first.</p>
+ *
+ * <p>The document holds values of every type with its own binary
+ * encoding, references and resources, and tracks using every repeat
+ * mode and interpolation.  Types no node uses are checked by reading
+ * back what their provider writes.  A file with a chunk from a later
+ * version must load the same, and damaged files must be rejected.</p>
+ *
+ * @author kitfox
+ */
+public class BinaryDocumentBenchmark
+{
+    static final int NUM_GROUPS = 10;
+    static final int MESHES_PER_GROUP = 10;
+    static final int NUM_KEYS = 24;
+    static final int GRID = 6;
+    //Size of a cell in mesh units
+    static final int CELL = 2000;
+    static final int ROUNDS = 3;
+
+    static final TrackKey.Interp[] INTERPS = TrackKey.Interp.values();
+    static final TrackCurve.Repeat[] REPEATS = TrackCurve.Repeat.values();
+
+    public BinaryDocumentBenchmark() throws IOException
+    {
+        checkProviders();
+
+        File imageFile = File.createTempFile("binaryDocumentBenchmark", ".png");
+        imageFile.deleteOnExit();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB),
+                "png", imageFile);
+
+        RavenDocument doc = createDocument(imageFile);
+        String reference = asXml(doc);
+
+        File xmlFile = File.createTempFile("binaryDocumentBenchmark", ".raven");
+        File binFile = File.createTempFile("binaryDocumentBenchmark", ".ravenb");
+        xmlFile.deleteOnExit();
+        binFile.deleteOnExit();
+
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            long start = System.nanoTime();
+            doc.save(xmlFile);
+            long timeXmlSave = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            RavenDocument xmlDoc = RavenDocument.create(null, xmlFile);
+            long timeXmlLoad = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            doc.save(binFile);
+            long timeBinSave = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            RavenDocument binDoc = RavenDocument.create(null, binFile);
+            long timeBinLoad = System.nanoTime() - start;
+
+            //Save again before anything is decoded
+            File copyFile = File.createTempFile("binaryDocumentBenchmark", ".ravenb");
+            copyFile.deleteOnExit();
+            start = System.nanoTime();
+            binDoc.save(copyFile);
+            long timeBinCopy = System.nanoTime() - start;
+            RavenDocument copyDoc = RavenDocument.create(null, copyFile);
+            copyFile.delete();
+
+            check("xml", reference, xmlDoc);
+            check("binary", reference, binDoc);
+            check("resaved binary", reference, copyDoc);
+
+            System.err.println("xml: " + (xmlFile.length() / 1024) + "k"
+                    + " save " + (timeXmlSave / 1000000) + "ms"
+                    + " load " + (timeXmlLoad / 1000000) + "ms");
+            System.err.println("binary: " + (binFile.length() / 1024) + "k"
+                    + " save " + (timeBinSave / 1000000) + "ms"
+                    + " load " + (timeBinLoad / 1000000) + "ms"
+                    + " resave undecoded " + (timeBinCopy / 1000000) + "ms");
+        }
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        NodeDocumentBinary.write(doc, buf);
+        byte[] data = buf.toByteArray();
+        check("binary with unknown chunk", reference, RavenDocument.create(null,
+                NodeDocumentBinary.read(new ByteArrayInputStream(
+                addUnknownChunk(data)))));
+        checkDamaged(data);
+        System.err.println("all loaded documents match");
+    }
+
+    /**
+     * @throws IllegalStateException if the document does not export
+     * the same as the reference
+     */
+    private static void check(String name, String reference, RavenDocument doc)
+    {
+        if (!reference.equals(asXml(doc)))
+        {
+            throw new IllegalStateException(
+                    name + " document differs from the one saved");
+        }
+    }
+
+    private static String asXml(RavenDocument doc)
+    {
+        StringWriter writer = new StringWriter();
+        JAXBUtil.saveJAXB(new ObjectFactory().createNodeDocument(doc.export()),
+                writer);
+        return writer.toString();
+    }
+
+    /**
+     * Read back what each provider with a binary encoding writes
+     */
+    private void checkProviders() throws IOException
+    {
+        checkProvider(Float.class, -3.25f);
+        checkProvider(Double.class, Math.PI);
+        checkProvider(Double.class, -1e300);
+        checkProvider(Integer.class, Integer.MIN_VALUE);
+        checkProvider(Integer.class, 42);
+        checkProvider(Boolean.class, true);
+        checkProvider(Boolean.class, false);
+        checkProvider(int[].class, new int[]{});
+        checkProvider(int[].class, new int[]{7, -1, Integer.MAX_VALUE});
+        checkProvider(NetworkMesh.class,
+                NetworkMeshGrid.create(GRID, CELL, CELL / 3, 3));
+    }
+
+    private <T> void checkProvider(Class<T> type, T value) throws IOException
+    {
+        PropertyProvider<T> prov =
+                PropertyProviderIndex.inst().getProviderBest(type);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        prov.writeBinary(value, new DataOutputStream(buf));
+
+        ByteArrayInputStream in = new ByteArrayInputStream(buf.toByteArray());
+        T read = prov.readBinary(new DataInputStream(in));
+        if (!prov.asText(value).equals(prov.asText(read)) || in.available() != 0)
+        {
+            throw new IllegalStateException(type.getSimpleName() + " "
+                    + prov.asText(value) + " read back as " + prov.asText(read));
+        }
+    }
+
+    private RavenDocument createDocument(File imageFile)
+    {
+        RavenDocument doc = new RavenDocument(null);
+        RavenSymbol sym = RavenSymbol.create(doc);
+        doc.addSymbol(sym);
+        doc.setCurrentSymbol(sym);
+
+        Properties props = new Properties();
+        props.setProperty("zoom", "2.5");
+        doc.setMetaProperties("view", props);
+
+        NodeObjectProvider<RavenNodeGroup> groupProv =
+                NodeObjectProviderIndex.inst().getProvider(RavenNodeGroup.class);
+        NodeObjectProvider<RavenNodeMesh> meshProv =
+                NodeObjectProviderIndex.inst().getProvider(RavenNodeMesh.class);
+
+        RavenNodeSceneGraph scene = sym.getRoot().sceneGraph.getChild();
+        for (int i = 0; i < NUM_GROUPS; ++i)
+        {
+            RavenNodeGroup group = groupProv.createNode(sym);
+            scene.children.add(group);
+            group.transX.setValue(i * 100f);
+            group.visible.setValue(i % 3 != 0);
+
+            for (int j = 0; j < MESHES_PER_GROUP; ++j)
+            {
+                RavenNodeMesh mesh = meshProv.createNode(sym);
+                group.children.add(mesh);
+                mesh.setNetworkMesh(
+                        NetworkMeshGrid.create(GRID, CELL, CELL / 3, i + j), false);
+
+                for (int k = 0; k < NUM_KEYS; ++k)
+                {
+                    mesh.transY.setKeyAt(k * 5,
+                            new PropertyDataInline<Float>(
+                            (float)Math.sin(i + j + k * .3) * 50),
+                            INTERPS[(i + j + k) % INTERPS.length], 1, .5, 1, -.5);
+                }
+                setRepeat(mesh.transY, i + j);
+            }
+        }
+
+        addOtherData(sym, imageFile);
+
+        //Loading sets properties to their values at the current frame,
+        // so do the same here for the documents to compare equal
+        sym.getRoot().getTrackLibrary().synchSymbolToFrame();
+        doc.getHistory().clear();
+        return doc;
+    }
+
+    /**
+     * Add values of the types meshes do not use
+     */
+    private void addOtherData(RavenSymbol sym, File imageFile)
+    {
+        RavenSymbolRoot root = sym.getRoot();
+
+        //Reference to a node of the stroke library
+        RavenNodeStroke stroke = NodeObjectProviderIndex.inst()
+                .getProvider(RavenNodeStroke.class).createNode(sym);
+        root.getStrokeLibrary().strokes.add(stroke);
+        root.strokeShape.setData(
+                new PropertyDataReference<RavenStroke>(stroke.getUid()));
+
+        //Resource
+        RavenNodeImage image = NodeObjectProviderIndex.inst()
+                .getProvider(RavenNodeImage.class).createNode(sym);
+        root.sceneGraph.getChild().children.add(image);
+        image.image.setData(new PropertyDataResource<BufferedImage>(
+                imageFile.toURI()));
+
+        //Integer, double and boolean values
+        RavenNodeComposition comp = NodeObjectProviderIndex.inst()
+                .getProvider(RavenNodeComposition.class).createNode(sym);
+        root.getCompositionLibrary().compositions.add(comp);
+        comp.width.setValue(640);
+        comp.height.setValue(-480);
+
+        RavenNodeCameraProxy camera = NodeObjectProviderIndex.inst()
+                .getProvider(RavenNodeCameraProxy.class).createNode(sym);
+        comp.layers.add(camera);
+        camera.viewportY.setValue(.1);
+        for (int k = 0; k < NUM_KEYS; ++k)
+        {
+            camera.viewportX.setKeyAt(k * 3,
+                    new PropertyDataInline<Double>(Math.cos(k) / 3),
+                    INTERPS[k % INTERPS.length], 1, .25, 1, -.25);
+            camera.visible.setKeyAt(k * 3,
+                    new PropertyDataInline<Boolean>(k % 2 == 0),
+                    INTERPS[k % INTERPS.length]);
+        }
+        setRepeat(camera.viewportX, 1);
+        setRepeat(camera.visible, 3);
+
+        RavenNodeSymbolRef ref = NodeObjectProviderIndex.inst()
+                .getProvider(RavenNodeSymbolRef.class).createNode(sym);
+        root.sceneGraph.getChild().children.add(ref);
+        for (int k = 0; k < NUM_KEYS; ++k)
+        {
+            ref.frame.setKeyAt(k * 4, new PropertyDataInline<Integer>(k * k - 50),
+                    INTERPS[k % INTERPS.length], 1, 2, 1, -2);
+        }
+        setRepeat(ref.frame, 2);
+    }
+
+    private <T> void setRepeat(PropertyWrapper<?, T> prop, int index)
+    {
+        TrackCurve<T> curve = prop.getTrackCurve();
+        curve.setBefore(REPEATS[index % REPEATS.length]);
+        curve.setAfter(REPEATS[(index + 1) % REPEATS.length]);
+        prop.setTrackCurve(curve, false);
+    }
+
+    private static int tag(String name)
+    {
+        return (name.charAt(0) << 24) | (name.charAt(1) << 16)
+                | (name.charAt(2) << 8) | name.charAt(3);
+    }
+
+    /**
+     * Add a chunk no reader knows after the header chunk, as a later
+     * version of the format might
+     */
+    private static byte[] addUnknownChunk(byte[] data) throws IOException
+    {
+        //Magic, version and header chunk tag come before its length
+        int headerEnd = 16 + readInt(data, 12);
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        out.write(data, 0, headerEnd);
+        out.writeInt(tag("XTRA"));
+        out.writeInt(1000);
+        for (int i = 0; i < 1000; ++i)
+        {
+            out.writeByte(i);
+        }
+        out.write(data, headerEnd, data.length - headerEnd);
+        return buf.toByteArray();
+    }
+
+    private static int readInt(byte[] data, int offset)
+    {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+
+    /**
+     * Damaged files must be reported with an IOException
+     */
+    private void checkDamaged(byte[] data) throws IOException
+    {
+        expectFailure("truncated", Arrays.copyOf(data, data.length / 2));
+
+        byte[] longChunk = data.clone();
+        longChunk[12] = 0x7f;
+        expectFailure("long chunk", longChunk);
+
+        byte[] negChunk = data.clone();
+        negChunk[12] = (byte)0xff;
+        expectFailure("negative chunk length", negChunk);
+
+        //Make sure the hand built file is read when it is not damaged
+        NodeDocumentBinary.read(new ByteArrayInputStream(
+                createTrackFile(-1, 0, 0)));
+        expectFailure("long value", createTrackFile(1 << 30, 0, 0));
+        expectFailure("unknown repeat", createTrackFile(-1, REPEATS.length, 0));
+        expectFailure("negative repeat", createTrackFile(-1, -1, 0));
+        expectFailure("unknown interpolation",
+                createTrackFile(-1, 0, INTERPS.length));
+    }
+
+    private void expectFailure(String name, byte[] data)
+    {
+        try
+        {
+            NodeDocumentBinary.read(new ByteArrayInputStream(data));
+        } catch (IOException ex)
+        {
+            return;
+        }
+        throw new IllegalStateException(name + " file was read without error");
+    }
+
+    /**
+     * A file with one symbol whose root has one keyed property
+     *
+     * @param valueLength Length written for the inline value of the key
+     * @param repeat Repeat mode written for the track
+     * @param interp Interpolation written for the key
+     */
+    private byte[] createTrackFile(int valueLength, int repeat, int interp)
+            throws IOException
+    {
+        ByteArrayOutputStream chunkBuf = new ByteArrayOutputStream();
+        DataOutputStream chunk = new DataOutputStream(chunkBuf);
+        NodeDocumentBinary.writeString(chunk, RavenSymbol.class.getName());
+        chunk.writeInt(1);
+        NodeDocumentBinary.writeString(chunk, "symbol");
+        chunk.writeInt(2);
+
+        NodeDocumentBinary.writeString(chunk,
+                RavenSymbolRoot.class.getCanonicalName());
+        chunk.writeInt(1);
+        NodeDocumentBinary.writeString(chunk, "root");
+        chunk.writeInt(1);
+
+        NodeDocumentBinary.writeString(chunk, RavenSymbolRoot.PROP_BACKGROUND);
+        //Null inline direct value
+        chunk.writeByte(0);
+        chunk.writeInt(-1);
+        chunk.writeBoolean(true);
+        chunk.writeByte(repeat);
+        chunk.writeByte(0);
+        chunk.writeInt(1);
+        chunk.writeInt(0);
+        chunk.writeByte(interp);
+        chunk.writeDouble(1);
+        chunk.writeDouble(0);
+        chunk.writeDouble(1);
+        chunk.writeDouble(0);
+        chunk.writeByte(0);
+        chunk.writeInt(valueLength);
+        //No child wrappers
+        chunk.writeInt(0);
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        out.writeInt(NodeDocumentBinary.MAGIC);
+        out.writeInt(NodeDocumentBinary.FORMAT_VERSION);
+        out.writeInt(tag("SYMB"));
+        out.writeInt(chunkBuf.size());
+        chunkBuf.writeTo(out);
+        out.writeInt(tag("END "));
+        out.writeInt(0);
+        return buf.toByteArray();
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws IOException
+    {
+        new BinaryDocumentBenchmark();
+    }
+}
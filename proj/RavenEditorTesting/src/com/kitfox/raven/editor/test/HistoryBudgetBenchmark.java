@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.editor.test;
+
+import com.kitfox.raven.core.test.NetworkMeshGrid;
+import com.kitfox.raven.editor.RavenDocument;
+import com.kitfox.raven.editor.node.scene.RavenNodeMesh;
+import com.kitfox.raven.editor.node.scene.RavenNodeSceneGraph;
+import com.kitfox.raven.editor.node.scene.RavenSymbol;
+import com.kitfox.raven.shape.network.NetworkMesh;
+import com.kitfox.raven.shape.network.NetworkMeshEditor;
+import com.kitfox.raven.util.tree.NodeObjectProvider;
+import com.kitfox.raven.util.tree.NodeObjectProviderIndex;
+import com.kitfox.raven.util.undo.History;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Replaces the mesh of a node many times with undo history, as brush
+ * strokes do, with no limit on the memory the history uses and with
+ * a memory budget.  Reports the heap in use afterwards and the time
+ * taken to make the edits and to undo and redo all of them, and checks
+ * that every undo and redo gives back the mesh that was there before.
+ *
+ * @author kitfox
+ */
+public class HistoryBudgetBenchmark
+{
+    static final int NUM_EDITS = 300;
+    static final int GRID = 12;
+    //Size of a cell in mesh units
+    static final int CELL = 3000;
+    static final long MEMORY_BUDGET = 16L << 20;
+
+    public HistoryBudgetBenchmark()
+    {
+        measureEstimate();
+        runTest(Long.MAX_VALUE);
+        runTest(MEMORY_BUDGET);
+    }
+
+    /**
+     * Compare the estimated size of a mesh to the heap it takes up
+     */
+    private void measureEstimate()
+    {
+        int count = 50;
+        long before = usedMemory();
+        ArrayList<NetworkMesh> list = new ArrayList<NetworkMesh>();
+        for (int i = 0; i < count; ++i)
+        {
+            list.add(NetworkMeshGrid.create(GRID, CELL, CELL / 3, i * .1));
+        }
+        long after = usedMemory();
+
+        long estimate = new NetworkMeshEditor.Provider().getSizeEstimate(list.get(0));
+        System.err.println("mesh vertices: " + list.get(0).getNumVertices()
+                + " edges: " + list.get(0).getNumEdges()
+                + " estimated " + (estimate / 1024) + "k"
+                + " measured " + ((after - before) / count / 1024) + "k");
+    }
+
+    private void runTest(long memoryBudget)
+    {
+        RavenDocument doc = new RavenDocument(null);
+        RavenSymbol sym = RavenSymbol.create(doc);
+        doc.addSymbol(sym);
+        doc.setCurrentSymbol(sym);
+
+        NodeObjectProvider<RavenNodeMesh> meshProv =
+                NodeObjectProviderIndex.inst().getProvider(RavenNodeMesh.class);
+        RavenNodeSceneGraph scene = sym.getRoot().getSceneGraph();
+        RavenNodeMesh node = meshProv.createNode(sym);
+        scene.children.add(node);
+        node.setNetworkMesh(NetworkMeshGrid.create(GRID, CELL, CELL / 3, 0), false);
+
+        History history = doc.getHistory();
+        history.clear();
+        history.setMemoryBudget(memoryBudget);
+        history.setMaxUndoSize(Long.MAX_VALUE);
+
+        long[] checksums = new long[NUM_EDITS + 1];
+        checksums[0] = checksum(node.getNetworkMesh());
+
+        long baseMemory = usedMemory();
+        long start = System.nanoTime();
+        for (int i = 1; i <= NUM_EDITS; ++i)
+        {
+            NetworkMesh mesh = NetworkMeshGrid.create(GRID, CELL, CELL / 3, i * .1);
+            checksums[i] = checksum(mesh);
+            node.setNetworkMesh(mesh, true);
+        }
+        long timeEdit = System.nanoTime() - start;
+        long memory = usedMemory() - baseMemory;
+
+        boolean same = true;
+        start = System.nanoTime();
+        for (int i = NUM_EDITS - 1; i >= 0; --i)
+        {
+            history.undo();
+            same &= checksum(node.getNetworkMesh()) == checksums[i];
+        }
+        long timeUndo = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 1; i <= NUM_EDITS; ++i)
+        {
+            history.redo();
+            same &= checksum(node.getNetworkMesh()) == checksums[i];
+        }
+        long timeRedo = System.nanoTime() - start;
+        same &= history.getNumActions() == NUM_EDITS;
+
+        System.err.println("memory budget: "
+                + (memoryBudget == Long.MAX_VALUE ? "none" : (memoryBudget >> 20) + "M")
+                + " edits: " + NUM_EDITS
+                + (same ? "" : " MISMATCH"));
+        System.err.println("  heap used " + (memory >> 20) + "M"
+                + " history estimate " + (history.getUndoSize() >> 20) + "M"
+                + " in memory " + (history.getMemorySize() >> 20) + "M");
+        System.err.println("  edit " + (timeEdit / 1000000) + "ms"
+                + " undo all " + (timeUndo / 1000000) + "ms"
+                + " redo all " + (timeRedo / 1000000) + "ms");
+
+        history.dispose();
+    }
+
+    private static long checksum(NetworkMesh mesh)
+    {
+        ByteBuffer buf = mesh.toBinary();
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), buf.arrayOffset() + buf.position(),
+                buf.remaining());
+        return crc.getValue();
+    }
+
+    private static long usedMemory()
+    {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; ++i)
+        {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new HistoryBudgetBenchmark();
+    }
+}
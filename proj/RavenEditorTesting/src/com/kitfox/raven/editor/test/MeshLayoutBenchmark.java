@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.editor.test;
+
+import com.kitfox.coyote.drawRecord.CyDrawGroupZOrder;
+import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.renderer.CyDrawStack;
+import com.kitfox.coyote.renderer.CyGLContext;
+import com.kitfox.coyote.renderer.software.CyGLWrapperSoftware;
+import com.kitfox.coyote.shape.CyPath2d;
+import com.kitfox.raven.core.test.NetworkMeshGrid;
+import com.kitfox.raven.editor.node.scene.RavenNodeMesh;
+import com.kitfox.raven.editor.node.scene.RenderContext;
+import com.kitfox.raven.shape.network.NetworkMesh;
+import com.kitfox.raven.util.tree.FrameKey;
+
+/**
+ * Lays out a mesh with a grid of stroked and filled cells, then makes
+ * small edits to it.  Reports the time to lay out and draw each
+ * version of the mesh and how many faces, edge chains and batches were
+ * carried over from the layout before, against laying out the edited
+ * mesh from scratch.
+ *
+ * @author kitfox
+ */
+public class MeshLayoutBenchmark
+{
+    static final int GRID = 16;
+    //Size of a cell in mesh units
+    static final int CELL = 4000;
+    static final int WIDTH = 800;
+    static final int HEIGHT = 600;
+
+    public MeshLayoutBenchmark()
+    {
+        NetworkMesh base = NetworkMeshGrid.create(GRID, CELL, 0, 0);
+
+        TestMesh node = new TestMesh();
+        node.setNetworkMesh(base, false);
+        node.layout("full");
+
+        //Split the corner cell with a diagonal
+        NetworkMesh split = new NetworkMesh(base);
+        CyPath2d diag = new CyPath2d();
+        diag.moveTo(0, 0);
+        diag.lineTo(CELL, CELL);
+        split.addEdge(diag, NetworkMeshGrid.createData(0));
+
+        node.setNetworkMesh(split, false);
+        node.layout("split cell");
+
+        TestMesh fresh = new TestMesh();
+        fresh.setNetworkMesh(split, false);
+        fresh.layout("split cell, no reuse");
+        fresh.dispose();
+
+        //Undo the edit
+        node.setNetworkMesh(base, false);
+        node.layout("undo split");
+        node.dispose();
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new MeshLayoutBenchmark();
+    }
+
+    //-----------------------------
+    static class TestMesh extends RavenNodeMesh
+    {
+        final CyGLWrapperSoftware gl = new CyGLWrapperSoftware(WIDTH, HEIGHT, 1);
+        final CyGLContext ctx = new CyGLContext();
+
+        public TestMesh()
+        {
+            super(0);
+        }
+
+        /**
+         * Lay out the mesh and draw it.  Faces are only tessellated
+         * when their buffers are first drawn.
+         */
+        void layout(String name)
+        {
+            long start = System.nanoTime();
+            MeshLayout layout = getFaceSet(FrameKey.DIRECT);
+
+            ctx.processActions(gl);
+            CyDrawGroupZOrder group = new CyDrawGroupZOrder();
+            CyDrawStack stack = new CyDrawStack(WIDTH, HEIGHT, group);
+            CyMatrix4d proj = new CyMatrix4d();
+            proj.gluOrtho2D(0, WIDTH, HEIGHT, 0);
+            stack.setProjXform(proj);
+
+            renderContent(new RenderContext(stack, FrameKey.DIRECT, false));
+            group.render(ctx, gl, null);
+            group.dispose();
+            long time = System.nanoTime() - start;
+
+            System.err.println(name + ": " + (time / 1000000) + "ms"
+                    + " faces " + layout.getNumFacesReused()
+                    + "/" + layout.getNumFaces()
+                    + " edges " + layout.getNumEdgesReused()
+                    + "/" + layout.getNumEdges()
+                    + " batches " + layout.getNumBatchesReused()
+                    + "/" + layout.getNumBatches()
+                    + " reused");
+        }
+
+        void dispose()
+        {
+            gl.dispose();
+        }
+    }
+}
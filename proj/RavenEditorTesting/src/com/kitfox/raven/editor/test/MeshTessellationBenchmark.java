@@ -0,0 +1,177 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.editor.test;
+
+import com.kitfox.coyote.drawRecord.CyDrawGroupZOrder;
+import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.renderer.CyDrawStack;
+import com.kitfox.coyote.renderer.CyGLContext;
+import com.kitfox.coyote.renderer.software.CyGLWrapperSoftware;
+import com.kitfox.raven.core.test.NetworkMeshGrid;
+import com.kitfox.raven.editor.node.scene.RavenNodeMesh;
+import com.kitfox.raven.editor.node.scene.RenderContext;
+import com.kitfox.raven.editor.node.scene.TessellationPool;
+import com.kitfox.raven.shape.network.NetworkMesh;
+import com.kitfox.raven.util.tree.FrameKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Steps through the frames of a morphing mesh, where every face and
+ * stroke changes each frame.  Lays out and draws every frame with
+ * tessellation on the calling thread, on a pool of threads, and in the
+ * background while the previous layout is drawn.  Reports the time
+ * spent per frame and checks that the pool draws the same pixels.
+ *
+ * @author kitfox
+ */
+public class MeshTessellationBenchmark
+{
+    static final int GRID = 12;
+    //Size of a cell in mesh units
+    static final int CELL = 5000;
+    static final int WAVE = CELL / 3;
+    static final int NUM_FRAMES = 12;
+    static final int WIDTH = 640;
+    static final int HEIGHT = 640;
+
+    final ArrayList<NetworkMesh> frames = new ArrayList<NetworkMesh>();
+
+    public MeshTessellationBenchmark()
+    {
+        for (int i = 0; i < NUM_FRAMES; ++i)
+        {
+            frames.add(NetworkMeshGrid.create(GRID, CELL, WAVE, i));
+        }
+
+        int[][] reference = new int[NUM_FRAMES][];
+        //Warm up
+        runTest(null, reference);
+        long timeSeq = runTest(null, reference);
+        System.err.println("sequential: "
+                + (timeSeq / NUM_FRAMES / 1000) + "us/frame");
+
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        TessellationPool pool = new TessellationPool(numThreads);
+        int[][] argb = new int[NUM_FRAMES][];
+        long timePar = runTest(pool, argb);
+        System.err.println("threads: " + numThreads
+                + " time: " + (timePar / NUM_FRAMES / 1000) + "us/frame"
+                + " speedup: " + ((double)timeSeq / timePar)
+                + (Arrays.deepEquals(reference, argb) ? "" : " MISMATCH"));
+
+        runAsync(pool);
+        pool.dispose();
+    }
+
+    /**
+     * @param frameArgb Filled with the pixels of each frame
+     * @return Time taken in nanoseconds
+     */
+    private long runTest(TessellationPool pool, int[][] frameArgb)
+    {
+        TestMesh node = new TestMesh();
+        node.setTessellationPool(pool);
+
+        long time = 0;
+        for (int i = 0; i < NUM_FRAMES; ++i)
+        {
+            node.setNetworkMesh(frames.get(i), false);
+
+            long start = System.nanoTime();
+            node.render();
+            time += System.nanoTime() - start;
+
+            frameArgb[i] = new int[WIDTH * HEIGHT];
+            node.gl.getRGB(frameArgb[i]);
+        }
+
+        node.dispose();
+        return time;
+    }
+
+    /**
+     * Scrub through the frames drawing with layouts built in the
+     * background, and report the longest a single draw took.
+     */
+    private void runAsync(TessellationPool pool)
+    {
+        TestMesh node = new TestMesh();
+        node.setTessellationPool(pool);
+        node.setNetworkMesh(frames.get(0), false);
+        node.render();
+
+        node.setAsyncLayout(true);
+        long worst = 0;
+        long total = 0;
+        int numDraws = 0;
+        for (int i = 1; i < NUM_FRAMES; ++i)
+        {
+            node.setNetworkMesh(frames.get(i), false);
+
+            long start = System.nanoTime();
+            node.render();
+            long time = System.nanoTime() - start;
+            worst = Math.max(worst, time);
+            total += time;
+            ++numDraws;
+        }
+
+        System.err.println("async: " + (total / numDraws / 1000)
+                + "us/frame worst: " + (worst / 1000) + "us");
+        node.dispose();
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new MeshTessellationBenchmark();
+    }
+
+    //-----------------------------
+    static class TestMesh extends RavenNodeMesh
+    {
+        final CyGLWrapperSoftware gl = new CyGLWrapperSoftware(WIDTH, HEIGHT, 1);
+        final CyGLContext ctx = new CyGLContext();
+
+        public TestMesh()
+        {
+            super(0);
+        }
+
+        void render()
+        {
+            ctx.processActions(gl);
+            CyDrawGroupZOrder group = new CyDrawGroupZOrder();
+            CyDrawStack stack = new CyDrawStack(WIDTH, HEIGHT, group);
+            CyMatrix4d proj = new CyMatrix4d();
+            proj.gluOrtho2D(0, WIDTH, HEIGHT, 0);
+            stack.setProjXform(proj);
+
+            renderContent(new RenderContext(stack, FrameKey.DIRECT, false));
+            group.render(ctx, gl, null);
+            group.dispose();
+        }
+
+        void dispose()
+        {
+            gl.dispose();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.editor.test;
+
+import com.kitfox.coyote.drawRecord.CyDrawGroupZOrder;
+import com.kitfox.coyote.math.CyColor4f;
+import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.coyote.renderer.CyDrawStack;
+import com.kitfox.coyote.renderer.CyGLContext;
+import com.kitfox.coyote.renderer.software.CyGLWrapperSoftware;
+import com.kitfox.coyote.shape.CyRectangle2d;
+import com.kitfox.coyote.shape.CyStroke;
+import com.kitfox.raven.editor.RavenDocument;
+import com.kitfox.raven.editor.node.scene.RavenNodeGroup;
+import com.kitfox.raven.editor.node.scene.RavenNodeRectangle;
+import com.kitfox.raven.editor.node.scene.RavenNodeRenderable;
+import com.kitfox.raven.editor.node.scene.RavenNodeSceneGraph;
+import com.kitfox.raven.editor.node.scene.RavenSymbol;
+import com.kitfox.raven.editor.node.scene.RenderContext;
+import com.kitfox.raven.paint.RavenStroke;
+import com.kitfox.raven.paint.common.RavenPaintColor;
+import com.kitfox.raven.util.Intersection;
+import com.kitfox.raven.util.tree.FrameKey;
+import com.kitfox.raven.util.tree.NodeObject;
+import com.kitfox.raven.util.tree.NodeObjectProvider;
+import com.kitfox.raven.util.tree.NodeObjectProviderIndex;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Lays out scenes of rectangles over a large stage and views one
+ * corner of it.  Draws and picks the scene using its bounds tree, and
+ * by visiting every node as the scene graph did before it kept bounds.
+ * Reports the time taken against the size of the scene, and checks
+ * that both ways draw the same pixels and pick the same nodes.
+ *
+ * @author kitfox
+ */
+public class SceneBoundsBenchmark
+{
+    static final int[] SCENE_SIZES = {1000, 4000, 16000};
+    //Distance between rectangles in world units
+    static final int CELL = 100;
+    static final int RECT_SIZE = 80;
+    static final int WIDTH = 256;
+    static final int HEIGHT = 256;
+    //Device pixels per world unit.  About ten cells fit in the view.
+    static final double ZOOM = .256;
+    static final int ROUNDS = 5;
+
+    final CyGLWrapperSoftware gl = new CyGLWrapperSoftware(WIDTH, HEIGHT, 1);
+    final CyGLContext glCtx = new CyGLContext();
+    final CyMatrix4d worldToDevice;
+
+    public SceneBoundsBenchmark()
+    {
+        worldToDevice = CyMatrix4d.createIdentity();
+        worldToDevice.scale(ZOOM, ZOOM, 1);
+
+        for (int i = 0; i < SCENE_SIZES.length; ++i)
+        {
+            runTest(SCENE_SIZES[i]);
+        }
+
+        gl.dispose();
+    }
+
+    private void runTest(int numShapes)
+    {
+        int cols = (int)Math.ceil(Math.sqrt(numShapes));
+        RavenDocument doc = new RavenDocument(null);
+        RavenSymbol sym = RavenSymbol.create(doc);
+        doc.addSymbol(sym);
+        doc.setCurrentSymbol(sym);
+        RavenNodeSceneGraph scene = sym.getRoot().getSceneGraph();
+        ArrayList<RavenNodeGroup> rows = createScene(sym, scene, numShapes, cols);
+
+        long start = System.nanoTime();
+        int numLeaves = scene.getBoundsTree(FrameKey.DIRECT).getNumLeaves();
+        long timeBuild = System.nanoTime() - start;
+
+        int[] argbAll = new int[WIDTH * HEIGHT];
+        int[] argbCull = new int[WIDTH * HEIGHT];
+        //Warm up, and tessellate the shapes in view
+        render(scene, false, argbAll);
+        render(scene, true, argbCull);
+
+        long timeRenderAll = Long.MAX_VALUE;
+        long timeRenderCull = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            timeRenderAll = Math.min(timeRenderAll, render(scene, false, argbAll));
+            timeRenderCull = Math.min(timeRenderCull, render(scene, true, argbCull));
+        }
+        boolean sameRender = Arrays.equals(argbAll, argbCull);
+
+        //Click on a rectangle near the middle of the view, and drag
+        // a marquee over the top left of the view
+        CyRectangle2d click = new CyRectangle2d(
+                5.5 * CELL * ZOOM, 5.5 * CELL * ZOOM, 2, 2);
+        CyRectangle2d marquee = new CyRectangle2d(0, 0, WIDTH / 2, HEIGHT / 2);
+
+        long timePickAll = Long.MAX_VALUE;
+        long timePickCull = Long.MAX_VALUE;
+        long timeMarqueeAll = Long.MAX_VALUE;
+        long timeMarqueeCull = Long.MAX_VALUE;
+        boolean samePick = true;
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            start = System.nanoTime();
+            RavenNodeRenderable pickAll = pickAll(scene, click);
+            timePickAll = Math.min(timePickAll, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            RavenNodeRenderable pickCull = scene.pickObject(click,
+                    FrameKey.DIRECT, worldToDevice, Intersection.INTERSECTS);
+            timePickCull = Math.min(timePickCull, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            ArrayList<NodeObject> listAll = marqueeAll(scene, marquee);
+            timeMarqueeAll = Math.min(timeMarqueeAll, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            ArrayList<NodeObject> listCull = new ArrayList<NodeObject>();
+            scene.pickObjects(marquee, FrameKey.DIRECT, worldToDevice,
+                    Intersection.CONTAINS, listCull);
+            timeMarqueeCull = Math.min(timeMarqueeCull, System.nanoTime() - start);
+
+            samePick &= pickAll != null && pickAll == pickCull
+                    && !listAll.isEmpty() && listAll.equals(listCull);
+        }
+
+        //Move one row across the view and pick again
+        RavenNodeGroup row = rows.get(2);
+        row.transX.setValue(-CELL * 3f, false);
+        start = System.nanoTime();
+        RavenNodeRenderable pickMoved = scene.pickObject(click,
+                FrameKey.DIRECT, worldToDevice, Intersection.INTERSECTS);
+        long timeUpdate = System.nanoTime() - start;
+        samePick &= pickMoved == pickAll(scene, click);
+
+        System.err.println("shapes: " + numLeaves
+                + " build tree " + (timeBuild / 1000) + "us"
+                + " pick after move " + (timeUpdate / 1000) + "us");
+        System.err.println("  all nodes: render " + (timeRenderAll / 1000) + "us"
+                + " pick " + (timePickAll / 1000) + "us"
+                + " marquee " + (timeMarqueeAll / 1000) + "us");
+        System.err.println("  bounds tree: render " + (timeRenderCull / 1000) + "us"
+                + " pick " + (timePickCull / 1000) + "us"
+                + " marquee " + (timeMarqueeCull / 1000) + "us"
+                + (sameRender ? "" : " RENDER MISMATCH")
+                + (samePick ? "" : " PICK MISMATCH"));
+    }
+
+    /**
+     * @return Time taken in nanoseconds
+     */
+    private long render(RavenNodeSceneGraph scene, boolean cull, int[] argb)
+    {
+        glCtx.processActions(gl);
+
+        long start = System.nanoTime();
+        CyDrawGroupZOrder group = new CyDrawGroupZOrder();
+        CyDrawStack stack = new CyDrawStack(WIDTH, HEIGHT, group);
+        CyMatrix4d proj = new CyMatrix4d();
+        proj.gluOrtho2D(0, WIDTH, HEIGHT, 0);
+        stack.setProjXform(proj);
+        stack.setModelXform(worldToDevice);
+
+        RenderContext ctx = new RenderContext(stack, FrameKey.DIRECT, false);
+        if (cull)
+        {
+            scene.render(ctx);
+        }
+        else
+        {
+            //Visit every node, as the scene graph did before
+            stack.pushFrame(null);
+            for (int i = 0; i < scene.children.size(); ++i)
+            {
+                scene.children.get(i).render(ctx);
+            }
+            stack.popFrame();
+        }
+
+        group.render(glCtx, gl, null);
+        group.dispose();
+        long time = System.nanoTime() - start;
+
+        gl.getRGB(argb);
+        return time;
+    }
+
+    private RavenNodeRenderable pickAll(RavenNodeSceneGraph scene,
+            CyRectangle2d rect)
+    {
+        for (int i = 0; i < scene.children.size(); ++i)
+        {
+            RavenNodeRenderable node = scene.children.get(i).pickObject(
+                    rect, FrameKey.DIRECT, worldToDevice, Intersection.INTERSECTS);
+            if (node != null)
+            {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private ArrayList<NodeObject> marqueeAll(RavenNodeSceneGraph scene,
+            CyRectangle2d rect)
+    {
+        ArrayList<NodeObject> list = new ArrayList<NodeObject>();
+        for (int i = 0; i < scene.children.size(); ++i)
+        {
+            scene.children.get(i).pickObjects(rect, FrameKey.DIRECT,
+                    worldToDevice, Intersection.CONTAINS, list);
+        }
+        return list;
+    }
+
+    /**
+     * A grid of stroked rectangles, one group per row
+     */
+    private ArrayList<RavenNodeGroup> createScene(RavenSymbol sym,
+            RavenNodeSceneGraph scene, int numShapes, int cols)
+    {
+        NodeObjectProvider<RavenNodeGroup> groupProv =
+                NodeObjectProviderIndex.inst().getProvider(RavenNodeGroup.class);
+        NodeObjectProvider<RavenNodeRectangle> rectProv =
+                NodeObjectProviderIndex.inst().getProvider(RavenNodeRectangle.class);
+        RavenStroke stroke = new RavenStroke(new CyStroke(4));
+        RavenPaintColor strokePaint = new RavenPaintColor(CyColor4f.BLACK);
+
+        ArrayList<RavenNodeGroup> rows = new ArrayList<RavenNodeGroup>();
+        sym.beginBulkUpdate();
+        for (int i = 0; i < numShapes; ++i)
+        {
+            int col = i % cols;
+            if (col == 0)
+            {
+                RavenNodeGroup row = groupProv.createNode(sym);
+                row.transY.setValue((float)(rows.size() * CELL), false);
+                scene.children.add(row);
+                rows.add(row);
+            }
+
+            RavenNodeRectangle rect = rectProv.createNode(sym);
+            rect.transX.setValue((float)(col * CELL), false);
+            rect.width.setValue((float)RECT_SIZE, false);
+            rect.height.setValue((float)RECT_SIZE, false);
+            rect.paint.setValue(new RavenPaintColor(
+                    (i % 7) / 7f, (i % 5) / 5f, .5f), false);
+            rect.stroke.setValue(stroke, false);
+            rect.strokePaint.setValue(strokePaint, false);
+            rows.get(rows.size() - 1).children.add(rect);
+        }
+        sym.commitBulkUpdate();
+        return rows;
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new SceneBoundsBenchmark();
+    }
+}
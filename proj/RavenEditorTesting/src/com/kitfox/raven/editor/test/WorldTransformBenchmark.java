@@ -0,0 +1,274 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.editor.test;
+
+import com.kitfox.coyote.math.CyMatrix4d;
+import com.kitfox.raven.editor.RavenDocument;
+import com.kitfox.raven.editor.node.scene.RavenNodeGroup;
+import com.kitfox.raven.editor.node.scene.RavenNodeRectangle;
+import com.kitfox.raven.editor.node.scene.RavenNodeRenderable;
+import com.kitfox.raven.editor.node.scene.RavenNodeSceneGraph;
+import com.kitfox.raven.editor.node.scene.RavenSymbol;
+import com.kitfox.raven.util.tree.ChildWrapper;
+import com.kitfox.raven.util.tree.FrameKey;
+import com.kitfox.raven.util.tree.NodeObject;
+import com.kitfox.raven.util.tree.NodeObjectProvider;
+import com.kitfox.raven.util.tree.NodeObjectProviderIndex;
+import com.kitfox.raven.util.tree.PropertyDataInline;
+import com.kitfox.raven.util.tree.TrackKey;
+import java.util.ArrayList;
+
+/**
+ * Builds rigs of nested groups, each holding a few rectangles, and
+ * asks for the world transform of every rectangle the way a pick or
+ * drag does.  Reports the time taken against the depth of the rig,
+ * compared to multiplying up through the parents on every call as
+ * was done before world transforms were cached.  Checks that cached
+ * transforms follow edits and keyed frames, and that stepping through
+ * frames keeps the transforms cached at keyed frames.
+ *
+ * @author kitfox
+ */
+public class WorldTransformBenchmark
+{
+    static final int[] DEPTHS = {4, 16, 64};
+    static final int SHAPES_PER_GROUP = 4;
+    static final int CALLS = 20;
+    static final int ROUNDS = 5;
+    static final int ANIM_FRAME = 10;
+
+    public WorldTransformBenchmark()
+    {
+        for (int i = 0; i < DEPTHS.length; ++i)
+        {
+            runTest(DEPTHS[i]);
+        }
+    }
+
+    private void runTest(int depth)
+    {
+        RavenDocument doc = new RavenDocument(null);
+        RavenSymbol sym = RavenSymbol.create(doc);
+        doc.addSymbol(sym);
+        doc.setCurrentSymbol(sym);
+        RavenNodeSceneGraph scene = sym.getRoot().getSceneGraph();
+
+        ArrayList<RavenNodeGroup> groups = new ArrayList<RavenNodeGroup>();
+        ArrayList<RavenNodeRenderable> shapes = new ArrayList<RavenNodeRenderable>();
+        createRig(sym, scene, depth, groups, shapes);
+
+        CyMatrix4d result = new CyMatrix4d();
+        long timeOld = Long.MAX_VALUE;
+        long timeCached = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            long start = System.nanoTime();
+            for (int call = 0; call < CALLS; ++call)
+            {
+                for (int i = 0; i < shapes.size(); ++i)
+                {
+                    multiplyToWorld(shapes.get(i), FrameKey.DIRECT, result);
+                }
+            }
+            timeOld = Math.min(timeOld, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int call = 0; call < CALLS; ++call)
+            {
+                for (int i = 0; i < shapes.size(); ++i)
+                {
+                    shapes.get(i).getLocalToWorldTransform(FrameKey.DIRECT, result);
+                }
+            }
+            timeCached = Math.min(timeCached, System.nanoTime() - start);
+        }
+        boolean same = matches(shapes, FrameKey.DIRECT);
+
+        //Move the top of the rig.  Every cached transform below it
+        // must be rebuilt.
+        long start = System.nanoTime();
+        groups.get(0).rotation.setValue(30f, false);
+        for (int i = 0; i < shapes.size(); ++i)
+        {
+            shapes.get(i).getLocalToWorldTransform(FrameKey.DIRECT, result);
+        }
+        long timeMoveTop = System.nanoTime() - start;
+        same &= matches(shapes, FrameKey.DIRECT);
+
+        //Move the bottom.  Only the last group's shapes change.
+        start = System.nanoTime();
+        groups.get(groups.size() - 1).transX.setValue(15f, false);
+        for (int i = 0; i < shapes.size(); ++i)
+        {
+            shapes.get(i).getLocalToWorldTransform(FrameKey.DIRECT, result);
+        }
+        long timeMoveBottom = System.nanoTime() - start;
+        same &= matches(shapes, FrameKey.DIRECT);
+
+        //Key a group in the middle and look at a later frame
+        FrameKey frame = new FrameKey(ANIM_FRAME);
+        for (int i = 0; i < shapes.size(); ++i)
+        {
+            shapes.get(i).getLocalToWorldTransform(frame, result);
+        }
+        groups.get(groups.size() / 2).scaleX.setKeyAt(ANIM_FRAME,
+                new PropertyDataInline<Float>(2f),
+                TrackKey.Interp.LINEAR, 0, 0, 0, 0);
+        same &= matches(shapes, frame) && matches(shapes, FrameKey.DIRECT);
+
+        //Step through the animation as playback does.  Only the direct
+        // transforms change, so the keyed frame should stay cached.
+        groups.get(groups.size() / 2).scaleX.setKeyAt(0,
+                new PropertyDataInline<Float>(1f),
+                TrackKey.Interp.LINEAR, 0, 0, 0, 0);
+        for (int i = 0; i < shapes.size(); ++i)
+        {
+            shapes.get(i).getLocalToWorldTransform(frame, result);
+        }
+        start = System.nanoTime();
+        for (int f = 0; f <= ANIM_FRAME; ++f)
+        {
+            sym.synchToFrame(f);
+            for (int i = 0; i < shapes.size(); ++i)
+            {
+                shapes.get(i).getLocalToWorldTransform(FrameKey.DIRECT, result);
+            }
+        }
+        long timeStep = (System.nanoTime() - start) / (ANIM_FRAME + 1);
+        int kept = 0;
+        for (int i = 0; i < shapes.size(); ++i)
+        {
+            if (shapes.get(i).isWorldTransformCached(frame))
+            {
+                ++kept;
+            }
+        }
+        same &= kept == shapes.size();
+        same &= matches(shapes, frame) && matches(shapes, FrameKey.DIRECT);
+
+        //Move a shape to another group
+        RavenNodeRenderable shape = shapes.get(shapes.size() - 1);
+        groups.get(groups.size() - 1).children.remove((RavenNodeRectangle)shape);
+        groups.get(0).children.add((RavenNodeRectangle)shape);
+        same &= matches(shapes, FrameKey.DIRECT) && matches(shapes, frame);
+
+        System.err.println("depth: " + depth + " shapes: " + shapes.size()
+                + (same ? "" : " MISMATCH"));
+        System.err.println("  world transform: multiplied " + (timeOld / 1000) + "us"
+                + " cached " + (timeCached / 1000) + "us"
+                + " (" + (CALLS * shapes.size()) + " calls)");
+        System.err.println("  after move: top " + (timeMoveTop / 1000) + "us"
+                + " bottom " + (timeMoveBottom / 1000) + "us");
+        System.err.println("  frame step: " + (timeStep / 1000) + "us"
+                + " keyed frame kept " + kept + "/" + shapes.size());
+    }
+
+    /**
+     * World transform found by multiplying through every parent
+     */
+    private void multiplyToWorld(RavenNodeRenderable node, FrameKey frame,
+            CyMatrix4d result)
+    {
+        ChildWrapper<?, ?> parent = node.getParent();
+        NodeObject parentNode = parent == null ? null : parent.getNode();
+        if (parentNode instanceof RavenNodeRenderable)
+        {
+            multiplyToWorld((RavenNodeRenderable)parentNode, frame, result);
+        }
+        else
+        {
+            result.setIdentity();
+        }
+        result.mul(node.getLocalToParentTransform(frame, null));
+    }
+
+    private boolean matches(ArrayList<RavenNodeRenderable> shapes,
+            FrameKey frame)
+    {
+        CyMatrix4d expect = new CyMatrix4d();
+        CyMatrix4d cached = new CyMatrix4d();
+        CyMatrix4d inverse = new CyMatrix4d();
+        for (int i = 0; i < shapes.size(); ++i)
+        {
+            RavenNodeRenderable shape = shapes.get(i);
+            multiplyToWorld(shape, frame, expect);
+            shape.getLocalToWorldTransform(frame, cached);
+            if (!expect.equals(cached))
+            {
+                return false;
+            }
+
+            shape.getWorldToLocalTransform(frame, inverse);
+            inverse.mul(cached);
+            if (!inverse.epsilonEquals(CyMatrix4d.createIdentity(), 1e-6))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A chain of groups, each turned a little from its parent
+     */
+    private void createRig(RavenSymbol sym, RavenNodeSceneGraph scene,
+            int depth, ArrayList<RavenNodeGroup> groups,
+            ArrayList<RavenNodeRenderable> shapes)
+    {
+        NodeObjectProvider<RavenNodeGroup> groupProv =
+                NodeObjectProviderIndex.inst().getProvider(RavenNodeGroup.class);
+        NodeObjectProvider<RavenNodeRectangle> rectProv =
+                NodeObjectProviderIndex.inst().getProvider(RavenNodeRectangle.class);
+
+        sym.beginBulkUpdate();
+        for (int i = 0; i < depth; ++i)
+        {
+            RavenNodeGroup group = groupProv.createNode(sym);
+            group.transX.setValue(20f, false);
+            group.rotation.setValue(5f, false);
+            group.scaleX.setValue(1.01f, false);
+            if (groups.isEmpty())
+            {
+                scene.children.add(group);
+            }
+            else
+            {
+                groups.get(groups.size() - 1).children.add(group);
+            }
+            groups.add(group);
+
+            for (int j = 0; j < SHAPES_PER_GROUP; ++j)
+            {
+                RavenNodeRectangle rect = rectProv.createNode(sym);
+                rect.transY.setValue(j * 10f, false);
+                rect.width.setValue(8f, false);
+                rect.height.setValue(8f, false);
+                group.children.add(rect);
+                shapes.add(rect);
+            }
+        }
+        sym.commitBulkUpdate();
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args)
+    {
+        new WorldTransformBenchmark();
+    }
+}
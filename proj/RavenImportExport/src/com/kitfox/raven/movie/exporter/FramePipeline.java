@@ -0,0 +1,436 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.raven.movie.exporter;
+
+import com.kitfox.coyote.drawRecord.CyDrawGroupZOrder;
+import com.kitfox.coyote.math.BufferUtil;
+import com.kitfox.raven.editor.node.scene.RavenNodeComposition;
+import com.kitfox.raven.util.tree.FrameKey;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders and encodes a list of frames on several threads at once.
+ *
+ * <p>Each frame passes through four stages: evaluating the composition
+ * to build a draw list, rendering it, converting the pixels to an
+ * image and encoding the image.  Each stage has its own thread pool
+ * and is fed by a bounded queue, so a slow stage holds back the ones
+ * before it instead of letting frames pile up in memory.</p>
+ *
+ * <p>The document cannot be read from several threads at once, so
+ * frames are evaluated on a single thread.  When the software renderer
+ * is used, each render thread draws into its own surface.  A pbuffer
+ * is only drawn to from one thread.</p>
+ *
+ * <p>Frames are returned by {@link #take()} in the order they were
+ * listed, whatever order they finish in.</p>
+ *
+ * @author kitfox
+ */
+public class FramePipeline
+{
+    final RavenNodeComposition composition;
+    final FrameKey[] frames;
+    final boolean hasAlpha;
+    final FrameEncoder encoder;
+    final int width;
+    final int height;
+
+    final ArrayList<MovieCapture> captures = new ArrayList<MovieCapture>();
+    final BlockingQueue<Job> renderQueue;
+    final BlockingQueue<Job> convertQueue;
+    final BlockingQueue<Job> encodeQueue;
+    //Limits frames between evaluation and take()
+    final Semaphore inFlight;
+    final ConcurrentLinkedQueue<ByteBuffer> pixelPool =
+            new ConcurrentLinkedQueue<ByteBuffer>();
+
+    final ExecutorService evaluatePool;
+    final ExecutorService renderPool;
+    final ExecutorService convertPool;
+    final ExecutorService encodePool;
+
+    //Guarded by this
+    final HashMap<Integer, Job> finished = new HashMap<Integer, Job>();
+    int nextFrame;
+    Throwable failure;
+    boolean disposed;
+
+    /**
+     * Create a pipeline that uses one thread per processor for each
+     * stage that can run in parallel.
+     */
+    public FramePipeline(RavenNodeComposition comp, FrameKey[] frames,
+            boolean hasAlpha, FrameEncoder encoder)
+    {
+        this(comp, frames, hasAlpha, encoder,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param comp Composition to render
+     * @param frames Frames to render, in the order they will be returned
+     * @param hasAlpha Passed to {@link MovieCapture#toImage}
+     * @param encoder Encodes frames once they are converted
+     * @param numThreads Number of threads used by each parallel stage
+     */
+    public FramePipeline(RavenNodeComposition comp, FrameKey[] frames,
+            boolean hasAlpha, FrameEncoder encoder, int numThreads)
+    {
+        this.composition = comp;
+        this.frames = frames;
+        this.hasAlpha = hasAlpha;
+        this.encoder = encoder;
+        this.width = comp.getWidth();
+        this.height = comp.getHeight();
+
+        numThreads = Math.max(numThreads, 1);
+        int queueSize = numThreads * 2;
+        renderQueue = new ArrayBlockingQueue<Job>(queueSize);
+        convertQueue = new ArrayBlockingQueue<Job>(queueSize);
+        encodeQueue = new ArrayBlockingQueue<Job>(queueSize);
+        //Room for every queue and worker to be busy
+        inFlight = new Semaphore(queueSize * 3 + numThreads * 3 + 1);
+
+        //Frames are spread across render threads rather than rasterized
+        // with several threads each
+        MovieCapture capture = new MovieCapture(comp, 1);
+        captures.add(capture);
+        if (capture.isSoftware())
+        {
+            for (int i = 1; i < numThreads; ++i)
+            {
+                captures.add(new MovieCapture(comp, 1));
+            }
+        }
+
+        evaluatePool = createPool(1, "Frame evaluate");
+        renderPool = createPool(captures.size(), "Frame render");
+        convertPool = createPool(numThreads, "Frame convert");
+        encodePool = createPool(numThreads, "Frame encode");
+
+        evaluatePool.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                evaluate();
+            }
+        });
+        for (int i = 0; i < captures.size(); ++i)
+        {
+            final MovieCapture renderCapture = captures.get(i);
+            renderPool.execute(new Stage(renderQueue, convertQueue)
+            {
+                @Override
+                void process(Job job)
+                {
+                    ByteBuffer pixels = pixelPool.poll();
+                    if (pixels == null)
+                    {
+                        pixels = BufferUtil.allocateByte(width * height * 4);
+                    }
+                    renderCapture.render(job.drawgroup, pixels);
+                    job.drawgroup = null;
+                    job.pixels = pixels;
+                }
+            });
+        }
+        for (int i = 0; i < numThreads; ++i)
+        {
+            convertPool.execute(new Stage(convertQueue, encodeQueue)
+            {
+                @Override
+                void process(Job job)
+                {
+                    job.pixels.rewind();
+                    job.image = MovieCapture.toImage(job.pixels,
+                            width, height, FramePipeline.this.hasAlpha);
+                    pixelPool.add(job.pixels);
+                    job.pixels = null;
+                }
+            });
+            encodePool.execute(new Stage(encodeQueue, null)
+            {
+                @Override
+                void process(Job job) throws IOException
+                {
+                    job.data = FramePipeline.this.encoder.encode(
+                            job.key, job.image);
+                    job.image = null;
+                }
+            });
+        }
+    }
+
+    private static ExecutorService createPool(int numThreads,
+            final String name)
+    {
+        return Executors.newFixedThreadPool(numThreads,
+                new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private void evaluate()
+    {
+        try
+        {
+            for (int i = 0; i < frames.length; ++i)
+            {
+                inFlight.acquire();
+                CyDrawGroupZOrder drawgroup =
+                        captures.get(0).buildDrawlist(frames[i]);
+                renderQueue.put(new Job(i, frames[i], drawgroup));
+            }
+        } catch (InterruptedException ex)
+        {
+            //Disposed
+        } catch (Throwable ex)
+        {
+            fail(ex);
+        }
+    }
+
+    private synchronized void finish(Job job)
+    {
+        finished.put(job.index, job);
+        notifyAll();
+    }
+
+    private synchronized void fail(Throwable ex)
+    {
+        if (failure == null)
+        {
+            failure = ex;
+        }
+        notifyAll();
+    }
+
+    public int getNumFrames()
+    {
+        return frames.length;
+    }
+
+    /**
+     * Wait for the next frame to be encoded.
+     *
+     * @return The next frame, or null if all frames have been returned
+     * @throws IOException If any frame could not be rendered or encoded
+     */
+    public synchronized EncodedFrame take() throws IOException
+    {
+        if (nextFrame >= frames.length || disposed)
+        {
+            return null;
+        }
+
+        Job job;
+        while ((job = finished.remove(nextFrame)) == null)
+        {
+            if (disposed)
+            {
+                return null;
+            }
+            if (failure != null)
+            {
+                if (failure instanceof IOException)
+                {
+                    throw (IOException)failure;
+                }
+                throw new IOException(failure);
+            }
+
+            try
+            {
+                wait();
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            }
+        }
+
+        ++nextFrame;
+        inFlight.release();
+        return new EncodedFrame(job.key, job.data);
+    }
+
+    /**
+     * Stop all threads and release rendering resources.  Frames that
+     * have not been taken yet are dropped.
+     */
+    public void dispose()
+    {
+        synchronized (this)
+        {
+            if (disposed)
+            {
+                return;
+            }
+            disposed = true;
+            notifyAll();
+        }
+
+        evaluatePool.shutdownNow();
+        renderPool.shutdownNow();
+        convertPool.shutdownNow();
+        encodePool.shutdownNow();
+
+        try
+        {
+            //Captures cannot be freed while a frame is being drawn
+            renderPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        for (int i = 0; i < captures.size(); ++i)
+        {
+            captures.get(i).dispose();
+        }
+    }
+
+    //-----------------------------
+    /**
+     * Turns a frame into the bytes the exporter needs.  Called from
+     * several threads at once.
+     */
+    public static interface FrameEncoder
+    {
+        /**
+         * @return Encoded frame, or null if the encoder saves the
+         * frame itself
+         */
+        public byte[] encode(FrameKey key, BufferedImage img)
+                throws IOException;
+    }
+
+    //-----------------------------
+    public static class EncodedFrame
+    {
+        private final FrameKey key;
+        private final byte[] data;
+
+        public EncodedFrame(FrameKey key, byte[] data)
+        {
+            this.key = key;
+            this.data = data;
+        }
+
+        /**
+         * @return the key
+         */
+        public FrameKey getKey()
+        {
+            return key;
+        }
+
+        /**
+         * @return the data
+         */
+        public byte[] getData()
+        {
+            return data;
+        }
+    }
+
+    //-----------------------------
+    static class Job
+    {
+        final int index;
+        final FrameKey key;
+        CyDrawGroupZOrder drawgroup;
+        ByteBuffer pixels;
+        BufferedImage image;
+        byte[] data;
+
+        public Job(int index, FrameKey key, CyDrawGroupZOrder drawgroup)
+        {
+            this.index = index;
+            this.key = key;
+            this.drawgroup = drawgroup;
+        }
+    }
+
+    //-----------------------------
+    /**
+     * Worker that moves jobs from one queue to the next until its pool
+     * is shut down
+     */
+    abstract class Stage implements Runnable
+    {
+        final BlockingQueue<Job> source;
+        //If null, jobs are finished
+        final BlockingQueue<Job> dest;
+
+        public Stage(BlockingQueue<Job> source, BlockingQueue<Job> dest)
+        {
+            this.source = source;
+            this.dest = dest;
+        }
+
+        abstract void process(Job job) throws IOException;
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    Job job = source.take();
+                    process(job);
+                    if (dest == null)
+                    {
+                        finish(job);
+                    }
+                    else
+                    {
+                        dest.put(job);
+                    }
+                }
+            } catch (InterruptedException ex)
+            {
+                //Disposed
+            } catch (Throwable ex)
+            {
+                fail(ex);
+            }
+        }
+    }
+}
@@ -57,6 +57,7 @@ public class ImageDataSource extends PullBufferDataSource
     @Override
     public void disconnect()
     {
+        imgStream.dispose();
     }
 
     @Override
@@ -43,14 +43,11 @@ public class ImageSourceStream
     VideoFormat format;
     int width;
     int height;
-    int frameCur;
-    int frameEnd;
-    int frameStride;
     float frameRate;
     int trackUid;
     
     MovieExporterContext ctx;
-    MovieCapture capture;
+    FramePipeline pipeline;
 
     boolean finished = false;
     
@@ -63,23 +60,22 @@ public class ImageSourceStream
         width = comp.getWidth();
         height = comp.getHeight();
         
-        this.capture = new MovieCapture(comp);
+        this.pipeline = new FramePipeline(comp, ctx.getExportFrames(), false,
+                new FramePipeline.FrameEncoder()
+        {
+            @Override
+            public byte[] encode(FrameKey key, BufferedImage img)
+                    throws IOException
+            {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                ImageIO.write(img, "jpg", baos);
+                return baos.toByteArray();
+            }
+        });
         
         frameRate = sym.getRoot().getTrackLibrary().getFps();
 //        trackUid = sym.getRoot().getTrackLibrary().getCurTrackUid();
         
-        if (ctx.isFrameCur())
-        {
-            frameCur = frameEnd = sym.getRoot().getTrackLibrary().getFrameCur();
-            frameStride = 1;
-        }
-        else
-        {
-            frameCur = ctx.getFrameStart();
-            frameEnd = ctx.getFrameEnd();
-            frameStride = ctx.getFrameStride();
-        }
-        
         
         format = new VideoFormat(VideoFormat.JPEG,
                 new Dimension(comp.getWidth(), comp.getHeight()),
@@ -97,29 +93,26 @@ public class ImageSourceStream
     @Override
     public void read(Buffer buffer) throws IOException
     {
-        if (frameCur > frameEnd)
+        FramePipeline.EncodedFrame frame = null;
+        try
+        {
+            frame = pipeline.take();
+        } catch (IOException ex)
+        {
+            Logger.getLogger(MovieExporterContext.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        if (frame == null)
         {
             // We are done.  Set EndOfMedia.
             buffer.setEOM(true);
             buffer.setOffset(0);
             buffer.setLength(0);
-            finished = true;
+            dispose();
             return;
         }
 
-        BufferedImage img = capture.getImage(new FrameKey(frameCur), false);
-        frameCur += frameStride;
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try
-        {
-            ImageIO.write(img, "jpg", baos);
-        } catch (IOException ex)
-        {
-            Logger.getLogger(MovieExporterContext.class.getName()).log(Level.SEVERE, null, ex);
-        }
-
-        byte[] imageBytes = baos.toByteArray();
+        byte[] imageBytes = frame.getData();
 
         buffer.setOffset(0);
         buffer.setLength(imageBytes.length);
@@ -129,6 +122,16 @@ public class ImageSourceStream
         buffer.setData(imageBytes);
     }
 
+    /**
+     * Stop rendering frames.  Called once the last frame is read, or
+     * when the stream is abandoned.
+     */
+    public void dispose()
+    {
+        finished = true;
+        pipeline.dispose();
+    }
+
     @Override
     public ContentDescriptor getContentDescriptor()
     {
@@ -22,10 +22,13 @@ import com.kitfox.coyote.renderer.CyDrawStack;
 import com.kitfox.coyote.renderer.CyGLContext;
 import com.kitfox.coyote.renderer.CyGLWrapper;
 import com.kitfox.coyote.renderer.jogl.CyGLWrapperJOGL;
+import com.kitfox.coyote.renderer.software.CyGLWrapperSoftware;
 import com.kitfox.raven.editor.node.scene.RavenNodeComposition;
 import com.kitfox.raven.editor.node.scene.RenderContext;
 import com.kitfox.raven.util.tree.FrameKey;
+import java.awt.GraphicsEnvironment;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.nio.ByteBuffer;
 import javax.media.nativewindow.AbstractGraphicsDevice;
 import javax.media.opengl.DefaultGLCapabilitiesChooser;
@@ -35,9 +38,15 @@ import javax.media.opengl.GLContext;
 import javax.media.opengl.GLDrawableFactory;
 import javax.media.opengl.GLPbuffer;
 import javax.media.opengl.GLProfile;
-import javax.swing.JOptionPane;
 
 /**
+ * Renders frames of a composition offscreen.  A pbuffer is used when
+ * one can be created.  Otherwise, such as on machines without a
+ * display, frames are drawn with the software renderer.
+ *
+ * <p>Building the draw list for a frame, rendering it and converting
+ * the pixels to an image can be called separately so that
+ * {@link FramePipeline} can run them on different threads.</p>
  *
  * @author kitfox
  */
@@ -49,8 +58,19 @@ public class MovieCapture
     CyGLContext glContext;
     ByteBuffer buf;
     GLPbuffer drawable;
+    CyGLWrapperSoftware softGL;
     
     public MovieCapture(RavenNodeComposition comp)
+    {
+        this(comp, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param comp Composition to render
+     * @param softwareThreads Number of threads to rasterize with if
+     * the software renderer is used
+     */
+    public MovieCapture(RavenNodeComposition comp, int softwareThreads)
     {
         this.composition = comp;
         this.width = comp.getWidth();
@@ -58,13 +78,17 @@ public class MovieCapture
         buf = BufferUtil.allocateByte(width * height * 4);
         glContext = new CyGLContext();
 
+        if (GraphicsEnvironment.isHeadless())
+        {
+            softGL = new CyGLWrapperSoftware(width, height, softwareThreads);
+            return;
+        }
+
         GLDrawableFactory fact = GLDrawableFactory.getDesktopFactory();
         
         if (!fact.canCreateGLPbuffer(null))
         {
-            JOptionPane.showMessageDialog(comp.getSymbol().getDocument().getEnv().getSwingRoot(),
-                "Cannot create pbuffer to accellerate offscreen rendering", 
-                "Error", JOptionPane.ERROR_MESSAGE);
+            softGL = new CyGLWrapperSoftware(width, height, softwareThreads);
             return;
         }
         
@@ -80,11 +104,37 @@ public class MovieCapture
                 null);
         
     }
-    
-    private void buildImageBytes(FrameKey key)
+
+    /**
+     * @return true if frames are drawn with the software renderer
+     */
+    public boolean isSoftware()
     {
-        CyDrawGroupZOrder drawgroup = buildDrawlist(key);
-        
+        return softGL != null;
+    }
+
+    /**
+     * Draw a frame and read back its pixels.
+     *
+     * @param drawgroup Draw list for the frame.  It is disposed once
+     * drawn.
+     * @param pixels Receives width * height RGBA pixels, bottom row
+     * first
+     */
+    public void render(CyDrawGroupZOrder drawgroup, ByteBuffer pixels)
+    {
+        if (softGL != null)
+        {
+            drawgroup.render(glContext, softGL, drawgroup);
+
+            pixels.rewind();
+            softGL.glReadPixels(0, 0, width, height, 
+                    CyGLWrapper.ReadPixelsFormat.GL_RGBA, 
+                    CyGLWrapper.DataType.GL_UNSIGNED_BYTE, pixels);
+            drawgroup.dispose();
+            return;
+        }
+
         GLContext context = drawable.getContext();
         context.makeCurrent();
         
@@ -93,49 +143,84 @@ public class MovieCapture
         
         drawgroup.render(glContext, glWrap, drawgroup);
 
-        buf.rewind();
+        pixels.rewind();
         glWrap.glReadPixels(0, 0, width, height, 
                 CyGLWrapper.ReadPixelsFormat.GL_RGBA, 
-                CyGLWrapper.DataType.GL_UNSIGNED_BYTE, buf);
+                CyGLWrapper.DataType.GL_UNSIGNED_BYTE, pixels);
 
         context.release();
         drawgroup.dispose();
     }
 
+    /**
+     * Release rendering resources.  The capture should not be used
+     * afterwards.
+     */
+    public void dispose()
+    {
+        if (softGL != null)
+        {
+            softGL.dispose();
+        }
+        if (drawable != null)
+        {
+            drawable.destroy();
+        }
+    }
+
     public BufferedImage getImage(FrameKey key, boolean hasAlpha)
     {
-        buildImageBytes(key);
-        
+        render(buildDrawlist(key), buf);
+        return toImage(buf, width, height, hasAlpha);
+    }
+
+    /**
+     * Convert pixels read back by {@link #render} into an image.
+     * Frames are always written opaque.
+     */
+    public static BufferedImage toImage(ByteBuffer pixels,
+            int width, int height, boolean hasAlpha)
+    {
         BufferedImage img = new BufferedImage(
                 width, height, 
                 hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
-        
+        int[] data = ((DataBufferInt)img.getRaster().getDataBuffer()).getData();
+
+        int base = pixels.position();
         for (int j = 0; j < height; ++j)
         {
+            //GL rows start at the bottom
+            int src = base + j * width * 4;
+            int dst = (height - j - 1) * width;
             for (int i = 0; i < width; ++i)
             {
-                byte r = buf.get();
-                byte g = buf.get();
-                byte b = buf.get();
-                byte a = buf.get();
-                if (hasAlpha)
-                {
-                    a = -1;
-                }
-
-                int rgba = ((a & 0xff) << 24) 
-                        | ((r & 0xff) << 16) 
-                        | ((g & 0xff) << 8) 
-                        | (b & 0xff);
-
-                img.setRGB(i, (height - j - 1), rgba);
+                int p = src + i * 4;
+                data[dst + i] = 0xff000000
+                        | ((pixels.get(p) & 0xff) << 16) 
+                        | ((pixels.get(p + 1) & 0xff) << 8) 
+                        | (pixels.get(p + 2) & 0xff);
             }
         }
 
         return img;
     }
 
-    private CyDrawGroupZOrder buildDrawlist(FrameKey key)
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Evaluate the composition at a frame and build its draw list.
+     * This reads the document, so it should only be called from one
+     * thread at a time.
+     */
+    public CyDrawGroupZOrder buildDrawlist(FrameKey key)
     {
         CyDrawGroupZOrder drawGroup = new CyDrawGroupZOrder();
         
@@ -23,6 +23,7 @@ import com.kitfox.raven.util.tree.NodeSymbol;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -157,35 +158,59 @@ public class MovieExporterContext
             return;
         }
 
-        MovieCapture capture = new MovieCapture(composition);
+        FramePipeline pipeline = new FramePipeline(composition,
+                getExportFrames(), true,
+                new FramePipeline.FrameEncoder()
+        {
+            @Override
+            public byte[] encode(FrameKey key, BufferedImage img)
+                    throws IOException
+            {
+                String frameStrn = "" + key.getAnimFrame();
+                while (frameStrn.length() < framesNumberPadding)
+                {
+                    frameStrn = "0" + frameStrn;
+                }
+
+                File fileOut = new File(fileDir, 
+                        framesPrefix + "_" + frameStrn + "." + framesImageFormat);
+                ImageIO.write(img, framesImageFormat, fileOut);
+                return null;
+            }
+        });
+
+        //Frames are written as they are encoded
+        try
+        {
+            while (pipeline.take() != null)
+            {
+            }
+        } catch (IOException ex)
+        {
+            Logger.getLogger(MovieExporterContext.class.getName()).log(Level.SEVERE, null, ex);
+        }
         
+        pipeline.dispose();
+    }
+
+    /**
+     * @return Frames to export, in order
+     */
+    public FrameKey[] getExportFrames()
+    {
         int trackFrame = sym.getRoot().getTrackLibrary().getFrameCur();
 //        int trackUid = sym.getRoot().getTrackLibrary().getCurTrackUid();
         
         int fBegin = frameCur ? trackFrame : frameStart;
         int fEnd = frameCur ? trackFrame : frameEnd;
-        
-        for (int i = fBegin; i <= fEnd; i += frameStride)
-        {
-            String frameStrn = "" + i;
-            while (frameStrn.length() < framesNumberPadding)
-            {
-                frameStrn = "0" + frameStrn;
-            }
-
-            File fileOut = new File(fileDir, 
-                    framesPrefix + "_" + frameStrn + "." + framesImageFormat);
+        int stride = frameCur ? 1 : Math.max(frameStride, 1);
 
-            BufferedImage img = capture.getImage(new FrameKey(i), true);
-
-            try
-            {
-                ImageIO.write(img, framesImageFormat, fileOut);
-            } catch (IOException ex)
-            {
-                Logger.getLogger(MovieExporterContext.class.getName()).log(Level.SEVERE, null, ex);
-            }
+        ArrayList<FrameKey> keys = new ArrayList<FrameKey>();
+        for (int i = fBegin; i <= fEnd; i += stride)
+        {
+            keys.add(new FrameKey(i));
         }
+        return keys.toArray(new FrameKey[keys.size()]);
     }
 
     //--------------
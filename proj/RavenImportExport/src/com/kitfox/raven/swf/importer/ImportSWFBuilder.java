@@ -118,17 +118,27 @@ public class ImportSWFBuilder
         
         ArrayList<SWFTimelineTrack> tracks = timeline.getTracks();
         Collections.sort(tracks);
-        for (SWFTimelineTrack timeTrack: tracks)
+
+        //Tell listeners about the new nodes once the whole timeline is in
+        sym.beginBulkUpdate();
+        try
         {
-            if (containsShapes(timeTrack))
-            {
-                addShapeTrack(sym, timeTrack);
-            }
-            if (containsSprites(timeTrack))
+            for (SWFTimelineTrack timeTrack: tracks)
             {
-                addSpriteTrack(sym, timeTrack);
+                if (containsShapes(timeTrack))
+                {
+                    addShapeTrack(sym, timeTrack);
+                }
+                if (containsSprites(timeTrack))
+                {
+                    addSpriteTrack(sym, timeTrack);
+                }
             }
         }
+        finally
+        {
+            sym.commitBulkUpdate();
+        }
 //        trackLib.curTrack.setData(new PropertyDataReference<Track>(track.getUid()));
     }
 
@@ -16,9 +16,12 @@
 
 package com.kitfox.raven.swf.importer;
 
+import com.kitfox.coyote.shape.bezier.BezierCurve2i;
 import com.kitfox.coyote.shape.bezier.BezierLine2i;
 import com.kitfox.coyote.shape.bezier.BezierQuad2i;
+import com.kitfox.raven.shape.network.NetworkDataEdge;
 import com.kitfox.raven.shape.network.NetworkMesh;
+import java.util.ArrayList;
 
 /**
  *
@@ -28,6 +31,11 @@ public class MeshBuilder extends MeshBuilderBase
 {
     NetworkMesh mesh = new NetworkMesh();
 
+    //Curves are collected and added to the mesh together once the
+    // whole shape has been visited
+    ArrayList<BezierCurve2i> curves = new ArrayList<BezierCurve2i>();
+    ArrayList<NetworkDataEdge> curveData = new ArrayList<NetworkDataEdge>();
+
     @Override
     public void moveTo(int x, int y)
     {
@@ -46,8 +54,8 @@ public class MeshBuilder extends MeshBuilderBase
         x = px + x * 5;
         y = py + y * 5;
 
-        mesh.addEdge(new BezierLine2i(px, py, x, y), 
-                createEdgeData());
+        curves.add(new BezierLine2i(px, py, x, y));
+        curveData.add(createEdgeData());
 
         px = x;
         py = y;
@@ -62,8 +70,8 @@ public class MeshBuilder extends MeshBuilderBase
         x = px + x * 5;
         y = py + y * 5;
 
-        mesh.addEdge(new BezierQuad2i(px, py, kx, ky, x, y), 
-                createEdgeData());
+        curves.add(new BezierQuad2i(px, py, kx, ky, x, y));
+        curveData.add(createEdgeData());
         
         px = x;
         py = y;
@@ -72,6 +80,9 @@ public class MeshBuilder extends MeshBuilderBase
     @Override
     public void finishedVisitingShape()
     {
+        mesh.addEdges(curves, curveData);
+        curves.clear();
+        curveData.clear();
     }
 
 }
@@ -21,7 +21,7 @@ import com.kitfox.raven.util.PropertiesData;
 import com.kitfox.raven.util.tree.NodeSymbol;
 import com.kitfox.swf.SWFDocument;
 import com.kitfox.swf.SWFException;
-import com.kitfox.swf.SWFParser;
+import com.kitfox.swf.SWFParallelParser;
 import java.io.File;
 import java.io.IOException;
 import java.util.Properties;
@@ -79,7 +79,8 @@ public class SWFImporterContext
         SWFDocument swfDoc;
         try
         {
-            swfDoc = SWFParser.parse(swfFile);
+            swfDoc = SWFParallelParser.parse(swfFile,
+                    Runtime.getRuntime().availableProcessors());
         } catch (IOException ex)
         {
             errMessage("Error parsing swf: " + swfFile + "\n"
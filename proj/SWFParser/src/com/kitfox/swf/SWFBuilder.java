@@ -17,6 +17,7 @@
 package com.kitfox.swf;
 
 import com.kitfox.swf.dataType.SWFDataReader;
+import com.kitfox.swf.tags.SWFTag;
 import com.kitfox.swf.tags.SWFTagLoader;
 import java.io.IOException;
 import java.io.PrintStream;
@@ -25,7 +26,7 @@ import java.io.PrintStream;
  *
  * @author kitfox
  */
-public class SWFBuilder implements SWFParseVisitor
+public class SWFBuilder implements SWFDecodedTagVisitor
 {
     final boolean verbose;
     private SWFDocument doc;
@@ -75,6 +76,13 @@ public class SWFBuilder implements SWFParseVisitor
         in.skip(length);
     }
 
+    public void addTag(SWFTag tag, int tagId, int length)
+    {
+        SWFTagLoader loader = SWFTagIndex.inst().getLoader(tagId);
+        out.println("Reading tag #" + tagId + "\tlen: " + length + "\t(" + loader.getClass().getName() + ")");
+        doc.addTag(tag);
+    }
+
     /**
      * @return the doc
      */
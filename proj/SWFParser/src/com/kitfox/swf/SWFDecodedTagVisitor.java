@@ -0,0 +1,37 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.swf;
+
+import com.kitfox.swf.tags.SWFTag;
+
+/**
+ * Visitor that can be handed tags which have already been decoded by
+ * their {@link com.kitfox.swf.tags.SWFTagLoader}.  Used by
+ * {@link SWFParallelParser} to decode tags ahead of time on several
+ * threads.  Tags are still visited in file order, and only from the
+ * thread that started the parse.
+ *
+ * @author kitfox
+ */
+public interface SWFDecodedTagVisitor extends SWFParseVisitor
+{
+    /**
+     * Called in place of {@link #readTag} for a tag that has already
+     * been decoded.
+     */
+    public void addTag(SWFTag tag, int tagId, int length);
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.swf;
+
+import com.kitfox.swf.dataType.SWFDataReader;
+import com.kitfox.swf.tags.SWFTag;
+import com.kitfox.swf.tags.SWFTagLoader;
+import com.kitfox.swf.tags.shapes.DefineShape;
+import com.kitfox.swf.tags.shapes.DefineShape2;
+import com.kitfox.swf.tags.shapes.DefineShape3;
+import com.kitfox.swf.tags.shapes.DefineShape4;
+import com.kitfox.swf.tags.sprite.DefineSprite;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Parses an SWF file held in memory, decoding definition tags on
+ * several threads.
+ *
+ * <p>The tag headers are scanned first to find where each tag starts.
+ * Since every tag declares its length, definition tags such as shapes
+ * and sprites can then be decoded from their own slice of the file
+ * independently of each other.  The visitor still sees every tag in
+ * file order, from the calling thread.  Only visitors that implement
+ * {@link SWFDecodedTagVisitor} are handed decoded tags.  Other
+ * visitors have every tag read through
+ * {@link SWFParseVisitor#readTag}, as {@link SWFParser} does.</p>
+ *
+ * @author kitfox
+ */
+public class SWFParallelParser
+{
+    //Tags expensive enough to be worth decoding on another thread.
+    // Ids without a registered loader are ignored.
+    private static final HashSet<Integer> DEFINE_TAGS = new HashSet<Integer>();
+    static
+    {
+        DEFINE_TAGS.add(DefineShape.TAG_ID);
+        DEFINE_TAGS.add(DefineShape2.TAG_ID);
+        DEFINE_TAGS.add(DefineShape3.TAG_ID);
+        DEFINE_TAGS.add(DefineShape4.TAG_ID);
+        DEFINE_TAGS.add(DefineSprite.TAG_ID);
+        //DefineBits, DefineBitsJPEG2-4, DefineBitsLossless 1-2
+        DEFINE_TAGS.add(6);
+        DEFINE_TAGS.add(21);
+        DEFINE_TAGS.add(35);
+        DEFINE_TAGS.add(90);
+        DEFINE_TAGS.add(20);
+        DEFINE_TAGS.add(36);
+        //DefineFont, DefineFont2, DefineFont3
+        DEFINE_TAGS.add(10);
+        DEFINE_TAGS.add(48);
+        DEFINE_TAGS.add(75);
+        //DefineMorphShape, DefineMorphShape2
+        DEFINE_TAGS.add(46);
+        DEFINE_TAGS.add(84);
+    }
+
+    //File data following the 8 byte magic number
+    private final ByteBuffer body;
+    private final int version;
+    private final SWFParseVisitor visitor;
+    private final int numThreads;
+
+    private SWFParallelParser(ByteBuffer body, int version,
+            SWFParseVisitor visitor, int numThreads)
+    {
+        this.body = body;
+        this.version = version;
+        this.visitor = visitor;
+        this.numThreads = numThreads;
+    }
+
+    public static SWFDocument parse(File file, int numThreads) throws IOException, SWFException
+    {
+        SWFBuilder builder = new SWFBuilder(true, System.err);
+
+        parse(file, builder, numThreads);
+
+        return builder.getDoc();
+    }
+
+    public static void parse(File file, SWFParseVisitor visitor, int numThreads) throws IOException, SWFException
+    {
+        byte[] data;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            data = new byte[(int)raf.length()];
+            raf.readFully(data);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        parse(ByteBuffer.wrap(data), visitor, numThreads);
+    }
+
+    /**
+     * Parse a file held in memory, starting at the buffer's position.
+     * Compressed files are inflated into memory first.
+     *
+     * @param numThreads Number of threads to decode tags with.  If less
+     * than 2, all tags are decoded on the calling thread.
+     */
+    public static void parse(ByteBuffer data, SWFParseVisitor visitor, int numThreads) throws IOException, SWFException
+    {
+        data = data.duplicate();
+        byte[] magic = new byte[8];
+        data.get(magic);
+
+        SWFParser.checkMagic(magic);
+
+        int version = magic[3];
+        ByteBuffer body;
+        if (magic[0] == 'C')
+        {
+            //Bytes 4 - 7 have uncompressed length of file
+            int length = (magic[4] & 0xff)
+                    | (magic[5] & 0xff) << 8
+                    | (magic[6] & 0xff) << 16
+                    | (magic[7] & 0xff) << 24;
+            body = ByteBuffer.wrap(inflate(data, length - 8));
+        }
+        else
+        {
+            body = data.slice();
+        }
+
+        new SWFParallelParser(body, version, visitor, numThreads).parse();
+    }
+
+    private static byte[] inflate(ByteBuffer data, int sizeHint) throws IOException
+    {
+        byte[] compressed = new byte[data.remaining()];
+        data.get(compressed);
+        InputStream is = SWFParser.inflate(new ByteArrayInputStream(compressed));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                Math.max(sizeHint, SWFDataReader.BLOCK_SIZE));
+        byte[] buf = new byte[SWFDataReader.BLOCK_SIZE];
+        for (int len = is.read(buf); len != -1; len = is.read(buf))
+        {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private void parse() throws IOException, SWFException
+    {
+        SWFDataReader sin = new SWFDataReader(body, version);
+        SWFParser.readHeader(sin, version, visitor);
+
+        ArrayList<TagEntry> entries = scanTags(sin);
+
+        ExecutorService pool = null;
+        try
+        {
+            if (numThreads > 1 && visitor instanceof SWFDecodedTagVisitor)
+            {
+                pool = createPool(numThreads);
+                for (int i = 0; i < entries.size(); ++i)
+                {
+                    TagEntry entry = entries.get(i);
+                    SWFTagLoader loader =
+                            SWFTagIndex.inst().getLoader(entry.tagId);
+                    if (loader != null && DEFINE_TAGS.contains(entry.tagId))
+                    {
+                        entry.future = pool.submit(new TagDecoder(entry, loader));
+                    }
+                }
+            }
+
+            for (int i = 0; i < entries.size(); ++i)
+            {
+                visitTag(entries.get(i));
+            }
+        }
+        finally
+        {
+            if (pool != null)
+            {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Find the start and length of every tag up to the End tag.
+     */
+    private ArrayList<TagEntry> scanTags(SWFDataReader sin) throws IOException, SWFException
+    {
+        ArrayList<TagEntry> entries = new ArrayList<TagEntry>();
+        while (true)
+        {
+            int val = sin.getUI16();
+            int tag = val >> 6;
+            int len = val & 0x3f;
+            if (len == 0x3f)
+            {
+                len = sin.getSI32();
+            }
+
+            int markStart = sin.getBytesRead();
+            if (len < 0 || sin.skip(len) != len)
+            {
+                throw new SWFException("Tag extends past end of file.  Tag id #" + tag + ", dataOffset: 0x" + Integer.toHexString(markStart) + ".  Declared length: " + len + ".");
+            }
+
+            entries.add(new TagEntry(tag, len, markStart));
+
+            //End tag has an ID of 0
+            if (tag == 0)
+            {
+                return entries;
+            }
+        }
+    }
+
+    private void visitTag(TagEntry entry) throws IOException, SWFException
+    {
+        if (entry.future != null)
+        {
+            SWFTag tag = getTag(entry.future);
+            ((SWFDecodedTagVisitor)visitor).addTag(tag, entry.tagId, entry.length);
+            return;
+        }
+
+        SWFDataReader in = entry.createReader();
+        visitor.readTag(in, entry.tagId, entry.length);
+        SWFParser.checkTagLength(entry.tagId, entry.length,
+                entry.offset, in.getBytesRead());
+    }
+
+    private static SWFTag getTag(Future<SWFTag> future) throws IOException, SWFException
+    {
+        try
+        {
+            return future.get();
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw createIOException(ex);
+        } catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException)cause;
+            }
+            if (cause instanceof SWFException)
+            {
+                throw (SWFException)cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+            throw createIOException(cause);
+        }
+    }
+
+    /**
+     * IOException(Throwable) is not available in Java 1.5
+     */
+    private static IOException createIOException(Throwable cause)
+    {
+        IOException ex = new IOException(cause.toString());
+        ex.initCause(cause);
+        return ex;
+    }
+
+    private static ExecutorService createPool(int numThreads)
+    {
+        return Executors.newFixedThreadPool(numThreads,
+                new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "SWF tag decode");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    //-----------------------------
+    class TagEntry
+    {
+        final int tagId;
+        final int length;
+        //Offset of tag data in the file
+        final int offset;
+        Future<SWFTag> future;
+
+        public TagEntry(int tagId, int length, int offset)
+        {
+            this.tagId = tagId;
+            this.length = length;
+            this.offset = offset;
+        }
+
+        /**
+         * @return Reader over just the data of this tag
+         */
+        SWFDataReader createReader()
+        {
+            ByteBuffer data = body.duplicate();
+            //Body starts after the magic number
+            data.limit(offset - 8 + length);
+            data.position(offset - 8);
+            return new SWFDataReader(data, version, offset);
+        }
+    }
+
+    //-----------------------------
+    class TagDecoder implements Callable<SWFTag>
+    {
+        final TagEntry entry;
+        final SWFTagLoader loader;
+
+        public TagDecoder(TagEntry entry, SWFTagLoader loader)
+        {
+            this.entry = entry;
+            this.loader = loader;
+        }
+
+        public SWFTag call() throws Exception
+        {
+            SWFDataReader in = entry.createReader();
+            SWFTag tag = loader.read(in, entry.length);
+            SWFParser.checkTagLength(entry.tagId, entry.length,
+                    entry.offset, in.getBytesRead());
+            return tag;
+        }
+    }
+}
@@ -19,12 +19,16 @@ package com.kitfox.swf;
 import com.kitfox.swf.dataType.RECT;
 import com.kitfox.swf.dataType.SWFDataReader;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 /**
@@ -63,24 +67,88 @@ public class SWFParser
         if (magic[0] == 'C')
         {
             //Compressed file format
-            is = new InflaterInputStream(is);
+            is = inflate(is);
             magic[0] = 'F';
         }
 
         os.write(magic);
-        for (int b = is.read(); b != -1; b = is.read())
+        byte[] buf = new byte[SWFDataReader.BLOCK_SIZE];
+        for (int len = is.read(buf); len != -1; len = is.read(buf))
         {
-            os.write(b);
+            os.write(buf, 0, len);
         }
     }
 
+    static InputStream inflate(InputStream is)
+    {
+        return new InflaterInputStream(is, new Inflater(),
+                SWFDataReader.BLOCK_SIZE);
+    }
+
     public static SWFDocument parse(File file) throws IOException, SWFException
     {
-        FileInputStream fin = new FileInputStream(file);
-        BufferedInputStream is = new BufferedInputStream(fin);
-        SWFDocument doc = parse(is);
-        is.close();
-        return doc;
+        SWFBuilder builder = new SWFBuilder(true, System.err);
+
+        parse(file, builder);
+
+        return builder.getDoc();
+    }
+
+    /**
+     * Parse a file.  Uncompressed files are loaded into a single buffer
+     * and read in place rather than through a stream.
+     */
+    public static void parse(File file, SWFParseVisitor visitor) throws IOException, SWFException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            byte[] magic = new byte[8];
+            raf.readFully(magic);
+            if (magic[0] != 'F')
+            {
+                raf.seek(0);
+                BufferedInputStream is = new BufferedInputStream(
+                        new FileInputStream(raf.getFD()));
+                parse(is, visitor);
+                return;
+            }
+
+            byte[] data = new byte[(int)raf.length()];
+            raf.seek(0);
+            raf.readFully(data);
+            parse(ByteBuffer.wrap(data), visitor);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Parse a file held in memory, starting at the buffer's position.
+     * Uncompressed data is read in place, so this also works on a
+     * memory mapped file.
+     */
+    public static void parse(ByteBuffer data, SWFParseVisitor visitor) throws IOException, SWFException
+    {
+        data = data.duplicate();
+        byte[] magic = new byte[8];
+        data.get(magic);
+
+        checkMagic(magic);
+
+        int version = magic[3];
+        if (magic[0] == 'C')
+        {
+            byte[] body = new byte[data.remaining()];
+            data.get(body);
+            InputStream is = inflate(new ByteArrayInputStream(body));
+            parseBody(new SWFDataReader(is, version), version, visitor);
+            return;
+        }
+
+        parseBody(new SWFDataReader(data, version), version, visitor);
     }
 
     public static SWFDocument parse(URL url) throws IOException, SWFException
@@ -112,6 +180,22 @@ public class SWFParser
         byte[] magic = new byte[8];
         is.read(magic, 0, 8);
 
+        checkMagic(magic);
+
+        //Bytes 4 - 7 have uncompressed length of file
+
+        if (magic[0] == 'C')
+        {
+            //Compressed file format
+            is = inflate(is);
+        }
+
+        int version = magic[3];
+        parseBody(new SWFDataReader(is, version), version, visitor);
+    }
+
+    static void checkMagic(byte[] magic) throws SWFException
+    {
         if (!((magic[0] == 'C' || magic[0] == 'F')
                 && magic[1] == 'W'
                 && magic[2] == 'S'
@@ -119,28 +203,27 @@ public class SWFParser
         {
             throw new SWFException("Not an SWF file");
         }
+    }
 
-        //Bytes 4 - 7 have uncompressed length of file
+    private static void parseBody(SWFDataReader sin, int version,
+            SWFParseVisitor visitor) throws IOException, SWFException
+    {
+        readHeader(sin, version, visitor);
 
-        if (magic[0] == 'C')
+        while (readTag(sin, visitor))
         {
-            //Compressed file format
-            is = new InflaterInputStream(is);
         }
+    }
 
-        int version = magic[3];
-        SWFDataReader sin = new SWFDataReader(is, version);
-
+    static void readHeader(SWFDataReader sin, int version,
+            SWFParseVisitor visitor) throws IOException
+    {
         //Finish reading header
         RECT frameSize = sin.getRECT();
         int frameRate = sin.getUI16();
         int frameCount = sin.getUI16();
 
         visitor.setHeader(new SWFHeader(version, frameSize, frameRate, frameCount));
-
-        while (readTag(sin, visitor))
-        {
-        }
     }
 
     private static boolean readTag(SWFDataReader in, SWFParseVisitor visitor) throws IOException, SWFException
@@ -157,16 +240,20 @@ public class SWFParser
 
         visitor.readTag(in, tag, len);
 
-        int markEnd = in.getBytesRead();
+        checkTagLength(tag, len, markStart, in.getBytesRead());
+
+        //End tag has an ID of 0
+        return tag != 0;
+    }
+
+    static void checkTagLength(int tag, int len, int markStart, int markEnd) throws SWFException
+    {
         int size = markEnd - markStart;
 
         if (size != len)
         {
             throw new SWFException("Tag overflow/underflow.  Tag id #" + tag + ", dataOffset: 0x" + Integer.toHexString(markStart) + ".  Declared length: " + len + ".  Bytes read: " + size + ".");
         }
-
-        //End tag has an ID of 0
-        return tag != 0;
     }
 
 }
@@ -17,31 +17,73 @@
 package com.kitfox.swf.dataType;
 
 import java.io.ByteArrayOutputStream;
-import java.io.FilterInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
+ * Reads SWF data types.  Data is read from a ByteBuffer, which is
+ * either the whole file (such as a memory mapped file) or a block that
+ * is refilled from a stream as it is used up.
+ *
+ * <p>Bit fields are extracted from a 64 bit word loaded from the
+ * buffer, rather than one bit at a time.  Reading a byte aligned value
+ * skips any bits left in a partly read byte.</p>
  *
  * @author kitfox
  */
-public class SWFDataReader extends FilterInputStream
+public class SWFDataReader extends InputStream
 {
-    //Store a byte worth of bits for bit reading mode
-    int bitCache;
-    //Current bit pointer.  -1 if not in bit reading mode
-    int bitPtr = -1;
-
-    private int bytesRead = 8;  //8 byte magic number already read
-
-    byte[] buf = new byte[8];
+    public static final int BLOCK_SIZE = 0x10000;
+
+    //Holds data not yet read.  Little endian.
+    private final ByteBuffer block;
+    //Refills block.  Null if block holds all the data.
+    private final InputStream source;
+    //Number of bytes before the start of block.  Starts at 8 since
+    // the 8 byte magic number is already read.
+    private long blockOffset = 8;
+    //Bits already read from the byte at the block position
+    private int bitPtr;
 
     private final int version;
 
+    /**
+     * Read from a stream through a block buffer.
+     */
     public SWFDataReader(InputStream is, int version)
     {
-        super(is);
+        this.source = is;
         this.version = version;
+        this.block = ByteBuffer.allocate(BLOCK_SIZE);
+        block.order(ByteOrder.LITTLE_ENDIAN);
+        block.limit(0);
+    }
+
+    /**
+     * Read data directly from a buffer.  The buffer should start
+     * right after the magic number.
+     */
+    public SWFDataReader(ByteBuffer data, int version)
+    {
+        this(data, version, 8);
+    }
+
+    /**
+     * Read data directly from a buffer that holds part of a file.
+     *
+     * @param offset Offset of the start of the buffer in the file.
+     * Used by {@link #getBytesRead()}.
+     */
+    public SWFDataReader(ByteBuffer data, int version, long offset)
+    {
+        this.source = null;
+        this.version = version;
+        this.block = data.slice();
+        this.blockOffset = offset;
+        block.order(ByteOrder.LITTLE_ENDIAN);
     }
 
 //    public void endBitReadingMode()
@@ -52,26 +94,98 @@ public class SWFDataReader extends FilterInputStream
 
     public void flushToByteBoundary()
     {
-        bitPtr = -1;
-        bitCache = 0;
+        if (bitPtr != 0)
+        {
+            block.position(block.position() + 1);
+            bitPtr = 0;
+        }
     }
 
-    private long readBits(int bits) throws IOException
+    /**
+     * Make sure the block holds at least count unread bytes.
+     *
+     * @return false if the end of the data is reached first
+     */
+    private boolean fill(int count) throws IOException
     {
-        long val = 0;
-        for (int i = 0; i < bits; ++i)
+        if (block.remaining() >= count)
         {
-            if (bitPtr == -1)
+            return true;
+        }
+        if (source == null)
+        {
+            return false;
+        }
+
+        blockOffset += block.position();
+        block.compact();
+        try
+        {
+            byte[] arr = block.array();
+            while (block.position() < count)
             {
-                bitCache = read();
-                bitPtr = 7;
+                int len = source.read(arr, block.position(),
+                        block.capacity() - block.position());
+                if (len == -1)
+                {
+                    return false;
+                }
+                block.position(block.position() + len);
             }
+        }
+        finally
+        {
+            block.flip();
+        }
+        return true;
+    }
 
-            val <<= 1;
-            val |= (bitCache & (1 << bitPtr)) == 0 ? 0 : 1;
-            --bitPtr;
+    private void require(int count) throws IOException
+    {
+        if (!fill(count))
+        {
+            throw new EOFException();
         }
+    }
 
+    private long readBits(int bits) throws IOException
+    {
+        if (bits == 0)
+        {
+            return 0;
+        }
+        if (bits > 32)
+        {
+            //Keep each word load inside 8 bytes
+            long high = readBits(bits - 32);
+            return (high << 32) | readBits(32);
+        }
+
+        int bytes = (bitPtr + bits + 7) >> 3;
+        int pos = block.position();
+        long word;
+        if (fill(8))
+        {
+            pos = block.position();
+            word = Long.reverseBytes(block.getLong(pos));
+        }
+        else
+        {
+            //Near the end of the data
+            require(bytes);
+            pos = block.position();
+            word = 0;
+            for (int i = 0; i < bytes; ++i)
+            {
+                word |= (block.get(pos + i) & 0xffL) << (56 - i * 8);
+            }
+        }
+
+        long val = (word << bitPtr) >>> (64 - bits);
+
+        int end = bitPtr + bits;
+        block.position(pos + (end >> 3));
+        bitPtr = end & 7;
         return val;
     }
 
@@ -91,7 +205,7 @@ public class SWFDataReader extends FilterInputStream
     public long getSB(int bits) throws IOException
     {
         long val = readBits(bits);
-        long sgnMask = 1 << (bits - 1);
+        long sgnMask = 1L << (bits - 1);
         return (sgnMask & val) == 0 ? val : ~(sgnMask - 1) | val;
     }
 
@@ -349,67 +463,53 @@ public class SWFDataReader extends FilterInputStream
 
     public byte getSI8() throws IOException
     {
-        return (byte)read();
+        flushToByteBoundary();
+        require(1);
+        return block.get();
     }
 
     public short getSI16() throws IOException
     {
-        read(buf, 0, 2);
-        return (short)(
-                ((buf[1] & 0xff) << 8)
-                | (buf[0] & 0xff)
-                );
+        flushToByteBoundary();
+        require(2);
+        return block.getShort();
     }
 
     public int getSI32() throws IOException
     {
-        read(buf, 0, 4);
-        return ((buf[3] & 0xff) << 24)
-                | ((buf[2] & 0xff) << 16)
-                | ((buf[1] & 0xff) << 8)
-                | (buf[0] & 0xff);
+        flushToByteBoundary();
+        require(4);
+        return block.getInt();
     }
 
     public int getUI8() throws IOException
     {
-        return read() & 0xff;
+        return getSI8() & 0xff;
     }
 
     public int getUI16() throws IOException
     {
-        read(buf, 0, 2);
-        return ((buf[1] & 0xff) << 8)
-                | (buf[0] & 0xff);
+        return getSI16() & 0xffff;
     }
 
     public int getUI24() throws IOException
     {
-        read(buf, 0, 3);
-        return ((buf[2] & 0xff) << 16)
-                | ((buf[1] & 0xff) << 8)
-                | (buf[0] & 0xff);
+        flushToByteBoundary();
+        require(3);
+        int low = block.getShort() & 0xffff;
+        return ((block.get() & 0xff) << 16) | low;
     }
 
     public long getUI32() throws IOException
     {
-        read(buf, 0, 4);
-        return ((buf[3] & 0xffL) << 24)
-                | ((buf[2] & 0xff) << 16)
-                | ((buf[1] & 0xff) << 8)
-                | (buf[0] & 0xff);
+        return getSI32() & 0xffffffffL;
     }
 
     public long getUI64() throws IOException
     {
-        read(buf, 0, 8);
-        return ((buf[7] & 0xffL) << 56)
-                | ((buf[6] & 0xffL) << 48)
-                | ((buf[5] & 0xffL) << 40)
-                | ((buf[4] & 0xffL) << 32)
-                | ((buf[3] & 0xffL) << 24)
-                | ((buf[2] & 0xff) << 16)
-                | ((buf[1] & 0xff) << 8)
-                | (buf[0] & 0xff);
+        flushToByteBoundary();
+        require(8);
+        return block.getLong();
     }
 
     /**
@@ -422,29 +522,73 @@ public class SWFDataReader extends FilterInputStream
     @Override
     public int read() throws IOException
     {
-        ++bytesRead;
-        return super.read();
+        flushToByteBoundary();
+        if (!fill(1))
+        {
+            return -1;
+        }
+        return block.get() & 0xff;
     }
 
     @Override
-    public int read(byte[] b) throws IOException
+    public int read(byte[] b, int off, int len) throws IOException
     {
-        bytesRead += b.length;
-        return super.read(b);
+        flushToByteBoundary();
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        int count = Math.min(len, block.remaining());
+        block.get(b, off, count);
+        if (count < len && source != null)
+        {
+            //Read the rest straight from the source
+            while (count < len)
+            {
+                int n = source.read(b, off + count, len - count);
+                if (n == -1)
+                {
+                    break;
+                }
+                count += n;
+                blockOffset += n;
+            }
+        }
+        return count == 0 ? -1 : count;
     }
 
     @Override
-    public int read(byte[] b, int off, int len) throws IOException
+    public long skip(long n) throws IOException
     {
-        bytesRead += len;
-        return super.read(b, off, len);
+        flushToByteBoundary();
+        long count = Math.min(n, block.remaining());
+        block.position(block.position() + (int)count);
+        if (count < n && source != null)
+        {
+            while (count < n)
+            {
+                long skipped = source.skip(n - count);
+                if (skipped <= 0)
+                {
+                    //Some streams do not skip until read
+                    if (source.read() == -1)
+                    {
+                        break;
+                    }
+                    skipped = 1;
+                }
+                count += skipped;
+                blockOffset += skipped;
+            }
+        }
+        return count;
     }
 
     @Override
-    public long skip(long n) throws IOException
+    public int available() throws IOException
     {
-        bytesRead += n;
-        return super.skip(n);
+        return block.remaining() + (source == null ? 0 : source.available());
     }
 
     /**
@@ -452,7 +596,8 @@ public class SWFDataReader extends FilterInputStream
      */
     public int getBytesRead()
     {
-        return bytesRead;
+        //A partly read byte counts as read
+        return (int)(blockOffset + block.position() + (bitPtr == 0 ? 0 : 1));
     }
 
 
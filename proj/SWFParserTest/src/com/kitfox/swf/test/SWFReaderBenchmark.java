@@ -0,0 +1,532 @@
+/*
+ * Copyright 2011 Mark McKay
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.kitfox.swf.test;
+
+import com.kitfox.swf.SWFBuilder;
+import com.kitfox.swf.SWFException;
+import com.kitfox.swf.SWFParallelParser;
+import com.kitfox.swf.SWFParser;
+import com.kitfox.swf.dataType.SWFDataReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Times SWF parsing.  Files named on the command line are parsed as
+ * streams, from a single buffer and with tags decoded in parallel.  If none are given, a file made of
+ * large DefineShape4 tags is generated, and the shape records are also
+ * decoded with a copy of the old bit at a time reader for comparison.
+ *
+ * @author kitfox
+ */
+public class SWFReaderBenchmark
+{
+    static final int DEFINE_SHAPE4 = 83;
+    static final int NUM_SHAPES = 200;
+    static final int EDGES_PER_SHAPE = 2000;
+    static final int WARMUP = 5;
+    static final int RUNS = 10;
+
+    static final PrintStream NULL_OUT = new PrintStream(new OutputStream()
+    {
+        @Override
+        public void write(int b)
+        {
+        }
+    });
+
+    /**
+     * @param args Paths of SWF files to parse
+     */
+    public static void main(String[] args) throws IOException, SWFException
+    {
+        ArrayList<File> files = new ArrayList<File>();
+        for (int i = 0; i < args.length; ++i)
+        {
+            files.add(new File(args[i]));
+        }
+
+        if (files.isEmpty())
+        {
+            byte[] body = buildShapeTags();
+            files.add(writeTemp(buildFile(body, false), "shapes", ".swf"));
+            files.add(writeTemp(buildFile(body, true), "shapesZ", ".swf"));
+
+            benchShapeRecords(body);
+        }
+
+        for (int i = 0; i < files.size(); ++i)
+        {
+            benchFile(files.get(i));
+        }
+    }
+
+    private static File writeTemp(byte[] data, String prefix, String suffix) throws IOException
+    {
+        File file = File.createTempFile(prefix, suffix);
+        file.deleteOnExit();
+        FileOutputStream fout = new FileOutputStream(file);
+        fout.write(data);
+        fout.close();
+        return file;
+    }
+
+    private static void benchFile(File file) throws IOException, SWFException
+    {
+        System.out.println(file.getName() + " (" + file.length() + " bytes)");
+
+        //Each way is timed in its own loop so garbage left by one is not
+        // collected while timing the other
+        int numTags = parseFile(file, true, WARMUP);
+        long start = System.nanoTime();
+        parseFile(file, true, RUNS);
+        long streamTime = System.nanoTime() - start;
+
+        if (parseFile(file, false, WARMUP) != numTags)
+        {
+            throw new SWFException("Stream and buffer parse differ");
+        }
+        start = System.nanoTime();
+        parseFile(file, false, RUNS);
+        long bufferTime = System.nanoTime() - start;
+
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        if (parseParallel(file, numThreads, WARMUP) != numTags)
+        {
+            throw new SWFException("Stream and parallel parse differ");
+        }
+        start = System.nanoTime();
+        parseParallel(file, numThreads, RUNS);
+        long parallelTime = System.nanoTime() - start;
+
+        System.out.println("  tags: " + numTags);
+        System.out.println("  stream: " + toMillis(streamTime / RUNS) + " ms");
+        System.out.println("  buffer: " + toMillis(bufferTime / RUNS) + " ms");
+        System.out.println("  parallel (" + numThreads + " threads): " + toMillis(parallelTime / RUNS) + " ms");
+    }
+
+    /**
+     * @return Number of tags read
+     */
+    private static int parseParallel(File file, int numThreads, int count) throws IOException, SWFException
+    {
+        int numTags = 0;
+        for (int i = 0; i < count; ++i)
+        {
+            SWFBuilder builder = new SWFBuilder(false, NULL_OUT);
+            SWFParallelParser.parse(file, builder, numThreads);
+            numTags = builder.getDoc().getTags().size();
+        }
+        return numTags;
+    }
+
+    /**
+     * @return Number of tags read
+     */
+    private static int parseFile(File file, boolean stream, int count) throws IOException, SWFException
+    {
+        int numTags = 0;
+        for (int i = 0; i < count; ++i)
+        {
+            SWFBuilder builder = new SWFBuilder(false, NULL_OUT);
+            if (stream)
+            {
+                InputStream is = new BufferedInputStream(
+                        new FileInputStream(file));
+                SWFParser.parse(is, builder);
+                is.close();
+            }
+            else
+            {
+                SWFParser.parse(file, builder);
+            }
+            numTags = builder.getDoc().getTags().size();
+        }
+        return numTags;
+    }
+
+    /**
+     * Decode the edge records of the generated shapes with both readers.
+     */
+    private static void benchShapeRecords(byte[] body) throws IOException
+    {
+        long legacyTime = 0;
+        long wordTime = 0;
+        long legacySum = 0;
+        long wordSum = 0;
+        for (int i = 0; i < WARMUP + RUNS; ++i)
+        {
+            long start = System.nanoTime();
+            legacySum = walkShapes(new LegacyBitReader(
+                    new ByteArrayInputStream(body)));
+            long mid = System.nanoTime();
+            wordSum = walkShapes(new WordBitReader(
+                    new SWFDataReader(ByteBuffer.wrap(body), 10)));
+            long end = System.nanoTime();
+
+            if (i >= WARMUP)
+            {
+                legacyTime += mid - start;
+                wordTime += end - mid;
+            }
+        }
+
+        if (legacySum != wordSum)
+        {
+            throw new IllegalStateException("Readers disagree");
+        }
+
+        System.out.println("Shape records (" + NUM_SHAPES * EDGES_PER_SHAPE + " edges)");
+        System.out.println("  bit at a time: " + toMillis(legacyTime / RUNS) + " ms");
+        System.out.println("  64 bit word:   " + toMillis(wordTime / RUNS) + " ms");
+    }
+
+    /**
+     * Walks the tags written by buildShapeTags() and sums the edge deltas
+     */
+    private static long walkShapes(BitReader in) throws IOException
+    {
+        long sum = 0;
+        for (int s = 0; s < NUM_SHAPES; ++s)
+        {
+            //Tag header, shape id, two RECTs
+            in.getUB(16);
+            in.getUB(32);
+            in.getUB(16);
+            skipRect(in);
+            skipRect(in);
+            //Flags, fill and line counts, numFillBits, numLineBits
+            in.getUB(8);
+            in.getUB(8);
+            in.getUB(8);
+            in.getUB(8);
+
+            //Shape records
+            while (true)
+            {
+                boolean edge = in.getUB(1) != 0;
+                if (!edge)
+                {
+                    //Only end records are written
+                    in.getUB(5);
+                    break;
+                }
+
+                boolean straight = in.getUB(1) != 0;
+                int numBits = (int)in.getUB(4) + 2;
+                if (straight)
+                {
+                    in.getUB(1);
+                    sum += in.getSB(numBits);
+                    sum += in.getSB(numBits);
+                }
+                else
+                {
+                    sum += in.getSB(numBits);
+                    sum += in.getSB(numBits);
+                    sum += in.getSB(numBits);
+                    sum += in.getSB(numBits);
+                }
+            }
+            in.flush();
+        }
+        return sum;
+    }
+
+    private static void skipRect(BitReader in) throws IOException
+    {
+        int bits = (int)in.getUB(5);
+        in.getUB(bits * 4);
+        in.flush();
+    }
+
+    private static double toMillis(long nanos)
+    {
+        return nanos / 1000 / 1000.0;
+    }
+
+    /**
+     * Builds the tags of a file, ending with an End tag
+     */
+    private static byte[] buildShapeTags()
+    {
+        Random rand = new Random(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int s = 0; s < NUM_SHAPES; ++s)
+        {
+            BitWriter shape = new BitWriter();
+            shape.putUB(16, s + 1);
+            putRect(shape, 0, 2000, 0, 2000);
+            putRect(shape, 0, 2000, 0, 2000);
+            //Reserved, fill winding, non scaling, scaling
+            shape.putUB(5, 0);
+            shape.putUB(1, 0);
+            shape.putUB(1, 0);
+            shape.putUB(1, 1);
+            shape.flush();
+            //Empty fill and line style arrays
+            shape.putUB(8, 0);
+            shape.putUB(8, 0);
+            shape.putUB(4, 0);
+            shape.putUB(4, 0);
+
+            for (int e = 0; e < EDGES_PER_SHAPE; ++e)
+            {
+                int numBits = 4 + rand.nextInt(10);
+                int range = 1 << (numBits + 1);
+                shape.putUB(1, 1);
+                if (rand.nextBoolean())
+                {
+                    //General straight line
+                    shape.putUB(1, 1);
+                    shape.putUB(4, numBits);
+                    shape.putUB(1, 1);
+                    shape.putUB(numBits + 2, rand.nextInt(range * 2) - range);
+                    shape.putUB(numBits + 2, rand.nextInt(range * 2) - range);
+                }
+                else
+                {
+                    shape.putUB(1, 0);
+                    shape.putUB(4, numBits);
+                    for (int i = 0; i < 4; ++i)
+                    {
+                        shape.putUB(numBits + 2, rand.nextInt(range * 2) - range);
+                    }
+                }
+            }
+            //End shape record
+            shape.putUB(6, 0);
+            shape.flush();
+
+            byte[] data = shape.toByteArray();
+            //Long tag header
+            putUI16(out, (DEFINE_SHAPE4 << 6) | 0x3f);
+            putUI16(out, data.length);
+            putUI16(out, data.length >> 16);
+            out.write(data, 0, data.length);
+        }
+
+        //End tag
+        putUI16(out, 0);
+        return out.toByteArray();
+    }
+
+    private static byte[] buildFile(byte[] tags, boolean compress) throws IOException
+    {
+        BitWriter header = new BitWriter();
+        putRect(header, 0, 11000, 0, 8000);
+        header.flush();
+        header.putUB(16, 24 << 8);
+        header.putUB(8, 1);
+        header.putUB(8, 0);
+        byte[] headerData = header.toByteArray();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(headerData, 0, headerData.length);
+        body.write(tags, 0, tags.length);
+        byte[] bodyData = body.toByteArray();
+
+        int length = bodyData.length + 8;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(compress ? 'C' : 'F');
+        out.write('W');
+        out.write('S');
+        out.write(10);
+        putUI16(out, length);
+        putUI16(out, length >> 16);
+
+        if (compress)
+        {
+            DeflaterOutputStream dout = new DeflaterOutputStream(out);
+            dout.write(bodyData);
+            dout.close();
+        }
+        else
+        {
+            out.write(bodyData, 0, bodyData.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void putRect(BitWriter out, int xmin, int xmax, int ymin, int ymax)
+    {
+        int bits = 16;
+        out.putUB(5, bits);
+        out.putUB(bits, xmin);
+        out.putUB(bits, xmax);
+        out.putUB(bits, ymin);
+        out.putUB(bits, ymax);
+        out.flush();
+    }
+
+    private static void putUI16(ByteArrayOutputStream out, int value)
+    {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+    }
+
+    //-----------------------------
+    static class BitWriter
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int cache;
+        int numBits;
+
+        /**
+         * Write the low bits of value, most significant bit first.
+         * Multiples of 8 bits written on a byte boundary are stored
+         * little endian, like the integer types of the format.
+         */
+        public void putUB(int bits, int value)
+        {
+            if (numBits == 0 && bits >= 8 && (bits & 7) == 0)
+            {
+                for (int i = 0; i < bits; i += 8)
+                {
+                    out.write((value >> i) & 0xff);
+                }
+                return;
+            }
+
+            for (int i = bits - 1; i >= 0; --i)
+            {
+                cache = (cache << 1) | ((value >> i) & 1);
+                if (++numBits == 8)
+                {
+                    out.write(cache);
+                    cache = 0;
+                    numBits = 0;
+                }
+            }
+        }
+
+        public void flush()
+        {
+            if (numBits != 0)
+            {
+                out.write(cache << (8 - numBits));
+                cache = 0;
+                numBits = 0;
+            }
+        }
+
+        public byte[] toByteArray()
+        {
+            return out.toByteArray();
+        }
+    }
+
+    //-----------------------------
+    static interface BitReader
+    {
+        public long getUB(int bits) throws IOException;
+
+        public long getSB(int bits) throws IOException;
+
+        public void flush();
+    }
+
+    //-----------------------------
+    /**
+     * Copy of the reader SWFDataReader used to have
+     */
+    static class LegacyBitReader implements BitReader
+    {
+        final InputStream in;
+        int bitCache;
+        int bitPtr = -1;
+
+        public LegacyBitReader(InputStream in)
+        {
+            this.in = in;
+        }
+
+        private long readBits(int bits) throws IOException
+        {
+            long val = 0;
+            for (int i = 0; i < bits; ++i)
+            {
+                if (bitPtr == -1)
+                {
+                    bitCache = in.read();
+                    bitPtr = 7;
+                }
+
+                val <<= 1;
+                val |= (bitCache & (1 << bitPtr)) == 0 ? 0 : 1;
+                --bitPtr;
+            }
+
+            return val;
+        }
+
+        public long getUB(int bits) throws IOException
+        {
+            return readBits(bits);
+        }
+
+        public long getSB(int bits) throws IOException
+        {
+            long val = readBits(bits);
+            long sgnMask = 1 << (bits - 1);
+            return (sgnMask & val) == 0 ? val : ~(sgnMask - 1) | val;
+        }
+
+        public void flush()
+        {
+            bitPtr = -1;
+        }
+    }
+
+    //-----------------------------
+    static class WordBitReader implements BitReader
+    {
+        final SWFDataReader in;
+
+        public WordBitReader(SWFDataReader in)
+        {
+            this.in = in;
+        }
+
+        public long getUB(int bits) throws IOException
+        {
+            return in.getUB(bits);
+        }
+
+        public long getSB(int bits) throws IOException
+        {
+            return in.getSB(bits);
+        }
+
+        public void flush()
+        {
+            in.flushToByteBoundary();
+        }
+    }
+}